@@ -1,9 +1,6 @@
 package il.co.codeguru.corewars8086.cpu.riscv;
 
 import il.co.codeguru.corewars8086.cpu.exceptions.CpuException;
-import il.co.codeguru.corewars8086.cpu.riscv.instruction_formats.InstructionFormatBase;
-import il.co.codeguru.corewars8086.cpu.riscv.rv32c.InstructionDecoderRv32c;
-import il.co.codeguru.corewars8086.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
 import il.co.codeguru.corewars8086.memory.MemoryException;
 import il.co.codeguru.corewars8086.memory.RealModeAddress;
 import il.co.codeguru.corewars8086.memory.RealModeMemory;
@@ -15,9 +12,10 @@ public class CpuRiscV {
 
     private CpuStateRiscV state;
     private RealModeMemory memory;
-    private InstructionDecoder decoder;
-    private InstructionDecoderRv32c cDecoder;
+    private DecodeCache decodeCache;
     private InstructionRunner runner;
+    private InstructionMix mix = null; // counts executed instructions when set
+    private FlightRecorder recorder = null; // remembers the last instructions when set
 
     public CpuStateRiscV getState() {
         return state;
@@ -31,34 +29,87 @@ public class CpuRiscV {
     {
         this.state = state;
         this.memory = memory;
-        this.decoder = new InstructionDecoder();
-        this.cDecoder = new InstructionDecoderRv32c();
+        this.decodeCache = new DecodeCache();
         this.runner = new InstructionRunner(this);
     }
 
+    /** @return the instructions this cpu decoded, for disassembling the same memory */
+    public DecodeCache getDecodeCache() {
+        return decodeCache;
+    }
+
+    /** @param mix  counts every instruction this cpu executes from now on, null to stop counting */
+    public void setInstructionMix(InstructionMix mix) {
+        this.mix = mix;
+    }
+
+    public InstructionMix getInstructionMix() {
+        return mix;
+    }
+
+    /** @param recorder  records every instruction this cpu executes from now on, null to stop recording */
+    public void setFlightRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public FlightRecorder getFlightRecorder() {
+        return recorder;
+    }
+
     public void nextOpcode() throws CpuException, MemoryException
     {
         if(tryRv32cSet())
             return;
 
-        int rawCode = memory.read32Bit(new RealModeAddress(ARENA_SEGMENT, (short)state.getPc()));
-        InstructionFormatBase instructionRaw = new InstructionFormatBase(rawCode);
-
-        Instruction instruction = decoder.decode(instructionRaw);
+        int rawCode = fetch32Bit((short)state.getPc());
+        if (recorder != null)
+            recorder.record(state.getPc(), rawCode, state.getReg(destination(rawCode)));
+        Instruction instruction = decodeCache.decode(rawCode);
 
+        int pc = state.getPc();
         instruction.execute(runner);
+        if (mix != null)
+            mix.count(instruction, 4, pc, state.getPc() + 4);
+        if (recorder != null)
+            recorder.setLastRdValue(state.getReg(destination(rawCode)));
 
         state.setPc(state.getPc() + 4);
     }
 
+    /** @return the rd field of a 32 bit instruction, 0 (always zero) for stores and branches that don't have one */
+    private static int destination(int raw)
+    {
+        int opcode = raw & 0x7f;
+        if (opcode == RV32I.OpcodeTypes.STORE || opcode == RV32I.OpcodeTypes.BRANCH)
+            return 0;
+        return (raw >> 7) & 0x1f;
+    }
+
+    // instructions are fetched with the execute reads, so the memory can tell them from loads
+    private int fetch32Bit(short pc) throws MemoryException
+    {
+        short low = memory.readExecuteWord(new RealModeAddress(ARENA_SEGMENT, pc));
+        short high = memory.readExecuteWord(new RealModeAddress(ARENA_SEGMENT, (short)(pc + 2)));
+        return ((high & 0xffff) << 16) | (low & 0xffff);
+    }
+
     private boolean tryRv32cSet() throws CpuException, MemoryException
     {
-        short rawComppressedCode = memory.read16Bit(new RealModeAddress(ARENA_SEGMENT, (short)state.getPc()));
-        CInstructionFormatBase commpressedInstruction = new CInstructionFormatBase(rawComppressedCode);
-        Instruction i = cDecoder.decode(commpressedInstruction);
+        short rawComppressedCode = memory.readExecuteWord(new RealModeAddress(ARENA_SEGMENT, (short)state.getPc()));
+        Instruction i = decodeCache.decodeCompressed(rawComppressedCode);
         if(i!=null)
         {
+            int pc = state.getPc();
+            int rd = 0;
+            if (recorder != null) {
+                rd = destination(i.getFormat().getRaw()); // the RV32I instruction it expands to
+                recorder.record(pc, rawComppressedCode & 0xffff, state.getReg(rd));
+            }
             i.execute(runner);
+            if (mix != null)
+                mix.count(i, 2, pc, state.getPc() + 2);
+            if (recorder != null)
+                recorder.setLastRdValue(state.getReg(rd));
             state.setPc(state.getPc() + 2);
         }
         return i!=null;
@@ -31,4 +31,10 @@ public class CpuStateRiscV extends CpuState {
     public void setPc(int pc) {
         this.pc = pc;
     }
+
+    public void copyFrom(CpuStateRiscV other) {
+        super.copyFrom(other);
+        System.arraycopy(other.registers, 0, registers, 0, registers.length);
+        pc = other.pc;
+    }
 }
@@ -0,0 +1,96 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars8086.cpu.riscv.instruction_formats.InstructionFormatBase;
+import il.co.codeguru.corewars8086.cpu.riscv.rv32c.InstructionDecoderRv32c;
+import il.co.codeguru.corewars8086.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
+
+/**
+ * Decoded instructions by their raw bits, so a loop that runs the same few instructions decodes every one of
+ * them once instead of allocating a new {@link Instruction} every time.
+ *
+ * An Instruction only holds what its raw bits say, so it's fine to run it again whenever the same bits are
+ * fetched, even if a warrior wrote them again in the meantime. The cache is direct mapped, a collision just
+ * decodes again. Every cpu has its own, and a disassembler of the same memory can share it.
+ */
+public class DecodeCache {
+    static final int SIZE = 256; // most warriors are shorter than this many instructions
+    private static final int MASK = SIZE - 1;
+    // marks bits that don't decode, so they aren't decoded again either
+    private static final Instruction INVALID = new Instruction(null, null, null);
+
+    private final InstructionDecoder m_decoder = new InstructionDecoder();
+    private final InstructionDecoderRv32c m_cDecoder = new InstructionDecoderRv32c();
+
+    private final int[] m_raw = new int[SIZE];
+    private final Instruction[] m_instructions = new Instruction[SIZE]; // null where nothing was decoded yet
+    private final short[] m_cRaw = new short[SIZE];
+    private final Instruction[] m_cInstructions = new Instruction[SIZE];
+
+    // for the engine metrics, see il.co.codeguru.corewars8086.utils.metrics.EngineMetrics
+    // ints since long is emulated in the browser, a cache lives for a single war so they don't overflow
+    private int m_hits = 0;
+    private int m_misses = 0;
+    private int m_evictions = 0; // misses that replaced other decoded bits
+
+    /** @return the 32 bit instruction of the raw bits */
+    public Instruction decode(int raw) throws InvalidOpcodeException {
+        int slot = (raw ^ (raw >>> 7) ^ (raw >>> 15)) & MASK; // mix the opcode, the registers and the immediate
+        Instruction i = m_instructions[slot];
+        if (i != null && m_raw[slot] == raw) {
+            ++m_hits;
+        }
+        else {
+            countMiss(i);
+            try {
+                i = m_decoder.decode(new InstructionFormatBase(raw));
+            } catch (InvalidOpcodeException e) {
+                i = INVALID;
+            }
+            m_raw[slot] = raw;
+            m_instructions[slot] = i;
+        }
+        if (i == INVALID)
+            throw new InvalidOpcodeException();
+        return i;
+    }
+
+    /** @return the RV32C instruction of the raw bits, null if they are not one */
+    public Instruction decodeCompressed(short raw) {
+        int slot = (raw ^ (raw >>> 8)) & MASK;
+        Instruction i = m_cInstructions[slot];
+        if (i != null && m_cRaw[slot] == raw) {
+            ++m_hits;
+        }
+        else {
+            countMiss(i);
+            i = m_cDecoder.decode(new CInstructionFormatBase(raw));
+            if (i == null)
+                i = INVALID;
+            m_cRaw[slot] = raw;
+            m_cInstructions[slot] = i;
+        }
+        return i != INVALID ? i : null;
+    }
+
+    private void countMiss(Instruction previous) {
+        ++m_misses;
+        if (previous != null)
+            ++m_evictions;
+    }
+
+    /** @return how many decodes found their bits in the cache */
+    public int getHits() {
+        return m_hits;
+    }
+
+    /** @return how many decodes had to decode the bits */
+    public int getMisses() {
+        return m_misses;
+    }
+
+    /** @return how many misses threw out the instruction of other bits that were in the same slot */
+    public int getEvictions() {
+        return m_evictions;
+    }
+}
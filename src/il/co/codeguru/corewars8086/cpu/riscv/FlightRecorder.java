@@ -0,0 +1,88 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+/**
+ * Remembers the last instructions a cpu executed, for finding out why a warrior died without running the war
+ * again in the debugger.
+ *
+ * Every entry is the pc, the raw instruction word as it was fetched (16 bit for RV32C) and the value of the
+ * destination register after the instruction, 0 for instructions that don't have one. The entries are kept in
+ * primitive arrays used as a ring, so recording doesn't allocate anything.
+ * The instruction that made the cpu throw is recorded too, as the last entry, with the destination register
+ * as it was before it.
+ */
+public class FlightRecorder {
+    private final int[] m_pcs;
+    private final int[] m_raws;
+    private final int[] m_rdValues;
+    private final int m_mask;
+    private int m_count = 0; // number of entries ever recorded, a war is far too short for this to overflow
+
+    /** @param size  number of entries to keep, rounded up to a power of two */
+    public FlightRecorder(int size) {
+        int capacity = 1;
+        while (capacity < size)
+            capacity <<= 1;
+        m_pcs = new int[capacity];
+        m_raws = new int[capacity];
+        m_rdValues = new int[capacity];
+        m_mask = capacity - 1;
+    }
+
+    /** records an instruction that is about to execute */
+    void record(int pc, int raw, int rdValue) {
+        int i = m_count & m_mask;
+        m_pcs[i] = pc;
+        m_raws[i] = raw;
+        m_rdValues[i] = rdValue;
+        ++m_count;
+    }
+
+    /** sets the destination register of the last instruction, once it executed */
+    void setLastRdValue(int rdValue) {
+        m_rdValues[(m_count - 1) & m_mask] = rdValue;
+    }
+
+    public int getCapacity() {
+        return m_pcs.length;
+    }
+
+    /** @return number of entries that are kept, at most the capacity */
+    public int size() {
+        return Math.min(m_count, m_pcs.length);
+    }
+
+    // index 0 is the oldest entry that is kept
+    private int slot(int index) {
+        return (m_count - size() + index) & m_mask;
+    }
+
+    public int getPc(int index) {
+        return m_pcs[slot(index)];
+    }
+
+    public int getRaw(int index) {
+        return m_raws[slot(index)];
+    }
+
+    public int getRdValue(int index) {
+        return m_rdValues[slot(index)];
+    }
+
+    public void clear() {
+        m_count = 0;
+    }
+
+    /** @return the entries from the oldest, as pc:raw:rd in hex separated by ';' */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size(); ++i) {
+            if (i > 0)
+                sb.append(';');
+            sb.append(Integer.toHexString(getPc(i))).append(':')
+              .append(Integer.toHexString(getRaw(i))).append(':')
+              .append(Integer.toHexString(getRdValue(i)));
+        }
+        return sb.toString();
+    }
+}
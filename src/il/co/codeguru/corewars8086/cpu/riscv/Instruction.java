@@ -4,6 +4,9 @@ import il.co.codeguru.corewars8086.cpu.exceptions.CpuException;
 import il.co.codeguru.corewars8086.cpu.riscv.instruction_formats.InstructionFormatBase;
 import il.co.codeguru.corewars8086.memory.MemoryException;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class Instruction {
 
     private InstructionInfo info;
@@ -39,6 +42,9 @@ public class Instruction {
     }
 
     public static class InstructionInfo {
+        private static final List<InstructionInfo> s_all = new ArrayList<>();
+
+        final private int id;
         final private String name;
         final private int opcode;
         final private int funct3; //Or funct4 in the case of RV32C
@@ -58,9 +64,35 @@ public class Instruction {
             this.opcode = type;
             this.funct3 = funct3;
             this.funct7 = funct7;
+            synchronized (s_all) {
+                this.id = s_all.size();
+                s_all.add(this);
+            }
         }
         public String getName() {return name;}
 
+        /**
+         * @return a small number that is unique to this instruction, for indexing counter arrays.
+         * Ids are given in the order the instructions are created, see {@link InstructionMix}.
+         */
+        public int getId() {return id;}
+
+        /** @return whether this is an RV32C instruction, the compressed quadrants are the opcodes below 3 */
+        public boolean isCompressed() {return opcode < 3;}
+
+        /** @return how many instructions were created so far, all ids are smaller */
+        public static int count() {
+            synchronized (s_all) {
+                return s_all.size();
+            }
+        }
+
+        public static InstructionInfo byId(int id) {
+            synchronized (s_all) {
+                return s_all.get(id);
+            }
+        }
+
         public int getOpcode() {
             return opcode;
         }
@@ -0,0 +1,153 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+import il.co.codeguru.corewars8086.cpu.exceptions.CpuException;
+import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars8086.cpu.exceptions.MisalignedMemoryLoadException;
+import il.co.codeguru.corewars8086.cpu.riscv.rv32c.RV32C;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Counts the instructions a cpu executed, in flat arrays indexed by {@link Instruction.InstructionInfo#getId()}.
+ *
+ * Besides the number of times each instruction ran it counts the times it moved the pc somewhere else than
+ * the next instruction, which for a branch is the number of times it was taken, and why the warrior died.
+ * A cpu counts only when it is given a mix with {@link CpuRiscV#setInstructionMix(InstructionMix)}.
+ */
+public class InstructionMix {
+
+    /** Causes of death, see {@link #countDeath(Exception)} */
+    public static final int DEATH_MISALIGNED = 0;
+    public static final int DEATH_INVALID_OPCODE = 1;
+    public static final int DEATH_OTHER_CPU = 2;
+    public static final int DEATH_MEMORY = 3;
+    public static final int NUM_DEATH_CAUSES = 4;
+    private static final String[] DEATH_NAMES = {"misaligned jump", "invalid opcode", "other cpu exception", "memory exception"};
+
+    static {
+        // every instruction gets its id when its class is initialized, make sure they all have one
+        RV32I.Opcodes.Beq.getId();
+        RV32C.Opcodes.CLW.getId();
+    }
+    /** number of instructions there are counters for */
+    public static final int NUM_IDS = Instruction.InstructionInfo.count();
+
+    private final int[] m_executed = new int[NUM_IDS];
+    private final int[] m_taken = new int[NUM_IDS];
+    private final int[] m_deaths = new int[NUM_DEATH_CAUSES];
+
+    /**
+     * @param size    size of the instruction, the pc moves by this much if it doesn't jump
+     * @param pcBefore  pc before executing
+     * @param pcAfter   pc after executing
+     */
+    public void count(Instruction instruction, int size, int pcBefore, int pcAfter) {
+        int id = instruction.getInfo().getId();
+        ++m_executed[id];
+        if (pcAfter != pcBefore + size)
+            ++m_taken[id];
+    }
+
+    public void countDeath(Exception e) {
+        if (e instanceof MisalignedMemoryLoadException)
+            ++m_deaths[DEATH_MISALIGNED];
+        else if (e instanceof InvalidOpcodeException)
+            ++m_deaths[DEATH_INVALID_OPCODE];
+        else if (e instanceof CpuException)
+            ++m_deaths[DEATH_OTHER_CPU];
+        else
+            ++m_deaths[DEATH_MEMORY];
+    }
+
+    /** @return the counter of every instruction id, owned by the mix */
+    public int[] getExecuted() {
+        return m_executed;
+    }
+
+    /** @return for every instruction id, the times it didn't continue to the next instruction */
+    public int[] getTaken() {
+        return m_taken;
+    }
+
+    public int getDeaths(int cause) {
+        return m_deaths[cause];
+    }
+
+    public int getTotalExecuted() {
+        int total = 0;
+        for (int c : m_executed)
+            total += c;
+        return total;
+    }
+
+    /** @return how many of the executed stores had the given width, 1, 2 or 4 bytes */
+    public int getStoreCount(int width) {
+        switch (width) {
+            case 1: return m_executed[RV32I.Opcodes.Sb.getId()];
+            case 2: return m_executed[RV32I.Opcodes.Sh.getId()];
+            case 4: return m_executed[RV32I.Opcodes.Sw.getId()] + m_executed[RV32C.Opcodes.CSW.getId()] +
+                           m_executed[RV32C.Opcodes.CSWSP.getId()];
+            default: return 0;
+        }
+    }
+
+    /** adds the counts of another mix to this one, for totals of a whole war */
+    public void add(InstructionMix other) {
+        for (int i = 0; i < NUM_IDS; ++i) {
+            m_executed[i] += other.m_executed[i];
+            m_taken[i] += other.m_taken[i];
+        }
+        for (int i = 0; i < NUM_DEATH_CAUSES; ++i)
+            m_deaths[i] += other.m_deaths[i];
+    }
+
+    /**
+     * @return a few lines for people: the RV32I and then the RV32C instructions that ran, the most frequent
+     * first, with how many times branches were taken, the stores by width and the deaths by cause
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("executed ").append(getTotalExecuted()).append('\n');
+        appendSet(sb, "RV32I", false);
+        appendSet(sb, "RV32C", true);
+        sb.append("stores: byte ").append(getStoreCount(1)).append(", half ").append(getStoreCount(2))
+          .append(", word ").append(getStoreCount(4)).append('\n');
+        for (int i = 0; i < NUM_DEATH_CAUSES; ++i) {
+            if (m_deaths[i] > 0)
+                sb.append("died of ").append(DEATH_NAMES[i]).append(": ").append(m_deaths[i]).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void appendSet(StringBuilder sb, String title, boolean compressed) {
+        List<Instruction.InstructionInfo> infos = new ArrayList<>();
+        for (int id = 0; id < NUM_IDS; ++id) {
+            Instruction.InstructionInfo info = Instruction.InstructionInfo.byId(id);
+            if (info.isCompressed() == compressed && m_executed[id] > 0)
+                infos.add(info);
+        }
+        if (infos.isEmpty())
+            return;
+        Collections.sort(infos, new Comparator<Instruction.InstructionInfo>() {
+            @Override
+            public int compare(Instruction.InstructionInfo a, Instruction.InstructionInfo b) {
+                return Integer.compare(m_executed[b.getId()], m_executed[a.getId()]);
+            }
+        });
+        sb.append(title).append(":\n");
+        for (Instruction.InstructionInfo info : infos) {
+            int id = info.getId();
+            sb.append("  ").append(info.getName()).append(' ').append(m_executed[id]);
+            if (isBranch(info))
+                sb.append(" (taken ").append(m_taken[id]).append(", not taken ").append(m_executed[id] - m_taken[id]).append(')');
+            sb.append('\n');
+        }
+    }
+
+    private static boolean isBranch(Instruction.InstructionInfo info) {
+        return info.getOpcode() == RV32I.OpcodeTypes.BRANCH || info == RV32C.Opcodes.CBEQZ || info == RV32C.Opcodes.CBNEZ;
+    }
+}
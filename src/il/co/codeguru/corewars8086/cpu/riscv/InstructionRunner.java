@@ -68,7 +68,7 @@ public class InstructionRunner {
      * The effective byte address is obtained by adding register rs1 to the sign-extended 12-bit offset
      */
     public void sw(InstructionFormatS i) throws MemoryException {
-        memory.write32Bit(new RealModeAddress(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm())), state.getReg(i.getRs2()));
+        memory.write32Bit(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm()), state.getReg(i.getRs2()));
     }
 
     /**
@@ -76,7 +76,7 @@ public class InstructionRunner {
      * The effective byte address is obtained by adding register rs1 to the sign-extended 12-bit offset
      */
     public void sh(InstructionFormatS i) throws MemoryException {
-        memory.write16Bit(new RealModeAddress(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm())), (short) state.getReg(i.getRs2()));
+        memory.write16Bit(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm()), (short) state.getReg(i.getRs2()));
     }
 
     /**
@@ -84,7 +84,7 @@ public class InstructionRunner {
      * The effective byte address is obtained by adding register rs1 to the sign-extended 12-bit offset
      */
     public void sb(InstructionFormatS i) throws MemoryException {
-        memory.writeByte(new RealModeAddress(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm())), (byte) state.getReg(i.getRs2()));
+        memory.writeByte(RealModeAddress.linearAddress(ARENA_SEGMENT, (short) (state.getReg(i.getRs1()) + i.getImm())), (byte) state.getReg(i.getRs2()));
     }
 
     /**
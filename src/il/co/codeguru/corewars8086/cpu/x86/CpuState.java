@@ -155,6 +155,29 @@ public class CpuState {
         m_dx |= (Unsigned.unsignedByte(value) << 8);
     }
 
+    /**
+     * Copies all registers, flags and virtual registers of another state into this one.
+     */
+    public void copyFrom(CpuState other) {
+        m_ax = other.m_ax;
+        m_bx = other.m_bx;
+        m_cx = other.m_cx;
+        m_dx = other.m_dx;
+        m_ds = other.m_ds;
+        m_es = other.m_es;
+        m_si = other.m_si;
+        m_di = other.m_di;
+        m_ss = other.m_ss;
+        m_bp = other.m_bp;
+        m_sp = other.m_sp;
+        m_cs = other.m_cs;
+        m_ip = other.m_ip;
+        m_flags = other.m_flags;
+        m_energy = other.m_energy;
+        m_bomb1count = other.m_bomb1count;
+        m_bomb2count = other.m_bomb2count;
+    }
+
     /** Accessors for the virtual Energy register. */
     public short getEnergy() {
         return m_energy;
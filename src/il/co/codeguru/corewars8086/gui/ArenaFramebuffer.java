@@ -0,0 +1,206 @@
+package il.co.codeguru.corewars8086.gui;
+
+import il.co.codeguru.corewars8086.gui.widgets.Color;
+import il.co.codeguru.corewars8086.war.WarProfile;
+
+/**
+ * The arena as the war canvas shows it, one pixel for every byte in an RGBA framebuffer.
+ *
+ * Memory writes and pointer moves only change the arrays here and mark the rows they touched as dirty.
+ * The {@link Canvas} copies the dirty rows to the screen once per animation frame and scales them to the zoom,
+ * instead of filling a rectangle for every write.
+ * This is plain Java so that it can be tested without a browser.
+ */
+public class ArenaFramebuffer {
+    public static final int SIZE = 256;
+    public static final byte EMPTY = -1;
+    private static final int BLACK = 0xff000000;
+    private static final int HEAT_COLOR = (220 << 8) | 255; // yellow, without the alpha
+
+    private static int[] s_colors, s_pointerColors;
+
+    // all of these are indexed by the offset in the arena, y * SIZE + x
+    private final byte[] m_owners = new byte[SIZE * SIZE]; // warrior that last wrote to a byte, EMPTY if none did
+    private final byte[] m_pointers = new byte[SIZE * SIZE]; // warrior whose pc is at a byte, EMPTY if none
+    private final byte[] m_values = new byte[SIZE * SIZE];
+    /** little endian RGBA, what a Uint32Array over the data of an ImageData holds */
+    private final int[] m_pixels = new int[SIZE * SIZE];
+
+    private final int[] m_pointerOffsets = new int[SIZE * SIZE];
+    private int m_numPointers = 0;
+
+    private final boolean[] m_dirtyRows = new boolean[SIZE];
+    private boolean m_dirty = false;
+
+    public ArenaFramebuffer() {
+        clear();
+    }
+
+    /** @return the color as a little endian RGBA pixel */
+    public static int toPixel(Color c) {
+        return 0xff000000 | (c.getBlue() << 16) | (c.getGreen() << 8) | c.getRed();
+    }
+
+    /**
+     * Makes a transparent overlay of usage counters, the more a cell was used the more opaque its yellow.
+     * @param counts  a counter for every arena offset
+     * @param pixels  the overlay, little endian RGBA pixels like the framebuffer
+     * @return false if all the counters are zero and there's nothing to show
+     */
+    public static boolean heatPixels(int[] counts, int[] pixels) {
+        int max = WarProfile.max(counts);
+        if (max == 0)
+            return false;
+        // log scale so that a tight loop doesn't make everything else invisible
+        double scale = 1.0 / Math.log(1 + max);
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] == 0) {
+                pixels[i] = 0;
+                continue;
+            }
+            int alpha = (int)(255 * (0.2 + 0.8 * Math.log(1 + counts[i]) * scale));
+            pixels[i] = (alpha << 24) | HEAT_COLOR;
+        }
+        return true;
+    }
+
+    private static void initColors() {
+        if (s_colors != null)
+            return;
+        s_colors = new int[ColorHolder.MAX_COLORS];
+        s_pointerColors = new int[ColorHolder.MAX_COLORS];
+        for (int i = 0; i < ColorHolder.MAX_COLORS; ++i) {
+            s_colors[i] = toPixel(ColorHolder.getInstance().getColor(i, false));
+            s_pointerColors[i] = toPixel(ColorHolder.getInstance().getColor(i, true));
+        }
+    }
+
+    /** forgets the owners and pointers, the whole arena is black and dirty */
+    public void clear() {
+        for (int i = 0; i < m_owners.length; ++i) {
+            m_owners[i] = EMPTY;
+            m_pointers[i] = EMPTY;
+            m_pixels[i] = BLACK;
+        }
+        m_numPointers = 0;
+        for (int y = 0; y < SIZE; ++y)
+            m_dirtyRows[y] = true;
+        m_dirty = true;
+    }
+
+    /**
+     * Records a write to the arena.
+     * @param owner  the warrior that wrote, EMPTY to keep the current owner
+     * @return true if the framebuffer was clean until now and should be flushed in the next frame
+     */
+    public boolean write(int offset, byte owner, byte value) {
+        m_values[offset] = value;
+        if (owner != EMPTY)
+            m_owners[offset] = owner;
+        return update(offset);
+    }
+
+    /** sets a value without changing colors, for loading the arena or editing it by hand */
+    public boolean setValue(int offset, byte value) {
+        m_values[offset] = value;
+        return markDirty(offset);
+    }
+
+    /** @return true if the framebuffer was clean until now */
+    public boolean setPointer(int offset, byte warrior) {
+        if (m_pointers[offset] == EMPTY)
+            m_pointerOffsets[m_numPointers++] = offset;
+        m_pointers[offset] = warrior;
+        return update(offset);
+    }
+
+    /** removes all the pointers, going over only the bytes that have one */
+    public boolean clearPointers() {
+        boolean wasClean = !m_dirty;
+        for (int i = 0; i < m_numPointers; ++i) {
+            int offset = m_pointerOffsets[i];
+            m_pointers[offset] = EMPTY;
+            update(offset);
+        }
+        m_numPointers = 0;
+        return wasClean && m_dirty;
+    }
+
+    private boolean update(int offset) {
+        int pixel = BLACK;
+        if (m_pointers[offset] != EMPTY) {
+            initColors();
+            pixel = s_pointerColors[m_pointers[offset]];
+        }
+        else if (m_owners[offset] != EMPTY) {
+            initColors();
+            pixel = s_colors[m_owners[offset]];
+        }
+        m_pixels[offset] = pixel;
+        return markDirty(offset);
+    }
+
+    private boolean markDirty(int offset) {
+        m_dirtyRows[offset / SIZE] = true;
+        if (m_dirty)
+            return false;
+        m_dirty = true;
+        return true;
+    }
+
+    public byte getOwner(int offset) {
+        return m_owners[offset];
+    }
+
+    public byte getPointer(int offset) {
+        return m_pointers[offset];
+    }
+
+    public byte getValue(int offset) {
+        return m_values[offset];
+    }
+
+    /** @return the color a byte is painted with, null if it is black */
+    public Color getColor(int offset) {
+        if (m_pointers[offset] != EMPTY)
+            return ColorHolder.getInstance().getColor(m_pointers[offset], true);
+        if (m_owners[offset] != EMPTY)
+            return ColorHolder.getInstance().getColor(m_owners[offset], false);
+        return null;
+    }
+
+    /** @return the framebuffer itself, row after row of little endian RGBA pixels */
+    public int[] getPixels() {
+        return m_pixels;
+    }
+
+    public boolean isDirty() {
+        return m_dirty;
+    }
+
+    /** @return the first dirty row at or after the given row, -1 if there is none */
+    public int nextDirtyRow(int from) {
+        if (!m_dirty)
+            return -1;
+        for (int y = from; y < SIZE; ++y) {
+            if (m_dirtyRows[y])
+                return y;
+        }
+        return -1;
+    }
+
+    /** @return the row after the run of dirty rows that starts at the given row */
+    public int dirtyRunEnd(int start) {
+        int y = start;
+        while (y < SIZE && m_dirtyRows[y])
+            ++y;
+        return y;
+    }
+
+    /** called after all the dirty rows were copied to the screen */
+    public void clearDirty() {
+        for (int y = 0; y < SIZE; ++y)
+            m_dirtyRows[y] = false;
+        m_dirty = false;
+    }
+}
@@ -3,6 +3,8 @@ package il.co.codeguru.corewars8086.gui;
 import elemental2.dom.*;
 import elemental2.dom.CanvasRenderingContext2D.StrokeStyleUnionType;
 import elemental2.dom.CanvasRenderingContext2D.FillStyleUnionType;
+import elemental2.dom.CanvasRenderingContext2D.DrawImageImageUnionType;
+import com.google.gwt.animation.client.AnimationScheduler;
 
 
 import il.co.codeguru.corewars8086.gui.widgets.*;
@@ -12,6 +14,7 @@ import il.co.codeguru.corewars8086.jsadd.Format;
 import il.co.codeguru.corewars8086.memory.RealModeAddress;
 import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
 import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.WarProfile;
 
 
 public class Canvas extends JComponent<HTMLCanvasElement> {
@@ -25,13 +28,20 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
     public static final int CANVAS_HEIGHT = BOARD_SIZE*DOT_SIZE + MARGIN_TOP + MARGIN_BOTTOM;
     public static final int CANVAS_WIDTH = BOARD_SIZE*DOT_SIZE + MARGIN_LEFT + MARGIN_RIGHT;
 
-    public static final byte EMPTY = -1;
+    public static final byte EMPTY = ArenaFramebuffer.EMPTY;
 
     private CanvasRenderingContext2D ctx;
-	private byte[][] data; // holds colors, not values
-
-	private byte[][] pointer;
-	private byte[][] values;
+    private final ArenaFramebuffer m_frame = new ArenaFramebuffer();
+    // the framebuffer at one pixel per byte, drawn scaled to the zoom on the visible canvas
+    private HTMLCanvasElement m_frameCanvas;
+    private CanvasRenderingContext2D m_frameCtx;
+    private ImageData m_frameImage;
+    // the heatmap overlay, at one pixel per byte like the framebuffer
+    private HTMLCanvasElement m_heatCanvas;
+    private CanvasRenderingContext2D m_heatCtx;
+    private ImageData m_heatImage;
+    private final int[] m_heatPixels = new int[BOARD_SIZE * BOARD_SIZE];
+    private boolean m_flushScheduled = false;
 
 	//private EventMulticasterMouse eventCaster;
 	//private MouseAddressRequest eventHandler;
@@ -40,6 +50,8 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 
 	private float m_zrHscale, m_zrVscale, m_zrX, m_zrY; // zoom rect
     private boolean m_showContent = false;
+    private int m_heatmapKind = -1; // one of WarProfile.EXECUTIONS, READS, WRITES or -1 for no heatmap
+    private int m_heatmapWarrior = -1; // -1 for all the warriors
     private Path2D m_memclip, m_coordXclip, m_coordYclip;
 
     HTMLInputElement m_dummyInput; // used to have something that could get input focus
@@ -75,8 +87,20 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 		Dimension d = getMinimumSize();
 		m_element.width = d.width;
 		m_element.height = d.height;
+        disableSmoothing(ctx); // scaled framebuffer pixels stay sharp squares
         ctx.save(); // save state with full page clipping
 
+        m_frameCanvas = (HTMLCanvasElement)DomGlobal.document.createElement("canvas");
+        m_frameCanvas.width = BOARD_SIZE;
+        m_frameCanvas.height = BOARD_SIZE;
+        m_frameCtx = (CanvasRenderingContext2D)(Object)m_frameCanvas.getContext("2d");
+        m_frameImage = m_frameCtx.createImageData(BOARD_SIZE, BOARD_SIZE);
+        m_heatCanvas = (HTMLCanvasElement)DomGlobal.document.createElement("canvas");
+        m_heatCanvas.width = BOARD_SIZE;
+        m_heatCanvas.height = BOARD_SIZE;
+        m_heatCtx = (CanvasRenderingContext2D)(Object)m_heatCanvas.getContext("2d");
+        m_heatImage = m_heatCtx.createImageData(BOARD_SIZE, BOARD_SIZE);
+
         m_memclip = new Path2D();
         m_memclip.moveTo(MARGIN_LEFT, MARGIN_TOP);
         m_memclip.lineTo(CANVAS_WIDTH - MARGIN_RIGHT, MARGIN_TOP);
@@ -133,40 +157,63 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 	}
 
 	public void paintPixel(int x, int y, byte colorByte, byte value) {
-        values[x][y] = value;
+        if (m_frame.write(x + y * BOARD_SIZE, colorByte, value))
+            scheduleFlush();
+	}
 
-		Color color = null;
-		if (colorByte != -1)
-            data[x][y] = colorByte;
-        else
-            colorByte = data[x][y];
-        if (colorByte != -1) {
-            color = ColorHolder.getInstance().getColor(colorByte, false);
-            ctx.fillStyle = FillStyleUnionType.of(color.toString());
+
+	public void paintPointer(int number, byte colorByte) {
+        if (m_frame.setPointer(number, colorByte))
+            scheduleFlush();
+	}
+
+    private void scheduleFlush() {
+        if (m_flushScheduled)
+            return;
+        m_flushScheduled = true;
+        AnimationScheduler.get().requestAnimationFrame(timestamp -> flush());
+    }
+
+    /** draws the rows that changed since the last frame */
+    private void flush() {
+        m_flushScheduled = false;
+        if (isHeatmapShown()) {
+            // the counters change every round and not only where memory is written, the overlay covers everything
+            paint();
+            return;
         }
-        else {
-            // color remains null so that fill text would keep it gray
-            ctx.fillStyle = FillStyleUnionType.of("#000000");
+        int end;
+        for (int y = m_frame.nextDirtyRow(0); y >= 0; y = m_frame.nextDirtyRow(end)) {
+            end = m_frame.dirtyRunEnd(y);
+            putRows(y, end);
+            ctx.drawImage(DrawImageImageUnionType.of(m_frameCanvas), 0, y, BOARD_SIZE, end - y,
+                          0, y * DOT_SIZE, BOARD_SIZE_PX, (end - y) * DOT_SIZE);
+            if (m_showContent) {
+                for (int ry = y; ry < end; ++ry)
+                    for (int x = 0; x < BOARD_SIZE; ++x)
+                        if (m_contentVisibleRect.isInside(x, ry))
+                            paintTextValue(x, ry, m_frame.getColor(x + ry * BOARD_SIZE));
+            }
         }
+        m_frame.clearDirty();
+    }
 
-        ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
-
-        if (m_showContent)
-            paintTextValue(x, y, color);
-	}
+    /** copies rows of the framebuffer to the offscreen canvas */
+    private void putRows(int from, int to) {
+        copyPixels(m_frameImage, m_frame.getPixels(), from * BOARD_SIZE, to * BOARD_SIZE);
+        m_frameCtx.putImageData(m_frameImage, 0, 0, 0, from, BOARD_SIZE, to - from);
+    }
 
+    // not in the elemental2 version we build with
+    private static native void disableSmoothing(CanvasRenderingContext2D ctx) /*-{
+        ctx.imageSmoothingEnabled = false;
+    }-*/;
 
-	public void paintPointer(int number, byte colorByte) {
-	    int x = number % BOARD_SIZE;
-	    int y = number / BOARD_SIZE;
-	    Color color = ColorHolder.getInstance().getColor(colorByte, true);
-
-        pointer[x][y] = colorByte;
-        ctx.fillStyle = FillStyleUnionType.of(color.toString());
-        ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
-        if (m_showContent)
-            paintTextValue(x, y, color);
-	}
+    private static native void copyPixels(ImageData image, int[] pixels, int from, int to) /*-{
+        var view = new Uint32Array(image.data.buffer);
+        for (var i = from; i < to; ++i)
+            view[i] = pixels[i];
+    }-*/;
 
 	public void paintTextValue(int x, int y, Color backCol) {
         String textCol;
@@ -179,7 +226,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         else
             textCol = "#666666";
         ctx.fillStyle = FillStyleUnionType.of(textCol);
-        ctx.fillText(  Format.hex2(values[x][y] & 0xff),  x * DOT_SIZE + 0.2, y * DOT_SIZE + 2.2);
+        ctx.fillText(  Format.hex2(m_frame.getValue(x + y * BOARD_SIZE) & 0xff),  x * DOT_SIZE + 0.2, y * DOT_SIZE + 2.2);
     }
 
 
@@ -192,30 +239,12 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         m_mem = war.getMemory();
         m_currentWar = war;
         m_indebug = true;
-        int addr = 0x10000;
-        for (int y = 0; y < BOARD_SIZE; y++)
-        {
-            for (int x = 0; x < BOARD_SIZE; x++)
-            {
-                values[x][y] = m_mem.readByte(addr);
-                addr += 1;
-            }
-        }
+        for (int offset = 0; offset < BOARD_SIZE * BOARD_SIZE; offset++)
+            m_frame.setValue(offset, m_mem.readByte(0x10000 + offset));
     }
 
 	public void clear() {
-		if (data == null)
-			data = new byte[BOARD_SIZE][BOARD_SIZE];
-		if (pointer == null)
-			pointer = new byte[BOARD_SIZE][BOARD_SIZE];
-		if (values == null)
-            values = new byte[BOARD_SIZE][BOARD_SIZE];
-
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				data[i][j] = EMPTY;
-				pointer[i][j] = EMPTY;
-			}
+		m_frame.clear();
 
 		ctx.setTransform(1,0,0,1,0,0);
 
@@ -236,18 +265,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
     }
 
 	private Color paintMemCellBack(int x, int y) {
-        int cellPtr = pointer[x][y];
-        Color col = null;
-        if (cellPtr != EMPTY) {
-            col = ColorHolder.getInstance().getColor(cellPtr, true);
-        }
-        else {
-            int cellVal = data[x][y];
-            if (cellVal != EMPTY) {
-                col = ColorHolder.getInstance().getColor(cellVal, false);
-            }
-        }
-
+        Color col = m_frame.getColor(x + y * BOARD_SIZE);
         if (col != null) {
             ctx.fillStyle = FillStyleUnionType.of(col.toString());
             ctx.fillRect(x * DOT_SIZE, y * DOT_SIZE, DOT_SIZE, DOT_SIZE);
@@ -267,27 +285,29 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 	public void paint() {
 		ctx.fillStyle = FillStyleUnionType.of(Color.WHITE);
         ctx.fillRect(0, 0, CANVAS_WIDTH, CANVAS_HEIGHT); // TBD remove this
-        ctx.fillStyle = FillStyleUnionType.of(Color.BLACK);
-		ctx.fillRect(0, 0, BOARD_SIZE * DOT_SIZE, BOARD_SIZE * DOT_SIZE);
+
+        // the offscreen canvas gets everything that changed, then all of it is scaled to the zoom at once
+        int end;
+        for (int y = m_frame.nextDirtyRow(0); y >= 0; y = m_frame.nextDirtyRow(end)) {
+            end = m_frame.dirtyRunEnd(y);
+            putRows(y, end);
+        }
+        m_frame.clearDirty();
+        ctx.drawImage(DrawImageImageUnionType.of(m_frameCanvas), 0, 0, BOARD_SIZE, BOARD_SIZE,
+                      0, 0, BOARD_SIZE_PX, BOARD_SIZE_PX);
 
         if (m_showContent) {
 		    //ctx.font = Integer.toString((int)(DOT_SIZE * m_zrHscale)) + "px monospace";
             ctx.font = "2.3px monospace";
+            int sx = Math.max((int)m_contentVisibleRect.sx, 0), ex = Math.min((int)m_contentVisibleRect.ex + 1, BOARD_SIZE);
+            int sy = Math.max((int)m_contentVisibleRect.sy, 0), ey = Math.min((int)m_contentVisibleRect.ey + 1, BOARD_SIZE);
+            for (int y = sy; y < ey; y++)
+                for (int x = sx; x < ex; x++)
+                    if (m_contentVisibleRect.isInside(x, y))
+                        paintTextValue(x, y, m_frame.getColor(x + y * BOARD_SIZE));
         }
-
-
-		for (int y = 0; y < BOARD_SIZE; y++)
-		{
-			for (int x = 0; x < BOARD_SIZE; x++)
-			{
-                boolean textVisible = m_showContent && m_contentVisibleRect.isInside(x, y);
-                Color col = paintMemCellBack(x, y);
-                if (textVisible) {
-                    paintTextValue(x, y, col);
-                }
-			}
-		}
 		//Console.log("textCount=" + Integer.toString(textVisCount));
+		paintHeatmap();
 		if (m_showContent && m_intervalId != null)
 		    paintCursor(true);
 
@@ -370,13 +390,8 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 	}*/
 
 	public void deletePointers() {
-		for (int i = 0; i < BOARD_SIZE; i++)
-			for (int j = 0; j < BOARD_SIZE; j++) {
-				if (pointer[i][j] != EMPTY) {
-					pointer[i][j] = EMPTY;
-					paintPixel(i, j, data[i][j], values[i][j]);
-				}
-			}
+		if (m_frame.clearPointers())
+		    scheduleFlush();
 	}
 
 	// ------------------------------ zoom and pan ---------------------------
@@ -386,6 +401,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         $wnd.j_warCanvas_setTransform = $entry(function(a,b,c,d) { that.@il.co.codeguru.corewars8086.gui.Canvas::j_warCanvas_setTransform(FFFF)(a,b,c,d) });
         $wnd.j_warCanvas_click = $entry(function(a,b) { that.@il.co.codeguru.corewars8086.gui.Canvas::j_warCanvas_click(FF)(a,b) });
         $wnd.j_warCanvas_showCurrent = $entry(function(a,b) { that.@il.co.codeguru.corewars8086.gui.Canvas::j_warCanvas_showCurrent(FF)(a,b) });
+        $wnd.j_warCanvas_setHeatmap = $entry(function(k,w) { that.@il.co.codeguru.corewars8086.gui.Canvas::j_warCanvas_setHeatmap(II)(k,w) });
     }-*/;
 
 
@@ -393,6 +409,37 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
 		repaint();
 	}
 
+    /**
+     * Paints the counters of the war's {@link WarProfile} over the arena, the more a cell was used the brighter.
+     * @param kind     WarProfile.EXECUTIONS, READS or WRITES, -1 to stop showing a heatmap
+     * @param warrior  index of the warrior to show, -1 for all of them
+     */
+    public void j_warCanvas_setHeatmap(int kind, int warrior) {
+        m_heatmapKind = kind;
+        m_heatmapWarrior = warrior;
+        repaint();
+    }
+
+    private boolean isHeatmapShown() {
+        return m_heatmapKind >= 0 && m_currentWar != null && m_currentWar.getProfile() != null;
+    }
+
+    private void paintHeatmap() {
+        if (!isHeatmapShown())
+            return;
+        WarProfile profile = m_currentWar.getProfile();
+        if (m_heatmapWarrior >= profile.getNumWarriors())
+            return;
+        int[] counts = (m_heatmapWarrior < 0) ? profile.getTotalCounts(m_heatmapKind)
+                                              : profile.getCounts(m_heatmapWarrior, m_heatmapKind);
+        if (!ArenaFramebuffer.heatPixels(counts, m_heatPixels))
+            return;
+        copyPixels(m_heatImage, m_heatPixels, 0, m_heatPixels.length);
+        m_heatCtx.putImageData(m_heatImage, 0, 0);
+        ctx.drawImage(DrawImageImageUnionType.of(m_heatCanvas), 0, 0, BOARD_SIZE, BOARD_SIZE,
+                      0, 0, BOARD_SIZE_PX, BOARD_SIZE_PX);
+    }
+
 	private static native void initZoom(int marginTop, int marginLeft) /*-{
 	    $wnd.WC_MARGIN_TOP = marginTop
 	    $wnd.WC_MARGIN_LEFT = marginLeft
@@ -498,7 +545,7 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
         sb.append(")");
         for(int i = sb.length() - bef; i < 5; ++i)
             sb.append('\u00A0');
-        byte player = data[mx][my];
+        byte player = m_frame.getOwner(addr);
         if (player != -1) {
             sb.append("  Player: ");
             sb.append(m_currentWar.getWarrior(player).getName().substring(0,20));
@@ -577,13 +624,16 @@ public class Canvas extends JComponent<HTMLCanvasElement> {
                     v = c - 'A' + 10;
                 if (v != -1) {
                     int ix = (int)m_cursorX, iy = (int)m_cursorY;
-                    int ev = values[ix][iy];
+                    int ev = m_frame.getValue(ix + iy * BOARD_SIZE);
                     if (m_cursorX % 1 == 0)
                         ev = ev & 0xf | (v << 4);
                     else
                         ev = ev & 0xf0 | v;
-                    values[ix][iy] = (byte)ev;
+                    if (m_frame.setValue(ix + iy * BOARD_SIZE, (byte)ev))
+                        scheduleFlush();
                     m_mem.writeByte(new RealModeAddress((short)0x1000, (short)(ix+iy*256)), (byte)ev);
+                    if (m_currentWar.getHistory() != null)
+                        m_currentWar.getHistory().discardFuture();
                     moveCursor(0.5, 0);
 
                 }
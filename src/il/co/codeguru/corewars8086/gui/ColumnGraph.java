@@ -5,6 +5,7 @@ package il.co.codeguru.corewars8086.gui;
 //import java.awt.Graphics;
 //
 //import javax.swing.JComponent;
+import com.google.gwt.animation.client.AnimationScheduler;
 import elemental2.dom.CanvasRenderingContext2D;
 import elemental2.dom.HTMLCanvasElement;
 import il.co.codeguru.corewars8086.gui.widgets.*;
@@ -32,6 +33,7 @@ public class ColumnGraph extends JComponent<HTMLCanvasElement> {
     private PlayerColumn[] columns;
     private float maxValue;
     private double reduceFactor;
+    private boolean paintScheduled = false;
 
     private static final int NAME_HEIGHT = 17;
     private static final int BOTTOM_MARGIN = 30;
@@ -71,27 +73,41 @@ public class ColumnGraph extends JComponent<HTMLCanvasElement> {
 
 
     
-    public void addToValue(int pos, int subIndex, float value) {
-        columns[pos].values[0]+= value;
-        columns[pos].values[subIndex+1]+= value;
-
-        if (columns[pos].values[0] > maxValue) {
-            // reset graph factor by half to make more room
-            maxValue = columns[pos].values[0];
-            if (maxValue * reduceFactor > m_element.height-15-BOTTOM_MARGIN) {
-                reduceFactor *= 0.5;
+    /**
+     * Adds the scores of a batch of wars and paints the graph in the next animation frame, once no matter how
+     * many batches come before it.
+     * @param added  the score added to every warrior, by column and index in the column
+     */
+    public void addValues(float[][] added) {
+        for (int pos = 0; pos < added.length; ++pos) {
+            for (int subIndex = 0; subIndex < added[pos].length; ++subIndex) {
+                columns[pos].values[0]+= added[pos][subIndex];
+                columns[pos].values[subIndex+1]+= added[pos][subIndex];
+            }
+
+            if (columns[pos].values[0] > maxValue) {
+                // reset graph factor by half to make more room
+                maxValue = columns[pos].values[0];
+                if (maxValue * reduceFactor > m_element.height-15-BOTTOM_MARGIN) {
+                    reduceFactor *= 0.5;
+                }
             }
         }
-        repaint();
 
         StringBuilder sb = new StringBuilder();
         for(int i = 0; i < columns.length; ++i) {
             sb.append(columns[i].values[0]);
             sb.append("  ");
         }
-        Console.log("Score add " + Integer.toString(pos) + " " + Integer.toString(subIndex) + " " + Float.toString(value) +
-                    "  totals= " + sb.toString());
-        paintComponent();
+        Console.log("Score totals= " + sb.toString());
+
+        if (paintScheduled)
+            return;
+        paintScheduled = true;
+        AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+            paintScheduled = false;
+            paintComponent();
+        });
     }
 
     /* (non-Javadoc)
@@ -43,6 +43,13 @@ public class CompetitionWindow extends JFrame
     private HTMLElement stepnum;
 
 
+    /** the clock of the page, the same one the timestamps of requestAnimationFrame come from */
+    private static final FrameBudget.Clock PERFORMANCE_CLOCK = () -> performanceNow();
+
+    private static native double performanceNow() /*-{
+        return $wnd.performance.now();
+    }-*/;
+
     public boolean isBattleShown() {
         return m_isBattleShown;
     }
@@ -54,6 +61,8 @@ public class CompetitionWindow extends JFrame
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
         competition = new Competition();
+        // long wars don't freeze the page
+        competition.setFrameBudget(new FrameBudget(FrameBudget.DEFAULT_BUDGET_MILLIS, PERFORMANCE_CLOCK));
         competition.addCompetitionEventListener(this);
         WarriorRepository warriorRepository = competition.getWarriorRepository();
         warriorRepository.addScoreEventListener(this);
@@ -129,11 +138,20 @@ public class CompetitionWindow extends JFrame
         $wnd.j_triggerZeroSpeed = $entry(function() { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_triggerZeroSpeed()() });
         $wnd.j_startCompete = $entry(function() { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_startCompete()() });
         $wnd.j_stopCompete = $entry(function() { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_stopCompete()() });
+        $wnd.j_getReplay = $entry(function() { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_getReplay()() });
+        $wnd.j_startReplay = $entry(function(d, r) { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_startReplay(Ljava/lang/String;I)(d, r) });
+        $wnd.j_seekRound = $entry(function(r) { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_seekRound(I)(r) });
+        $wnd.j_addWatchpoint = $entry(function(a, l) { that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_addWatchpoint(II)(a, l) });
+        $wnd.j_removeWatchpoint = $entry(function(a, l) { that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_removeWatchpoint(II)(a, l) });
+        $wnd.j_clearWatchpoints = $entry(function() { that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_clearWatchpoints()() });
+        $wnd.j_setProfiling = $entry(function(e) { that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_setProfiling(Z)(e) });
+        $wnd.j_getInstructionMix = $entry(function(w) { return that.@il.co.codeguru.corewars8086.gui.CompetitionWindow::j_getInstructionMix(I)(w) });
 
     }-*/;
 
     public boolean j_startDebug()
     {
+        m_codeEditor.flushPendingAssembly(); // the binary of the last edit
         if (!m_playersPanel.checkPlayersReady())
             return false;
         return gui_runWar(true, true);
@@ -147,6 +165,7 @@ public class CompetitionWindow extends JFrame
 
     public boolean j_startCompete()
     {
+        m_codeEditor.flushPendingAssembly();
         if (!m_playersPanel.checkPlayersReady())
             return false;
         return gui_runWar(false, false);
@@ -156,6 +175,124 @@ public class CompetitionWindow extends JFrame
         competition.setAbort();
     }
 
+    // descriptor of the last war that ran, for replaying it later with j_startReplay
+    public String j_getReplay()
+    {
+        WarReplay replay = competition.getCurrentReplay();
+        return (replay == null) ? null : replay.toString();
+    }
+
+    // runs a recorded war up to the given round and opens it in the debugger
+    public boolean j_startReplay(String descriptor, int round)
+    {
+        m_codeEditor.flushPendingAssembly();
+        if (!m_playersPanel.checkPlayersReady())
+            return false;
+        WarriorRepository repo = competition.getWarriorRepository();
+        PlayersPanel.Code[] playerFiles = Arrays.stream(m_playersPanel.getFiles())
+                .filter(code -> code.player.isEnabled)
+                .toArray(PlayersPanel.Code[]::new);
+        // fixed addresses come from the replay
+        if (!repo.loadWarriors(playerFiles , m_playersPanel.getZombies(), false))
+            return false;
+        columnGraph.clear(repo.getGroupNames());
+
+        try {
+            competition.startReplay(WarReplay.parse(descriptor), round);
+        }
+        catch (Exception e) {
+            Console.error("replay failed: " + e.getMessage());
+            return false;
+        }
+        m_isBattleShown = true;
+        competitionRunning = true;
+        setDebugMode(true);
+
+        War war = competition.getCurrentWar();
+        war.setBreakpointCheck(m_codeEditor);
+        war.setUiWarrior(war.getWarriorByLabel(m_playersPanel.getCodeInEditor().getLabel()));
+        war.setInDebugger();
+
+        outRoundNum();
+        battleFrame.speedSlider.setValue(0);
+        return true;
+    }
+
+    // going back in the debugger, using the snapshots the war keeps while debugging
+    public boolean stepBack()
+    {
+        try {
+            return competition.stepBack();
+        }
+        catch (Exception e) {
+            Console.error("step back failed: " + e.getMessage());
+            return false;
+        }
+        finally {
+            outRoundNum();
+            requestFrame(); // the war is paused, just paints where it is
+        }
+    }
+
+    public boolean j_seekRound(int round)
+    {
+        try {
+            return competition.seekRound(round);
+        }
+        catch (Exception e) {
+            Console.error("seek failed: " + e.getMessage());
+            return false;
+        }
+        finally {
+            outRoundNum();
+            requestFrame(); // the war is paused, just paints where it is
+        }
+    }
+
+    public boolean prevBreakpoint()
+    {
+        try {
+            return competition.seekPreviousBreakpoint();
+        }
+        catch (Exception e) {
+            Console.error("seek failed: " + e.getMessage());
+            return false;
+        }
+        finally {
+            outRoundNum();
+            requestFrame(); // the war is paused, just paints where it is
+        }
+    }
+
+    // watch writes to arena offsets, the debugger stops on the round they're written in
+    public void j_addWatchpoint(int offset, int length) {
+        competition.addWatchpoint(offset, length);
+    }
+    public void j_removeWatchpoint(int offset, int length) {
+        competition.removeWatchpoint(offset, length);
+    }
+    public void j_clearWatchpoints() {
+        competition.clearWatchpoints();
+    }
+
+    /** counts what the warriors execute, read and write, for the heatmaps of the canvas and the instruction mix */
+    public void j_setProfiling(boolean enable) {
+        competition.setProfiling(enable);
+    }
+
+    /**
+     * @param warriorIndex  the warrior to summarize, -1 for all the warriors of the war
+     * @return which instructions ran in the current war, null if it isn't profiled
+     */
+    public String j_getInstructionMix(int warriorIndex) {
+        War war = competition.getCurrentWar();
+        if (war == null || war.getProfile() == null || warriorIndex >= war.getNumWarriors())
+            return null;
+        if (warriorIndex < 0)
+            return war.getProfile().getTotalInstructionMix().summary();
+        return war.getProfile().getInstructionMix(warriorIndex).summary();
+    }
+
     public void j_triggerZeroSpeed() {
         competition.setSpeed(0);
         battleFrame.speedSlider.setValue(0);
@@ -253,8 +390,8 @@ public class CompetitionWindow extends JFrame
         return false;
     }
 
-    public void scoreChanged(String name, float addedValue, int groupIndex, int subIndex) {
-        columnGraph.addToValue(groupIndex, subIndex, addedValue);
+    public void scoresChanged(float[][] addedScores) {
+        columnGraph.addValues(addedScores);
     }
 
     public void setDebugMode(boolean v) {
@@ -310,6 +447,12 @@ public class CompetitionWindow extends JFrame
         competition.addMemoryEventLister(battleFrame.cpuframe.stackView);
         competition.addMemoryEventLister(battleFrame.cpuframe.sharedMemView);
 
+        // what the rounds change comes once a frame, the memory listeners only get the writes outside of them
+        competition.addFrameDeltaListener(battleFrame);
+        competition.addFrameDeltaListener(battleFrame.cpuframe);
+        competition.addFrameDeltaListener(battleFrame.cpuframe.stackView);
+        competition.addFrameDeltaListener(battleFrame.cpuframe.sharedMemView);
+
     }
 
     public void onWarEnd(int reason, String winners, boolean inDebug) {
@@ -360,9 +503,12 @@ public class CompetitionWindow extends JFrame
 
         battleFrame.btnPause.setEnabled(!v);
         battleFrame.btnSingleRound.setEnabled(!v);
+        battleFrame.btnContinue.setEnabled(!v);
+        battleFrame.btnStepBack.setEnabled(!v);
+        battleFrame.btnPrevBreakpoint.setEnabled(!v);
     }
 
-    // war needs to know which player's breakpoint to check
+    // the debugger shows the registers of the player in the editor
     public void srcSelectionChanged(String label) {
         War war = competition.getCurrentWar();
         if (war == null)
@@ -0,0 +1,182 @@
+package il.co.codeguru.corewars8086.gui;
+
+import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+
+/**
+ * An expression from {@link ExpressionParser} compiled to a flat postfix program, for expressions that are
+ * evaluated very often like the condition of a breakpoint, which is checked after every opcode.
+ *
+ * Registers are resolved to their index when compiling and the evaluation stack is allocated once, so
+ * evaluating doesn't allocate or look up anything by name. Values are signed 32 bit ints, like the RISC-V
+ * registers, unlike the tree evaluation of {@link ExpressionParser.INode#eval()} that keeps 16 bits for the watches.
+ */
+public class CompiledExpression {
+
+    // instructions, the ones that have an operand take two ints in the program
+    private static final int OP_NUM = 0;      // operand: value
+    private static final int OP_REG = 1;      // operand: register index
+    private static final int OP_MEM = 2;      // operand: size, address on the stack
+    private static final int OP_MEM_SEG = 3;  // operand: size, segment and address on the stack
+    private static final int OP_NEG = 4;
+    private static final int OP_NOT = 5;
+    private static final int OP_BINARY = 6;   // plus the operator ordinal
+
+    private final int[] m_program;
+    private final int m_length;
+    private final int[] m_stack;
+
+    private CompiledExpression(int[] program, int length, int maxDepth) {
+        m_program = program;
+        m_length = length;
+        m_stack = new int[maxDepth];
+    }
+
+    /**
+     * @throws Exception if the expression doesn't parse or uses identifiers that are not registers
+     */
+    public static CompiledExpression compile(String text) throws Exception {
+        return compile(new ExpressionParser().eval(text));
+    }
+
+    public static CompiledExpression compile(ExpressionParser.INode root) throws Exception {
+        Compiler c = new Compiler();
+        c.emit(root, 0);
+        return new CompiledExpression(c.program, c.length, c.maxDepth);
+    }
+
+    private static class Compiler {
+        int[] program = new int[16];
+        int length = 0;
+        int maxDepth = 0;
+
+        void add(int v) {
+            if (length == program.length) {
+                int[] bigger = new int[program.length * 2];
+                System.arraycopy(program, 0, bigger, 0, length);
+                program = bigger;
+            }
+            program[length++] = v;
+        }
+
+        /** @param depth  number of values already on the stack */
+        void emit(ExpressionParser.INode node, int depth) throws Exception {
+            maxDepth = Math.max(maxDepth, depth + 1);
+            if (node instanceof ExpressionParser.NumNode) {
+                add(OP_NUM);
+                add(((ExpressionParser.NumNode)node).v);
+            }
+            else if (node instanceof ExpressionParser.RegisterNode) {
+                String name = ((ExpressionParser.RegisterNode)node).name;
+                int index = ExpressionParser.registerIndex(name);
+                if (index < 0)
+                    throw new Exception("unknown register " + name);
+                add(OP_REG);
+                add(index);
+            }
+            else if (node instanceof ExpressionParser.IdentifierNode) {
+                throw new Exception("unknown identifier " + ((ExpressionParser.IdentifierNode)node).name);
+            }
+            else if (node instanceof ExpressionParser.MemAccessNode) {
+                ExpressionParser.MemAccessNode mem = (ExpressionParser.MemAccessNode)node;
+                if (mem.vseg != null) {
+                    emit(mem.vseg, depth);
+                    emit(mem.vaddr, depth + 1);
+                    add(OP_MEM_SEG);
+                }
+                else {
+                    emit(mem.vaddr, depth);
+                    add(OP_MEM);
+                }
+                add(mem.sz);
+            }
+            else if (node instanceof ExpressionParser.UnaryNegNode) {
+                emit(((ExpressionParser.UnaryNegNode)node).child, depth);
+                add(OP_NEG);
+            }
+            else if (node instanceof ExpressionParser.UnaryNotNode) {
+                emit(((ExpressionParser.UnaryNotNode)node).child, depth);
+                add(OP_NOT);
+            }
+            else if (node instanceof ExpressionParser.BinaryOpNode) {
+                ExpressionParser.BinaryOpNode bin = (ExpressionParser.BinaryOpNode)node;
+                emit(bin.left, depth);
+                emit(bin.right, depth + 1);
+                add(OP_BINARY + bin.op.ordinal());
+            }
+            else {
+                throw new Exception("can't compile " + node.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * @param state   the registers the expression refers to
+     * @param memory  memory for [address] references, addresses without a segment are in DS
+     * @return the 32 bit value of the expression
+     * @throws Exception on division by zero
+     */
+    public int eval(CpuStateRiscV state, RealModeMemoryImpl memory) throws Exception {
+        int[] stack = m_stack;
+        int sp = 0;
+        int pc = 0;
+        while (pc < m_length) {
+            int op = m_program[pc++];
+            switch (op) {
+                case OP_NUM:
+                    stack[sp++] = m_program[pc++];
+                    break;
+                case OP_REG:
+                    stack[sp++] = readRegister(state, m_program[pc++]);
+                    break;
+                case OP_MEM:
+                    stack[sp - 1] = readMemory(memory, state.getDS(), stack[sp - 1], m_program[pc++]);
+                    break;
+                case OP_MEM_SEG:
+                    --sp;
+                    stack[sp - 1] = readMemory(memory, (short)stack[sp - 1], stack[sp], m_program[pc++]);
+                    break;
+                case OP_NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case OP_NOT:
+                    stack[sp - 1] = ~stack[sp - 1];
+                    break;
+                default:
+                    --sp;
+                    stack[sp - 1] = binary(op - OP_BINARY, stack[sp - 1], stack[sp]);
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    /** @return whether the expression is non zero */
+    public boolean isTrue(CpuStateRiscV state, RealModeMemoryImpl memory) throws Exception {
+        return eval(state, memory) != 0;
+    }
+
+    private static int readRegister(CpuStateRiscV state, int index) {
+        switch (index) {
+            case ExpressionParser.REG_PC:     return state.getPc();
+            case ExpressionParser.REG_ENERGY: return state.getEnergy() & 0xffff;
+            case ExpressionParser.REG_FLAGS:  return state.getFlags() & 0xffff;
+            default:                          return state.getReg(index);
+        }
+    }
+
+    /** @param size  1, 2 or 4 bytes, little endian */
+    private static int readMemory(RealModeMemoryImpl memory, short segment, int address, int size) {
+        int value = 0;
+        for (int i = size - 1; i >= 0; --i)
+            value = (value << 8) | (memory.readByte(RealModeAddress.linearAddress(segment, (short)(address + i))) & 0xff);
+        return value;
+    }
+
+    private static final ExpressionParser.EOps[] OPS = ExpressionParser.EOps.values();
+
+    private static int binary(int opIndex, int v1, int v2) throws Exception {
+        return ExpressionParser.BinaryOpNode.apply(OPS[opIndex], v1, v2);
+    }
+}
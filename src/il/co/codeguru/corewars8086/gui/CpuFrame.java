@@ -10,6 +10,8 @@ import il.co.codeguru.corewars8086.memory.RealModeAddress;
 import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
 import il.co.codeguru.corewars8086.war.Competition;
 import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.FrameDelta;
+import il.co.codeguru.corewars8086.war.FrameDeltaListener;
 import il.co.codeguru.corewars8086.war.War;
 
 import il.co.codeguru.corewars8086.gui.widgets.*;
@@ -17,12 +19,13 @@ import il.co.codeguru.corewars8086.war.Warrior;
 
 import java.util.HashMap;
 
-public class CpuFrame  implements CompetitionEventListener, MemoryEventListener {
+public class CpuFrame  implements CompetitionEventListener, MemoryEventListener, FrameDeltaListener {
 	
 	//private War currentWar;
 	private CompetitionWindow m_mainwnd;
 	private String m_currentWarriorLabel = null;
 	private int m_currentWarriorIndex = -1; // faster to use index than label during debug
+	private boolean m_fieldsFromDelta = false; // the frame delta updated the fields, onEndRound doesn't need to
 	
 	private Competition competition;
 	private int m_base = 16;
@@ -50,6 +53,7 @@ public class CpuFrame  implements CompetitionEventListener, MemoryEventListener
 	public void setSelectedPlayer(String playerLabel, boolean isDebugMode) {
 		m_currentWarriorLabel = playerLabel;
 		m_currentWarriorIndex = -1; // invalidate
+		competition.invalidateFrameDelta(); // the last delta had the registers of another warrior
 
 		if (isDebugMode) {
 			// need to do this first so that reading the registers would put this ss:sp in the right place
@@ -98,6 +102,11 @@ public class CpuFrame  implements CompetitionEventListener, MemoryEventListener
 				state.setReg(Integer.valueOf(name), v);
 		}
 
+		competition.invalidateFrameDelta();
+		// running from earlier rounds would not get to the edited state
+		if (currentWar.getHistory() != null)
+			currentWar.getHistory().discardFuture();
+
 		// reeval watch - might change depending on the register that just changed
 		m_stateAccess.state = state;
 		for (WatchEntry entry : m_watches.values()) {
@@ -256,18 +265,18 @@ public class CpuFrame  implements CompetitionEventListener, MemoryEventListener
 		    if (state == null) {
 		        throw new Exception("invalid state");
             }
-            try {
-				switch (name) {
-					case "ENERGY":
-						return state.getEnergy();
-					case "FLAGS":
-						return state.getFlags();
-					default:
-						return (short) state.getReg(Integer.valueOf(name));
-				}
-			}
-			catch(IndexOutOfBoundsException e) {
-				throw new RuntimeException("unknown register name " + name); // should not happen since we check before
+			int index = ExpressionParser.registerIndex(name);
+			switch (index) {
+				case ExpressionParser.REG_PC:
+					return (short) state.getPc();
+				case ExpressionParser.REG_ENERGY:
+					return state.getEnergy();
+				case ExpressionParser.REG_FLAGS:
+					return state.getFlags();
+				case -1:
+					throw new RuntimeException("unknown register name " + name); // should not happen since we check before
+				default:
+					return (short) state.getReg(index);
 			}
 		}
 
@@ -284,8 +293,11 @@ public class CpuFrame  implements CompetitionEventListener, MemoryEventListener
 			int linaddr = RealModeAddress.linearAddress(sseg, (short)addr);
 			if (size == 1)
 				return memory.readByte(linaddr) & 0xff;
-			else
-				return memory.read16Bit(new RealModeAddress(linaddr)) & 0xffff;
+			int low = memory.read16Bit(new RealModeAddress(linaddr)) & 0xffff;
+			if (size == 2)
+				return low;
+			int high = memory.read16Bit(new RealModeAddress(RealModeAddress.linearAddress(sseg, (short)(addr + 2)))) & 0xffff;
+			return (high << 16) | low;
 		}
 
 	}
@@ -431,8 +443,32 @@ public class CpuFrame  implements CompetitionEventListener, MemoryEventListener
 	public void onCompetitionEnd() {
 	}
 
+	@Override
+	public void onFrameDelta(FrameDelta delta) {
+		if (m_currentWarriorIndex == -1 || delta.getSelectedWarrior() != m_currentWarriorIndex)
+			return; // onEndRound reads all of them
+		for (int i = 0; i < delta.getRegCount(); ++i) {
+			int reg = delta.getRegIndex(i);
+			if (reg == FrameDelta.REG_PC)
+				regPc.setValue(delta.getRegValue(i));
+			else
+				registers[reg].setValue(delta.getRegValue(i));
+		}
+
+		// watches once for the frame, not for every byte it wrote
+		m_stateAccess.state = competition.getCurrentWar().getWarrior(m_currentWarriorIndex).getCpuState();
+		for (WatchEntry entry : m_watches.values()) {
+			entry.evalAndDisplay();
+		}
+		m_fieldsFromDelta = true;
+	}
+
 	@Override
 	public void onEndRound() {
+		if (m_fieldsFromDelta) {
+			m_fieldsFromDelta = false;
+			return;
+		}
 		this.updateFields();
 	}
 
@@ -1,8 +1,7 @@
 package il.co.codeguru.corewars8086.gui;
 
 
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Stack;
 
 public class ExpressionParser
@@ -27,15 +26,17 @@ public class ExpressionParser
             right = r;
             op = _op;
         }
-        private int checkZero(int v) throws Exception {
+        private static int checkZero(int v) throws Exception {
             if (v == 0) {
                 throw new Exception("Division by zero");
             }
             return v;
         }
         public int eval() throws Exception {
-            int v1 = left.eval() & 0xffff;
-            int v2 = right.eval() & 0xffff;
+            return apply(op, left.eval() & 0xffff, right.eval() & 0xffff) & 0xffff;
+        }
+        /** @return the int result of the operator, the tree evaluation keeps only its low 16 bits */
+        static int apply(EOps op, int v1, int v2) throws Exception {
             int ret;
             switch (op) {
                 case OPERATOR_BITWISE_OR:     ret = v1 | v2; break;
@@ -50,9 +51,17 @@ public class ExpressionParser
                 case OPERATOR_MODULO:         ret = v1 % checkZero(v2); break;
                 case OPERATOR_POWER:          ret = pow(v1, v2); break;
                 case OPERATOR_EXPONENT:       ret = v1 * pow(10, v2); break;
+                case OPERATOR_EQUAL:          ret = (v1 == v2) ? 1 : 0; break;
+                case OPERATOR_NOT_EQUAL:      ret = (v1 != v2) ? 1 : 0; break;
+                case OPERATOR_LESS:           ret = (v1 < v2) ? 1 : 0; break;
+                case OPERATOR_LESS_EQUAL:     ret = (v1 <= v2) ? 1 : 0; break;
+                case OPERATOR_GREATER:        ret = (v1 > v2) ? 1 : 0; break;
+                case OPERATOR_GREATER_EQUAL:  ret = (v1 >= v2) ? 1 : 0; break;
+                case OPERATOR_LOGICAL_AND:    ret = (v1 != 0 && v2 != 0) ? 1 : 0; break;
+                case OPERATOR_LOGICAL_OR:     ret = (v1 != 0 || v2 != 0) ? 1 : 0; break;
                 default:  throw new Exception("unexpected operator");
             }
-            return ret & 0xffff;
+            return ret;
         }
     }
     public static class UnaryNegNode implements INode {
@@ -118,11 +127,33 @@ public class ExpressionParser
     }
 
 
-    static HashSet<String> m_registers = null;
-    public ExpressionParser() {
-        if (m_registers == null) {
-            m_registers = new HashSet<String>(Arrays.asList("AX","AL","AH","BX","BL","BH","CX","CL","CH","DX","DH","DL","SI","DI","BP","SP","IP","CS","DS","SS","ES","ENERGY","FLAGS"));
+    /** register indices beyond the 32 general purpose registers, see {@link #registerIndex(String)} */
+    public static final int REG_PC = 32;
+    public static final int REG_ENERGY = 33;
+    public static final int REG_FLAGS = 34;
+
+    private static final String[] ABI_NAMES = {"ZERO","RA","SP","GP","TP","T0","T1","T2","S0","S1",
+            "A0","A1","A2","A3","A4","A5","A6","A7","S2","S3","S4","S5","S6","S7","S8","S9","S10","S11",
+            "T3","T4","T5","T6"};
+    static final HashMap<String, Integer> m_registers = new HashMap<>();
+    static {
+        for (int i = 0; i < ABI_NAMES.length; ++i) {
+            m_registers.put("X" + Integer.toString(i), i);
+            m_registers.put(ABI_NAMES[i], i);
         }
+        m_registers.put("FP", 8);
+        m_registers.put("PC", REG_PC);
+        m_registers.put("ENERGY", REG_ENERGY);
+        m_registers.put("FLAGS", REG_FLAGS);
+    }
+
+    /**
+     * @param name  upper case register name, x0-x31, an ABI name like A0 or SP, or PC, ENERGY, FLAGS
+     * @return 0-31 for the general purpose registers, one of the REG_* constants, or -1 if it's not a register
+     */
+    public static int registerIndex(String name) {
+        Integer index = m_registers.get(name);
+        return (index == null) ? -1 : index;
     }
 
 
@@ -153,7 +184,7 @@ public class ExpressionParser
         return eval(expr);
     }*/
 
-    private enum EOps {
+    enum EOps {
         OPERATOR_NULL,
         OPERATOR_BITWISE_OR,     /// |
         OPERATOR_BITWISE_XOR,    /// ^
@@ -166,7 +197,15 @@ public class ExpressionParser
         OPERATOR_DIVISION,       /// /
         OPERATOR_MODULO,         /// %
         OPERATOR_POWER,          /// **
-        OPERATOR_EXPONENT        /// e, E
+        OPERATOR_EXPONENT,       /// e, E
+        OPERATOR_EQUAL,          /// ==
+        OPERATOR_NOT_EQUAL,      /// !=
+        OPERATOR_LESS,           /// <
+        OPERATOR_LESS_EQUAL,     /// <=
+        OPERATOR_GREATER,        /// >
+        OPERATOR_GREATER_EQUAL,  /// >=
+        OPERATOR_LOGICAL_AND,    /// &&
+        OPERATOR_LOGICAL_OR      /// ||
     }
 
 
@@ -309,19 +348,47 @@ public class ExpressionParser
         switch (getCharacter()) {
             case '|':
                 index_++;
-                return new Operator(EOps.OPERATOR_BITWISE_OR, 4, 'L');
+                if (getCharacter() != '|')
+                    return new Operator(EOps.OPERATOR_BITWISE_OR, 4, 'L');
+                index_++;
+                return new Operator(EOps.OPERATOR_LOGICAL_OR, 1, 'L');
             case '^':
                 index_++;
                 return new Operator(EOps.OPERATOR_BITWISE_XOR, 5, 'L');
             case '&':
                 index_++;
-                return new Operator(EOps.OPERATOR_BITWISE_AND, 6, 'L');
+                if (getCharacter() != '&')
+                    return new Operator(EOps.OPERATOR_BITWISE_AND, 6, 'L');
+                index_++;
+                return new Operator(EOps.OPERATOR_LOGICAL_AND, 2, 'L');
+            case '=':
+                expect("==");
+                return new Operator(EOps.OPERATOR_EQUAL, 7, 'L');
+            case '!':
+                expect("!=");
+                return new Operator(EOps.OPERATOR_NOT_EQUAL, 7, 'L');
             case '<':
-                expect("<<");
-                return new Operator(EOps.OPERATOR_BITWISE_SHL, 9, 'L');
+                index_++;
+                if (getCharacter() == '<') {
+                    index_++;
+                    return new Operator(EOps.OPERATOR_BITWISE_SHL, 9, 'L');
+                }
+                if (getCharacter() == '=') {
+                    index_++;
+                    return new Operator(EOps.OPERATOR_LESS_EQUAL, 8, 'L');
+                }
+                return new Operator(EOps.OPERATOR_LESS, 8, 'L');
             case '>':
-                expect(">>");
-                return new Operator(EOps.OPERATOR_BITWISE_SHR, 9, 'L');
+                index_++;
+                if (getCharacter() == '>') {
+                    index_++;
+                    return new Operator(EOps.OPERATOR_BITWISE_SHR, 9, 'L');
+                }
+                if (getCharacter() == '=') {
+                    index_++;
+                    return new Operator(EOps.OPERATOR_GREATER_EQUAL, 8, 'L');
+                }
+                return new Operator(EOps.OPERATOR_GREATER, 8, 'L');
             case '+':
                 index_++;
                 return new Operator(EOps.OPERATOR_ADDITION, 10, 'L');
@@ -378,7 +445,7 @@ public class ExpressionParser
         }
         String ident = sb.toString();
         String idup = ident.toUpperCase();
-        if (m_registers.contains(idup)) {
+        if (m_registers.containsKey(idup)) {
             return new RegisterNode(idup, m_stateAccess);
         }
         return new IdentifierNode(idup, m_stateAccess);
@@ -487,6 +554,10 @@ public class ExpressionParser
                     sz = 2;
                     index_++;
                 }
+                if (c == 'd' || c == 'D') {
+                    sz = 4;
+                    index_++;
+                }
                 if (c == 'b' || c == 'B')
                     index_++;
                 val = new MemAccessNode(vseg, vaddr, sz, m_stateAccess);
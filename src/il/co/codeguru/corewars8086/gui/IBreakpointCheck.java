@@ -3,7 +3,10 @@ package il.co.codeguru.corewars8086.gui;
 
 import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
 import il.co.codeguru.corewars8086.cpu.x86.CpuState;
+import il.co.codeguru.corewars8086.war.BreakpointMap;
 
 public interface IBreakpointCheck {
+    /** @return where the breakpoints are, {@link #shouldBreak(CpuStateRiscV)} is called only when a warrior gets to one */
+    BreakpointMap getBreakpoints();
     boolean shouldBreak(CpuStateRiscV state);
-}
\ No newline at end of file
+}
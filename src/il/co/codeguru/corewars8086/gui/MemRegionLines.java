@@ -0,0 +1,103 @@
+package il.co.codeguru.corewars8086.gui;
+
+import il.co.codeguru.corewars8086.jsadd.Format;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Unsigned;
+
+/**
+ * The lines a {@link MemRegionView} shows for a region of memory, and which of them were written since they
+ * were last shown.
+ *
+ * Writes only mark their line as dirty, once. The view formats every dirty line from the memory and sets its
+ * text once per frame, instead of splicing the text of a line for every byte written to it.
+ * This is plain Java so that it can be tested without a browser.
+ */
+public class MemRegionLines {
+    private static final char SPACE_FOR_HEX_CHAR = '\u202f'; // same as TextUtils, which needs the DOM
+
+    private final int m_step; // bytes in a line
+    private int m_start = -1, m_end = -1; // linear addresses, the end is the last byte in the region
+    private int m_count = 0;
+
+    private boolean[] m_dirty = new boolean[0];
+    private int[] m_dirtyLines = new int[0]; // the lines that are marked in m_dirty, in the order they were written
+    private int m_dirtyCount = 0;
+
+    public MemRegionLines(int step) {
+        m_step = step;
+    }
+
+    /** shows another region, nothing in it is dirty */
+    public void setRegion(int start, int end) {
+        m_start = start;
+        m_end = end;
+        m_count = (start < 0) ? 0 : (end - start) / m_step + 1;
+        if (m_dirty.length < m_count) {
+            m_dirty = new boolean[m_count];
+            m_dirtyLines = new int[m_count];
+        }
+        clearDirty();
+    }
+
+    public int getCount() {
+        return m_count;
+    }
+
+    /** @return the line of an address, -1 if it's not in the region */
+    public int getLine(int addr) {
+        if (m_count == 0 || addr < m_start || addr > m_end)
+            return -1;
+        return (addr - m_start) / m_step;
+    }
+
+    public int getLineAddress(int line) {
+        return m_start + line * m_step;
+    }
+
+    public void markWritten(int addr) {
+        int line = getLine(addr);
+        if (line >= 0 && !m_dirty[line]) {
+            m_dirty[line] = true;
+            m_dirtyLines[m_dirtyCount++] = line;
+        }
+    }
+
+    /** marks the addresses from start up to, not including, end. the parts outside the region are ignored */
+    public void markRange(int start, int end) {
+        start = Math.max(start, m_start);
+        end = Math.min(end, m_end + 1);
+        for (int addr = start; addr < end; addr += m_step)
+            markWritten(addr);
+        if (start < end)
+            markWritten(end - 1); // a range that starts in the middle of a line can end in the next one
+    }
+
+    public int getDirtyCount() {
+        return m_dirtyCount;
+    }
+
+    public int getDirtyLine(int i) {
+        return m_dirtyLines[i];
+    }
+
+    public void clearDirty() {
+        for (int i = 0; i < m_dirtyCount; ++i)
+            m_dirty[m_dirtyLines[i]] = false;
+        m_dirtyCount = 0;
+    }
+
+    /** @return the text of a line: its linear address and then every byte in it, in hex */
+    public String formatLine(int line, RealModeMemoryImpl memory) {
+        int addr = getLineAddress(line);
+        StringBuilder sb = new StringBuilder();
+        // 5 digits since this is an absolute linear address
+        sb.append(Format.hex5(addr));
+        sb.append("   ");
+        for (int i = 0; i < m_step; ++i) {
+            if (i > 0)
+                sb.append(SPACE_FOR_HEX_CHAR);
+            sb.append(Format.hex2(Unsigned.unsignedByte(memory.readByte(addr + i)))); // memory size is always a multiple of the step
+        }
+        return sb.toString();
+    }
+}
@@ -1,17 +1,16 @@
 package il.co.codeguru.corewars8086.gui;
 
 
+import com.google.gwt.animation.client.AnimationScheduler;
 import elemental2.dom.DocumentFragment;
 import elemental2.dom.DomGlobal;
-import elemental2.dom.Element;
 import elemental2.dom.HTMLElement;
-import il.co.codeguru.corewars8086.gui.asm_parsers.TextUtils;
-import il.co.codeguru.corewars8086.gui.code_editor.CodeEditor;
 import il.co.codeguru.corewars8086.jsadd.Format;
 import il.co.codeguru.corewars8086.memory.*;
-import il.co.codeguru.corewars8086.utils.Unsigned;
+import il.co.codeguru.corewars8086.war.FrameDelta;
+import il.co.codeguru.corewars8086.war.FrameDeltaListener;
 
-public class MemRegionView implements MemoryEventListener
+public class MemRegionView implements MemoryEventListener, FrameDeltaListener
 {
     HTMLElement m_htmlList;
     RealModeMemoryRegion m_currentRegion = new RealModeMemoryRegion();
@@ -20,10 +19,16 @@ public class MemRegionView implements MemoryEventListener
     int m_lastMovedToLine = -1;
     HTMLElement m_lastMovedToElem = null;
 
+    private final MemRegionLines m_lines;
+    private HTMLElement[] m_lineElems = new HTMLElement[0];
+    private RealModeMemoryImpl m_memory = null;
+    private boolean m_flushScheduled = false;
+
     public MemRegionView(String id, String innerPrefix) {
         m_htmlList = (HTMLElement)DomGlobal.document.getElementById(id);
         m_innerPrefix = innerPrefix;
         m_step = 2;
+        m_lines = new MemRegionLines(m_step);
     }
 
 
@@ -31,24 +36,32 @@ public class MemRegionView implements MemoryEventListener
         if (!force && m_currentRegion.equals(region))
             return; // can happen in shared mem if we move between the two codes of a single player
 
-        DocumentFragment df = DomGlobal.document.createDocumentFragment();
-        for(int addr = region.m_start; addr <= region.m_end; addr += m_step)
-        {
-            Element e = DomGlobal.document.createElement("div");
-            e.setAttribute("id", m_innerPrefix + Integer.toString(addr));
-            // 5 spaces since this is an absolute linear address
-            StringBuilder sb = new StringBuilder();
-            sb.append(Format.hex5(addr));
-            sb.append("   ");
-            sb.append(Format.hex2(Unsigned.unsignedByte(memory.readByte(addr))));
-            sb.append(TextUtils.SPACE_FOR_HEX_CHAR);
-            sb.append(Format.hex2(Unsigned.unsignedByte(memory.readByte(addr + 1)))); // memory size is always even so no need to check
-
-            e.appendChild(DomGlobal.document.createTextNode(sb.toString()));
-            df.appendChild(e);
+        m_memory = memory;
+        m_lines.setRegion(region.m_start, region.m_end);
+        int count = m_lines.getCount();
+        if (m_lineElems.length == count) {
+            // regions of the same kind have the same size, only the text of the lines changes
+            if (m_lastMovedToElem != null)
+                m_lastMovedToElem.classList.remove("atStackLine");
+            for (int line = 0; line < count; ++line) {
+                m_lineElems[line].setAttribute("id", m_innerPrefix + Integer.toString(m_lines.getLineAddress(line)));
+                Format.setInnerText(m_lineElems[line], m_lines.formatLine(line, memory));
+            }
+        }
+        else {
+            DocumentFragment df = DomGlobal.document.createDocumentFragment();
+            m_lineElems = new HTMLElement[count];
+            for (int line = 0; line < count; ++line)
+            {
+                HTMLElement e = (HTMLElement)DomGlobal.document.createElement("div");
+                e.setAttribute("id", m_innerPrefix + Integer.toString(m_lines.getLineAddress(line)));
+                e.appendChild(DomGlobal.document.createTextNode(m_lines.formatLine(line, memory)));
+                df.appendChild(e);
+                m_lineElems[line] = e;
+            }
+            m_htmlList.innerHTML = "";
+            m_htmlList.appendChild(df);
         }
-        m_htmlList.innerHTML = "";
-        m_htmlList.appendChild(df);
 
 
         m_currentRegion.m_start = region.m_start;
@@ -59,21 +72,35 @@ public class MemRegionView implements MemoryEventListener
         m_lastMovedToElem = null;
     }
 
+    // writes outside of rounds, like edits in the debugger, are shown in the next animation frame
     public void onMemoryWrite(RealModeAddress address, byte value)
     {
-        int addr = address.getLinearAddress();
-        if (addr < m_currentRegion.m_start || addr > m_currentRegion.m_end)
+        m_lines.markWritten(address.getLinearAddress());
+        if (m_lines.getDirtyCount() == 0 || m_flushScheduled)
             return;
+        m_flushScheduled = true;
+        AnimationScheduler.get().requestAnimationFrame(timestamp -> {
+            m_flushScheduled = false;
+            flush();
+        });
+    }
 
-        int lineaddr = (addr / m_step) * m_step;
-        int offsetInLine = addr % m_step;
-        HTMLElement elem = (HTMLElement)DomGlobal.document.getElementById(m_innerPrefix + Integer.toString(lineaddr) );
-        assert elem != null : "unexpected: did not find element";
+    @Override
+    public void onFrameDelta(FrameDelta delta)
+    {
+        for (int r = 0; r < delta.getRangeCount(); ++r)
+            m_lines.markRange(delta.getRangeStart(r), delta.getRangeEnd(r));
+        flush();
+    }
 
-        String text = Format.innerText(elem);
-        offsetInLine = 5 + 3 + offsetInLine * 3; // 5 for address, 3 spaces and each byte has 3 chars - 2+1 space
-        String newtext = text.substring(0, offsetInLine) + Format.hex2(Unsigned.unsignedByte(value)) + text.substring(offsetInLine + 2);
-        Format.setInnerText(elem, newtext);
+    // sets the text of every written line once
+    private void flush()
+    {
+        for (int i = 0; i < m_lines.getDirtyCount(); ++i) {
+            int line = m_lines.getDirtyLine(i);
+            Format.setInnerText(m_lineElems[line], m_lines.formatLine(line, m_memory));
+        }
+        m_lines.clearDirty();
     }
 
     public void onWriteState(MemoryEventListener.EWriteState state)
@@ -95,9 +122,7 @@ public class MemRegionView implements MemoryEventListener
             return;
 
 
-        int lineaddr = (addr / m_step) * m_step;
-        HTMLElement elem = (HTMLElement)DomGlobal.document.getElementById(m_innerPrefix + Integer.toString(lineaddr) );
-        assert elem != null :  "unexpected: did not find element2";
+        HTMLElement elem = m_lineElems[m_lines.getLine(addr)];
         elem.classList.add("atStackLine");
 
         // scroll to view?
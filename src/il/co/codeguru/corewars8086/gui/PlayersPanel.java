@@ -23,6 +23,8 @@ public class PlayersPanel
             lineNum = _lineNum;
         }
         public int lineNum; // 1 based line number, -1 means there's no line number (debug only breakpoint)
+        public String conditionText = null; // break only when this is non zero, null to always break
+        public CompiledExpression condition = null;
     }
 
     public static class Code {
@@ -255,6 +257,7 @@ public class PlayersPanel
     // called by button press and also at the very beginning
     public void j_srcSelectionChanged(String playerLabel, int num) {
         //Console.log("~~~~" + label + Integer.toString(num));
+        m_mainWnd.m_codeEditor.flushPendingAssembly(); // the last edit belongs to the player that is in the editor now
 
         PlayerInfo p = findPlayer(playerLabel);
         m_inEditor = null;
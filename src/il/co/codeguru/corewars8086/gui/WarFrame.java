@@ -34,7 +34,7 @@ import il.co.codeguru.corewars8086.jsadd.Format;
  * 
  * @author BS
  */
-public class WarFrame extends JFrame implements MemoryEventListener,  CompetitionEventListener
+public class WarFrame extends JFrame implements MemoryEventListener,  CompetitionEventListener, FrameDeltaListener
 {
 
 	/** the canvas which show the core war memory area */
@@ -61,6 +61,9 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
 	public CpuFrame cpuframe;
 	public JButton btnPause;
     public JButton btnSingleRound;
+    public JButton btnContinue;
+    public JButton btnStepBack;
+    public JButton btnPrevBreakpoint;
     
 
     public JSlider speedSlider;
@@ -71,6 +74,8 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
     
     private CompetitionWindow mainWnd;
 
+    private boolean m_pointersFromDelta = false; // the frame delta painted the pointers, onEndRound doesn't need to
+
 
     public WarFrame(final Competition competition, final CompetitionWindow mainWnd)
     {
@@ -169,6 +174,9 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
                         btnPause.setText("Pause");
                         mainWnd.requestFrame();
                         btnSingleRound.setEnabled(false);
+                        btnContinue.setEnabled(false);
+                        btnStepBack.setEnabled(false);
+                        btnPrevBreakpoint.setEnabled(false);
                     }
                     else { // do pause
                         competition.globalPause = true;
@@ -184,10 +192,16 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
                         btnPause.setText("Pause");
                         mainWnd.requestFrame();
                         btnSingleRound.setEnabled(false);
+                        btnContinue.setEnabled(false);
+                        btnStepBack.setEnabled(false);
+                        btnPrevBreakpoint.setEnabled(false);
                     } else {
                         competition.getCurrentWar().pause();
                         btnPause.setText("Resume");
                         btnSingleRound.setEnabled(true);
+                        btnContinue.setEnabled(true);
+                        btnStepBack.setEnabled(true);
+                        btnPrevBreakpoint.setEnabled(true);
                     }
                 }
 
@@ -209,10 +223,62 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
                 mainWnd.requestFrame(); // request frame but still paused so it'll be just one frame
 			}
 		});
+
+		btnContinue = new JButton("btnContinue", "Continue");
+		btnContinue.setEnabled(false);
+		btnContinue.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+			    if (competition.getCurrentWar() == null) {
+			        Console.log("no war");
+			        return;
+                }
+                competition.continueToBreakpoint();
+                btnPause.setText("Pause");
+                btnSingleRound.setEnabled(false);
+                btnContinue.setEnabled(false);
+                btnStepBack.setEnabled(false);
+                btnPrevBreakpoint.setEnabled(false);
+                mainWnd.requestFrame();
+			}
+		});
         
+		btnStepBack = new JButton("btnStepBack", "Step Back");
+		btnStepBack.setEnabled(false);
+		btnStepBack.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+			    if (competition.getCurrentWar() == null) {
+			        Console.log("no war");
+			        return;
+                }
+                mainWnd.stepBack();
+			}
+		});
+
+		btnPrevBreakpoint = new JButton("btnPrevBreakpoint", "Previous Breakpoint");
+		btnPrevBreakpoint.setEnabled(false);
+		btnPrevBreakpoint.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+			    if (competition.getCurrentWar() == null) {
+			        Console.log("no war");
+			        return;
+                }
+                if (!mainWnd.prevBreakpoint())
+                    Console.log("no earlier breakpoint");
+			}
+		});
+
 		//buttonPanel.add(btnCpuState);
 		buttonPanel.add(btnPause);
 		buttonPanel.add(btnSingleRound);
+		buttonPanel.add(btnContinue);
+		buttonPanel.add(btnStepBack);
+		buttonPanel.add(btnPrevBreakpoint);
 		buttonPanel.add(addressFiled);
 
         // build warrior zone (warrior list + title) 
@@ -244,6 +310,14 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
     public void onPaused() { // this can potentially replace all other places where we do the same thing
         btnPause.setText("Resume");
         btnSingleRound.setEnabled(true);
+        btnContinue.setEnabled(true);
+        btnStepBack.setEnabled(true);
+        btnPrevBreakpoint.setEnabled(true);
+        War war = competition.getCurrentWar();
+        if (war != null && war.getWatchHit() != null) {
+            WatchpointHit hit = war.getWatchHit();
+            addMessage(hit.round, "watchpoint: " + hit.toString());
+        }
     }
 
     /** Add a message to the message zone */
@@ -279,6 +353,26 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
     public void onWriteState(EWriteState state) {
     }
 
+    @Override
+    public void onFrameDelta(FrameDelta delta) {
+        if (!mainWnd.isBattleShown())
+            return; // canvas not shown, no reason to update it
+
+        int arenaEnd = War.ARENA_START + War.ARENA_SIZE;
+        for (int r = 0; r < delta.getRangeCount(); ++r) {
+            int start = Math.max(delta.getRangeStart(r), War.ARENA_START);
+            int end = Math.min(delta.getRangeEnd(r), arenaEnd);
+            for (int address = start; address < end; ++address)
+                warCanvas.paintPixel(address - War.ARENA_START, delta.getWriter(r, address), delta.getValue(r, address));
+        }
+
+        this.warCanvas.deletePointers();
+        for (int i = 0; i < delta.getNumWarriors(); i++)
+            if (delta.isAlive(i))
+                this.warCanvas.paintPointer((char) delta.getPc(i), (byte) i);
+        m_pointersFromDelta = true;
+    }
+
     @Override
     public void onWarPreStartClear() {
         nameListModel.clear();
@@ -292,6 +386,9 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
         if (competition.getCurrentWar().isPaused()){
 			btnPause.setText("Resume");
 			btnSingleRound.setEnabled(true);
+			btnContinue.setEnabled(true);
+			btnStepBack.setEnabled(true);
+			btnPrevBreakpoint.setEnabled(true);
         }
     }
 
@@ -318,6 +415,9 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
 
         btnPause.setText("Resume");
         btnSingleRound.setEnabled(true);
+        btnContinue.setEnabled(true);
+        btnStepBack.setEnabled(true);
+        btnPrevBreakpoint.setEnabled(true);
 
         // not disabling since its possible to step more in an ended war until none alive.
         //btnSingleRound.setEnabled(false); // done debugging this session
@@ -329,6 +429,7 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
     public void onNoneAlive() {
         addMessage(nRoundNumber, "No players left alive");
         btnSingleRound.setEnabled(false);
+        btnContinue.setEnabled(false);
         btnPause.setEnabled(false);
 
     }
@@ -444,6 +545,10 @@ public class WarFrame extends JFrame implements MemoryEventListener,  Competitio
     
 	@Override
 	public void onEndRound() {
+        if (m_pointersFromDelta) {
+            m_pointersFromDelta = false;
+            return;
+        }
         if (!mainWnd.isBattleShown())
             return; // canvas not shown, no reason to update it
         
@@ -0,0 +1,371 @@
+package il.co.codeguru.corewars8086.gui.asm_parsers;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+
+import java.util.Arrays;
+
+/**
+ * Parses the list file of an assembler in a single pass over its text.
+ *
+ * Nothing is split or copied while scanning: the line number, address and size of every listed line go to
+ * int arrays and its opcode and code are kept as offsets into the text. Their strings are made only when a
+ * line asks for them, see {@link #getOpcode(int)} and {@link #getCode(int)}, except for the spaced opcodes
+ * of all the lines that are shown next to the editor, which are appended straight from the text.
+ * This is plain Java so that it can be tested and benchmarked without a browser.
+ */
+public class ListingScanner {
+
+    /** Where the columns of a list file are, which differs between assemblers */
+    public static class Layout {
+        final int opcodeField; // characters of the opcode field that are taken whatever they are
+        final char opcodeEnd; // ends the opcode after opcodeField characters
+        final int noAddressShift; // the code of a line without an address starts this much further
+        final boolean symbolsEnd; // a symbol table follows the listing
+
+        Layout(int opcodeField, char opcodeEnd, int noAddressShift, boolean symbolsEnd) {
+            this.opcodeField = opcodeField;
+            this.opcodeEnd = opcodeEnd;
+            this.noAddressShift = noAddressShift;
+            this.symbolsEnd = symbolsEnd;
+        }
+    }
+
+    public static final Layout GAS = new Layout(8, '\t', -5, true);
+    public static final Layout NASM = new Layout(22, ' ', -9, false);
+
+    enum Field {
+        START_SPACE,
+        INDEX,
+        SINGLE_SPACE_AFTER_INDEX,
+        SPACE_BEFORE_CODE,
+        ADDRESS,
+        SPACE_AFTER_ADDRESS,
+        OPCODE,
+        WARNING,
+        CODE,
+        PARSE_ERR
+    }
+
+    private static final String THIN_SPACE = "&#x202f;";
+
+    private final Layout m_layout;
+    private String m_text;
+    private int m_count = 0;
+    // for every listed line, in order
+    private int[] m_lineNums = new int[64];
+    private int[] m_addresses = new int[64];
+    private int[] m_opcodeStarts = new int[64]; // the opcode of the first line of a continued line, -1 if there is none
+    private int[] m_opcodeEnds = new int[64];
+    private int[] m_codeStarts = new int[64]; // the code goes to the end of the line, -1 if there is none
+    private int[] m_codeEnds = new int[64];
+    private int[] m_digits = new int[64]; // hex digits in the opcode including continuation lines
+    private byte[] m_leads = new byte[64]; // whether the opcode including continuation lines starts with a hex digit
+
+    private static final byte LEAD_EMPTY = 0, LEAD_HEX = 1, LEAD_OTHER = 2;
+
+    public ListingScanner(Layout layout) {
+        m_layout = layout;
+    }
+
+    public int getCount() {
+        return m_count;
+    }
+
+    /** @return the 1-based line number in the source */
+    public int getLineNum(int i) {
+        return m_lineNums[i];
+    }
+
+    /** @return the address of the line, -1 if it has none */
+    public int getAddress(int i) {
+        return m_addresses[i];
+    }
+
+    /** @return the number of bytes of the line, without brackets and spaces */
+    public int getOpcodesCount(int i) {
+        return m_leads[i] == LEAD_HEX ? m_digits[i] / 2 : 0;
+    }
+
+    /** @return the opcode of the line for display */
+    public String getOpcode(int i) {
+        if (m_opcodeStarts[i] == -1)
+            return "";
+        StringBuilder sb = new StringBuilder();
+        appendSpacedHex(sb, m_text, m_opcodeStarts[i], m_opcodeEnds[i]);
+        return sb.toString();
+    }
+
+    /** @return the code of the line as the list file has it */
+    public String getCode(int i) {
+        if (m_codeStarts[i] == -1)
+            return "";
+        return m_text.substring(m_codeStarts[i], m_codeEnds[i]);
+    }
+
+    /**
+     * Runs a state machine over the lines of the list file.
+     * @param opcodesText  gets the spaced opcode of every line of the source, a line each
+     * @return false if the list file could not be parsed
+     */
+    public boolean scan(String lsttext, StringBuilder opcodesText) {
+        m_text = lsttext;
+        m_count = 0;
+        int length = lsttext.length();
+        while (length > 0 && lsttext.charAt(length - 1) == '\n')
+            --length; // trailing empty lines are not lines, but an empty text is a single empty line
+        boolean empty = lsttext.isEmpty();
+
+        int lineIndex = 1; // does not increment in warning lines that appear in the listing file
+        int totalOpcodeCount = 0;
+        int lineStart = 0;
+        for (int lineNo = 0; lineStart < length || (lineNo == 0 && empty); ++lineNo) {
+            int lineEnd = lsttext.indexOf('\n', lineStart);
+            if (lineEnd == -1 || lineEnd > length)
+                lineEnd = length;
+            int nextStart = lineEnd + 1;
+
+            Field state = Field.START_SPACE;
+            int lineNum = -1, address = -1, opcodeStart = -1, opcodeEnd = -1, codeStart = -1, digits = 0;
+            int indexStart = 0, addressStart = 0, fieldStart = 0;
+            int charsBeforeCode = 0; // number of characters after the space after address and before the code. used fo not missing indentation
+            for (int j = lineStart; j < lineEnd; ++j) {
+                char c = lsttext.charAt(j);
+                switch (state) {
+                    case START_SPACE:
+                        if (isDigit(c)) {
+                            indexStart = j;
+                            state = Field.INDEX;
+                        }
+                        else if (m_layout.symbolsEnd && (isLine(lsttext, lineStart, lineEnd, "NO DEFINED SYMBOLS") || isLine(lsttext, lineStart, lineEnd, "DEFINED SYMBOLS"))) {
+                            return true; // signifies the end of the actual opcode listing
+                        }
+                        else if (c != ' ')
+                            state = Field.PARSE_ERR;
+                        break;
+                    case INDEX:
+                        if (c == ' ') {
+                            state = Field.SINGLE_SPACE_AFTER_INDEX;
+                            lineNum = parseInt(lsttext, indexStart, j, 10);
+                            // check the line number only at the end in order to sip warnings
+                        }
+                        else if (!isDigit(c))
+                            state = Field.PARSE_ERR;
+                        break;
+                    case SINGLE_SPACE_AFTER_INDEX:
+                        if (c == ' ') {
+                            state = Field.SPACE_BEFORE_CODE;
+                            charsBeforeCode = m_layout.noAddressShift; // account for not having an address
+                        }
+                        else if (isHexDigit(c)) {
+                            addressStart = j;
+                            state = Field.ADDRESS;
+                        }
+                        else
+                            state = Field.PARSE_ERR;
+                        break;
+                    case ADDRESS:
+                        if (c == ' ') {
+                            state = Field.SPACE_AFTER_ADDRESS;
+                            address = parseInt(lsttext, addressStart, j, 16);
+                        }
+                        else if (!isHexDigit(c))
+                            state = Field.PARSE_ERR;
+                        break;
+                    case SPACE_AFTER_ADDRESS:
+                        state = Field.OPCODE;
+                        fieldStart = j;
+                        break;
+                    case OPCODE:
+                        boolean islast = (j == lineEnd - 1);
+                        if (c == '*') {
+                            state = Field.WARNING;
+                        }
+                        else if (!islast && charsBeforeCode < m_layout.opcodeField)
+                            ++charsBeforeCode; // take anything as long as its in the field size of the opcode. need this sinc resb adds spaces
+                        else if (c == m_layout.opcodeEnd || islast) { // continueation lines of a string definition end in the middle of the opcode field.
+                            opcodeStart = fieldStart;
+                            opcodeEnd = j;
+                            digits = countHex(lsttext, opcodeStart, opcodeEnd);
+                            totalOpcodeCount += countDigits(lsttext, opcodeStart, opcodeEnd) / 2;
+                            if (totalOpcodeCount > WarriorRepository.MAX_WARRIOR_SIZE)
+                                return true; // is going to fail later in setText we check here just for not getting stuch in a long loop
+                            state = Field.SPACE_BEFORE_CODE;
+                            ++charsBeforeCode;
+                        }
+                        else
+                            ++charsBeforeCode;
+                        break;
+                    case SPACE_BEFORE_CODE:
+                        if (c == '*') {
+                            state = Field.WARNING;
+                        }
+                        else if (c != ' ' || charsBeforeCode == m_layout.opcodeField + 1) {
+                            state = Field.CODE;
+                            codeStart = j;
+                        }
+                        else
+                            ++charsBeforeCode;
+                        break;
+                    case CODE:
+                        break; // don't care about the code part, we already have that from the input
+                    case PARSE_ERR:
+                        Logger.log("ERROR: parsing list file! " + Integer.toString(lineNo) + ":" + Integer.toString(j - lineStart) + "\n" + lsttext);
+                        return false;
+                } // switch
+                if (state == Field.WARNING)
+                    break; // stop parsing line
+            } // for j in line chars
+            lineStart = nextStart;
+            if (state == Field.WARNING)
+                continue; // skip this line
+
+            int prev = m_count - 1;
+            if (lineNum > lineIndex)
+            {  // this can happen if there is a \ at the end of a line, extending it to the next line
+                // so the next line doesn't exist in the line count, we need to just skip it in the output
+                // this can happe for multiple consecutive lines
+                while (lineNum != lineIndex) {
+                    opcodesText.append("\n");
+                    ++lineIndex;
+                }
+            }
+            else if (prev >= 0 && lineNum == m_lineNums[prev]) {
+                // it's a continuation line of the previous line. we need to add its digits to know the full size
+                // happens with string definition db "abcdefgh"
+                if (m_leads[prev] == LEAD_EMPTY)
+                    m_leads[prev] = lead(lsttext, opcodeStart, opcodeEnd);
+                m_digits[prev] += digits;
+                // no need to update the display opcode because its already too long
+                continue;
+            }
+            else if (lineNum != lineIndex) {
+                Logger.log("wrong line number " + Integer.toString(lineNum) + " at " + Integer.toString(lineIndex));
+                return false;
+            }
+
+            ++lineIndex;
+
+            add(lineNum, address, opcodeStart, opcodeEnd, codeStart, lineEnd, digits, lead(lsttext, opcodeStart, opcodeEnd));
+            if (opcodeStart != -1)
+                appendSpacedHex(opcodesText, lsttext, opcodeStart, opcodeEnd);
+            opcodesText.append("\n");
+        }
+        return true;
+    }
+
+    private void add(int lineNum, int address, int opcodeStart, int opcodeEnd, int codeStart, int codeEnd, int digits, byte lead) {
+        if (m_count == m_lineNums.length) {
+            int size = m_count * 2;
+            m_lineNums = Arrays.copyOf(m_lineNums, size);
+            m_addresses = Arrays.copyOf(m_addresses, size);
+            m_opcodeStarts = Arrays.copyOf(m_opcodeStarts, size);
+            m_opcodeEnds = Arrays.copyOf(m_opcodeEnds, size);
+            m_codeStarts = Arrays.copyOf(m_codeStarts, size);
+            m_codeEnds = Arrays.copyOf(m_codeEnds, size);
+            m_digits = Arrays.copyOf(m_digits, size);
+            m_leads = Arrays.copyOf(m_leads, size);
+        }
+        m_lineNums[m_count] = lineNum;
+        m_addresses[m_count] = address;
+        m_opcodeStarts[m_count] = opcodeStart;
+        m_opcodeEnds[m_count] = opcodeEnd;
+        m_codeStarts[m_count] = codeStart;
+        m_codeEnds[m_count] = codeEnd;
+        m_digits[m_count] = digits;
+        m_leads[m_count] = lead;
+        ++m_count;
+    }
+
+    private static byte lead(String text, int start, int end) {
+        if (start == -1 || start == end)
+            return LEAD_EMPTY;
+        return isHexDigit(text.charAt(start)) ? LEAD_HEX : LEAD_OTHER;
+    }
+
+    private static boolean isLine(String text, int start, int end, String line) {
+        return end - start == line.length() && text.startsWith(line, start);
+    }
+
+    private static int parseInt(String text, int start, int end, int radix) {
+        int v = 0;
+        for (int i = start; i < end; ++i)
+            v = v * radix + Character.digit(text.charAt(i), radix);
+        return v;
+    }
+
+    public static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    public static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
+    }
+
+    // hex digits anywhere in a field
+    private static int countHex(CharSequence s, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; ++i) {
+            if (isHexDigit(s.charAt(i)))
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * hex field in the opcode can have all sorts of brackets and -. need to know how many just digits
+     * @return the number of hex digits in the field, 0 if it doesn't start with one
+     */
+    public static int countDigits(CharSequence s, int start, int end) {
+        boolean doingDigits = end > start && isHexDigit(s.charAt(start)); // see below 'nesb 4'
+        if (!doingDigits)
+            return 0; // not supported yet
+        return countHex(s, start, end);
+    }
+
+    /** appends the opcode field with a thin space after every byte, as html */
+    public static void appendSpacedHex(StringBuilder bs, CharSequence s, int start, int end)
+    {
+        // find how many spaces from the end should be trimmed
+        // spaces appear at the end since we take everything in the code area of the lst
+        int upto = end - 1;
+        for(; upto >= start; --upto) {
+            if (s.charAt(upto) != ' ')
+                break;
+        }
+        int bsStart = bs.length();
+        int digitCount = 0;
+        boolean doingDigits = end > start && isHexDigit(s.charAt(start)); // if it's not a hex number thing, don't do any spacing (resb 4)
+
+        for(int i = start; i <= upto; ++i) {
+            char c = s.charAt(i);
+            if (digitCount == 7*2) {
+                // don't add more than 7 bytes of opcode to not overflow the field size
+                bs.append(THIN_SPACE); // ellipsis
+                break;
+            }
+            if (doingDigits && isHexDigit(c)) {
+                bs.append(c);
+                ++digitCount;
+                if ((digitCount % 2) == 0 && digitCount > 0)
+                    bs.append(THIN_SPACE); // thin space
+                continue;
+            }
+            else if (c == '<') {
+                bs.append("&lt;");
+                continue;
+            }
+            else if (c == '>') {
+                bs.append("&gt;");
+                continue;
+            }
+            else if ( (c == ')' || c == ']') && bs.length() - bsStart > 8 && bs.lastIndexOf(THIN_SPACE) == bs.length() - 8) {
+                // if we see an end brace but we just added a space
+                // put the end brace before the space so it would look good
+                bs.insert(bs.length() - 8, c);
+                continue;
+            }
+            bs.append(c);
+        }
+    }
+}
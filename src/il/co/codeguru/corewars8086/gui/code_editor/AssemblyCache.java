@@ -0,0 +1,92 @@
+package il.co.codeguru.corewars8086.gui.code_editor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The results of the last few runs of the assembler, by platform and source text.
+ *
+ * Going back to a text that was assembled recently, by undo or by switching between players, takes the
+ * binary, the parsed listing and the assembler output from here instead of running the assembler and parsing
+ * its listing again. The least recently used result is dropped when the cache is full.
+ * This is plain Java so that it can be tested without a browser.
+ */
+public class AssemblyCache {
+    static final int CAPACITY = 32;
+
+    /** What the assembler gave for one text, the listing parts are only set if it succeeded */
+    public static class Result {
+        final int retcode;
+        final String stdout;
+        String listingText = ""; // empty if there was no listing
+        boolean listingOk = false;
+        String opcodesHtml;
+        ArrayList<CodeEditor.LstLine> listing;
+        byte[] bin;
+
+        Result(int retcode, String stdout) {
+            this.retcode = retcode;
+            this.stdout = stdout;
+        }
+    }
+
+    private static final class Key {
+        final String platform;
+        final String text;
+        final int hash;
+
+        Key(String platform, String text) {
+            this.platform = platform;
+            this.text = text;
+            this.hash = 31 * platform.hashCode() + text.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hash == k.hash && platform.equals(k.platform) && text.equals(k.text);
+        }
+    }
+
+    private final int m_capacity;
+    private final LinkedHashMap<Key, Result> m_results;
+
+    public AssemblyCache() {
+        this(CAPACITY);
+    }
+
+    public AssemblyCache(final int capacity) {
+        m_capacity = capacity;
+        m_results = new LinkedHashMap<Key, Result>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > m_capacity;
+            }
+        };
+    }
+
+    /** @return the result of assembling the text on the platform, null if it's not in the cache */
+    public Result get(String platform, String text) {
+        return m_results.get(new Key(platform, text));
+    }
+
+    public void put(String platform, String text, Result result) {
+        m_results.put(new Key(platform, text), result);
+    }
+
+    public int size() {
+        return m_results.size();
+    }
+
+    public void clear() {
+        m_results.clear();
+    }
+}
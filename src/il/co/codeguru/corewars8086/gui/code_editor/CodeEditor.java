@@ -7,6 +7,7 @@ import il.co.codeguru.corewars8086.gui.IBreakpointCheck;
 import il.co.codeguru.corewars8086.gui.PlayersPanel;
 import il.co.codeguru.corewars8086.gui.asm_parsers.GasListParser;
 import il.co.codeguru.corewars8086.gui.asm_parsers.IListParser;
+import il.co.codeguru.corewars8086.gui.asm_parsers.ListingScanner;
 import il.co.codeguru.corewars8086.gui.asm_parsers.NasmListParser;
 import il.co.codeguru.corewars8086.gui.widgets.Console;
 import il.co.codeguru.corewars8086.jsadd.Format;
@@ -20,9 +21,8 @@ import java.util.ArrayList;
 
 import static elemental2.dom.DomGlobal.document;
 
-public class CodeEditor implements CompetitionEventListener, MemoryEventListener, IBreakpointCheck
+public class CodeEditor implements CompetitionEventListener, MemoryEventListener, FrameDeltaListener, IBreakpointCheck
 {
-    private final LstParser lstParser = new LstParser(this);
     private final Debugger debugger = new Debugger(this);
     private EditorBreakpointManager breakpointManager = new EditorBreakpointManager(this);
     private HTMLElement asm_output;
@@ -79,29 +79,44 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         debugger.getMemoryListener().onWriteState(state);
     }
 
+    // FrameDeltaListener
+    @Override
+    public void onFrameDelta(FrameDelta delta) {
+        debugger.onFrameDelta(delta);
+    }
+
+    // a line of the list file, its strings are made from the text of the list file only when asked for
     public static class LstLine {
-        public int lineNum = -1;
-        public int address = -1;
-        public String addressStr = "";
-        public String opcode = "";  // for display
-        public String fullOpcode = ""; // for knowing the real length
-        public String code = "";
-        public int opcodesCount = 0; // number of bytes in my Opcode, without brackets and spaces
+        private final ListingScanner m_scanner;
+        private final int m_index;
+        private String m_opcode = null;
+        private String m_code = null;
+        public final int lineNum;
+        public final int address;
+        public final int opcodesCount; // number of bytes in my Opcode, without brackets and spaces
         public PlayersPanel.Breakpoint tmp_br = null; // used when initializing debug view (doesn't hold info when editing)
-    }
 
-    public static class PageInfo {
-        boolean isDirty;
-        int startAddr;
-        int endAddr;
-    }
+        public LstLine(ListingScanner scanner, int index) {
+            m_scanner = scanner;
+            m_index = index;
+            lineNum = scanner.getLineNum(index);
+            address = scanner.getAddress(index);
+            opcodesCount = scanner.getOpcodesCount(index);
+        }
 
-    public PageInfo[] getPages()
-    {
-        return m_pages;
-    }
+        // for display
+        public String getOpcode() {
+            if (m_opcode == null)
+                m_opcode = m_scanner.getOpcode(m_index);
+            return m_opcode;
+        }
 
-    private PageInfo[] m_pages; // marks when a page of 500 addresses should be redrawn in the next required time
+        public String getCode() {
+            if (m_code == null)
+                m_code = m_scanner.getCode(m_index);
+            return m_code;
+        }
+    }
 
 
     PlayersPanel getPlayerPanel()
@@ -127,6 +142,10 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     private Competition m_competition;
     final int PAGE_SIZE = _PAGE_SIZE();
     private IListParser m_listParser;
+    private String m_platform = "";
+    private final AssemblyCache m_assemblyCache = new AssemblyCache();
+    static final int ASSEMBLE_DELAY_MILLIS = 150; // typing faster than this assembles only once the typing pauses
+    private double m_pendingAssembly = 0; // id of the timeout of the assembly of the last edit, 0 if there is none
 
 
     private static native int _PAGE_SIZE() /*-{
@@ -138,6 +157,7 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         m_competition = competition;
         m_competition.addCompetitionEventListener(this);
         m_competition.addMemoryEventLister(this);
+        m_competition.addFrameDeltaListener(this);
 
         asm_edit = (HTMLTextAreaElement) document.getElementById("asm_edit");
         asm_show = (HTMLElement) document.getElementById("asm_show");
@@ -150,15 +170,6 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         asm_edit.addEventListener("input", (event) -> assemblyEditorChanged());
         editor_title.addEventListener("input", (event) -> m_playersPanel.updateTitle(editor_title.value));
 
-        m_pages = new PageInfo[ (War.ARENA_SIZE / PAGE_SIZE) + 1 ];
-        for(int i = 0; i < m_pages.length; ++i) {
-            PageInfo pi = new PageInfo();
-            m_pages[i] = pi;
-            pi.isDirty = true;
-            pi.startAddr = i * PAGE_SIZE;
-            pi.endAddr = Math.min( (i + 1) * PAGE_SIZE, War.ARENA_SIZE);
-        }
-
         exportMethods();
     }
 
@@ -167,6 +178,7 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         var debug = this.@il.co.codeguru.corewars8086.gui.code_editor.CodeEditor::debugger;
         $wnd.j_renderIfDirty = $entry(function(i) { debug.@il.co.codeguru.corewars8086.gui.code_editor.Debugger::j_renderIfDirty(I)(i) });
         $wnd.j_setScrollAt = $entry(function(i,j) { debug.@il.co.codeguru.corewars8086.gui.code_editor.Debugger::j_setScrollAt(II)(i,j) });
+        $wnd.j_setBreakpointCondition = $entry(function(a,c) { return debug.@il.co.codeguru.corewars8086.gui.code_editor.Debugger::j_setBreakpointCondition(ILjava/lang/String;)(a,c) });
         $wnd.j_asm_edit_changed = $entry(function() { that.@il.co.codeguru.corewars8086.gui.code_editor.CodeEditor::assemblyEditorChanged()() });
     }-*/;
 
@@ -208,6 +220,7 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     }-*/;
 
     public void setPlatform(String plat) {
+        m_platform = plat;
         if (plat == "8086") {
             m_listParser = new NasmListParser();
         }
@@ -373,7 +386,20 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         ArrayList<Integer> prevLiveOffsets = m_lineOffsets;
 
         String intext = asm_edit.value;
-        setText(intext, m_playersPanel);
+        if (intext.isEmpty()) {
+            setText(intext, m_playersPanel);
+        }
+        else {
+            // show the text and its line numbers right away, the assembly of the last edit replaces any that is still waiting
+            cancelPendingAssembly();
+            final String shownText = escapeText(intext);
+            showLineNumbers(shownText);
+            asm_show.innerHTML = shownText; // the marking of errors comes back with the assembly
+            m_pendingAssembly = DomGlobal.setTimeout(p -> {
+                m_pendingAssembly = 0;
+                assemble(shownText, m_playersPanel);
+            }, ASSEMBLE_DELAY_MILLIS);
+        }
         // update breakpoints only if there was an editing change (and not when switching displayed code)
         updateBreakpoints(prevLiveOffsets, prevLineCount, m_prevInText);
         m_playersPanel.updateText(intext); // tell the players database that this player has a new text
@@ -535,9 +561,39 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
     }
 
 
+    private void cancelPendingAssembly() {
+        if (m_pendingAssembly != 0) {
+            DomGlobal.clearTimeout(m_pendingAssembly);
+            m_pendingAssembly = 0;
+        }
+    }
+
+    /** assembles the last edit now if it is still waiting, so that the players have the binary of the text they show */
+    public void flushPendingAssembly() {
+        if (m_pendingAssembly == 0)
+            return;
+        cancelPendingAssembly();
+        assemble(escapeText(asm_edit.value), m_playersPanel);
+    }
+
+    private static String escapeText(String intext) {
+        return intext.replace('\u00A0', ' ') // no-break-space coming from html
+                     .replace("&", "&amp;")  // other stuff coming from textarea we don't want to pass to html
+                     .replace("<", "&lt;")
+                     .replace(">", "&gt;");
+    }
+
+    // this updates m_lineOffsets and m_lineCount
+    private void showLineNumbers(String intext) {
+        DocumentFragment lineNumDf = makeLineNumberFragment(intext);
+        asm_linenums.innerHTML = "";
+        asm_linenums.appendChild(lineNumDf);
+    }
+
     // inspired by https://github.com/kazzkiq/CodeFlask.js#usage which also writes all the dome in every key press
     public void setText(String intext, PlayersPanel playersPanel)
     {
+        cancelPendingAssembly();
         if (intext.isEmpty()) {
             asm_output.innerHTML = "";
             opcodes_edit.innerHTML = "";
@@ -549,20 +605,36 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         }
 
 
-        intext = intext.replace('\u00A0', ' ') // no-break-space coming from html
-                       .replace("&", "&amp;")  // other stuff coming from textarea we don't want to pass to html
-                       .replace("<", "&lt;")
-                       .replace(">", "&gt;");
-        // we want the marks to appear in the html for debugging but not in the nasm input
-        String nasm_intext = intext;
-        // assemble
-        int retcode = run_assembler("player.asm", nasm_intext, "player.lst");
-        String stdout = get_stdout();
+        intext = escapeText(intext);
+        showLineNumbers(intext);
+        assemble(intext, playersPanel);
+    }
 
-        // this updates m_lineOffsets and m_lineCount
-        DocumentFragment lineNumDf = makeLineNumberFragment(intext);
-        asm_linenums.innerHTML = "";
-        asm_linenums.appendChild(lineNumDf);
+    // runs the assembler on the text, or takes what it gave from the cache, and shows the result
+    private void assemble(String intext, PlayersPanel playersPanel)
+    {
+        AssemblyCache.Result result = m_assemblyCache.get(m_platform, intext);
+        if (result == null) {
+            // we want the marks to appear in the html for debugging but not in the nasm input
+            String nasm_intext = intext;
+            int retcode = run_assembler("player.asm", nasm_intext, "player.lst");
+            result = new AssemblyCache.Result(retcode, get_stdout());
+            if (retcode == 0) {
+                result.listingText = read_file("player.lst");
+                if (!result.listingText.isEmpty()) {
+                    StringBuilder opcodesText = new StringBuilder();
+                    result.listing = new ArrayList<CodeEditor.LstLine>();
+                    result.listingOk = m_listParser.parseLst(result.listingText, opcodesText, result.listing);
+                    result.opcodesHtml = opcodesText.toString();
+                    //TODO: Check if file returns things little-endian or big-endian
+                    if (result.listingOk)
+                        result.bin = read_file_bin_arr("player");
+                }
+            }
+            m_assemblyCache.put(m_platform, intext, result);
+        }
+        int retcode = result.retcode;
+        String stdout = result.stdout;
 
 
         DocumentFragment df = null;
@@ -596,9 +668,8 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
             return;
         }
 
-        String output = read_file("player.lst");
-        if (output.isEmpty()) {
-            m_currentListing.clear();
+        if (result.listingText.isEmpty()) {
+            m_currentListing = new ArrayList<CodeEditor.LstLine>(); // the last listing may be in the cache
             opcodes_edit.innerHTML = linesAsInput(intext);
             Console.log("~Empty output");
             if (playersPanel != null)
@@ -606,20 +677,16 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
             return;
         }
 
-        StringBuilder opcodesText = new StringBuilder();
-        m_currentListing = new ArrayList<CodeEditor.LstLine>();
-
-        boolean ok = m_listParser.parseLst(output, opcodesText, m_currentListing);
-        if (!ok) {
+        m_currentListing = result.listing;
+        if (!result.listingOk) {
             opcodes_edit.innerHTML = "[listing parsing error]";
             Console.error("listing parsing error"); // should not happen
             m_playersPanel.updateAsmResult(false, null, null);
             return;
         }
-        opcodes_edit.innerHTML = opcodesText.toString();
+        opcodes_edit.innerHTML = result.opcodesHtml;
 
-        //TODO: Check if file returns things little-endian or big-endian
-        byte[] buf = read_file_bin_arr("player");
+        byte[] buf = result.bin;
         if (buf.length > WarriorRepository.MAX_WARRIOR_SIZE) {
             String msg = "Code is longer than the maximum allowed " + Integer.toString(WarriorRepository.MAX_WARRIOR_SIZE) + " bytes";
             Console.error(msg);
@@ -677,7 +744,7 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
             LstLine line = listing.get(lineNum);
             if (line.address == -1)
                 continue; // not a code line
-            if (isDefineCode(line.code)) {  // don't want to check disassembled opcodes on lines that just define data
+            if (isDefineCode(line.getCode())) {  // don't want to check disassembled opcodes on lines that just define data
                 continue;
             }
 
@@ -750,11 +817,27 @@ public class CodeEditor implements CompetitionEventListener, MemoryEventListener
         editor_title.value = s;
     }
 
+    @Override
+    public BreakpointMap getBreakpoints() {
+        return debugger.getBreakpoints();
+    }
+
     public boolean shouldBreak(CpuStateRiscV state)
     {
         int absAddr = RealModeAddress.linearAddress(state.getCS(), (short)state.getPc());
         int arenaAddr = absAddr - CODE_ARENA_OFFSET;
-        return debugger.getDbgBreakpoint(arenaAddr) != null;
+        PlayersPanel.Breakpoint br = debugger.getDbgBreakpoint(arenaAddr);
+        if (br == null)
+            return false;
+        if (br.condition == null)
+            return true;
+        try {
+            return br.condition.isTrue(state, debugger.getMemory());
+        }
+        catch (Exception e) {
+            Console.log("breakpoint condition error: " + e.getMessage());
+            return true; // stop and let the user see what's wrong
+        }
     }
 
     public void setDebugMode(boolean v) {
@@ -0,0 +1,255 @@
+package il.co.codeguru.corewars8086.gui.code_editor;
+
+import il.co.codeguru.corewars8086.jsadd.Format;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.disassembler.DisassembledRange;
+import il.co.codeguru.corewars8086.utils.disassembler.DisassemblerRiscV;
+import il.co.codeguru.corewars8086.war.War;
+
+import java.util.ArrayList;
+
+/**
+ * The lines of the debugger listing, one for every address in the arena, kept in flat arrays.
+ *
+ * Every address is either hidden (part of the Opcode before it), the int 3 fill, a single byte written by a
+ * warrior or a line with text. The text of fill and byte lines is never stored, it is made when a line is
+ * rendered. Memory writes only change the kind of a few lines and mark them dirty, disassembly happens only at
+ * the line that is about to execute, and the {@link Debugger} renders the dirty lines of the pages in view.
+ * This is plain Java so that it can be tested without a browser.
+ */
+public class ListingModel {
+    public static final int FLAG_UNPARSED = 1;  // a value written by a warrior and not yet parsed by the disassembler
+    public static final int FLAG_DEFINE_CODE = 2; // line that came from the user typed text that defines a number (db 123)
+    public static final int FLAG_HAS_COMMENT = 4; // has comment lines after the first code line so when highlighting this line, need to highlight dfXXXXX instead of dXXXXX
+    public static final int FLAG_LSTLINE_MAX = 0x7ff;
+    public static final int FLAG_LSTLINE_SHIFT = 16;
+    public static final int FLAG_LSTLINE = 0x07ff0000; // 1-based line number of the LstLine that created this line or 0 if there isn't one
+    public static final int FLAG_PLAYER_NUM_SHIFT = 27;
+    public static final int FLAG_PLAYER_NUM = 0xf8000000; // upper 5 bits is the player number, valid only if there is a non-zero LstLine
+
+    public static final int KIND_HIDDEN = 0;
+    public static final int KIND_FILL = 1 << 8;
+    public static final int KIND_BYTE = 2 << 8;
+    public static final int KIND_TEXT = 3 << 8;
+    private static final int KIND_MASK = 3 << 8;
+
+    static final String FILL_TEXT = "<span class='dbg_backfill'><span class='dbg_opcodes'>CC</span>int 3</span>";
+    private static final String[] s_byteText = new String[256];
+    private static final int ARENA_OFFSET = War.ARENA_SEGMENT * RealModeAddress.PARAGRAPH_SIZE;
+
+    private final int m_pageSize;
+    private final int[] m_lines = new int[War.ARENA_SIZE]; // the kind and flags of every line
+    private final int[] m_textIndex = new int[War.ARENA_SIZE]; // index in m_texts of the text of a line, -1 if it never had text
+    private final ArrayList<String> m_texts = new ArrayList<>(); // texts of KIND_TEXT lines, includes the command and any comment lines after it
+    private final boolean[] m_dirtyLines = new boolean[War.ARENA_SIZE];
+    private final boolean[] m_dirtyPages;
+    private RealModeMemoryImpl m_mem;
+    private DisassemblerRiscV m_dis; // of m_mem, reused so it decodes every opcode the listing shows once
+    private final DisassembledRange m_range = new DisassembledRange();
+
+    public ListingModel(int pageSize) {
+        m_pageSize = pageSize;
+        m_dirtyPages = new boolean[War.ARENA_SIZE / pageSize + 1];
+        clear();
+    }
+
+    public void setMemory(RealModeMemoryImpl mem) {
+        m_mem = mem;
+        m_dis = (mem != null) ? new DisassemblerRiscV(mem.getMemory(), 0, mem.length()) : null;
+    }
+
+    /** all the lines are int 3 and need rendering */
+    public void clear() {
+        for (int addr = 0; addr < War.ARENA_SIZE; ++addr) {
+            m_lines[addr] = KIND_FILL;
+            m_textIndex[addr] = -1;
+            m_dirtyLines[addr] = true;
+        }
+        m_texts.clear();
+        for (int p = 0; p < m_dirtyPages.length; ++p)
+            m_dirtyPages[p] = true;
+    }
+
+    public int getPageCount() {
+        return m_dirtyPages.length;
+    }
+
+    public int getPageStart(int page) {
+        return page * m_pageSize;
+    }
+
+    public int getPageEnd(int page) {
+        return Math.min((page + 1) * m_pageSize, War.ARENA_SIZE);
+    }
+
+    public int getPage(int addr) {
+        return addr / m_pageSize;
+    }
+
+    public int getKind(int addr) {
+        return m_lines[addr] & KIND_MASK;
+    }
+
+    public int getFlags(int addr) {
+        return m_lines[addr] & ~KIND_MASK;
+    }
+
+    public boolean isHidden(int addr) {
+        return getKind(addr) == KIND_HIDDEN;
+    }
+
+    /** @return the html of a line after its address, null if it is hidden */
+    public String getText(int addr) {
+        switch (getKind(addr)) {
+            case KIND_FILL: return FILL_TEXT;
+            case KIND_BYTE: return byteText(m_mem.readByte(addr + ARENA_OFFSET) & 0xff);
+            case KIND_TEXT: return m_texts.get(m_textIndex[addr]);
+            default: return null;
+        }
+    }
+
+    private static String byteText(int val) {
+        String text = s_byteText[val];
+        if (text == null) {
+            String hexVal = Format.hex2(val);
+            text = "<span class='dbg_opcodes'>" + hexVal + "</span>db " + hexVal + "h";
+            s_byteText[val] = text;
+        }
+        return text;
+    }
+
+    public void setLine(int addr, String text, int flags) {
+        if (m_textIndex[addr] == -1) {
+            m_textIndex[addr] = m_texts.size();
+            m_texts.add(text);
+        }
+        else {
+            m_texts.set(m_textIndex[addr], text);
+        }
+        setKind(addr, KIND_TEXT | (flags & ~KIND_MASK));
+    }
+
+    /** makes the line part of the Opcode before it */
+    public void hide(int addr) {
+        setKind(addr, KIND_HIDDEN);
+    }
+
+    /** turns the line to a line with its own text, so that comments can be added to it */
+    public void ensureText(int addr) {
+        if (getKind(addr) == KIND_TEXT)
+            return;
+        String text = isHidden(addr) ? "" : getText(addr);
+        setLine(addr, text, getFlags(addr));
+    }
+
+    public void appendComment(int addr, String code) {
+        ensureText(addr);
+        m_texts.set(m_textIndex[addr], getText(addr) + "</div><div class='dbg_comment_line'>      <span class='dbg_opcodes'></span>" + code + "</div>");
+        m_lines[addr] |= FLAG_HAS_COMMENT;
+    }
+
+    private void setKind(int addr, int line) {
+        m_lines[addr] = line;
+        m_dirtyLines[addr] = true;
+        m_dirtyPages[addr / m_pageSize] = true;
+    }
+
+    private void setByteFromMem(int addr) {
+        setKind(addr, KIND_BYTE | FLAG_UNPARSED);
+    }
+
+    /**
+     * Updates the listing after a warrior wrote to an address in the arena.
+     * Rewriting only a single Opcode so it's not possible to cross to a new Opcode which will need reparsing.
+     */
+    public void write(int addr) {
+        if (getKind(addr) == KIND_FILL) {
+            setByteFromMem(addr);
+            return;
+        }
+        // find where this Opcode starts
+        while (isHidden(addr))
+            --addr;
+        do {
+            setByteFromMem(addr);
+            ++addr;
+        } while (addr < War.ARENA_SIZE && isHidden(addr));
+    }
+
+    /** disassembles the line that is about to execute if it isn't already */
+    public void prepareExecuted(int ip) {
+        if (isHidden(ip)) {
+            // got to a hidden line, means this address is part of a preceding Opcode, first find that
+            int opcodeAddr = ip;
+            while (isHidden(opcodeAddr))
+                --opcodeAddr;
+            // fill the size of this Opcode with db lines,
+            // do this before disassembly of the IP line to make sure we've erased the old Opcode correctly
+            do {
+                setByteFromMem(opcodeAddr);
+                ++opcodeAddr;
+            } while (opcodeAddr < War.ARENA_SIZE && isHidden(opcodeAddr));
+            // disassemble may eat at any of the db's after it, and might also each Opcode after that
+            disassemble(ip);
+        }
+        else if ((m_lines[ip] & (FLAG_UNPARSED | FLAG_DEFINE_CODE)) != 0) {
+            disassemble(ip);
+        }
+    }
+
+    private void disassemble(int addr) {
+        int absaddr = addr + ARENA_OFFSET;
+        m_dis.disassembleRange(absaddr, Math.min(absaddr + 4, ARENA_OFFSET + War.ARENA_SIZE), m_range);
+        if (m_range.getId(0) == DisassembledRange.INVALID)
+            return;
+        String text = m_range.getText(0);
+        eraseOpcode(addr); // for example replacing at the start of a long db "ABC"
+        int len = m_range.getLength(0);
+
+        StringBuilder bs = new StringBuilder();
+        for (int i = 0; i < len; ++i) {
+            bs.append(Format.hex2(m_mem.readByte(absaddr + i) & 0xff));
+            bs.append(CodeEditor.SPACE_FOR_HEX);
+        }
+        setLine(addr, "<span class='dbg_opcodes'>" + bs.toString() + "</span>" + text, 0);
+        for (int i = 1; i < len && addr + i < War.ARENA_SIZE; ++i) {
+            // remove the lines of the bytes after it
+            // don't know what opcodes I'm writing so need to make sure it remains consistent
+            eraseOpcode(addr + i);
+        }
+    }
+
+    // erase the Opcode in addr, and take care to turn the bytes after it that are affected to db lines
+    private void eraseOpcode(int addr) {
+        hide(addr);
+        ++addr;
+        while (addr < War.ARENA_SIZE && isHidden(addr)) {
+            setByteFromMem(addr);
+            ++addr;
+        }
+    }
+
+    /** @return the address after the Opcode that starts at the given address */
+    public int getOpcodeEnd(int addr) {
+        ++addr;
+        while (addr < War.ARENA_SIZE && isHidden(addr))
+            ++addr;
+        return addr;
+    }
+
+    public boolean isPageDirty(int page) {
+        return m_dirtyPages[page];
+    }
+
+    public boolean isLineDirty(int addr) {
+        return m_dirtyLines[addr];
+    }
+
+    /** called after the dirty lines of a page were rendered */
+    public void clearPageDirty(int page) {
+        for (int addr = getPageStart(page); addr < getPageEnd(page); ++addr)
+            m_dirtyLines[addr] = false;
+        m_dirtyPages[page] = false;
+    }
+}
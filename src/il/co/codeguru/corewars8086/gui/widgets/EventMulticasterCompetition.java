@@ -12,12 +12,29 @@ import java.util.*;
 public class EventMulticasterCompetition extends EventMulticasterBase<CompetitionEventListener>
 {
     public CompetitionEventListener debugProxy, competeProxy;
+    private int competeDeathRequests = 0;
 
     public EventMulticasterCompetition() {
         debugProxy = new DebugHandler();
         competeProxy = new CompeteHandler();
     }
 
+    /**
+     * The UI has no use for the deaths of a war it doesn't show, so they are dropped when competing unless
+     * a listener that records them asks for them. Deaths are reported until every request is released.
+     */
+    public void requestCompeteDeaths() {
+        ++competeDeathRequests;
+    }
+
+    public void releaseCompeteDeaths() {
+        --competeDeathRequests;
+    }
+
+    public boolean isCompeteDeaths() {
+        return competeDeathRequests > 0;
+    }
+
     private class CompeteHandler  implements CompetitionEventListener {
         public void onWarPreStartClear() {
         }
@@ -35,6 +52,11 @@ public class EventMulticasterCompetition extends EventMulticasterBase<Competitio
         public void onWarriorBirth(Warrior w) {
         }
         public void onWarriorDeath(Warrior warrior, String reason) {
+            if (competeDeathRequests <= 0)
+                return;
+            for (Object mListener : mListenersArr) {
+                ((CompetitionEventListener)mListener).onWarriorDeath(warrior, reason);
+            }
         }
         @Override
         public void onCompetitionStart() {
@@ -19,10 +19,10 @@ public class EventMulticasterScore extends EventMulticasterBase<ScoreEventListen
     }
     private class MulticasterHandler implements ScoreEventListener  {
 		@Override
-		public void scoreChanged(String name, float addedValue, int groupIndex, int subIndex) {
+		public void scoresChanged(float[][] addedScores) {
 		    assert isDoneAdding: "Calling observable method without finishing to add";
         	for (Object mListener : mListenersArr) {
-                ((ScoreEventListener)mListener).scoreChanged(name, addedValue, groupIndex, subIndex);
+                ((ScoreEventListener)mListener).scoresChanged(addedScores);
 			}
 		}
         
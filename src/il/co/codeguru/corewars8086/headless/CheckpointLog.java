@@ -0,0 +1,286 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.Warrior;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only checkpoint of a running competition.
+ *
+ * The first line describes the competition (start seed, wars, groups), then every completed war appends
+ * a line with its index, seed, combination and the score each of its survivors got.
+ * Lines are buffered and the file is fsync-ed at most once every sync interval, so a crash loses at most
+ * the last few seconds of wars, which are simply run again on resume.
+ * Resuming replays the score lines in their original order, so the accumulated scores come out identical
+ * to an uninterrupted run.
+ */
+public class CheckpointLog implements CompetitionEventListener {
+
+    private static final String HEADER = "corewars-checkpoint";
+    private static final int VERSION = 1;
+    private static final String WAR_RECORD = "war";
+
+    /** Default time between two fsync calls */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 2000;
+
+    /** A single completed war, as read back from the file */
+    public static class WarRecord {
+        public int warIndex;
+        public long seed;
+        public int[] combination;
+        public List<String> names = new ArrayList<>();
+        public List<Float> scores = new ArrayList<>();
+    }
+
+    /** Everything read back from an existing checkpoint */
+    public static class State {
+        public long startSeed;
+        public int warsPerCombination;
+        public String[] groupNames;
+        public List<WarRecord> wars = new ArrayList<>();
+        long validLength; // bytes of complete lines, a torn last line is dropped
+
+        public int getCompletedWars() {
+            return wars.size();
+        }
+
+        /** @return the seed of the first war that was not completed */
+        public long getNextSeed() {
+            if (wars.isEmpty())
+                return startSeed;
+            return wars.get(wars.size() - 1).seed + 1;
+        }
+    }
+
+    private final Competition competition;
+    private final FileChannel channel;
+    private final StringBuilder pending = new StringBuilder();
+    private final long syncIntervalMillis;
+    private long lastSyncTime;
+
+    private CheckpointLog(Competition competition, FileChannel channel, long syncIntervalMillis) {
+        this.competition = competition;
+        this.channel = channel;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.lastSyncTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Starts a new checkpoint file, overwriting an existing one.
+     */
+    public static CheckpointLog create(File file, Competition competition, long startSeed, int warsPerCombination,
+                                       long syncIntervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        CheckpointLog log = new CheckpointLog(competition, channel, syncIntervalMillis);
+
+        StringBuilder header = new StringBuilder();
+        header.append(HEADER).append('\t').append(VERSION)
+              .append('\t').append(startSeed)
+              .append('\t').append(warsPerCombination);
+        for (String name : competition.getWarriorRepository().getGroupNames()) {
+            header.append('\t').append(name);
+        }
+        log.append(header.toString());
+        log.sync();
+        return log;
+    }
+
+    /**
+     * Continues appending to an existing checkpoint file that was read with {@link #read(File)}.
+     * A torn line at the end of the file (the process died while writing it) is cut off first.
+     */
+    public static CheckpointLog reopen(File file, State state, Competition competition, long syncIntervalMillis) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        channel.truncate(state.validLength);
+        channel.position(state.validLength);
+        return new CheckpointLog(competition, channel, syncIntervalMillis);
+    }
+
+    /**
+     * Reads a checkpoint file. Only the sequence of consecutive, complete war records is returned.
+     * @throws IOException if the file can't be read or isn't a checkpoint
+     */
+    public static State read(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+
+        State state = new State();
+        int lineStart = 0;
+        boolean haveHeader = false;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n')
+                ++lineEnd;
+            if (lineEnd == bytes.length)
+                break; // torn last line
+            String[] fields = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).split("\t");
+            if (!haveHeader) {
+                if (fields.length < 4 || !fields[0].equals(HEADER) || !fields[1].equals(Integer.toString(VERSION)))
+                    throw new IOException("not a checkpoint file: " + file);
+                state.startSeed = Long.parseLong(fields[2]);
+                state.warsPerCombination = Integer.parseInt(fields[3]);
+                state.groupNames = new String[fields.length - 4];
+                System.arraycopy(fields, 4, state.groupNames, 0, state.groupNames.length);
+                haveHeader = true;
+            }
+            else {
+                WarRecord record = parseWarRecord(fields);
+                if (record == null || record.warIndex != state.wars.size())
+                    break;
+                state.wars.add(record);
+            }
+            lineStart = lineEnd + 1;
+            state.validLength = lineStart;
+        }
+        if (!haveHeader)
+            throw new IOException("checkpoint file has no header: " + file);
+        return state;
+    }
+
+    private static WarRecord parseWarRecord(String[] fields) {
+        if (fields.length < 4 || !fields[0].equals(WAR_RECORD))
+            return null;
+        try {
+            WarRecord record = new WarRecord();
+            record.warIndex = Integer.parseInt(fields[1]);
+            record.seed = Long.parseLong(fields[2]);
+            String[] groups = fields[3].split(",");
+            record.combination = new int[groups.length];
+            for (int i = 0; i < groups.length; ++i)
+                record.combination[i] = Integer.parseInt(groups[i]);
+            for (int i = 4; i < fields.length; ++i) {
+                int eq = fields[i].lastIndexOf('=');
+                if (eq < 0)
+                    return null;
+                record.names.add(fields[i].substring(0, eq));
+                record.scores.add(Float.parseFloat(fields[i].substring(eq + 1)));
+            }
+            return record;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Puts the scores of the completed wars back in the repository and positions the competition
+     * right after the last completed war.
+     */
+    public static void restore(State state, Competition competition, int warriorsPerGroup) throws Exception {
+        WarriorRepository repository = competition.getWarriorRepository();
+        if (!Arrays.equals(repository.getGroupNames(), state.groupNames))
+            throw new IOException("checkpoint was written for different warriors");
+
+        for (WarRecord record : state.wars) {
+            for (int i = 0; i < record.names.size(); ++i) {
+                repository.addScore(record.names.get(i), record.scores.get(i));
+            }
+        }
+        competition.resumeCompetition(state.warsPerCombination, warriorsPerGroup, state.startSeed,
+                state.getCompletedWars(), state.getNextSeed());
+    }
+
+    private void append(String line) {
+        pending.append(line).append('\n');
+    }
+
+    /** Writes everything buffered so far and fsyncs the file */
+    public void sync() throws IOException {
+        JfrEvents.CheckpointWriteEvent event = new JfrEvents.CheckpointWriteEvent();
+        event.begin();
+        if (pending.length() > 0) {
+            ByteBuffer buf = ByteBuffer.wrap(pending.toString().getBytes(StandardCharsets.UTF_8));
+            event.bytes = buf.remaining();
+            while (buf.hasRemaining())
+                channel.write(buf);
+            pending.setLength(0);
+        }
+        channel.force(false);
+        lastSyncTime = System.currentTimeMillis();
+        event.commit();
+    }
+
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        if (competition.compState == null || competition.compState.abort)
+            return; // a user abort, this war will run again on resume
+        War war = competition.getCurrentWar();
+
+        StringBuilder line = new StringBuilder();
+        line.append(WAR_RECORD)
+            .append('\t').append(competition.compState.warIndex)
+            .append('\t').append(war.getSeed())
+            .append('\t');
+        int[] combination = competition.getCurrentCombination();
+        for (int i = 0; i < combination.length; ++i) {
+            if (i > 0)
+                line.append(',');
+            line.append(combination[i]);
+        }
+        // same condition as Competition.doneWar() for updating the scores
+        if (reason != ABORTED) {
+            float score = war.getSurvivorScore();
+            for (int i = 0; i < war.getNumWarriors(); ++i) {
+                Warrior warrior = war.getWarrior(i);
+                if (warrior.isAlive()) {
+                    line.append('\t').append(warrior.getName()).append('=').append(score);
+                }
+            }
+        }
+        append(line.toString());
+
+        if (System.currentTimeMillis() - lastSyncTime >= syncIntervalMillis) {
+            try {
+                sync();
+            } catch (IOException e) {
+                throw new RuntimeException("failed writing checkpoint", e);
+            }
+        }
+    }
+
+    @Override
+    public void onCompetitionEnd() {
+        try {
+            sync();
+        } catch (IOException e) {
+            throw new RuntimeException("failed writing checkpoint", e);
+        }
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarStart() {}
+    @Override
+    public void onRound(int round) {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {}
+    @Override
+    public void onCompetitionStart() {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
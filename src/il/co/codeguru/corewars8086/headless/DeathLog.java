@@ -0,0 +1,86 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.cpu.riscv.FlightRecorder;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.Warrior;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes every death of a warrior to a csv file with the last instructions the warrior executed, so deaths in
+ * a long run can be understood without running the war again in the debugger.
+ *
+ * A record holds the war index, the round, the warrior, the reason and the warrior's {@link FlightRecorder}
+ * entries from the oldest as pc:raw:rd in hex separated by ';', the last one is the instruction that killed it.
+ */
+public class DeathLog implements CompetitionEventListener {
+    public static final int DEFAULT_TRACE_SIZE = 32;
+    private static final String CSV_HEADER = "war,round,warrior,reason,trace";
+
+    private final Competition competition;
+    private final Writer out;
+    private IOException writeError;
+
+    /** also makes the competition record the given number of instructions for every warrior and report its deaths */
+    public DeathLog(File file, Competition competition, int traceSize) throws IOException {
+        this.competition = competition;
+        this.out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        out.write(CSV_HEADER);
+        out.write('\n');
+        competition.setFlightRecorderSize(traceSize);
+        competition.competitionEventCaster.requestCompeteDeaths();
+    }
+
+    /** @throws IOException if any of the writes failed */
+    public void close() throws IOException {
+        out.close();
+        if (writeError != null)
+            throw writeError;
+    }
+
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {
+        if (writeError != null || competition.compState == null)
+            return;
+        FlightRecorder recorder = warrior.getFlightRecorder();
+        StringBuilder sb = new StringBuilder();
+        sb.append(competition.compState.warIndex)
+          .append(',').append(competition.compState.round)
+          .append(',').append(ResultsSink.csvField(warrior.getName()))
+          .append(',').append(ResultsSink.csvField(reason))
+          .append(',').append(recorder != null ? recorder.toString() : "")
+          .append('\n');
+        try {
+            out.write(sb.toString());
+        }
+        catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarStart() {}
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {}
+    @Override
+    public void onRound(int round) {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onCompetitionStart() {}
+    @Override
+    public void onCompetitionEnd() {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
@@ -0,0 +1,417 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.assembler.AssemblerRiscV;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
+import il.co.codeguru.corewars8086.utils.metrics.MetricsRegistry;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.WarReplay;
+import il.co.codeguru.corewars8086.war.Warrior;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a competition from the command line, without the browser UI.
+ *
+ * Survivors are read from a directory of binary files, one warrior per file. Two files that differ only
+ * in a trailing 1/2 (shooter1, shooter2) form a single group, as in the original corewars8086.
+ * Files ending in .s or .asm are RISC-V sources, they are assembled in the process by {@link AssemblerRiscV}
+ * and the warrior is named without the extension.
+ * Zombies are read from an optional second directory.
+ *
+ * usage: HeadlessRunner --survivors DIR [--zombies DIR] [--wars N] [--seed SEED]
+ *                       [--checkpoint FILE [--resume] [--sync-interval MILLIS]]
+ *                       [--results FILE] [--scores FILE] [--profile DIR] [--deaths FILE [--trace N]]
+ *                       [--workers N] [--port [HOST:]PORT] [--stall-timeout MILLIS] [--metrics-interval MILLIS]
+ *        HeadlessRunner --worker HOST:PORT [--metrics-interval MILLIS]
+ *        HeadlessRunner --serve PORT [--concurrency N] [--metrics-interval MILLIS]
+ *        HeadlessRunner --survivors DIR [--zombies DIR] --replay DESCRIPTOR [--round N] [--profile DIR] [--trace N]
+ *
+ * --results streams a record of every war to a .csv or .jsonl file, --scores is where the final scores table
+ * is written (scores.csv by default).
+ * --profile writes what every warrior executed, read and wrote at each arena offset to a file per war in DIR,
+ * see {@link ProfileDump}. A replay writes replay.csv, up to the round it stopped at, and prints which
+ * instructions ran.
+ * --deaths writes every death of a warrior with the last N (32 by default) instructions it executed, see
+ * {@link DeathLog}.
+ * --workers/--port run the competition as a coordinator that hands the wars to worker processes, N local
+ * workers are started and more can join with --worker if a port is given. The coordinator listens on localhost
+ * unless a host is given with the port, and trusts the results of anyone that connects, so only give a host
+ * that untrusted machines can't reach. It fails if no worker is left to run the wars for the stall timeout.
+ * --serve runs a {@link TournamentService} on localhost that keeps running jobs until it's killed.
+ * --replay runs a single war from its replay descriptor (as written to the results file) up to the given round
+ * and prints the state of its warriors, with the last N instructions of the ones that died.
+ * --metrics-interval prints the engine metrics to stderr every interval. They can always be read over JMX as
+ * {@value MetricsReporter#OBJECT_NAME}, see {@link MetricsReporter}.
+ * Competitions, wars, deaths and checkpoint writes show up as events in flight recordings, see {@link JfrEvents}.
+ */
+public class HeadlessRunner {
+
+    private static final String SEED_PREFIX = "SEED#";
+    private static final String ZOMBIE_GROUP_NAME = "ZoMbIeS";
+
+    private File survivorsDir;
+    private File zombiesDir;
+    private int warsPerCombination = 100;
+    private String seedText = "guru";
+    private File checkpointFile;
+    private boolean resume = false;
+    private long syncIntervalMillis = CheckpointLog.DEFAULT_SYNC_INTERVAL_MILLIS;
+    private File resultsFile;
+    private File scoresFile = new File(Competition.SCORE_FILENAME);
+    private int localWorkers = -1; // -1 when not distributing the wars
+    private int port = 0;
+    private String bindHost; // of the coordinator, null for localhost
+    private int stallTimeoutMillis = TournamentCoordinator.DEFAULT_STALL_TIMEOUT_MILLIS;
+    private String coordinatorAddress; // when running as a worker
+    private int servicePort = -1; // when running as a service
+    private int concurrency = Runtime.getRuntime().availableProcessors();
+    private String replayText;
+    private int replayRound = Competition.MAX_ROUND;
+    private File profileDir;
+    private File deathsFile;
+    private int traceSize = DeathLog.DEFAULT_TRACE_SIZE;
+    private long metricsIntervalMillis = 0;
+
+    public static void main(String[] args) throws Exception {
+        Logger.setHeadlessMode();
+        HeadlessRunner runner = new HeadlessRunner();
+        if (!runner.parseArgs(args)) {
+            System.err.println("usage: HeadlessRunner --survivors DIR [--zombies DIR] [--wars N] [--seed SEED]\n" +
+                               "                      [--checkpoint FILE [--resume] [--sync-interval MILLIS]]\n" +
+                               "                      [--results FILE] [--scores FILE] [--profile DIR] [--deaths FILE [--trace N]]\n" +
+                               "                      [--workers N] [--port [HOST:]PORT] [--stall-timeout MILLIS]\n" +
+                               "                      [--metrics-interval MILLIS]\n" +
+                               "       HeadlessRunner --worker HOST:PORT [--metrics-interval MILLIS]\n" +
+                               "       HeadlessRunner --serve PORT [--concurrency N] [--metrics-interval MILLIS]\n" +
+                               "       HeadlessRunner --survivors DIR [--zombies DIR] --replay DESCRIPTOR [--round N]\n" +
+                               "                      [--profile DIR] [--trace N]");
+            System.exit(1);
+        }
+        MetricsReporter reporter = new MetricsReporter(MetricsRegistry.global());
+        reporter.registerMBean();
+        if (runner.metricsIntervalMillis > 0)
+            reporter.startPrinting(runner.metricsIntervalMillis, System.err);
+        runner.run();
+    }
+
+    private boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.equals("--resume")) {
+                resume = true;
+                continue;
+            }
+            if (i + 1 >= args.length)
+                return false;
+            String value = args[++i];
+            switch (arg) {
+                case "--survivors": survivorsDir = new File(value); break;
+                case "--zombies": zombiesDir = new File(value); break;
+                case "--wars": warsPerCombination = Integer.parseInt(value); break;
+                case "--seed": seedText = value; break;
+                case "--checkpoint": checkpointFile = new File(value); break;
+                case "--sync-interval": syncIntervalMillis = Long.parseLong(value); break;
+                case "--results": resultsFile = new File(value); break;
+                case "--scores": scoresFile = new File(value); break;
+                case "--workers": localWorkers = Integer.parseInt(value); break;
+                case "--port": {
+                    int colon = value.lastIndexOf(':');
+                    if (colon >= 0)
+                        bindHost = value.substring(0, colon);
+                    port = Integer.parseInt(value.substring(colon + 1));
+                    break;
+                }
+                case "--stall-timeout": stallTimeoutMillis = Integer.parseInt(value); break;
+                case "--worker": coordinatorAddress = value; break;
+                case "--serve": servicePort = Integer.parseInt(value); break;
+                case "--concurrency": concurrency = Integer.parseInt(value); break;
+                case "--replay": replayText = value; break;
+                case "--round": replayRound = Integer.parseInt(value); break;
+                case "--profile": profileDir = new File(value); break;
+                case "--deaths": deathsFile = new File(value); break;
+                case "--trace": traceSize = Integer.parseInt(value); break;
+                case "--metrics-interval": metricsIntervalMillis = Long.parseLong(value); break;
+                default:
+                    return false;
+            }
+        }
+        if (coordinatorAddress != null)
+            return coordinatorAddress.indexOf(':') > 0;
+        if (servicePort >= 0)
+            return concurrency > 0;
+        if (port != 0 && localWorkers < 0)
+            localWorkers = 0;
+        if (localWorkers >= 0 && (checkpointFile != null || resultsFile != null || profileDir != null || deathsFile != null))
+            return false; // these follow a single process competition
+        if (resume && checkpointFile == null)
+            return false;
+        return survivorsDir != null && warsPerCombination > 0 && traceSize > 0;
+    }
+
+    /** same as the seed field in the CompetitionWindow */
+    static long parseSeed(String text) {
+        if (text.startsWith(SEED_PREFIX))
+            return Long.parseLong(text.substring(SEED_PREFIX.length()));
+        return text.hashCode();
+    }
+
+    private void run() throws Exception {
+        if (coordinatorAddress != null) {
+            int colon = coordinatorAddress.lastIndexOf(':');
+            new TournamentWorker(coordinatorAddress.substring(0, colon),
+                                 Integer.parseInt(coordinatorAddress.substring(colon + 1))).run();
+            return;
+        }
+        if (servicePort >= 0) {
+            new TournamentService(servicePort, concurrency).start();
+            return; // the server threads keep running
+        }
+
+        Competition competition = new Competition();
+        competition.setWarMemory(new RealModeMemoryImpl());
+        competition.setMetrics(newMetricsStripe());
+        WarriorRepository repository = competition.getWarriorRepository();
+
+        WarriorGroup zombies = (zombiesDir != null) ? readZombies(zombiesDir) : null;
+        if (!repository.loadWarriorGroups(readSurvivorGroups(survivorsDir), zombies))
+            System.exit(1);
+        int numGroups = repository.getNumberOfGroups();
+
+        if (replayText != null) {
+            replay(competition, WarReplay.parse(replayText));
+            return;
+        }
+
+        long seed = parseSeed(seedText);
+        if (localWorkers >= 0) {
+            TournamentCoordinator coordinator = new TournamentCoordinator(repository, zombies, warsPerCombination,
+                    numGroups, seed, bindHost, port, stallTimeoutMillis);
+            Logger.log("coordinator listening on port " + coordinator.getPort());
+            List<Process> workers = coordinator.startLocalWorkers(localWorkers);
+            coordinator.run();
+            for (Process p : workers) {
+                // they're told there are no more wars, one that doesn't hear it is stuck
+                if (!p.waitFor(stallTimeoutMillis, TimeUnit.MILLISECONDS))
+                    p.destroy();
+            }
+            writeScores(repository);
+            return;
+        }
+
+        CheckpointLog checkpoint = null;
+        CheckpointLog.State resumeState = null;
+        if (checkpointFile != null) {
+            if (resume && checkpointFile.exists()) {
+                resumeState = CheckpointLog.read(checkpointFile);
+                checkpoint = CheckpointLog.reopen(checkpointFile, resumeState, competition, syncIntervalMillis);
+            }
+            else {
+                checkpoint = CheckpointLog.create(checkpointFile, competition, seed, warsPerCombination, syncIntervalMillis);
+            }
+            competition.addCompetitionEventListener(checkpoint);
+        }
+        ResultsSink results = null;
+        if (resultsFile != null) {
+            results = new ResultsSink(resultsFile, ResultsSink.Format.forFile(resultsFile), competition);
+            competition.addCompetitionEventListener(results);
+        }
+        ProfileDump profile = null;
+        if (profileDir != null) {
+            profile = new ProfileDump(profileDir, competition);
+            competition.addCompetitionEventListener(profile);
+        }
+        DeathLog deaths = null;
+        if (deathsFile != null) {
+            deaths = new DeathLog(deathsFile, competition, traceSize);
+            competition.addCompetitionEventListener(deaths);
+        }
+        competition.addCompetitionEventListener(new JfrEvents(competition));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+
+        if (resumeState != null) {
+            CheckpointLog.restore(resumeState, competition, numGroups);
+        }
+        else {
+            competition.setSeed(seed);
+            competition.runCompetition(warsPerCombination, numGroups, false, false);
+        }
+
+        while (competition.continueRun(false)) {
+            // every call runs a whole war
+        }
+
+        if (checkpoint != null)
+            checkpoint.close();
+        if (results != null)
+            results.close();
+        if (profile != null)
+            profile.close();
+        if (deaths != null)
+            deaths.close();
+        writeScores(repository);
+    }
+
+    private void replay(Competition competition, WarReplay replay) throws Exception {
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.setProfiling(profileDir != null);
+        competition.setFlightRecorderSize(traceSize);
+        competition.startReplay(replay, replayRound);
+
+        War war = competition.getCurrentWar();
+        System.out.println("round\t" + competition.compState.round);
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            StringBuilder sb = new StringBuilder();
+            sb.append(w.getName()).append('\t').append(Integer.toHexString(w.getLoadOffsetInt()));
+            if (w.isAlive())
+                sb.append("\talive\tpc=").append(Integer.toHexString(w.getCpuState().getPc()));
+            else
+                sb.append("\tdied at round ").append(w.getDeathRound()).append(": ").append(w.getDeathReason())
+                  .append("\ttrace=").append(w.getFlightRecorder());
+            System.out.println(sb.toString());
+        }
+
+        if (profileDir != null) {
+            Files.createDirectories(profileDir.toPath());
+            try (Writer out = Files.newBufferedWriter(new File(profileDir, "replay.csv").toPath(), StandardCharsets.UTF_8)) {
+                ProfileDump.write(war, out);
+            }
+            try (Writer out = Files.newBufferedWriter(new File(profileDir, "replay-instructions.csv").toPath(), StandardCharsets.UTF_8)) {
+                ProfileDump.writeInstructions(war, out);
+            }
+            System.out.print(war.getProfile().getTotalInstructionMix().summary());
+        }
+    }
+
+    private void writeScores(WarriorRepository repository) throws IOException {
+        String scores = repository.getScores();
+        Files.write(scoresFile.toPath(), scores.getBytes(StandardCharsets.UTF_8));
+        System.out.print(scores);
+    }
+
+    private static File[] listWarriorFiles(File dir) throws IOException {
+        File[] files = dir.listFiles(File::isFile);
+        if (files == null)
+            throw new IOException("can't read warriors directory " + dir);
+        Arrays.sort(files, (o1, o2) -> o1.getName().compareToIgnoreCase(o2.getName()));
+        return files;
+    }
+
+    private static WarriorData readWarrior(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        if (!isSource(file.getName()))
+            return createWarrior(file.getName(), content);
+        try {
+            return assembleWarrior(file.getName(), new String(content, StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("can't assemble " + file + "\n" + e.getMessage());
+        }
+    }
+
+    /** @return a stripe of the global metrics that times wars with System.nanoTime() */
+    public static EngineMetrics newMetricsStripe() {
+        EngineMetrics stripe = MetricsRegistry.global().newStripe();
+        stripe.setClock(() -> System.nanoTime() / 1000);
+        return stripe;
+    }
+
+    /** @return true for the name of a RISC-V source file */
+    public static boolean isSource(String fileName) {
+        return fileName.endsWith(".s") || fileName.endsWith(".asm");
+    }
+
+    /**
+     * Assembles a warrior source, the warrior is named after the file without its extension.
+     * @throws IllegalArgumentException with the messages of the assembler if there are errors
+     */
+    public static WarriorData assembleWarrior(String fileName, String source) {
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble(fileName, source);
+        if (result.retcode != 0)
+            throw new IllegalArgumentException(result.stdout);
+        return createWarrior(fileName.substring(0, fileName.lastIndexOf('.')), result.bin);
+    }
+
+    /** A warrior with a random load address, the code is truncated to the maximum warrior size */
+    public static WarriorData createWarrior(String name, byte[] code) {
+        if (code.length > WarriorRepository.MAX_WARRIOR_SIZE)
+            code = Arrays.copyOf(code, WarriorRepository.MAX_WARRIOR_SIZE);
+        return new WarriorData(name, code, name, -1);
+    }
+
+    /**
+     * Reads all the survivors in a directory, pairing files named NAME1 and NAME2 to a single group.
+     */
+    public static List<WarriorGroup> readSurvivorGroups(File dir) throws IOException {
+        List<WarriorData> warriors = new ArrayList<>();
+        for (File f : listWarriorFiles(dir))
+            warriors.add(readWarrior(f));
+        return groupWarriors(warriors);
+    }
+
+    /**
+     * Groups warriors by name, NAME1 and NAME2 make a group called NAME, any other warrior is a group by itself.
+     * @param warriors  sorted by name
+     */
+    public static List<WarriorGroup> groupWarriors(List<WarriorData> warriors) {
+        Map<String, WarriorData> byName = new HashMap<>();
+        for (WarriorData w : warriors)
+            byName.put(w.getName(), w);
+
+        List<WarriorGroup> groups = new ArrayList<>();
+        for (WarriorData w : warriors) {
+            String name = w.getName();
+            String prefix = name.substring(0, name.length() - 1);
+            if (name.endsWith("1") && byName.containsKey(prefix + "2")) {
+                WarriorGroup group = new WarriorGroup(prefix);
+                group.addWarrior(w);
+                group.addWarrior(byName.get(prefix + "2"));
+                groups.add(group);
+            }
+            else if (name.endsWith("2") && byName.containsKey(prefix + "1")) {
+                continue; // added with its pair
+            }
+            else {
+                WarriorGroup group = new WarriorGroup(name);
+                group.addWarrior(w);
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    public static WarriorGroup readZombies(File dir) throws IOException {
+        List<WarriorData> warriors = new ArrayList<>();
+        for (File f : listWarriorFiles(dir))
+            warriors.add(readWarrior(f));
+        return groupZombies(warriors);
+    }
+
+    /** @return all the zombies in a single group, or null if there are none */
+    public static WarriorGroup groupZombies(List<WarriorData> warriors) {
+        if (warriors.isEmpty())
+            return null;
+        WarriorGroup zombies = new WarriorGroup(ZOMBIE_GROUP_NAME);
+        for (WarriorData w : warriors)
+            zombies.addWarrior(w);
+        return zombies;
+    }
+}
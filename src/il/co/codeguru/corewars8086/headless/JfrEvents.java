@@ -0,0 +1,241 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.cpu.riscv.DecodeCache;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.Warrior;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emits JDK Flight Recorder events for the life of a competition, so GC pauses and CPU samples in a recording
+ * can be matched with the wars that were running at the time.
+ *
+ * The events are enabled and given thresholds like any other JFR event, in a .jfc settings file or on the
+ * command line, e.g. -XX:StartFlightRecording:settings=profile. Committing a disabled event does nothing, and
+ * the rest is a few field stores per war.
+ *
+ * Deaths are only reported by a war that competes when it has a listener, which slows it down, so the
+ * competition is asked for them only while the death event is enabled in a running recording. This is
+ * checked between wars, a recording that starts in the middle of a war gets deaths from the next one.
+ */
+public class JfrEvents implements CompetitionEventListener {
+    private static final String CATEGORY = "CoreWars";
+
+    @Name("il.co.codeguru.corewars8086.Competition")
+    @Label("Competition")
+    @Category(CATEGORY)
+    @Description("A whole competition, from its first war to its last")
+    public static class CompetitionEvent extends Event {
+        @Label("Groups")
+        int groups;
+        @Label("Wars")
+        @Description("Wars that were completed")
+        int wars;
+    }
+
+    @Name("il.co.codeguru.corewars8086.War")
+    @Label("War")
+    @Category(CATEGORY)
+    @Description("A single war, from loading its warriors to its end")
+    public static class WarEvent extends Event {
+        @Label("War Index")
+        int warIndex;
+        @Label("Groups")
+        @Description("Indices of the fighting groups in the repository")
+        String groups;
+        @Label("Seed")
+        long seed;
+        @Label("Rounds")
+        int rounds;
+        @Label("End Reason")
+        String endReason;
+        @Label("Survivors")
+        String survivors;
+    }
+
+    @Name("il.co.codeguru.corewars8086.WarriorDeath")
+    @Label("Warrior Death")
+    @Category(CATEGORY)
+    public static class WarriorDeathEvent extends Event {
+        @Label("War Index")
+        int warIndex;
+        @Label("Round")
+        int round;
+        @Label("Warrior")
+        String warrior;
+        @Label("Reason")
+        String reason;
+    }
+
+    @Name("il.co.codeguru.corewars8086.DecodeCache")
+    @Label("Decode Cache")
+    @Category(CATEGORY)
+    @Description("Decode cache use of all the warriors of a war, committed when the war ends")
+    public static class DecodeCacheEvent extends Event {
+        @Label("War Index")
+        int warIndex;
+        @Label("Hits")
+        long hits;
+        @Label("Misses")
+        long misses;
+        @Label("Invalidations")
+        @Description("Misses that threw out the decoded instruction of other bits")
+        long invalidations;
+    }
+
+    @Name("il.co.codeguru.corewars8086.CheckpointWrite")
+    @Label("Checkpoint Write")
+    @Category(CATEGORY)
+    @Description("Writing and fsyncing the buffered lines of a checkpoint log")
+    public static class CheckpointWriteEvent extends Event {
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    private static final EventType DEATH_EVENT_TYPE =
+        FlightRecorder.isAvailable() ? EventType.getEventType(WarriorDeathEvent.class) : null;
+
+    private final Competition competition;
+    private CompetitionEvent competitionEvent;
+    private WarEvent warEvent;
+    private boolean deathsRequested = false;
+
+    public JfrEvents(Competition competition) {
+        this.competition = competition;
+    }
+
+    /** asks the competition for deaths while competing only if they would be recorded */
+    private void updateCompeteDeaths() {
+        boolean enabled = DEATH_EVENT_TYPE != null && DEATH_EVENT_TYPE.isEnabled();
+        if (enabled == deathsRequested)
+            return;
+        if (enabled)
+            competition.competitionEventCaster.requestCompeteDeaths();
+        else
+            competition.competitionEventCaster.releaseCompeteDeaths();
+        deathsRequested = enabled;
+    }
+
+    /**
+     * Fills and commits the event of a war that has ended, also used for detached wars that fire no events.
+     * @param event  an event that was begun before the war was loaded
+     */
+    public static void commitWar(WarEvent event, int warIndex, int[] combination, War war, int rounds, int reason) {
+        commitDecodeCache(warIndex, war);
+        if (!event.shouldCommit())
+            return;
+        StringBuilder groups = new StringBuilder();
+        for (int i = 0; i < combination.length; ++i) {
+            if (i > 0)
+                groups.append(',');
+            groups.append(combination[i]);
+        }
+        event.warIndex = warIndex;
+        event.groups = groups.toString();
+        event.seed = war.getSeed();
+        event.rounds = rounds;
+        event.endReason = reasonName(reason);
+        event.survivors = war.getRemainingWarriorNames();
+        event.commit();
+    }
+
+    // the cache counts every decode, so it is reported once per war instead of an event for every invalidation
+    private static void commitDecodeCache(int warIndex, War war) {
+        DecodeCacheEvent event = new DecodeCacheEvent();
+        if (!event.shouldCommit())
+            return;
+        event.warIndex = warIndex;
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            DecodeCache cache = war.getWarrior(i).getDecodeCache();
+            event.hits += cache.getHits();
+            event.misses += cache.getMisses();
+            event.invalidations += cache.getEvictions();
+        }
+        event.commit();
+    }
+
+    static String reasonName(int reason) {
+        switch (reason) {
+            case SINGLE_WINNER: return "single winner";
+            case MAX_ROUND_REACHED: return "max round reached";
+            default: return "aborted";
+        }
+    }
+
+    @Override
+    public void onCompetitionStart() {
+        updateCompeteDeaths();
+        competitionEvent = new CompetitionEvent();
+        competitionEvent.begin();
+        beginWar();
+    }
+
+    // the start of a war isn't reported while competing, so every war begins when the previous one ends
+    private void beginWar() {
+        warEvent = new WarEvent();
+        warEvent.begin();
+    }
+
+    @Override
+    public void onCompetitionEnd() {
+        if (deathsRequested) {
+            competition.competitionEventCaster.releaseCompeteDeaths();
+            deathsRequested = false;
+        }
+        if (competitionEvent == null)
+            return;
+        competitionEvent.groups = competition.getWarriorRepository().getNumberOfGroups();
+        competitionEvent.wars = competition.compState != null ? competition.compState.warIndex : 0;
+        competitionEvent.commit();
+        competitionEvent = null;
+        warEvent = null;
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        updateCompeteDeaths(); // before the next war starts
+        if (warEvent == null || competition.compState == null)
+            return;
+        int[] combination = competition.getCurrentCombination();
+        commitWar(warEvent, competition.compState.warIndex, combination != null ? combination : new int[0],
+                  competition.getCurrentWar(), competition.compState.round, reason);
+        beginWar();
+    }
+
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {
+        WarriorDeathEvent event = new WarriorDeathEvent();
+        if (!event.shouldCommit() || competition.compState == null)
+            return;
+        event.warIndex = competition.compState.warIndex;
+        event.round = competition.compState.round;
+        event.warrior = warrior.getName();
+        event.reason = reason;
+        event.commit();
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarStart() {}
+    @Override
+    public void onRound(int round) {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
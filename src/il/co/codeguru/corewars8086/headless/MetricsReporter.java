@@ -0,0 +1,145 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
+import il.co.codeguru.corewars8086.utils.metrics.Histogram;
+import il.co.codeguru.corewars8086.utils.metrics.MetricsRegistry;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes the engine metrics of {@link MetricsRegistry} visible outside the process: as a JMX bean that jconsole
+ * and other JMX clients can read, and as a line with the totals and rates printed every interval.
+ */
+public class MetricsReporter {
+    public static final String OBJECT_NAME = "il.co.codeguru.corewars8086:type=EngineMetrics";
+
+    private final MetricsRegistry registry;
+
+    public MetricsReporter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** registers the JMX bean, every read of it takes a fresh snapshot */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+        }
+        catch (Exception e) {
+            Logger.error("can't register the metrics bean: " + e);
+        }
+    }
+
+    /** prints a line with the metrics every interval, from a daemon thread */
+    public void startPrinting(final long intervalMillis, final PrintStream out) {
+        Thread t = new Thread(() -> {
+            MetricsRegistry.Snapshot last = registry.snapshot();
+            while (true) {
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                MetricsRegistry.Snapshot now = registry.snapshot();
+                out.println(format(now, last));
+                last = now;
+            }
+        }, "metrics-reporter");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    static String format(MetricsRegistry.Snapshot now, MetricsRegistry.Snapshot last) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("wars=").append(now.get(EngineMetrics.WARS))
+          .append(String.format(" wars/s=%.1f rounds/s=%.0f instructions/s=%.0f",
+                                now.rate(EngineMetrics.WARS, last), now.rate(EngineMetrics.ROUNDS, last),
+                                now.rate(EngineMetrics.INSTRUCTIONS, last)))
+          .append(" roundsPerWar[").append(now.roundsPerWar).append(']')
+          .append(" warMicros[").append(now.warMicros).append(']')
+          .append(" setupMicros[").append(now.setupMicros).append(']')
+          .append(String.format(" %s=%.3f", EngineMetrics.DECODE_HIT_RATE, now.getDecodeHitRate()));
+        for (Map.Entry<String, Long> e : now.counters.entrySet()) {
+            if (e.getKey().startsWith(EngineMetrics.DEATHS_PREFIX))
+                sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    /** the attributes of a snapshot: every counter and a few numbers of every histogram */
+    static Map<String, Object> attributes(MetricsRegistry.Snapshot s) {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.putAll(s.counters);
+        attributes.put(EngineMetrics.DECODE_HIT_RATE, s.getDecodeHitRate());
+        addHistogram(attributes, EngineMetrics.ROUNDS_PER_WAR, s.roundsPerWar);
+        addHistogram(attributes, EngineMetrics.WAR_MICROS, s.warMicros);
+        addHistogram(attributes, EngineMetrics.SETUP_MICROS, s.setupMicros);
+        return attributes;
+    }
+
+    private static void addHistogram(Map<String, Object> attributes, String name, Histogram h) {
+        attributes.put(name + ".count", h.getCount());
+        attributes.put(name + ".mean", h.getMean());
+        attributes.put(name + ".p50", h.getPercentile(0.5));
+        attributes.put(name + ".p99", h.getPercentile(0.99));
+        attributes.put(name + ".max", h.getMax());
+    }
+
+    private class Bean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String name) throws AttributeNotFoundException {
+            Object value = attributes(registry.snapshot()).get(name);
+            if (value == null)
+                throw new AttributeNotFoundException(name);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            Map<String, Object> all = attributes(registry.snapshot());
+            AttributeList list = new AttributeList();
+            for (String name : names) {
+                if (all.containsKey(name))
+                    list.add(new Attribute(name, all.get(name)));
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            // counters like the deaths by reason show up as they are first counted
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Map.Entry<String, Object> e : attributes(registry.snapshot()).entrySet())
+                infos.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true, false, false));
+            return new MBeanInfo(MetricsRegistry.class.getName(), "corewars engine metrics",
+                                 infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("metrics are read only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+    }
+}
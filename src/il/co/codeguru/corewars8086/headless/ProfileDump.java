@@ -0,0 +1,123 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.cpu.riscv.Instruction;
+import il.co.codeguru.corewars8086.cpu.riscv.InstructionMix;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.WarProfile;
+import il.co.codeguru.corewars8086.war.Warrior;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Writes the {@link WarProfile} of every finished war to a directory, war-N.csv for war index N.
+ * A row has the warrior, an arena offset and how many instructions it executed, bytes it read and bytes it
+ * wrote there. Offsets the warrior didn't touch are left out.
+ * war-N-instructions.csv has how many times every warrior executed each instruction and how many of these
+ * times it jumped, see {@link InstructionMix}.
+ */
+public class ProfileDump implements CompetitionEventListener {
+    private static final String CSV_HEADER = "warrior,offset,executions,reads,writes";
+    private static final String INSTRUCTIONS_HEADER = "warrior,set,instruction,executed,taken";
+
+    private final File dir;
+    private final Competition competition;
+    private IOException writeError;
+
+    /** also turns on profiling in the competition */
+    public ProfileDump(File dir, Competition competition) throws IOException {
+        this.dir = dir;
+        this.competition = competition;
+        Files.createDirectories(dir.toPath());
+        competition.setProfiling(true);
+    }
+
+    /** @throws IOException if writing any of the wars failed */
+    public void close() throws IOException {
+        if (writeError != null)
+            throw writeError;
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        War war = competition.getCurrentWar();
+        if (war == null || war.getProfile() == null || writeError != null)
+            return;
+        String name = "war-" + competition.compState.warIndex;
+        try (Writer out = Files.newBufferedWriter(new File(dir, name + ".csv").toPath(), StandardCharsets.UTF_8)) {
+            write(war, out);
+        }
+        catch (IOException e) {
+            writeError = e;
+            return;
+        }
+        try (Writer out = Files.newBufferedWriter(new File(dir, name + "-instructions.csv").toPath(), StandardCharsets.UTF_8)) {
+            writeInstructions(war, out);
+        }
+        catch (IOException e) {
+            writeError = e;
+        }
+    }
+
+    static void write(War war, Writer out) throws IOException {
+        WarProfile profile = war.getProfile();
+        out.write(CSV_HEADER);
+        out.write('\n');
+        for (int w = 0; w < profile.getNumWarriors(); ++w) {
+            String name = war.getWarrior(w).getName();
+            int[] executions = profile.getCounts(w, WarProfile.EXECUTIONS);
+            int[] reads = profile.getCounts(w, WarProfile.READS);
+            int[] writes = profile.getCounts(w, WarProfile.WRITES);
+            for (int offset = 0; offset < War.ARENA_SIZE; ++offset) {
+                if (executions[offset] == 0 && reads[offset] == 0 && writes[offset] == 0)
+                    continue;
+                out.write(name + ',' + offset + ',' + executions[offset] + ',' + reads[offset] + ',' + writes[offset] + '\n');
+            }
+        }
+    }
+
+    static void writeInstructions(War war, Writer out) throws IOException {
+        WarProfile profile = war.getProfile();
+        out.write(INSTRUCTIONS_HEADER);
+        out.write('\n');
+        for (int w = 0; w < profile.getNumWarriors(); ++w) {
+            String name = war.getWarrior(w).getName();
+            InstructionMix mix = profile.getInstructionMix(w);
+            int[] executed = mix.getExecuted();
+            int[] taken = mix.getTaken();
+            for (int id = 0; id < executed.length; ++id) {
+                if (executed[id] == 0)
+                    continue;
+                Instruction.InstructionInfo info = Instruction.InstructionInfo.byId(id);
+                out.write(name + ',' + (info.isCompressed() ? "RV32C" : "RV32I") + ',' + info.getName() + ',' +
+                          executed[id] + ',' + taken[id] + '\n');
+            }
+        }
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarStart() {}
+    @Override
+    public void onRound(int round) {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {}
+    @Override
+    public void onCompetitionStart() {}
+    @Override
+    public void onCompetitionEnd() {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
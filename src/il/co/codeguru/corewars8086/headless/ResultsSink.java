@@ -0,0 +1,254 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.Warrior;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Streams the outcome of every finished war to a file, one record per war.
+ *
+ * A record holds the war index, seed, fighting groups, rounds played, end reason, survivors, and for every
+ * warrior the round and reason of its death and the score it got in this war, and the war's replay descriptor.
+ * Records are formatted on the competition thread and handed to a background writer thread through an
+ * unbounded queue, so the competition never waits for the disk. Once a write fails no more records are queued,
+ * and {@link #close()} throws the error.
+ */
+public class ResultsSink implements CompetitionEventListener {
+
+    public enum Format {
+        CSV, JSONL;
+
+        /** JSONL for files named *.jsonl, CSV for anything else */
+        public static Format forFile(File file) {
+            return file.getName().toLowerCase().endsWith(".jsonl") ? JSONL : CSV;
+        }
+    }
+
+    private static final String CSV_HEADER = "war,seed,groups,rounds,reason,survivors,warriors,replay";
+    private static final String[] REASON_NAMES = {"SINGLE_WINNER", "MAX_ROUND_REACHED", "ABORTED"};
+    private static final String END_OF_STREAM = new String("end of stream"); // compared by reference
+
+    private final Competition competition;
+    private final Format format;
+    private final Writer out;
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile IOException writeError;
+
+    public ResultsSink(File file, Format format, Competition competition) throws IOException {
+        this(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), format, competition);
+    }
+
+    ResultsSink(Writer out, Format format, Competition competition) {
+        this.competition = competition;
+        this.format = format;
+        this.out = out;
+        if (format == Format.CSV)
+            queue.add(CSV_HEADER);
+
+        writerThread = new Thread(this::writeLoop, "results-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                String line = queue.take();
+                if (line == END_OF_STREAM)
+                    break;
+                out.write(line);
+                out.write('\n');
+                if (queue.isEmpty())
+                    out.flush(); // caught up, let readers see what we have
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            writeError = e;
+            queue.clear(); // nothing will write them
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for every queued record to be written and closes the file.
+     * @throws IOException if any of the writes failed
+     */
+    public void close() throws IOException {
+        queue.add(END_OF_STREAM);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (writeError != null)
+            throw writeError;
+    }
+
+    /** @return the error that stopped the writer, null if it didn't fail */
+    IOException getWriteError() {
+        return writeError;
+    }
+
+    /** @return number of records that wait for the writer */
+    int getPendingCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void onWarEnd(int reason, String winners, boolean inDebug) {
+        if (writeError != null)
+            return; // the writer stopped, close() reports why
+        War war = competition.getCurrentWar();
+        if (war == null || competition.compState == null)
+            return;
+        // same as Competition.doneWar(), survivors of an aborted war don't get a score
+        float survivorScore = (reason != ABORTED) ? war.getSurvivorScore() : 0;
+
+        List<WarriorGroup> groups = competition.getWarriorRepository().getWarriorGroups();
+        int[] combination = competition.getCurrentCombination();
+        String[] groupNames = new String[combination.length];
+        for (int i = 0; i < combination.length; ++i)
+            groupNames[i] = groups.get(combination[i]).getName();
+
+        String record;
+        if (format == Format.CSV)
+            record = csvRecord(war, reason, groupNames, survivorScore);
+        else
+            record = jsonRecord(war, reason, groupNames, survivorScore);
+        queue.add(record);
+    }
+
+    private String csvRecord(War war, int reason, String[] groupNames, float survivorScore) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(competition.compState.warIndex)
+          .append(',').append(war.getSeed())
+          .append(',').append(csvField(String.join(";", groupNames)))
+          .append(',').append(competition.compState.round)
+          .append(',').append(REASON_NAMES[reason])
+          .append(',');
+
+        // survivors and warriors are lists in a single field, warriors as name:deathRound:score:deathReason
+        // with the reason last since it may contain ':' itself
+        StringBuilder survivors = new StringBuilder();
+        StringBuilder warriors = new StringBuilder();
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            if (w.isAlive()) {
+                if (survivors.length() > 0)
+                    survivors.append(';');
+                survivors.append(w.getName());
+            }
+            if (warriors.length() > 0)
+                warriors.append(';');
+            warriors.append(w.getName())
+                    .append(':').append(w.getDeathRound())
+                    .append(':').append(w.isAlive() ? survivorScore : 0)
+                    .append(':').append(w.getDeathReason() != null ? w.getDeathReason() : "");
+        }
+        sb.append(csvField(survivors.toString()))
+          .append(',').append(csvField(warriors.toString()))
+          .append(',').append(csvField(competition.getCurrentReplay().toString()));
+        return sb.toString();
+    }
+
+    static String csvField(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0)
+            return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private String jsonRecord(War war, int reason, String[] groupNames, float survivorScore) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"war\":").append(competition.compState.warIndex)
+          .append(",\"seed\":").append(war.getSeed())
+          .append(",\"groups\":[");
+        for (int i = 0; i < groupNames.length; ++i) {
+            if (i > 0)
+                sb.append(',');
+            jsonString(sb, groupNames[i]);
+        }
+        sb.append("],\"rounds\":").append(competition.compState.round)
+          .append(",\"reason\":\"").append(REASON_NAMES[reason]).append('"')
+          .append(",\"survivors\":[");
+        boolean first = true;
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            if (w.isAlive()) {
+                if (!first)
+                    sb.append(',');
+                jsonString(sb, w.getName());
+                first = false;
+            }
+        }
+        sb.append("],\"warriors\":[");
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            Warrior w = war.getWarrior(i);
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"name\":");
+            jsonString(sb, w.getName());
+            sb.append(",\"deathRound\":").append(w.getDeathRound())
+              .append(",\"deathReason\":");
+            if (w.getDeathReason() != null)
+                jsonString(sb, w.getDeathReason());
+            else
+                sb.append("null");
+            sb.append(",\"score\":").append(w.isAlive() ? survivorScore : 0)
+              .append('}');
+        }
+        sb.append("],\"replay\":");
+        jsonString(sb, competition.getCurrentReplay().toString());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    private static void jsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int)c));
+            else
+                sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public void onWarPreStartClear() {}
+    @Override
+    public void onWarStart() {}
+    @Override
+    public void onRound(int round) {}
+    @Override
+    public void onWarriorBirth(Warrior w) {}
+    @Override
+    public void onWarriorDeath(Warrior warrior, String reason) {}
+    @Override
+    public void onCompetitionStart() {}
+    @Override
+    public void onCompetitionEnd() {}
+    @Override
+    public void onEndRound() {}
+    @Override
+    public void onPaused() {}
+    @Override
+    public void onNoneAlive() {}
+}
@@ -0,0 +1,306 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.CompetitionIterator;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Splits a competition to single war shards and hands them to worker processes over TCP.
+ *
+ * Every shard is a war index with its seed and group combination, computed up front exactly as a single
+ * process Competition would, so the outcome doesn't depend on which worker ran which war.
+ * A shard whose worker disconnects or doesn't answer within the stall timeout goes back to the queue and is
+ * handed to the next free worker. Once all wars are done their scores are added to the repository in war
+ * order, giving the same totals as an uninterrupted single process run.
+ *
+ * The protocol is text lines, tab separated:
+ * <pre>
+ * worker:      HELLO
+ * coordinator: GROUP name / ZOMBIES name, followed by WARRIOR name label base64-code for each of its warriors
+ * coordinator: READY
+ * coordinator: WAR index seed c0,c1,..      or DONE when there's nothing left
+ * worker:      RESULT index name=score...   (only the warriors that got a score)
+ * </pre>
+ * Workers only need the coordinator's address, they don't share files or memory with it.
+ * The coordinator trusts every RESULT it's sent, so it listens on the loopback interface unless it's given a host
+ * to bind to, which should only be one that untrusted machines can't reach.
+ * If no worker is connected and no local worker is alive for the stall timeout, {@link #run()} fails instead of
+ * waiting for results that no one will send.
+ */
+public class TournamentCoordinator {
+
+    static final String HELLO = "HELLO";
+    static final String GROUP = "GROUP";
+    static final String ZOMBIES = "ZOMBIES";
+    static final String WARRIOR = "WARRIOR";
+    static final String READY = "READY";
+    static final String WAR = "WAR";
+    static final String DONE = "DONE";
+    static final String RESULT = "RESULT";
+
+    /** Default time a worker has to finish a war before it's considered stuck */
+    public static final int DEFAULT_STALL_TIMEOUT_MILLIS = 5 * 60 * 1000;
+    /** How often run() checks that someone is still working on the wars */
+    private static final int WATCH_INTERVAL_MILLIS = 1000;
+
+    /** A single war of the competition */
+    static class Shard {
+        final int warIndex;
+        final long seed;
+        final int[] combination;
+
+        Shard(int warIndex, long seed, int[] combination) {
+            this.warIndex = warIndex;
+            this.seed = seed;
+            this.combination = combination;
+        }
+    }
+
+    private final WarriorRepository repository;
+    private final WarriorGroup zombies;
+    private final int stallTimeoutMillis;
+
+    private final LinkedBlockingDeque<Shard> pending = new LinkedBlockingDeque<>();
+    private final List<List<String>> results; // per war index, name=score pairs, null until the war is done
+    private final CountDownLatch remaining;
+    private final ServerSocket serverSocket;
+    private final AtomicInteger connectedWorkers = new AtomicInteger();
+    private final List<Process> localWorkers = new ArrayList<>();
+
+    /**
+     * @param bindHost  interface to listen on, null for the loopback interface only
+     * @param port      port to listen on, 0 for any free port
+     */
+    public TournamentCoordinator(WarriorRepository repository, WarriorGroup zombies, int warsPerCombination,
+                                 int warriorsPerGroup, long seed, String bindHost, int port,
+                                 int stallTimeoutMillis) throws IOException {
+        this.repository = repository;
+        this.zombies = zombies;
+        this.stallTimeoutMillis = stallTimeoutMillis;
+
+        // same sequence as Competition.runCompetition() and doneWar()
+        CompetitionIterator iterator = new CompetitionIterator(repository.getNumberOfGroups(), warriorsPerGroup, seed);
+        for (int i = 0; i < warsPerCombination; ++i) {
+            pending.add(new Shard(i, seed + i, iterator.next()));
+        }
+        results = new ArrayList<>(Collections.<List<String>>nCopies(warsPerCombination, null));
+        remaining = new CountDownLatch(warsPerCombination);
+
+        InetAddress bindAddress = (bindHost != null) ? InetAddress.getByName(bindHost) : InetAddress.getLoopbackAddress();
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts {@code count} worker JVMs on this machine, with the same class path as this one.
+     */
+    public List<Process> startLocalWorkers(int count) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    HeadlessRunner.class.getName(), "--worker", "localhost:" + getPort());
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            workers.add(pb.start());
+        }
+        localWorkers.addAll(workers);
+        return workers;
+    }
+
+    /**
+     * Serves workers until every war has a result, then adds all the scores to the repository.
+     * @throws IOException if no worker was connected and no local worker was alive for the stall timeout
+     */
+    public void run() throws IOException, InterruptedException {
+        Thread acceptThread = new Thread(this::acceptLoop, "coordinator-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+
+        long idleSince = -1; // when the last worker went away
+        int watchMillis = Math.min(WATCH_INTERVAL_MILLIS, stallTimeoutMillis);
+        while (!remaining.await(watchMillis, TimeUnit.MILLISECONDS)) {
+            if (connectedWorkers.get() > 0 || isLocalWorkerAlive()) {
+                idleSince = -1;
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            if (idleSince < 0)
+                idleSince = now;
+            else if (now - idleSince >= stallTimeoutMillis) {
+                serverSocket.close();
+                throw new IOException("no worker connected or alive for " + stallTimeoutMillis + " ms, " +
+                                      remaining.getCount() + " wars have no result");
+            }
+        }
+        serverSocket.close();
+
+        for (List<String> war : results) {
+            for (String pair : war) {
+                int eq = pair.lastIndexOf('=');
+                repository.addScore(pair.substring(0, eq), Float.parseFloat(pair.substring(eq + 1)));
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                Thread t = new Thread(() -> serveWorker(socket), "coordinator-" + socket.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            }
+        }
+        catch (SocketException e) {
+            // server socket closed, all wars are done
+        }
+        catch (IOException e) {
+            Logger.error("coordinator accept failed: " + e.getMessage());
+        }
+    }
+
+    private boolean isLocalWorkerAlive() {
+        for (Process p : localWorkers) {
+            if (p.isAlive())
+                return true;
+        }
+        return false;
+    }
+
+    private void serveWorker(Socket socket) {
+        Shard shard = null;
+        connectedWorkers.incrementAndGet();
+        try {
+            socket.setSoTimeout(stallTimeoutMillis);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+
+            if (!HELLO.equals(in.readLine()))
+                throw new IOException("bad handshake");
+            sendWarriors(out);
+
+            while (true) {
+                shard = nextShard();
+                if (shard == null) {
+                    out.println(DONE);
+                    out.flush();
+                    break;
+                }
+                out.println(WAR + '\t' + shard.warIndex + '\t' + shard.seed + '\t' + joinCombination(shard.combination));
+                out.flush();
+
+                String line = in.readLine();
+                if (line == null)
+                    throw new IOException("worker disconnected");
+                String[] fields = line.split("\t");
+                if (fields.length < 2 || !fields[0].equals(RESULT) || Integer.parseInt(fields[1]) != shard.warIndex)
+                    throw new IOException("unexpected answer " + line);
+                List<String> pairs = new ArrayList<>();
+                for (int i = 2; i < fields.length; ++i)
+                    pairs.add(fields[i]);
+                complete(shard, pairs);
+                shard = null;
+            }
+        }
+        catch (SocketTimeoutException e) {
+            Logger.log("worker " + socket.getRemoteSocketAddress() + " stalled");
+        }
+        catch (IOException | RuntimeException e) {
+            Logger.log("worker " + socket.getRemoteSocketAddress() + " failed: " + e.getMessage());
+        }
+        finally {
+            if (shard != null)
+                pending.addFirst(shard); // give it to someone else
+            connectedWorkers.decrementAndGet();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /** @return the next shard to run, or null if all wars are done */
+    private Shard nextShard() {
+        while (remaining.getCount() > 0) {
+            try {
+                // wars that are still running may come back to the queue if their worker dies
+                Shard shard = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (shard != null && !isDone(shard))
+                    return shard;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private synchronized boolean isDone(Shard shard) {
+        return results.get(shard.warIndex) != null;
+    }
+
+    private synchronized void complete(Shard shard, List<String> pairs) {
+        if (results.get(shard.warIndex) != null)
+            return;
+        results.set(shard.warIndex, pairs);
+        remaining.countDown();
+    }
+
+    private void sendWarriors(PrintWriter out) {
+        for (WarriorGroup group : repository.getWarriorGroups()) {
+            out.println(GROUP + '\t' + group.getName());
+            sendGroupWarriors(out, group);
+        }
+        if (zombies != null) {
+            out.println(ZOMBIES + '\t' + zombies.getName());
+            sendGroupWarriors(out, zombies);
+        }
+        out.println(READY);
+        out.flush();
+    }
+
+    private static void sendGroupWarriors(PrintWriter out, WarriorGroup group) {
+        for (WarriorData w : group.getWarriors()) {
+            out.println(WARRIOR + '\t' + w.getName() + '\t' + w.getLabel() + '\t' +
+                        Base64.getEncoder().encodeToString(w.getCode()));
+        }
+    }
+
+    static String joinCombination(int[] combination) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < combination.length; ++i) {
+            if (i > 0)
+                sb.append(',');
+            sb.append(combination[i]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,359 @@
+package il.co.codeguru.corewars8086.headless;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long running competition service on localhost.
+ *
+ * Competitions are submitted as jobs over HTTP, queued by priority and run by a fixed number of runner
+ * threads. Every runner keeps its war memory between jobs and the JVM stays warm, so a short validation
+ * run costs only the wars themselves.
+ *
+ * <pre>
+ * POST /jobs?wars=N&amp;seed=SEED&amp;priority=P   submit a job, answers with its id
+ *      body: a line per warrior, "survivor|zombie TAB name TAB base64 code"
+ *      survivors named NAME1 and NAME2 are grouped as in the headless runner,
+ *      the code of a name ending in .s or .asm is a RISC-V source that is assembled
+ * GET  /jobs/ID                            streams the job progress and final scores, ends with the job
+ * </pre>
+ */
+public class TournamentService {
+
+    /** Jobs beyond this are refused until the queue drains */
+    public static final int MAX_QUEUED_JOBS = 1000;
+    /** Finished jobs whose results can still be fetched */
+    public static final int MAX_FINISHED_JOBS = 1000;
+    /** Events of a job that are kept for clients that start streaming it late */
+    public static final int MAX_JOB_EVENTS = 64;
+
+    private static final String SURVIVOR = "survivor";
+    private static final String ZOMBIE = "zombie";
+
+    static class Job {
+        final int id;
+        final int priority;
+        final int warsPerCombination;
+        final long seed;
+        final List<WarriorData> survivors;
+        final List<WarriorData> zombies;
+
+        private final List<String> events = new ArrayList<>(); // the latest events streamed to clients, in order
+        private int dropped = 0; // events trimmed from the front of the list
+        private boolean finished = false;
+
+        Job(int id, int priority, int warsPerCombination, long seed, List<WarriorData> survivors, List<WarriorData> zombies) {
+            this.id = id;
+            this.priority = priority;
+            this.warsPerCombination = warsPerCombination;
+            this.seed = seed;
+            this.survivors = survivors;
+            this.zombies = zombies;
+        }
+
+        synchronized void addEvent(String event) {
+            append(event);
+            notifyAll();
+        }
+
+        synchronized void finish(String event) {
+            append(event);
+            finished = true;
+            notifyAll();
+        }
+
+        // a job of many wars reports progress for every one of them, only the latest are kept
+        private void append(String event) {
+            events.add(event);
+            if (events.size() > MAX_JOB_EVENTS) {
+                events.remove(0);
+                ++dropped;
+            }
+        }
+
+        /**
+         * Waits until there are events past {@code from} or the job is finished.
+         * A reader that fell behind skips the events that were already trimmed.
+         * @return the index of the event after the last one added to {@code into}
+         */
+        synchronized int eventsFrom(int from, List<String> into) throws InterruptedException {
+            while (dropped + events.size() <= from && !finished)
+                wait();
+            into.addAll(events.subList(Math.max(from - dropped, 0), events.size()));
+            return dropped + events.size();
+        }
+
+        synchronized boolean isFinished(int seen) {
+            return finished && seen >= dropped + events.size();
+        }
+    }
+
+    // higher priority first, then in submission order
+    private static final Comparator<Job> JOB_ORDER =
+            Comparator.comparingInt((Job j) -> -j.priority).thenComparingInt(j -> j.id);
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>(16, JOB_ORDER);
+    private final Semaphore queueSlots = new Semaphore(MAX_QUEUED_JOBS); // taken on submit, given back when a job starts
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Integer> finishedJobs = new ConcurrentLinkedQueue<>(); // oldest first
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private final HttpServer server;
+    private final int concurrency;
+
+    /**
+     * @param port         port on the loopback interface, 0 for any free port
+     * @param concurrency  number of jobs that run at the same time
+     */
+    public TournamentService(int port, int concurrency) throws IOException {
+        this.concurrency = concurrency;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool()); // progress streams block their thread until the job ends
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void start() {
+        startRunners();
+        startServer();
+    }
+
+    void startRunners() {
+        for (int i = 0; i < concurrency; ++i) {
+            Thread t = new Thread(this::runJobs, "job-runner-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    void startServer() {
+        server.start();
+        Logger.log("tournament service listening on port " + getPort());
+    }
+
+    /** @return a job that was submitted and not evicted yet, null if there's none */
+    Job getJob(int id) {
+        return jobs.get(id);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void runJobs() {
+        RealModeMemoryImpl memory = new RealModeMemoryImpl(); // shared by all the wars this runner ever runs
+        EngineMetrics metrics = HeadlessRunner.newMetricsStripe(); // the warm up isn't counted
+        try {
+            warmUp(memory);
+        } catch (Exception e) {
+            Logger.error("warm up failed: " + e);
+        }
+        while (true) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            queueSlots.release();
+            try {
+                runJob(job, memory, metrics);
+            } catch (Exception e) {
+                job.finish("failed\t" + e);
+            }
+            finishedJobs.add(job.id);
+            while (finishedJobs.size() > MAX_FINISHED_JOBS) {
+                Integer oldest = finishedJobs.poll();
+                if (oldest != null)
+                    jobs.remove(oldest); // clients that are still streaming it keep their reference
+            }
+        }
+    }
+
+    /**
+     * Runs a full length war before the first job, so the engine is compiled by the time real jobs come in.
+     */
+    private static void warmUp(RealModeMemoryImpl memory) throws Exception {
+        byte[] loop = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+        List<WarriorData> warriors = new ArrayList<>();
+        warriors.add(HeadlessRunner.createWarrior("warmup1", loop));
+        warriors.add(HeadlessRunner.createWarrior("warmup2", loop));
+        Competition competition = new Competition();
+        competition.setWarMemory(memory);
+        competition.getWarriorRepository().loadWarriorGroups(HeadlessRunner.groupWarriors(warriors), null);
+        competition.runDetachedWar(new int[]{0}, 0);
+    }
+
+    private static void runJob(Job job, RealModeMemoryImpl memory, EngineMetrics metrics) throws Exception {
+        Competition competition = new Competition();
+        competition.setWarMemory(memory);
+        competition.setMetrics(metrics);
+        WarriorRepository repository = competition.getWarriorRepository();
+        if (!repository.loadWarriorGroups(HeadlessRunner.groupWarriors(job.survivors),
+                                          HeadlessRunner.groupZombies(job.zombies))) {
+            job.finish("failed\tno survivors");
+            return;
+        }
+        competition.addCompetitionEventListener(new JfrEvents(competition));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+
+        job.addEvent("running");
+        competition.setSeed(job.seed);
+        competition.runCompetition(job.warsPerCombination, repository.getNumberOfGroups(), false, false);
+        int reported = 0;
+        while (competition.continueRun(false)) {
+            if (competition.compState != null && competition.compState.warIndex > reported) {
+                reported = competition.compState.warIndex;
+                job.addEvent("progress\t" + reported + "/" + job.warsPerCombination);
+            }
+        }
+        job.finish("scores\n" + repository.getScores());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (exchange.getRequestMethod().equals("POST") && path.equals("/jobs"))
+                submit(exchange);
+            else if (exchange.getRequestMethod().equals("GET") && path.startsWith("/jobs/"))
+                stream(exchange, path.substring("/jobs/".length()));
+            else
+                respond(exchange, 404, "not found\n");
+        }
+        catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        int wars = Integer.parseInt(params.getOrDefault("wars", "100"));
+        long seed = HeadlessRunner.parseSeed(params.getOrDefault("seed", "guru"));
+        int priority = Integer.parseInt(params.getOrDefault("priority", "0"));
+        if (wars <= 0)
+            throw new IllegalArgumentException("wars must be positive");
+
+        List<WarriorData> survivors = new ArrayList<>();
+        List<WarriorData> zombies = new ArrayList<>();
+        String body = new String(readAll(exchange), StandardCharsets.UTF_8);
+        for (String line : body.split("\n")) {
+            if (line.trim().isEmpty())
+                continue;
+            String[] fields = line.trim().split("\t");
+            if (fields.length != 3)
+                throw new IllegalArgumentException("bad warrior line: " + line);
+            byte[] code = Base64.getDecoder().decode(fields[2]);
+            WarriorData w = HeadlessRunner.isSource(fields[1])
+                    ? HeadlessRunner.assembleWarrior(fields[1], new String(code, StandardCharsets.UTF_8))
+                    : HeadlessRunner.createWarrior(fields[1], code);
+            if (fields[0].equals(SURVIVOR))
+                survivors.add(w);
+            else if (fields[0].equals(ZOMBIE))
+                zombies.add(w);
+            else
+                throw new IllegalArgumentException("bad warrior type: " + fields[0]);
+        }
+        Comparator<WarriorData> byName = (a, b) -> a.getName().compareToIgnoreCase(b.getName());
+        survivors.sort(byName);
+        zombies.sort(byName);
+
+        if (!queueSlots.tryAcquire()) {
+            respond(exchange, 503, "queue is full\n");
+            return;
+        }
+        Job job = new Job(nextJobId.getAndIncrement(), priority, wars, seed, survivors, zombies);
+        job.addEvent("queued");
+        jobs.put(job.id, job);
+        queue.add(job);
+        respond(exchange, 202, job.id + "\n");
+    }
+
+    private void stream(HttpExchange exchange, String idText) throws IOException {
+        Job job = jobs.get(Integer.parseInt(idText));
+        if (job == null) {
+            respond(exchange, 404, "no such job\n");
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // chunked, written as the job progresses
+        OutputStream out = exchange.getResponseBody();
+        int seen = 0;
+        List<String> events = new ArrayList<>();
+        try {
+            while (!job.isFinished(seen)) {
+                events.clear();
+                seen = job.eventsFrom(seen, events);
+                for (String event : events)
+                    out.write((event + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static byte[] readAll(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0)
+            bytes.write(buf, 0, n);
+        return bytes.toByteArray();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null)
+            return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0)
+                params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,120 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.CompetitionEventListener;
+import il.co.codeguru.corewars8086.war.War;
+import il.co.codeguru.corewars8086.war.Warrior;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static il.co.codeguru.corewars8086.headless.TournamentCoordinator.*;
+
+/**
+ * Runs the wars a {@link TournamentCoordinator} hands out, until it says there are no more.
+ * The warriors are received from the coordinator, so a worker can run on any machine that can reach it.
+ */
+public class TournamentWorker {
+
+    private final String host;
+    private final int port;
+
+    public TournamentWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public void run() throws Exception {
+        try (Socket socket = new Socket(host, port)) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            out.println(HELLO);
+            out.flush();
+
+            Competition competition = new Competition();
+            competition.setWarMemory(new RealModeMemoryImpl());
+            competition.setMetrics(HeadlessRunner.newMetricsStripe());
+            receiveWarriors(in, competition);
+
+            while (true) {
+                String line = in.readLine();
+                if (line == null || line.equals(DONE))
+                    break;
+                String[] fields = line.split("\t");
+                if (fields.length != 4 || !fields[0].equals(WAR))
+                    throw new IOException("unexpected command " + line);
+                int warIndex = Integer.parseInt(fields[1]);
+                long seed = Long.parseLong(fields[2]);
+                String[] groups = fields[3].split(",");
+                int[] combination = new int[groups.length];
+                for (int i = 0; i < groups.length; ++i)
+                    combination[i] = Integer.parseInt(groups[i]);
+
+                out.println(runWar(competition, warIndex, seed, combination));
+                out.flush();
+            }
+        }
+    }
+
+    private static void receiveWarriors(BufferedReader in, Competition competition) throws IOException {
+        List<WarriorGroup> groups = new ArrayList<>();
+        WarriorGroup zombies = null;
+        WarriorGroup current = null;
+        while (true) {
+            String line = in.readLine();
+            if (line == null)
+                throw new IOException("coordinator disconnected");
+            if (line.equals(READY))
+                break;
+            String[] fields = line.split("\t");
+            if (fields[0].equals(GROUP)) {
+                current = new WarriorGroup(fields[1]);
+                groups.add(current);
+            }
+            else if (fields[0].equals(ZOMBIES)) {
+                current = zombies = new WarriorGroup(fields[1]);
+            }
+            else if (fields[0].equals(WARRIOR) && current != null && fields.length == 4) {
+                current.addWarrior(new WarriorData(fields[1], Base64.getDecoder().decode(fields[3]), fields[2], -1));
+            }
+            else {
+                throw new IOException("unexpected warrior line " + line);
+            }
+        }
+        if (!competition.getWarriorRepository().loadWarriorGroups(groups, zombies))
+            throw new IOException("no warriors received");
+    }
+
+    private static String runWar(Competition competition, int warIndex, long seed, int[] combination) throws Exception {
+        JfrEvents.WarEvent event = new JfrEvents.WarEvent();
+        event.begin();
+        int rounds = competition.runDetachedWar(combination, seed);
+        War war = competition.getCurrentWar();
+        int reason = Competition.getWarEndReason(war, rounds);
+        JfrEvents.commitWar(event, warIndex, combination, war, rounds, reason);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(RESULT).append('\t').append(warIndex);
+        // same as Competition.doneWar()
+        if (reason != CompetitionEventListener.ABORTED) {
+            float score = war.getSurvivorScore();
+            for (int i = 0; i < war.getNumWarriors(); ++i) {
+                Warrior warrior = war.getWarrior(i);
+                if (warrior.isAlive())
+                    sb.append('\t').append(warrior.getName()).append('=').append(score);
+            }
+        }
+        return sb.toString();
+    }
+}
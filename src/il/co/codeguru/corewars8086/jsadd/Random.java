@@ -16,6 +16,17 @@ public class Random
         haveNextNextGaussian = false;
     }
 
+    /**
+     * @return the internal state of the generator, for continuing the same sequence later with {@link #setState(long)}
+     */
+    public long getState() {
+        return seed;
+    }
+    public void setState(long state) {
+        this.seed = state;
+        haveNextNextGaussian = false;
+    }
+
     private static long initialScramble(long seed) {
         return (seed ^ multiplier) & mask;
     }
@@ -27,7 +38,7 @@ public class Random
             oldseed = seed;
             nextseed = (oldseed * multiplier + addend) & mask;
         //} while (!seed.compareAndSet(oldseed, nextseed));
-        this.seed = seed;
+        this.seed = nextseed;
         return (int)(nextseed >>> (48 - bits));
     }
 
@@ -55,6 +55,7 @@ public abstract class AbstractRealModeMemory implements RealModeMemory {
      * @throws MemoryException  on any error. 
      */
     public abstract void writeByte(RealModeAddress address, byte value) throws MemoryException;
+    public abstract void writeByte(int linearAddress, byte value) throws MemoryException;
 
     /**
      * Writes a single word to the specified address.
@@ -65,29 +66,37 @@ public abstract class AbstractRealModeMemory implements RealModeMemory {
      * @throws MemoryException  on any error. 
      */	
     public void write16Bit(RealModeAddress address, short value) throws MemoryException
+    {
+        write16Bit(address.getSegment(), address.getOffset(), value);
+    }
+
+    public void write32Bit(RealModeAddress address, int value) throws MemoryException
+    {
+        write32Bit(address.getSegment(), address.getOffset(), value);
+    }
+
+    public void write16Bit(short segment, short offset, short value) throws MemoryException
     {
         byte low = (byte)value;
         byte high = (byte)(value >> 8);
 
         // write low byte
-        writeByte(address, low);
+        writeByte(RealModeAddress.linearAddress(segment, offset), low);
 
         // write high byte
-        RealModeAddress nextAddress = new RealModeAddress(address.getSegment(), (short)(address.getOffset() + 1));
-        writeByte(nextAddress, high);
+        writeByte(RealModeAddress.linearAddress(segment, (short)(offset + 1)), high);
     }
 
-    public void write32Bit(RealModeAddress address, int value) throws MemoryException
+    public void write32Bit(short segment, short offset, int value) throws MemoryException
     {
         short low = (short)value;
         short high = (short)(value >> 16);
 
-        // write low byte
-        write16Bit(address, low);
+        // write low word
+        write16Bit(segment, offset, low);
 
-        // write high byte
-        RealModeAddress nextAddress = new RealModeAddress(address.getSegment(), (short)(address.getOffset() + 2));
-        write16Bit(nextAddress, high);
+        // write high word
+        write16Bit(segment, (short)(offset + 2), high);
     }
 
     /**
@@ -39,6 +39,8 @@ public interface RealModeMemory {
      */
     void writeByte(RealModeAddress address, byte value)
         throws MemoryException;
+    void writeByte(int linearAddress, byte value)
+        throws MemoryException;
 
     /**
      * Writes a single word to the specified address.
@@ -52,6 +54,12 @@ public interface RealModeMemory {
         throws MemoryException;
 
     void write32Bit(RealModeAddress address, int value) throws MemoryException;
+    /**
+     * Same as the above without making a {@link RealModeAddress} for every byte, the offset wraps around in
+     * the segment.
+     */
+    void write16Bit(short segment, short offset, short value) throws MemoryException;
+    void write32Bit(short segment, short offset, int value) throws MemoryException;
 
     /**
      * Reads a single byte from the specified address, in order to execute it.
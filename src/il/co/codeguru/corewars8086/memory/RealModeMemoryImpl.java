@@ -3,6 +3,8 @@ package il.co.codeguru.corewars8086.memory;
 import com.google.gwt.typedarrays.client.Int8ArrayNative;
 import il.co.codeguru.corewars8086.utils.Logger;
 
+import java.util.Arrays;
+
 /**
  * Implements the RealModeMemory interface using a buffer.
  *
@@ -15,6 +17,27 @@ public class RealModeMemoryImpl extends AbstractRealModeMemory {
 
     /** Actual memory data */
     public byte[] m_data;
+
+    /** Writes are tracked in pages of this size, see {@link #setDirtyTracking(boolean)} */
+    public static final int PAGE_SHIFT = 12;
+    public static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    public static final int NUM_PAGES = RealModeAddress.MEMORY_SIZE / PAGE_SIZE;
+
+    /** Pages written since the last {@link #clearDirtyPages()}, null when not tracking */
+    private boolean[] m_dirtyPages = null;
+
+    /** A bit for every watched address, null when nothing is watched so writes don't pay for watchpoints */
+    private int[] m_watchBits = null;
+    private int m_watchCount = 0;
+    /** First write to a watched address since the last {@link #clearWatchHit()}, -1 if there was none */
+    private int m_watchHitAddress = -1;
+    private byte m_watchHitOldValue;
+    private byte m_watchHitNewValue;
+
+    /** Counters of reads and writes per address, indexed from m_countBase. null when not counting */
+    private int[] m_readCounts = null;
+    private int[] m_writeCounts = null;
+    private int m_countBase = 0;
     //TODO: Remove this and return to byte[] - separate the gwt framework from the core if it doesn't mean too much overhead
     //public Int8ArrayNative m_data;
 
@@ -35,12 +58,109 @@ public class RealModeMemoryImpl extends AbstractRealModeMemory {
      * @throws MemoryException  on any error. 
      */
     public byte readByte(RealModeAddress address) {
-        return m_data[address.getLinearAddress()];
+        int linearAddress = address.getLinearAddress();
+        if (m_readCounts != null)
+            count(m_readCounts, linearAddress);
+        return m_data[linearAddress];
     }
     public byte readByte(int linearAddress) {
         return m_data[linearAddress % RealModeAddress.MEMORY_SIZE];
     }
 
+    /**
+     * Zeros all of the memory, as it is right after construction. The listener is not notified.
+     */
+    public void clear() {
+        Arrays.fill(m_data, (byte)0);
+    }
+
+    /**
+     * Starts or stops remembering which pages were written to. When started all pages count as written.
+     */
+    public void setDirtyTracking(boolean enable) {
+        if (!enable) {
+            m_dirtyPages = null;
+            return;
+        }
+        m_dirtyPages = new boolean[NUM_PAGES];
+        Arrays.fill(m_dirtyPages, true);
+    }
+
+    /** @return for every page, whether it was written since the last clear. null if not tracking */
+    public boolean[] getDirtyPages() {
+        return m_dirtyPages;
+    }
+
+    public void clearDirtyPages() {
+        if (m_dirtyPages != null)
+            Arrays.fill(m_dirtyPages, false);
+    }
+
+    /**
+     * Starts or stops watching writes to a range of addresses. A write to a watched address is remembered
+     * until {@link #clearWatchHit()}.
+     */
+    public void setWatched(int linearAddress, int length, boolean watched) {
+        if (m_watchBits == null) {
+            if (!watched)
+                return;
+            m_watchBits = new int[RealModeAddress.MEMORY_SIZE >> 5];
+        }
+        for (int i = 0; i < length; ++i) {
+            int a = (linearAddress + i) % RealModeAddress.MEMORY_SIZE;
+            boolean was = (m_watchBits[a >> 5] & (1 << a)) != 0;
+            if (watched && !was) {
+                m_watchBits[a >> 5] |= (1 << a);
+                ++m_watchCount;
+            }
+            else if (!watched && was) {
+                m_watchBits[a >> 5] &= ~(1 << a);
+                --m_watchCount;
+            }
+        }
+        if (m_watchCount == 0)
+            m_watchBits = null;
+    }
+
+    public void clearWatched() {
+        m_watchBits = null;
+        m_watchCount = 0;
+    }
+
+    /** @return the address of the first watched write since the last clear, -1 if none */
+    public int getWatchHitAddress() {
+        return m_watchHitAddress;
+    }
+    public byte getWatchHitOldValue() {
+        return m_watchHitOldValue;
+    }
+    public byte getWatchHitNewValue() {
+        return m_watchHitNewValue;
+    }
+    public void clearWatchHit() {
+        m_watchHitAddress = -1;
+    }
+
+    /**
+     * Starts counting the reads and writes of every address, for profiling the warrior that is running.
+     * Only reads through a {@link RealModeAddress} and writes count, which are the ones the cpu makes. Fetching
+     * instructions is not a read. Addresses outside the counters are not counted.
+     * @param reads   a counter for every address from base, null to stop counting
+     * @param writes  same for writes
+     * @param base    linear address of the first counter
+     */
+    public void setAccessCounters(int[] reads, int[] writes, int base) {
+        m_readCounts = reads;
+        m_writeCounts = writes;
+        m_countBase = base;
+    }
+
+    private void count(int[] counts, int linearAddress) {
+        int index = linearAddress - m_countBase;
+        if (index >= 0 && index < counts.length)
+            ++counts[index];
+    }
+
     public int length() {
         return m_data.length;
     }
@@ -54,12 +174,36 @@ public class RealModeMemoryImpl extends AbstractRealModeMemory {
      * @throws MemoryException  on any error. 
      */
     public void writeByte(RealModeAddress address, byte value) {
-        m_data[address.getLinearAddress()] = value;
+        store(address.getLinearAddress(), value);
         if (listener != null) {
             listener.onMemoryWrite(address, value);
         }
     }
 
+    /**
+     * Same as the above, a {@link RealModeAddress} is only made if there's a listener to tell about the write.
+     * @param linearAddress  must be inside the memory
+     */
+    public void writeByte(int linearAddress, byte value) {
+        store(linearAddress, value);
+        if (listener != null) {
+            listener.onMemoryWrite(new RealModeAddress(linearAddress), value);
+        }
+    }
+
+    private void store(int linearAddress, byte value) {
+        if (m_watchBits != null && (m_watchBits[linearAddress >> 5] & (1 << linearAddress)) != 0 && m_watchHitAddress < 0) {
+            m_watchHitAddress = linearAddress;
+            m_watchHitOldValue = m_data[linearAddress];
+            m_watchHitNewValue = value;
+        }
+        m_data[linearAddress] = value;
+        if (m_writeCounts != null)
+            count(m_writeCounts, linearAddress);
+        if (m_dirtyPages != null)
+            m_dirtyPages[linearAddress >> PAGE_SHIFT] = true;
+    }
+
 
 
     /**
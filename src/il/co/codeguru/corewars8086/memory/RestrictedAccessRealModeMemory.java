@@ -72,6 +72,13 @@ public class RestrictedAccessRealModeMemory extends AbstractRealModeMemory {
         m_memory.writeByte(address, value);
     }
 
+    public void writeByte(int linearAddress, byte value) throws MemoryException {
+        if (!isAddressInRegions(m_writeAccessRegions, linearAddress)) {
+            throw new MemoryException("Write not allowed to address 0x" + Format.hex(linearAddress) );
+        }
+        m_memory.writeByte(linearAddress, value);
+    }
+
     /**
      * Reads a single byte from the specified address, in order to execute it.
      *
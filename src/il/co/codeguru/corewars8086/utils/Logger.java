@@ -22,6 +22,14 @@ public class Logger {
         getInstance().testing = true;
     }
 
+    /**
+     * Outside the browser (the headless runner) there is no javascript console, print like in testing
+     */
+    public static void setHeadlessMode()
+    {
+        getInstance().testing = true;
+    }
+
     public static void log(String message)
     {
         if(getInstance().testing) System.out.println(message);
@@ -0,0 +1,1699 @@
+package il.co.codeguru.corewars8086.utils.assembler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Assembles RISC-V warriors in process, for the RV32I and RV32C instructions the cpu runs.
+ *
+ * It picks instructions the way GNU as does with -march=rv32imc: the opcode table is tried in the same order so
+ * the compressed form is chosen whenever there is one, li is expanded the same way and branches and jumps to
+ * labels are relaxed to the same length. The binary is the text section as the browser takes it out of the
+ * object file, the listing has the format of "as -al" and the messages the format of as, so both go through
+ * the same parsers. What needs a linker (la, call, %hi, data that points to a label, a branch to an undefined
+ * symbol or an absolute address), sections other than .text, numbers wider than 32 bits and instructions the
+ * cpu doesn't run (M, A, F, csr, ecall) are reported as errors.
+ * This is plain Java so that the headless runner can build thousands of warriors without a browser.
+ */
+public class AssemblerRiscV {
+
+    /** What the assembler gave for one text, the listing and binary are only set if it succeeded */
+    public static class Result {
+        public final int retcode; // 0 if there were no errors
+        public final String stdout; // the messages, like the output of as
+        public final String listing; // in the format of "as -al", null if there were errors
+        public final byte[] bin; // the text section, null if there were errors
+
+        Result(int retcode, String stdout, String listing, byte[] bin) {
+            this.retcode = retcode;
+            this.stdout = stdout;
+            this.listing = listing;
+            this.bin = bin;
+        }
+    }
+
+    // conditions on the operands that the opcode table can't express, as the match functions of riscv-opc.c
+    private static final int CHECK_NONE = 0;
+    private static final int CHECK_RD_NONZERO = 1;
+    private static final int CHECK_C_ADD = 2;
+    private static final int CHECK_C_ADD_WITH_HINT = 3;
+    private static final int CHECK_C_NOP = 4;
+    private static final int CHECK_C_ADDI16SP = 5;
+    private static final int CHECK_C_LUI = 6;
+    private static final int CHECK_C_LUI_WITH_HINT = 7;
+    private static final int CHECK_C_ADDI4SPN = 8;
+    private static final int CHECK_C_SHIFT = 9; // non zero shift
+    private static final int CHECK_SLLI_AS_C_SLLI = 10;
+    private static final int CHECK_MACRO_LI = 11;
+
+    private static final int MATCH_LUI = 0x37;
+    private static final int MATCH_JAL = 0x6f;
+    private static final int MATCH_JALR = 0x67;
+    private static final int MATCH_BEQ = 0x63;
+    private static final int MATCH_BNE = 0x1063;
+    private static final int MATCH_ADDI = 0x13;
+    private static final int MATCH_C_J = 0xa001;
+    private static final int MATCH_C_JAL = 0x2001;
+    private static final int MATCH_C_BEQZ = 0xc001;
+    private static final int MATCH_C_BNEZ = 0xe001;
+    private static final int MASK_C_J = 0xe003; // the same for all the compressed jumps and branches
+    private static final int RVC_NOP = 0x1;
+    private static final int X_RA = 1;
+    private static final int X_SP = 2;
+
+    private static final int RVC_JUMP_REACH = 4096;
+    private static final int RVC_BRANCH_REACH = 512;
+    private static final int BRANCH_REACH = 8192;
+
+    /** An entry of the opcode table, a mnemonic with one form of its operands, see riscv-opc.c */
+    private static final class Op {
+        final String name;
+        final String args;
+        final int match;
+        final int check;
+
+        Op(String name, String args, int match, int check) {
+            this.name = name;
+            this.args = args;
+            this.match = match;
+            this.check = check;
+        }
+
+        boolean isCompressed() {
+            return check != CHECK_MACRO_LI && (match & 3) != 3;
+        }
+    }
+
+    private static final ArrayList<Op> s_ops = new ArrayList<>();
+    private static final HashMap<String, Integer> s_firstOp = new HashMap<>(); // the forms of a mnemonic are consecutive
+    private static final HashSet<String> s_unsupported = new HashSet<>();
+    private static final HashMap<String, Integer> s_registers = new HashMap<>();
+
+    private static void op(String name, String args, int match, int check) {
+        if (!s_firstOp.containsKey(name))
+            s_firstOp.put(name, s_ops.size());
+        s_ops.add(new Op(name, args, match, check));
+    }
+
+    static {
+        // the order of riscv-opc.c, the first form that matches is taken
+        op("ret", "", 0x8082, CHECK_NONE);
+        op("ret", "", 0x8067, CHECK_NONE);
+        op("jr", "d", 0x8002, CHECK_RD_NONZERO);
+        op("jr", "s", MATCH_JALR, CHECK_NONE);
+        op("jr", "o(s)", MATCH_JALR, CHECK_NONE);
+        op("jr", "s,j", MATCH_JALR, CHECK_NONE);
+        op("jalr", "d", 0x9002, CHECK_RD_NONZERO);
+        op("jalr", "s", MATCH_JALR | (X_RA << 7), CHECK_NONE);
+        op("jalr", "o(s)", MATCH_JALR | (X_RA << 7), CHECK_NONE);
+        op("jalr", "s,j", MATCH_JALR | (X_RA << 7), CHECK_NONE);
+        op("jalr", "d,s", MATCH_JALR, CHECK_NONE);
+        op("jalr", "d,o(s)", MATCH_JALR, CHECK_NONE);
+        op("jalr", "d,s,j", MATCH_JALR, CHECK_NONE);
+        op("j", "Ca", MATCH_C_J, CHECK_NONE);
+        op("j", "a", MATCH_JAL, CHECK_NONE);
+        op("jal", "d,a", MATCH_JAL, CHECK_NONE);
+        op("jal", "Ca", MATCH_C_JAL, CHECK_NONE);
+        op("jal", "a", MATCH_JAL | (X_RA << 7), CHECK_NONE);
+        op("nop", "", RVC_NOP, CHECK_NONE);
+        op("nop", "", MATCH_ADDI, CHECK_NONE);
+        op("lui", "d,Cu", 0x6001, CHECK_C_LUI);
+        op("lui", "d,u", MATCH_LUI, CHECK_NONE);
+        op("li", "d,Cv", 0x6001, CHECK_C_LUI);
+        op("li", "d,Co", 0x4001, CHECK_RD_NONZERO);
+        op("li", "d,j", MATCH_ADDI, CHECK_NONE);
+        op("li", "d,I", 0, CHECK_MACRO_LI);
+        op("mv", "d,CV", 0x8002, CHECK_C_ADD);
+        op("mv", "d,s", MATCH_ADDI, CHECK_NONE);
+        op("move", "d,CV", 0x8002, CHECK_C_ADD);
+        op("move", "d,s", MATCH_ADDI, CHECK_NONE);
+        op("andi", "Cs,Cw,Co", 0x8801, CHECK_NONE);
+        op("andi", "d,s,j", 0x7013, CHECK_NONE);
+        op("and", "Cs,Cw,Ct", 0x8c61, CHECK_NONE);
+        op("and", "Cs,Ct,Cw", 0x8c61, CHECK_NONE);
+        op("and", "Cs,Cw,Co", 0x8801, CHECK_NONE);
+        op("and", "d,s,t", 0x7033, CHECK_NONE);
+        op("and", "d,s,j", 0x7013, CHECK_NONE);
+        op("beqz", "Cs,Cp", MATCH_C_BEQZ, CHECK_NONE);
+        op("beqz", "s,p", MATCH_BEQ, CHECK_NONE);
+        op("beq", "s,t,p", MATCH_BEQ, CHECK_NONE);
+        op("blez", "t,p", 0x5063, CHECK_NONE);
+        op("bgez", "s,p", 0x5063, CHECK_NONE);
+        op("ble", "t,s,p", 0x5063, CHECK_NONE);
+        op("bleu", "t,s,p", 0x7063, CHECK_NONE);
+        op("bge", "s,t,p", 0x5063, CHECK_NONE);
+        op("bgeu", "s,t,p", 0x7063, CHECK_NONE);
+        op("bltz", "s,p", 0x4063, CHECK_NONE);
+        op("bgtz", "t,p", 0x4063, CHECK_NONE);
+        op("blt", "s,t,p", 0x4063, CHECK_NONE);
+        op("bltu", "s,t,p", 0x6063, CHECK_NONE);
+        op("bgt", "t,s,p", 0x4063, CHECK_NONE);
+        op("bgtu", "t,s,p", 0x6063, CHECK_NONE);
+        op("bnez", "Cs,Cp", MATCH_C_BNEZ, CHECK_NONE);
+        op("bnez", "s,p", MATCH_BNE, CHECK_NONE);
+        op("bne", "s,t,p", MATCH_BNE, CHECK_NONE);
+        op("addi", "Ct,Cc,CK", 0x0, CHECK_C_ADDI4SPN);
+        op("addi", "d,CU,Cj", 0x1, CHECK_RD_NONZERO);
+        op("addi", "d,CU,z", 0x1, CHECK_C_NOP);
+        op("addi", "Cc,Cc,CL", 0x6101, CHECK_C_ADDI16SP);
+        op("addi", "d,s,j", MATCH_ADDI, CHECK_NONE);
+        op("add", "d,CU,CV", 0x9002, CHECK_C_ADD);
+        op("add", "d,CV,CU", 0x9002, CHECK_C_ADD);
+        op("add", "d,CU,Co", 0x1, CHECK_RD_NONZERO);
+        op("add", "Ct,Cc,CK", 0x0, CHECK_C_ADDI4SPN);
+        op("add", "Cc,Cc,CL", 0x6101, CHECK_C_ADDI16SP);
+        op("add", "d,s,t", 0x33, CHECK_NONE);
+        op("add", "d,s,j", MATCH_ADDI, CHECK_NONE);
+        op("neg", "d,t", 0x40000033, CHECK_NONE);
+        op("slli", "d,CU,C>", 0x2, CHECK_SLLI_AS_C_SLLI);
+        op("slli", "d,s,>", 0x1013, CHECK_NONE);
+        op("sll", "d,CU,C>", 0x2, CHECK_SLLI_AS_C_SLLI);
+        op("sll", "d,s,t", 0x1033, CHECK_NONE);
+        op("sll", "d,s,>", 0x1013, CHECK_NONE);
+        op("srli", "Cs,Cw,C>", 0x8001, CHECK_C_SHIFT);
+        op("srli", "d,s,>", 0x5013, CHECK_NONE);
+        op("srl", "Cs,Cw,C>", 0x8001, CHECK_C_SHIFT);
+        op("srl", "d,s,t", 0x5033, CHECK_NONE);
+        op("srl", "d,s,>", 0x5013, CHECK_NONE);
+        op("srai", "Cs,Cw,C>", 0x8401, CHECK_C_SHIFT);
+        op("srai", "d,s,>", 0x40005013, CHECK_NONE);
+        op("sra", "Cs,Cw,C>", 0x8401, CHECK_C_SHIFT);
+        op("sra", "d,s,t", 0x40005033, CHECK_NONE);
+        op("sra", "d,s,>", 0x40005013, CHECK_NONE);
+        op("sub", "Cs,Cw,Ct", 0x8c01, CHECK_NONE);
+        op("sub", "d,s,t", 0x40000033, CHECK_NONE);
+        op("lb", "d,o(s)", 0x3, CHECK_NONE);
+        op("lbu", "d,o(s)", 0x4003, CHECK_NONE);
+        op("lh", "d,o(s)", 0x1003, CHECK_NONE);
+        op("lhu", "d,o(s)", 0x5003, CHECK_NONE);
+        op("lw", "d,Cm(Cc)", 0x4002, CHECK_RD_NONZERO);
+        op("lw", "Ct,Ck(Cs)", 0x4000, CHECK_NONE);
+        op("lw", "d,o(s)", 0x2003, CHECK_NONE);
+        op("not", "d,s", 0xfff04013, CHECK_NONE);
+        op("ori", "d,s,j", 0x6013, CHECK_NONE);
+        op("or", "Cs,Cw,Ct", 0x8c41, CHECK_NONE);
+        op("or", "Cs,Ct,Cw", 0x8c41, CHECK_NONE);
+        op("or", "d,s,t", 0x6033, CHECK_NONE);
+        op("or", "d,s,j", 0x6013, CHECK_NONE);
+        op("auipc", "d,u", 0x17, CHECK_NONE);
+        op("seqz", "d,s", 0x103013, CHECK_NONE);
+        op("snez", "d,t", 0x3033, CHECK_NONE);
+        op("sltz", "d,s", 0x2033, CHECK_NONE);
+        op("sgtz", "d,t", 0x2033, CHECK_NONE);
+        op("slti", "d,s,j", 0x2013, CHECK_NONE);
+        op("slt", "d,s,t", 0x2033, CHECK_NONE);
+        op("slt", "d,s,j", 0x2013, CHECK_NONE);
+        op("sltiu", "d,s,j", 0x3013, CHECK_NONE);
+        op("sltu", "d,s,t", 0x3033, CHECK_NONE);
+        op("sltu", "d,s,j", 0x3013, CHECK_NONE);
+        op("sgt", "d,t,s", 0x2033, CHECK_NONE);
+        op("sgtu", "d,t,s", 0x3033, CHECK_NONE);
+        op("sb", "t,q(s)", 0x23, CHECK_NONE);
+        op("sh", "t,q(s)", 0x1023, CHECK_NONE);
+        op("sw", "CV,CM(Cc)", 0xc002, CHECK_NONE);
+        op("sw", "Ct,Ck(Cs)", 0xc000, CHECK_NONE);
+        op("sw", "t,q(s)", 0x2023, CHECK_NONE);
+        op("xori", "d,s,j", 0x4013, CHECK_NONE);
+        op("xor", "Cs,Cw,Ct", 0x8c21, CHECK_NONE);
+        op("xor", "Cs,Ct,Cw", 0x8c21, CHECK_NONE);
+        op("xor", "d,s,t", 0x4033, CHECK_NONE);
+        op("xor", "d,s,j", 0x4013, CHECK_NONE);
+        op("c.jr", "d", 0x8002, CHECK_RD_NONZERO);
+        op("c.jalr", "d", 0x9002, CHECK_RD_NONZERO);
+        op("c.j", "Ca", MATCH_C_J, CHECK_NONE);
+        op("c.jal", "Ca", MATCH_C_JAL, CHECK_NONE);
+        op("c.beqz", "Cs,Cp", MATCH_C_BEQZ, CHECK_NONE);
+        op("c.bnez", "Cs,Cp", MATCH_C_BNEZ, CHECK_NONE);
+        op("c.lwsp", "d,Cm(Cc)", 0x4002, CHECK_RD_NONZERO);
+        op("c.lw", "Ct,Ck(Cs)", 0x4000, CHECK_NONE);
+        op("c.swsp", "CV,CM(Cc)", 0xc002, CHECK_NONE);
+        op("c.sw", "Ct,Ck(Cs)", 0xc000, CHECK_NONE);
+        op("c.nop", "", RVC_NOP, CHECK_NONE);
+        op("c.nop", "Cj", RVC_NOP, CHECK_NONE);
+        op("c.mv", "d,CV", 0x8002, CHECK_C_ADD_WITH_HINT);
+        op("c.lui", "d,Cu", 0x6001, CHECK_C_LUI_WITH_HINT);
+        op("c.li", "d,Co", 0x4001, CHECK_NONE);
+        op("c.addi4spn", "Ct,Cc,CK", 0x0, CHECK_C_ADDI4SPN);
+        op("c.addi16sp", "Cc,CL", 0x6101, CHECK_C_ADDI16SP);
+        op("c.addi", "d,Co", 0x1, CHECK_NONE);
+        op("c.add", "d,CV", 0x9002, CHECK_C_ADD_WITH_HINT);
+        op("c.sub", "Cs,Ct", 0x8c01, CHECK_NONE);
+        op("c.and", "Cs,Ct", 0x8c61, CHECK_NONE);
+        op("c.or", "Cs,Ct", 0x8c41, CHECK_NONE);
+        op("c.xor", "Cs,Ct", 0x8c21, CHECK_NONE);
+        op("c.slli", "d,C>", 0x2, CHECK_C_SHIFT);
+        op("c.srli", "Cs,C>", 0x8001, CHECK_C_SHIFT);
+        op("c.srai", "Cs,C>", 0x8401, CHECK_C_SHIFT);
+        op("c.andi", "Cs,Co", 0x8801, CHECK_NONE);
+
+        // known to as but either need a linker or the cpu doesn't run them
+        String[] unsupported = {"la", "lla", "la.tls.gd", "la.tls.ie", "call", "tail", "jump", "unimp", "c.unimp",
+                "ebreak", "sbreak", "c.ebreak", "ecall", "scall", "fence", "fence.i", "rdcycle", "rdinstret", "rdtime",
+                "rdcycleh", "rdinstreth", "rdtimeh", "mul", "mulh", "mulhsu", "mulhu", "div", "divu", "rem", "remu",
+                "lr.w", "sc.w", "csrr", "csrw", "csrs", "csrc", "csrwi", "csrsi", "csrci", "csrrw", "csrrs", "csrrc",
+                "csrrwi", "csrrsi", "csrrci"};
+        for (String name : unsupported)
+            s_unsupported.add(name);
+
+        String[] abiNames = {"zero", "ra", "sp", "gp", "tp", "t0", "t1", "t2", "s0", "s1", "a0", "a1", "a2", "a3",
+                "a4", "a5", "a6", "a7", "s2", "s3", "s4", "s5", "s6", "s7", "s8", "s9", "s10", "s11", "t3", "t4",
+                "t5", "t6"};
+        for (int i = 0; i < 32; ++i) {
+            s_registers.put("x" + i, i);
+            s_registers.put(abiNames[i], i);
+        }
+    }
+
+    private static final int SYM_UNDEFINED = 0;
+    private static final int SYM_LABEL = 1;
+    private static final int SYM_EQU = 2;
+
+    private static final class Symbol {
+        final String name;
+        int kind = SYM_UNDEFINED;
+        int stmt; // of a label, the index of the statement it is before
+        long value; // of an equ
+        int line;
+        boolean branchedTo;
+
+        Symbol(String name) {
+            this.name = name;
+        }
+
+        /** numeric local labels and .L labels are not in the symbol table, unless a branch needs them */
+        boolean isLocal() {
+            return name.startsWith(".L") || name.indexOf(LOCAL_LABEL_MARK) >= 0;
+        }
+
+        String listedName() {
+            return name.indexOf(LOCAL_LABEL_MARK) >= 0 ? ".L" + name : name;
+        }
+    }
+
+    private static final char LOCAL_LABEL_MARK = '\u0002'; // in the names made for numeric labels, like as does
+
+    /** A run of bytes, or a branch or jump to a label whose length is only known after relaxation */
+    private static final class Stmt {
+        final int line;
+        final byte[] data; // null for a branch
+        int insn; // a branch, without its offset
+        Symbol target;
+        long addend;
+        String text;
+        boolean jump;
+        boolean compressed; // the best case is a compressed branch
+        int length;
+        int address;
+
+        Stmt(int line, byte[] data) {
+            this.line = line;
+            this.data = data;
+            this.length = data.length;
+        }
+
+        Stmt(int line, int insn, Symbol target, long addend, boolean jump, String text) {
+            this.line = line;
+            this.data = null;
+            this.insn = insn;
+            this.target = target;
+            this.addend = addend;
+            this.jump = jump;
+            this.text = text;
+            this.compressed = (insn & 3) != 3;
+            this.length = compressed ? 2 : 4;
+        }
+    }
+
+    private final String m_name;
+    private final StringBuilder m_stdout = new StringBuilder();
+    private boolean m_hadErrors = false;
+    private int m_errorLine; // the last line with an error
+    private int m_line;
+
+    private final ArrayList<Stmt> m_stmts = new ArrayList<>();
+    private final HashMap<String, Symbol> m_symbols = new HashMap<>();
+    private final ArrayList<Symbol> m_symbolList = new ArrayList<>(); // in the order of creation, like the listing of as
+    private final ArrayList<Symbol> m_branchLocals = new ArrayList<>(); // local labels that are branched to, listed last
+    private final HashMap<String, Integer> m_localLabelCounts = new HashMap<>();
+    private boolean m_rvc = true;
+    private final ArrayList<Boolean> m_rvcStack = new ArrayList<>();
+    private int m_sectionAlignment = 2; // the end of the section is padded with zeros to it
+
+    // the text being parsed, an operand string or a directive
+    private String m_s;
+    private int m_pos;
+    // the result of parseExpression(), the value is relative to the label if there is one
+    private long m_value;
+    private Symbol m_symbol;
+    // the instruction matched by matchOp()
+    private int m_insn;
+    private boolean m_hasTarget;
+    private long m_targetValue;
+    private Symbol m_targetSymbol;
+    private long m_liValue;
+
+    private AssemblerRiscV(String name) {
+        m_name = name;
+    }
+
+    /**
+     * @param name  the name of the file in the messages and the listing
+     * @param text  the source
+     */
+    public static Result assemble(String name, String text) {
+        return new AssemblerRiscV(name).run(text);
+    }
+
+    private Result run(String text) {
+        ArrayList<String> lines = splitLines(text);
+        int[] lineStmts = new int[lines.size() + 2]; // the first statement of every line
+        int lineCount = lines.size();
+        for (int i = 0; i < lines.size(); ++i) {
+            m_line = i + 1;
+            lineStmts[m_line] = m_stmts.size();
+            if (!assembleLine(lines.get(i))) {
+                lineCount = m_line;
+                break;
+            }
+        }
+        lineStmts[lineCount + 1] = m_stmts.size();
+
+        HashSet<Symbol> undefinedLocals = new HashSet<>();
+        for (Stmt st : m_stmts) {
+            if (st.data != null)
+                continue;
+            Symbol s = st.target;
+            int mark = s.name.indexOf(LOCAL_LABEL_MARK);
+            if (s.kind == SYM_UNDEFINED && mark >= 0) {
+                if (undefinedLocals.add(s)) {
+                    m_hadErrors = true;
+                    m_stdout.append(m_name).append(": Error: local label `\"").append(s.name, 0, mark)
+                            .append("\" (instance number ").append(s.name.substring(mark + 1)).append(" of a fb label)' is not defined\n");
+                }
+            }
+            else if (s.kind == SYM_UNDEFINED)
+                error(st.line, "undefined symbol `" + s.name + "' in `" + st.text + "'");
+            else if (s.kind != SYM_LABEL)
+                error(st.line, "branch target is not a label in `" + st.text + "'");
+        }
+        if (m_hadErrors)
+            return new Result(1, m_stdout.toString(), null, null);
+
+        relax();
+        if (!m_stmts.isEmpty()) {
+            // the padding is in the bytes of the last line, as the listing of as shows it
+            int pad = -endAddress() & (m_sectionAlignment - 1);
+            if (pad > 0) {
+                Stmt st = new Stmt(lineCount, new byte[pad]);
+                st.address = endAddress();
+                m_stmts.add(st);
+                lineStmts[lineCount + 1] = m_stmts.size();
+            }
+        }
+        byte[] bin = new byte[m_stmts.isEmpty() ? 0 : endAddress()];
+        for (Stmt st : m_stmts)
+            emit(st, bin);
+        return new Result(0, m_stdout.toString(), listing(lines, lineCount, lineStmts, bin), bin);
+    }
+
+    private static ArrayList<String> splitLines(String text) {
+        ArrayList<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0)
+                end = text.length();
+            int lineEnd = (end > start && text.charAt(end - 1) == '\r') ? end - 1 : end;
+            lines.add(text.substring(start, lineEnd));
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    private void error(int line, String msg) {
+        m_hadErrors = true;
+        m_errorLine = line;
+        m_stdout.append(m_name).append(':').append(line).append(": Error: ").append(msg).append('\n');
+    }
+
+    private void error(String msg) {
+        error(m_line, msg);
+    }
+
+    private void warning(String msg) {
+        m_stdout.append(m_name).append(':').append(m_line).append(": Warning: ").append(msg).append('\n');
+    }
+
+    // ---------------------------------------------------------------- statements
+
+    /** @return false after .end */
+    private boolean assembleLine(String line) {
+        // cut the comment and split to statements, not inside strings and character constants
+        int start = 0;
+        int i = 0;
+        boolean inString = false;
+        while (i < line.length()) {
+            char c = line.charAt(i);
+            if (inString) {
+                if (c == '\\')
+                    ++i;
+                else if (c == '"')
+                    inString = false;
+            }
+            else if (c == '"') {
+                inString = true;
+            }
+            else if (c == '\'') {
+                i += (i + 1 < line.length() && line.charAt(i + 1) == '\\') ? 2 : 1;
+            }
+            else if (c == '#') {
+                break;
+            }
+            else if (c == ';') {
+                if (!assembleStatement(line.substring(start, i)))
+                    return false;
+                start = i + 1;
+            }
+            ++i;
+        }
+        return assembleStatement(line.substring(start, Math.min(i, line.length())));
+    }
+
+    private boolean assembleStatement(String stmt) {
+        String s = stmt.trim();
+        // labels
+        while (true) {
+            int end = nameEnd(s, 0);
+            if (end == 0 && s.length() > 0 && isDigit(s.charAt(0))) { // numeric local label
+                end = 1;
+                while (end < s.length() && isDigit(s.charAt(end)))
+                    ++end;
+                if (end < s.length() && s.charAt(end) == ':') {
+                    defineLabel(newLocalLabel(s.substring(0, end)));
+                    s = s.substring(end + 1).trim();
+                    continue;
+                }
+                break;
+            }
+            if (end > 0 && end < s.length() && s.charAt(end) == ':') {
+                defineLabel(s.substring(0, end));
+                s = s.substring(end + 1).trim();
+                continue;
+            }
+            break;
+        }
+        if (s.isEmpty())
+            return true;
+
+        int nameEnd = 0;
+        while (nameEnd < s.length() && !isSpace(s.charAt(nameEnd)))
+            ++nameEnd;
+        String name = s.substring(0, nameEnd).toLowerCase();
+        String args = s.substring(nameEnd).trim();
+
+        int symEnd = nameEnd(s, 0);
+        if (symEnd > 0) {
+            int eq = skipSpaces(s, symEnd);
+            if (eq < s.length() && s.charAt(eq) == '=' && (eq + 1 == s.length() || s.charAt(eq + 1) != '=')) {
+                setSymbol(s.substring(0, symEnd), s.substring(eq + 1));
+                return true;
+            }
+        }
+
+        if (name.startsWith("."))
+            return directive(name, args);
+        instruction(name, args, collapseSpaces(name + s.substring(nameEnd))); // as lowercases only the mnemonic
+        return true;
+    }
+
+    private void defineLabel(String name) {
+        Symbol sym = symbol(name);
+        if (sym.kind != SYM_UNDEFINED) {
+            error("symbol `" + name + "' is already defined");
+            return;
+        }
+        sym.kind = SYM_LABEL;
+        sym.stmt = m_stmts.size();
+        sym.line = m_line;
+    }
+
+    private Symbol symbol(String name) {
+        Symbol sym = m_symbols.get(name);
+        if (sym == null) {
+            sym = new Symbol(name);
+            m_symbols.put(name, sym);
+            m_symbolList.add(sym);
+        }
+        return sym;
+    }
+
+    private String newLocalLabel(String num) {
+        Integer count = m_localLabelCounts.get(num);
+        int instance = (count == null) ? 1 : count + 1;
+        m_localLabelCounts.put(num, instance);
+        return localLabelName(num, instance);
+    }
+
+    private static String localLabelName(String num, int instance) {
+        return num + LOCAL_LABEL_MARK + instance;
+    }
+
+    private void setSymbol(String name, String expr) {
+        if (!parseConstant(expr)) {
+            error("expression for `" + name + "' is not a constant");
+            return;
+        }
+        Symbol sym = symbol(name);
+        if (sym.kind == SYM_LABEL) {
+            error("symbol `" + name + "' is already defined");
+            return;
+        }
+        if (sym.kind != SYM_EQU)
+            sym.line = m_line; // as lists the line of the first definition
+        sym.kind = SYM_EQU;
+        sym.value = m_value;
+    }
+
+    private void addData(byte[] data) {
+        if (data.length > 0)
+            m_stmts.add(new Stmt(m_line, data));
+    }
+
+    private void addInsn(int insn, int length) {
+        byte[] data = new byte[length];
+        putLittleEndian(data, 0, insn, length);
+        addData(data);
+    }
+
+    // ---------------------------------------------------------------- directives
+
+    private boolean directive(String name, String args) {
+        switch (name) {
+            case ".text":
+            case ".globl":
+            case ".global":
+            case ".local":
+            case ".type":
+            case ".size":
+            case ".file":
+            case ".ident":
+                break;
+            case ".end":
+                return false;
+            case ".section":
+                if (!args.equals(".text") && !args.startsWith(".text,") && !args.startsWith(".text "))
+                    error("only the .text section is supported, not `" + args + "'");
+                break;
+            case ".data":
+            case ".bss":
+            case ".rodata":
+            case ".pushsection":
+            case ".popsection":
+            case ".previous":
+                error("only the .text section is supported, not `" + name + "'");
+                break;
+            case ".option":
+                option(args);
+                break;
+            case ".equ":
+            case ".set": {
+                int comma = args.indexOf(',');
+                int end = nameEnd(args, 0);
+                if (comma < 0 || end == 0 || args.substring(end, comma).trim().length() > 0)
+                    error("expected symbol name in `" + name + " " + args + "'");
+                else
+                    setSymbol(args.substring(0, end), args.substring(comma + 1));
+                break;
+            }
+            case ".byte":
+                numbers(args, 1);
+                break;
+            case ".half":
+            case ".short":
+            case ".2byte":
+                numbers(args, 2);
+                break;
+            case ".word":
+            case ".long":
+            case ".int":
+            case ".4byte":
+                numbers(args, 4);
+                break;
+            case ".ascii":
+                strings(args, false);
+                break;
+            case ".asciz":
+            case ".string":
+                strings(args, true);
+                break;
+            case ".zero":
+            case ".space":
+            case ".skip":
+                space(args);
+                break;
+            case ".align":
+            case ".p2align":
+                align(args, false);
+                break;
+            case ".balign":
+                align(args, true);
+                break;
+            default:
+                error("unknown pseudo-op: `" + name + "'");
+        }
+        return true;
+    }
+
+    private void option(String args) {
+        switch (args) {
+            case "rvc":
+                m_rvc = true;
+                break;
+            case "norvc":
+                m_rvc = false;
+                break;
+            case "push":
+                m_rvcStack.add(m_rvc);
+                break;
+            case "pop":
+                if (m_rvcStack.isEmpty())
+                    error(".option pop with no .option push");
+                else
+                    m_rvc = m_rvcStack.remove(m_rvcStack.size() - 1);
+                break;
+            case "relax":
+            case "norelax":
+            case "pic":
+            case "nopic":
+                break;
+            default:
+                warning("Unrecognized .option directive: " + args + "\n"); // the message of as has its own new line
+        }
+    }
+
+    private void numbers(String args, int size) {
+        start(args);
+        byte[] data = new byte[0];
+        do {
+            if (!parseExpression() || atMore()) {
+                error("bad expression in `" + args + "'");
+                return;
+            }
+            if (m_symbol != null) {
+                error("data can't point to a label, `" + m_symbol.name + "' needs a linker");
+                return;
+            }
+            byte[] more = new byte[data.length + size];
+            System.arraycopy(data, 0, more, 0, data.length);
+            putLittleEndian(more, data.length, (int) m_value, size);
+            data = more;
+        } while (accept(','));
+        if (!atEnd()) {
+            error("junk at end of line, first unrecognized character is `" + m_s.charAt(m_pos) + "'");
+            return;
+        }
+        addData(data);
+    }
+
+    private void strings(String args, boolean zeroEnd) {
+        start(args);
+        StringBuilder bytes = new StringBuilder();
+        do {
+            skipSpaces();
+            if (!accept('"')) {
+                error("expected string in `" + args + "'");
+                return;
+            }
+            while (m_pos < m_s.length() && m_s.charAt(m_pos) != '"') {
+                char c = m_s.charAt(m_pos++);
+                if (c == '\\' && m_pos < m_s.length())
+                    c = (char) escape();
+                bytes.append(c);
+            }
+            if (!accept('"')) {
+                error("unterminated string in `" + args + "'");
+                return;
+            }
+            if (zeroEnd)
+                bytes.append('\0');
+        } while (accept(','));
+        if (!atEnd()) {
+            error("junk at end of line, first unrecognized character is `" + m_s.charAt(m_pos) + "'");
+            return;
+        }
+        byte[] data = new byte[bytes.length()];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) bytes.charAt(i);
+        addData(data);
+    }
+
+    /** @return the value of the escape sequence after a backslash */
+    private int escape() {
+        char c = m_s.charAt(m_pos++);
+        switch (c) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case 'r': return '\r';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'x': {
+                int v = 0;
+                while (m_pos < m_s.length() && hexValue(m_s.charAt(m_pos)) >= 0)
+                    v = (v << 4) | hexValue(m_s.charAt(m_pos++));
+                return v & 0xff;
+            }
+            default:
+                if (c >= '0' && c <= '7') {
+                    int v = c - '0';
+                    for (int i = 0; i < 2 && m_pos < m_s.length() && m_s.charAt(m_pos) >= '0' && m_s.charAt(m_pos) <= '7'; ++i)
+                        v = v * 8 + (m_s.charAt(m_pos++) - '0');
+                    return v & 0xff;
+                }
+                return c;
+        }
+    }
+
+    private void space(String args) {
+        start(args);
+        if (!parseExpression() || m_symbol != null) {
+            error("bad size in `" + args + "'");
+            return;
+        }
+        long size = m_value;
+        long fill = 0;
+        if (accept(',')) {
+            if (!parseExpression() || m_symbol != null) {
+                error("bad fill value in `" + args + "'");
+                return;
+            }
+            fill = m_value;
+        }
+        if (!atEnd() || size < 0 || size > 0x100000) {
+            error("bad size in `" + args + "'");
+            return;
+        }
+        byte[] data = new byte[(int) size];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte) fill;
+        addData(data);
+    }
+
+    /**
+     * In code as puts the worst case of nops and leaves the alignment to the linker, the binary has those nops
+     * whatever the address is.
+     */
+    private void align(String args, boolean inBytes) {
+        start(args);
+        if (!parseExpression() || m_symbol != null || !atEnd()) {
+            error("alignment with a fill value is not supported, in `" + args + "'");
+            return;
+        }
+        long bytes = inBytes ? m_value : (1L << Math.min(Math.max(m_value, 0), 16));
+        if (bytes <= 0 || (bytes & (bytes - 1)) != 0) {
+            error("alignment not a power of 2");
+            return;
+        }
+        m_sectionAlignment = Math.max(m_sectionAlignment, (int) bytes);
+        int insnAlignment = m_rvc ? 2 : 4;
+        if (bytes <= insnAlignment)
+            return;
+        byte[] nops = new byte[(int) bytes - insnAlignment];
+        int i = 0;
+        if ((nops.length - i) % 4 == 2) {
+            putLittleEndian(nops, i, RVC_NOP, 2);
+            i += 2;
+        }
+        for (; i < nops.length; i += 4)
+            putLittleEndian(nops, i, MATCH_ADDI, 4);
+        addData(nops);
+    }
+
+    // ---------------------------------------------------------------- instructions
+
+    private void instruction(String name, String args, String text) {
+        Integer first = s_firstOp.get(name);
+        if (first == null) {
+            error((s_unsupported.contains(name) ? "unsupported instruction `" : "unrecognized opcode `") + text + "'");
+            return;
+        }
+        if (hasRelocationOperator(args)) {
+            error("relocation operators need a linker, they are not supported in `" + text + "'");
+            return;
+        }
+        for (int i = first; i < s_ops.size() && s_ops.get(i).name.equals(name); ++i) {
+            Op op = s_ops.get(i);
+            if (!matchOp(op, args))
+                continue;
+            if (op.check == CHECK_MACRO_LI)
+                loadConst(m_liValue);
+            else if (m_hasTarget) {
+                if (m_targetSymbol == null) {
+                    if (m_errorLine != m_line) // not after a backward reference to an unknown label
+                        error("branch target is not a label in `" + text + "'");
+                    return;
+                }
+                m_stmts.add(new Stmt(m_line, m_insn, m_targetSymbol, m_targetValue, op.args.endsWith("a"), text));
+                if (m_targetSymbol.isLocal() && !m_targetSymbol.branchedTo)
+                    m_branchLocals.add(m_targetSymbol);
+                m_targetSymbol.branchedTo = true;
+            }
+            else
+                addInsn(m_insn, op.isCompressed() ? 2 : 4);
+            return;
+        }
+        error("illegal operands `" + text + "'");
+    }
+
+    /** %hi(sym), %lo(sym) and the like */
+    private static boolean hasRelocationOperator(String args) {
+        for (int i = args.indexOf('%'); i >= 0; i = args.indexOf('%', i + 1)) {
+            if (i + 1 < args.length() && isNameStart(args.charAt(i + 1)))
+                return true;
+        }
+        return false;
+    }
+
+    /** li of a constant that doesn't fit an addi, the same lui and addi as load_const() of as */
+    private void loadConst(long value) {
+        int rd = (m_insn >> 7) & 0x1f;
+        long lower = ((int) value << 20) >> 20;
+        long upper = value - lower;
+        int hiReg = 0;
+        if (upper != 0) {
+            addInsn(MATCH_LUI | (rd << 7) | encodeUImm(constHighPart(value)), 4);
+            hiReg = rd;
+        }
+        if (lower != 0 || hiReg == 0)
+            addInsn(MATCH_ADDI | (rd << 7) | (hiReg << 15) | encodeIImm(lower), 4);
+    }
+
+    private static long constHighPart(long value) {
+        return (value + 0x800) & ~0xfffL;
+    }
+
+    /**
+     * Tries one form of an instruction, the operands are parsed as riscv_ip() of as does.
+     * @return true if the operands fit, the instruction is then in m_insn
+     */
+    private boolean matchOp(Op op, String args) {
+        if (op.isCompressed() && !m_rvc)
+            return false;
+        start(args);
+        m_insn = op.match;
+        m_hasTarget = false;
+        String a = op.args;
+        for (int i = 0; ; ++i) {
+            skipSpaces();
+            if (i == a.length())
+                return checkOp(op) && m_pos == m_s.length();
+            char c = a.charAt(i);
+            switch (c) {
+                case ',':
+                case '(':
+                case ')':
+                    if (!accept(c))
+                        return false;
+                    break;
+                case 'd':
+                case 's':
+                case 't': {
+                    int reg = parseRegister();
+                    if (reg < 0)
+                        return false;
+                    if (m_pos < m_s.length() && m_s.charAt(m_pos) == ' ')
+                        ++m_pos;
+                    m_insn |= reg << (c == 'd' ? 7 : c == 's' ? 15 : 20);
+                    break;
+                }
+                case 'o':
+                case 'q':
+                    if (implicitZeroOffset())
+                        break;
+                    // fall through
+                case 'j':
+                    if (!parseSmallConstant())
+                        return false;
+                    if (m_value < -2048 || m_value > 2047)
+                        return false;
+                    m_insn |= (c == 'q') ? encodeSImm(m_value) : encodeIImm(m_value);
+                    break;
+                case 'u':
+                    if (!parseConstant())
+                        return false;
+                    if (m_value < 0 || m_value > 0xfffff)
+                        error("lui expression not in range 0..1048575");
+                    m_insn |= encodeUImm(m_value << 12);
+                    break;
+                case '>':
+                    if (!parseConstant()) {
+                        error("Instruction " + op.name + " requires absolute expression");
+                        m_value = 0;
+                    }
+                    if (m_value < 0 || m_value >= 32)
+                        error("Improper shift amount (" + (m_value & 0xffffffffL) + ")");
+                    m_insn |= ((int) m_value & 0x3f) << 20;
+                    break;
+                case 'z':
+                    if (!parseConstant() || m_value != 0)
+                        return false;
+                    break;
+                case 'p':
+                case 'a':
+                    if (!parseTarget())
+                        return false;
+                    break;
+                case 'I':
+                    if (!parseConstant())
+                        return false;
+                    m_liValue = m_value;
+                    break;
+                case 'C':
+                    if (!matchCompressedOperand(a.charAt(++i)))
+                        return false;
+                    break;
+                default:
+                    throw new IllegalStateException("bad operand " + c);
+            }
+        }
+    }
+
+    private boolean matchCompressedOperand(char c) {
+        int reg;
+        switch (c) {
+            case 's':
+                reg = parseRegister();
+                if (reg < 8 || reg > 15)
+                    return false;
+                m_insn |= (reg - 8) << 7;
+                return true;
+            case 'w':
+                return parseRegister() == ((m_insn >> 7) & 7) + 8;
+            case 't':
+                reg = parseRegister();
+                if (reg < 8 || reg > 15)
+                    return false;
+                m_insn |= (reg - 8) << 2;
+                return true;
+            case 'U':
+                reg = parseRegister();
+                return reg >= 0 && reg == ((m_insn >> 7) & 0x1f);
+            case 'V':
+                reg = parseRegister();
+                if (reg < 0)
+                    return false;
+                m_insn |= reg << 2;
+                return true;
+            case 'c':
+                return parseRegister() == X_SP;
+            case '>':
+                if (!parseSmallConstant() || m_value <= 0 || m_value >= 64)
+                    return false;
+                m_insn |= encodeRvcImm(m_value);
+                return true;
+            case 'j':
+                if (!parseSmallConstant() || m_value == 0 || m_value < -32 || m_value > 31)
+                    return false;
+                m_insn |= encodeRvcImm(m_value);
+                return true;
+            case 'o':
+                if (!parseSmallConstant() || m_value < -32 || m_value > 31)
+                    return false;
+                m_insn |= encodeRvcImm(m_value);
+                return true;
+            case 'k':
+                if (implicitZeroOffset())
+                    return true;
+                if (!parseSmallConstant() || m_value < 0 || m_value > 124 || (m_value & 3) != 0)
+                    return false;
+                m_insn |= (int) (((m_value >> 2) & 1) << 6 | ((m_value >> 3) & 7) << 10 | ((m_value >> 6) & 1) << 5);
+                return true;
+            case 'm':
+                if (implicitZeroOffset())
+                    return true;
+                if (!parseSmallConstant() || m_value < 0 || m_value > 252 || (m_value & 3) != 0)
+                    return false;
+                m_insn |= (int) (((m_value >> 2) & 7) << 4 | ((m_value >> 5) & 1) << 12 | ((m_value >> 6) & 3) << 2);
+                return true;
+            case 'M':
+                if (implicitZeroOffset())
+                    return true;
+                if (!parseSmallConstant() || m_value < 0 || m_value > 252 || (m_value & 3) != 0)
+                    return false;
+                m_insn |= (int) (((m_value >> 2) & 0xf) << 9 | ((m_value >> 6) & 3) << 7);
+                return true;
+            case 'K':
+                if (!parseSmallConstant() || m_value <= 0 || m_value > 1020 || (m_value & 3) != 0)
+                    return false;
+                m_insn |= (int) (((m_value >> 2) & 1) << 6 | ((m_value >> 3) & 1) << 5 | ((m_value >> 4) & 3) << 11
+                        | ((m_value >> 6) & 0xf) << 7);
+                return true;
+            case 'L':
+                if (!parseSmallConstant() || m_value == 0 || m_value < -512 || m_value > 496 || (m_value & 0xf) != 0)
+                    return false;
+                m_insn |= (int) (((m_value >> 4) & 1) << 6 | ((m_value >> 5) & 1) << 2 | ((m_value >> 6) & 1) << 5
+                        | ((m_value >> 7) & 3) << 3 | ((m_value >> 9) & 1) << 12);
+                return true;
+            case 'u':
+                return parseSmallConstant() && rvcLui(m_value);
+            case 'v':
+                if (!parseSmallConstant() || (m_value & 0xfff) != 0 || (int) m_value != m_value)
+                    return false;
+                return rvcLui((m_value & 0xffffffffL) >> 12);
+            case 'p':
+            case 'a':
+                return parseTarget();
+            default:
+                throw new IllegalStateException("bad compressed operand " + c);
+        }
+    }
+
+    private boolean rvcLui(long value) {
+        if (value <= 0 || value >= 0x100000 || (value >= 32 && value < 0x100000 - 32))
+            return false;
+        m_insn |= encodeRvcImm(value);
+        return true;
+    }
+
+    /** the conditions of the match functions of riscv-opc.c */
+    private boolean checkOp(Op op) {
+        int rd = (m_insn >> 7) & 0x1f;
+        switch (op.check) {
+            case CHECK_RD_NONZERO:
+                return rd != 0;
+            case CHECK_C_ADD:
+                return rd != 0 && ((m_insn >> 2) & 0x1f) != 0;
+            case CHECK_C_ADD_WITH_HINT:
+                return ((m_insn >> 2) & 0x1f) != 0;
+            case CHECK_C_NOP:
+                return rd == 0;
+            case CHECK_C_ADDI16SP:
+                return rd == X_SP;
+            case CHECK_C_LUI:
+                return rd != 0 && rd != X_SP;
+            case CHECK_C_LUI_WITH_HINT:
+                return rd != X_SP;
+            case CHECK_SLLI_AS_C_SLLI:
+                return rd != 0 && rvcImm(m_insn) != 0;
+            case CHECK_C_SHIFT:
+            case CHECK_C_ADDI4SPN: // the immediates were checked when parsed
+            default:
+                return true;
+        }
+    }
+
+    /** "lw a0, (a1)" is "lw a0, 0(a1)" */
+    private boolean implicitZeroOffset() {
+        return m_pos < m_s.length() && m_s.charAt(m_pos) == '(' && m_s.indexOf('(', m_pos + 1) < 0;
+    }
+
+    private boolean parseTarget() {
+        if (!parseExpression())
+            return false;
+        m_hasTarget = true;
+        m_targetValue = m_value;
+        m_targetSymbol = m_symbol;
+        return true;
+    }
+
+    // ---------------------------------------------------------------- relaxation and output
+
+    /**
+     * Finds the length of every branch, like relax_segment() of as: the branches are passed in order again and
+     * again until no length changes, a label after a branch has the address of the previous pass.
+     */
+    private void relax() {
+        layout();
+        for (int pass = 0; pass < 100; ++pass) {
+            boolean changed = false;
+            int prevEnd = endAddress();
+            int address = 0;
+            for (int i = 0; i < m_stmts.size(); ++i) {
+                Stmt st = m_stmts.get(i);
+                st.address = address;
+                if (st.data == null) {
+                    int length = branchLength(st, i, prevEnd);
+                    if (length != st.length) {
+                        st.length = length;
+                        changed = true;
+                    }
+                }
+                address += st.length;
+            }
+            if (!changed)
+                break;
+        }
+        layout();
+    }
+
+    private void layout() {
+        int address = 0;
+        for (Stmt st : m_stmts) {
+            st.address = address;
+            address += st.length;
+        }
+    }
+
+    private int endAddress() {
+        if (m_stmts.isEmpty())
+            return 0;
+        Stmt last = m_stmts.get(m_stmts.size() - 1);
+        return last.address + last.length;
+    }
+
+    private int labelAddress(Symbol sym) {
+        return sym.stmt < m_stmts.size() ? m_stmts.get(sym.stmt).address : endAddress();
+    }
+
+    /** relaxed_branch_length() of as */
+    private int branchLength(Stmt st, int index, int prevEnd) {
+        int target;
+        if (st.target.stmt <= index)
+            target = m_stmts.get(st.target.stmt).address;
+        else if (st.target.stmt < m_stmts.size())
+            target = m_stmts.get(st.target.stmt).address; // not passed yet, still the address of the previous pass
+        else
+            target = prevEnd;
+        long val = target + st.addend - st.address;
+        int rvcReach = st.jump ? RVC_JUMP_REACH : RVC_BRANCH_REACH;
+        if (st.compressed && val >= -rvcReach / 2 && val < rvcReach / 2)
+            return 2;
+        if (val >= -BRANCH_REACH / 2 && val < BRANCH_REACH / 2)
+            return 4;
+        return (!st.jump && st.compressed) ? 6 : (st.jump ? 4 : 8);
+    }
+
+    /** md_convert_frag_branch() of as, with the offsets that md_apply_fix() fills in */
+    private void emit(Stmt st, byte[] bin) {
+        if (st.data != null) {
+            System.arraycopy(st.data, 0, bin, st.address, st.data.length);
+            return;
+        }
+        long offset = labelAddress(st.target) + st.addend - st.address;
+        int insn = st.insn;
+        if (st.compressed && (st.length == 4 || st.length == 8)) {
+            // the compressed branch becomes a full one
+            int rs1 = 8 + ((insn >> 7) & 7);
+            if ((insn & MASK_C_J) == MATCH_C_J)
+                insn = MATCH_JAL;
+            else if ((insn & MASK_C_J) == MATCH_C_JAL)
+                insn = MATCH_JAL | (X_RA << 7);
+            else if ((insn & MASK_C_J) == MATCH_C_BEQZ)
+                insn = MATCH_BEQ | (rs1 << 15);
+            else
+                insn = MATCH_BNE | (rs1 << 15);
+        }
+        switch (st.length) {
+            case 2:
+                insn |= st.jump ? encodeRvcJImm(offset) : encodeRvcBImm(offset);
+                putLittleEndian(bin, st.address, insn, 2);
+                break;
+            case 4:
+                insn |= st.jump ? encodeJImm(offset) : encodeBImm(offset);
+                putLittleEndian(bin, st.address, insn, 4);
+                break;
+            case 6: // branch over a jump with the opposite condition
+                insn = (insn ^ (MATCH_C_BEQZ ^ MATCH_C_BNEZ)) | encodeRvcBImm(6);
+                putLittleEndian(bin, st.address, insn, 2);
+                putLittleEndian(bin, st.address + 2, MATCH_JAL | encodeJImm(offset - 2), 4);
+                break;
+            default:
+                insn = (insn ^ (MATCH_BEQ ^ MATCH_BNE)) | encodeBImm(8);
+                putLittleEndian(bin, st.address, insn, 4);
+                putLittleEndian(bin, st.address + 4, MATCH_JAL | encodeJImm(offset - 4), 4);
+        }
+    }
+
+    /** The listing of "as -al", every source line with the bytes it made */
+    private String listing(ArrayList<String> lines, int lineCount, int[] lineStmts, byte[] bin) {
+        StringBuilder sb = new StringBuilder();
+        for (int line = 1; line <= lineCount; ++line) {
+            int first = lineStmts[line];
+            int end = lineStmts[line + 1];
+            int start = -1;
+            int size = 0;
+            for (int i = first; i < end; ++i) {
+                Stmt st = m_stmts.get(i);
+                if (start < 0)
+                    start = st.address;
+                size += st.length;
+            }
+            String text = lines.get(line - 1);
+            if (size == 0) {
+                padLeft(sb, Integer.toString(line), 4);
+                sb.append("              \t").append(text).append('\n');
+                continue;
+            }
+            padLeft(sb, Integer.toString(line), 4);
+            sb.append(' ');
+            appendHex(sb, start, 4);
+            sb.append(' ');
+            int n = Math.min(size, 4);
+            appendBytes(sb, bin, start, n);
+            for (int i = n * 2; i < 9; ++i) // a space after every 4 bytes and padding
+                sb.append(' ');
+            sb.append('\t').append(text).append('\n');
+            for (int cont = 0; cont < 4 && n < size; ++cont) {
+                int more = Math.min(size - n, 4);
+                padLeft(sb, Integer.toString(line), 4);
+                sb.append("      ");
+                appendBytes(sb, bin, start + n, more);
+                if (more == 4)
+                    sb.append(' ');
+                sb.append('\n');
+                n += more;
+            }
+        }
+
+        int listed = 0;
+        for (Symbol sym : m_symbolList) {
+            if (sym.kind != SYM_UNDEFINED && !sym.isLocal())
+                listSymbol(sb, sym, listed++);
+        }
+        for (Symbol sym : m_branchLocals)
+            listSymbol(sb, sym, listed++);
+        if (listed == 0)
+            sb.append("NO DEFINED SYMBOLS\n");
+        sb.append("\nNO UNDEFINED SYMBOLS\n");
+        return sb.toString();
+    }
+
+    private void listSymbol(StringBuilder sb, Symbol sym, int index) {
+        if (index == 0)
+            sb.append("DEFINED SYMBOLS\n");
+        padLeft(sb, m_name, 20);
+        sb.append(':');
+        String num = Integer.toString(sym.line);
+        sb.append(num);
+        for (int i = num.length(); i < 5; ++i)
+            sb.append(' ');
+        if (sym.kind == SYM_LABEL) {
+            sb.append("  .text:");
+            appendHex(sb, labelAddress(sym), 8);
+        }
+        else {
+            sb.append("  *ABS*:");
+            appendHex(sb, sym.value, 8);
+        }
+        sb.append(' ').append(sym.listedName()).append('\n');
+    }
+
+    private static void appendBytes(StringBuilder sb, byte[] bin, int start, int count) {
+        for (int i = 0; i < count; ++i) {
+            int b = bin[start + i] & 0xff;
+            sb.append(HEX.charAt(b >> 4)).append(HEX.charAt(b & 0xf));
+        }
+    }
+
+    private static final String HEX = "0123456789ABCDEF";
+    private static final String LOWER_HEX = "0123456789abcdef";
+
+    private static void appendHex(StringBuilder sb, long value, int digits) {
+        for (int i = digits - 1; i >= 0; --i)
+            sb.append(LOWER_HEX.charAt((int) ((value >>> (i * 4)) & 0xf)));
+    }
+
+    private static void padLeft(StringBuilder sb, String s, int width) {
+        for (int i = s.length(); i < width; ++i)
+            sb.append(' ');
+        sb.append(s);
+    }
+
+    // ---------------------------------------------------------------- encoding
+
+    private static void putLittleEndian(byte[] buf, int offset, int value, int size) {
+        for (int i = 0; i < size; ++i)
+            buf[offset + i] = (byte) (value >> (i * 8));
+    }
+
+    private static int bits(long x, int start, int count) {
+        return (int) (x >> start) & ((1 << count) - 1);
+    }
+
+    static int encodeIImm(long x) {
+        return bits(x, 0, 12) << 20;
+    }
+
+    static int encodeSImm(long x) {
+        return (bits(x, 0, 5) << 7) | (bits(x, 5, 7) << 25);
+    }
+
+    static int encodeBImm(long x) {
+        return (bits(x, 1, 4) << 8) | (bits(x, 5, 6) << 25) | (bits(x, 11, 1) << 7) | (bits(x, 12, 1) << 31);
+    }
+
+    static int encodeUImm(long x) {
+        return bits(x, 12, 20) << 12;
+    }
+
+    static int encodeJImm(long x) {
+        return (bits(x, 1, 10) << 21) | (bits(x, 11, 1) << 20) | (bits(x, 12, 8) << 12) | (bits(x, 20, 1) << 31);
+    }
+
+    static int encodeRvcImm(long x) {
+        return (bits(x, 0, 5) << 2) | (bits(x, 5, 1) << 12);
+    }
+
+    private static int rvcImm(int insn) {
+        return ((insn >> 2) & 0x1f) | (((insn >> 12) & 1) << 5);
+    }
+
+    static int encodeRvcBImm(long x) {
+        return (bits(x, 1, 2) << 3) | (bits(x, 3, 2) << 10) | (bits(x, 5, 1) << 2) | (bits(x, 6, 2) << 5)
+                | (bits(x, 8, 1) << 12);
+    }
+
+    static int encodeRvcJImm(long x) {
+        return (bits(x, 1, 3) << 3) | (bits(x, 4, 1) << 11) | (bits(x, 5, 1) << 2) | (bits(x, 6, 1) << 7)
+                | (bits(x, 7, 1) << 6) | (bits(x, 8, 2) << 9) | (bits(x, 10, 1) << 8) | (bits(x, 11, 1) << 12);
+    }
+
+    // ---------------------------------------------------------------- expressions
+
+    private void start(String s) {
+        m_s = s;
+        m_pos = 0;
+    }
+
+    private void skipSpaces() {
+        m_pos = skipSpaces(m_s, m_pos);
+    }
+
+    private boolean accept(char c) {
+        skipSpaces();
+        if (m_pos < m_s.length() && m_s.charAt(m_pos) == c) {
+            ++m_pos;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean atEnd() {
+        skipSpaces();
+        return m_pos == m_s.length();
+    }
+
+    /** after a value, anything but the next one */
+    private boolean atMore() {
+        return !atEnd() && m_s.charAt(m_pos) != ',';
+    }
+
+    /** @return the register at the position, -1 if there isn't one */
+    private int parseRegister() {
+        int end = nameEnd(m_s, m_pos);
+        if (end == m_pos)
+            return -1;
+        Integer reg = s_registers.get(m_s.substring(m_pos, end));
+        if (reg == null)
+            return -1;
+        m_pos = end;
+        return reg;
+    }
+
+    /** an immediate as my_getSmallExpression() takes it, registers are not constants */
+    private boolean parseSmallConstant() {
+        return parseConstant();
+    }
+
+    private boolean parseConstant() {
+        return parseExpression() && m_symbol == null;
+    }
+
+    private boolean parseConstant(String s) {
+        start(s);
+        return parseConstant() && atEnd();
+    }
+
+    /**
+     * Parses an expression with the precedence of as: the operators * / % << >> bind before | ^ & which bind
+     * before + -. The result is in m_value, relative to m_symbol if it is a label plus or minus a constant.
+     * Values are signed 32 bit numbers like in as for a 32 bit target, so 0xffffffff is -1.
+     * @return false if there is no expression at the position or it is more than a label and a constant
+     */
+    private boolean parseExpression() {
+        int save = m_pos;
+        if (parseAdd())
+            return true;
+        m_pos = save;
+        return false;
+    }
+
+    private boolean parseAdd() {
+        if (!parseBitwise())
+            return false;
+        while (true) {
+            skipSpaces();
+            if (m_pos >= m_s.length())
+                return true;
+            char c = m_s.charAt(m_pos);
+            if (c != '+' && c != '-')
+                return true;
+            ++m_pos;
+            long left = m_value;
+            Symbol leftSym = m_symbol;
+            if (!parseBitwise())
+                return false;
+            if (c == '+') {
+                if (leftSym != null && m_symbol != null)
+                    return false;
+                m_value = (int) (left + m_value);
+                m_symbol = (leftSym != null) ? leftSym : m_symbol;
+            }
+            else {
+                if (m_symbol != null && m_symbol != leftSym)
+                    return false;
+                m_value = (int) (left - m_value);
+                m_symbol = (m_symbol != null) ? null : leftSym; // label - label is a constant
+            }
+        }
+    }
+
+    private boolean parseBitwise() {
+        if (!parseMul())
+            return false;
+        while (true) {
+            skipSpaces();
+            if (m_pos >= m_s.length())
+                return true;
+            char c = m_s.charAt(m_pos);
+            if ((c != '|' && c != '^' && c != '&') || (m_pos + 1 < m_s.length() && m_s.charAt(m_pos + 1) == c))
+                return true;
+            ++m_pos;
+            long left = m_value;
+            if (m_symbol != null || !parseMul() || m_symbol != null)
+                return false;
+            m_value = (c == '|') ? (left | m_value) : (c == '^') ? (left ^ m_value) : (left & m_value);
+        }
+    }
+
+    private boolean parseMul() {
+        if (!parseUnary())
+            return false;
+        while (true) {
+            skipSpaces();
+            if (m_pos >= m_s.length())
+                return true;
+            char c = m_s.charAt(m_pos);
+            boolean shift = (c == '<' || c == '>') && m_pos + 1 < m_s.length() && m_s.charAt(m_pos + 1) == c;
+            if (c != '*' && c != '/' && c != '%' && !shift)
+                return true;
+            m_pos += shift ? 2 : 1;
+            long left = m_value;
+            if (m_symbol != null || !parseUnary() || m_symbol != null)
+                return false;
+            switch (c) {
+                case '*': m_value = (int) (left * m_value); break;
+                case '/': if (m_value == 0) return false; m_value = (int) (left / m_value); break;
+                case '%': if (m_value == 0) return false; m_value = (int) (left % m_value); break;
+                case '<': m_value = (int) left << m_value; break;
+                default: m_value = (int) left >> m_value;
+            }
+        }
+    }
+
+    private boolean parseUnary() {
+        skipSpaces();
+        if (m_pos >= m_s.length())
+            return false;
+        char c = m_s.charAt(m_pos);
+        if (c == '-' || c == '~' || c == '!' || c == '+') {
+            ++m_pos;
+            if (!parseUnary() || (c != '+' && m_symbol != null))
+                return false;
+            m_value = (c == '-') ? (int) -m_value : (c == '~') ? ~m_value : (c == '!') ? (m_value == 0 ? 1 : 0) : m_value;
+            return true;
+        }
+        return parsePrimary();
+    }
+
+    private boolean parsePrimary() {
+        char c = m_s.charAt(m_pos);
+        m_symbol = null;
+        if (c == '(') {
+            ++m_pos;
+            return parseAdd() && accept(')');
+        }
+        if (c == '\'') {
+            if (m_pos + 1 >= m_s.length())
+                return false;
+            m_pos += 1;
+            char ch = m_s.charAt(m_pos++);
+            m_value = (ch == '\\' && m_pos < m_s.length()) ? escape() : ch;
+            if (m_pos < m_s.length() && m_s.charAt(m_pos) == '\'')
+                ++m_pos;
+            return true;
+        }
+        if (isDigit(c))
+            return parseNumber();
+        if (c == '.' && nameEnd(m_s, m_pos) == m_pos + 1) { // the current address
+            ++m_pos;
+            Symbol here = new Symbol(".");
+            here.kind = SYM_LABEL;
+            here.stmt = m_stmts.size();
+            m_symbol = here;
+            m_value = 0;
+            return true;
+        }
+        int end = nameEnd(m_s, m_pos);
+        if (end == m_pos)
+            return false;
+        String name = m_s.substring(m_pos, end);
+        if (s_registers.containsKey(name))
+            return false;
+        m_pos = end;
+        Symbol sym = symbol(name);
+        if (sym.kind == SYM_EQU) {
+            m_value = sym.value;
+        }
+        else {
+            m_value = 0;
+            m_symbol = sym;
+        }
+        return true;
+    }
+
+    private boolean parseNumber() {
+        int start = m_pos;
+        int end = start;
+        while (end < m_s.length() && isDigit(m_s.charAt(end)))
+            ++end;
+        // 1b and 1f are the numeric local labels before and after
+        if (end < m_s.length() && (m_s.charAt(end) == 'b' || m_s.charAt(end) == 'f')
+                && (end + 1 == m_s.length() || !isNamePart(m_s.charAt(end + 1)))) {
+            String num = m_s.substring(start, end);
+            Integer count = m_localLabelCounts.get(num);
+            int instance = (count == null) ? 0 : count;
+            if (m_s.charAt(end) == 'f')
+                ++instance;
+            m_pos = end + 1;
+            if (instance == 0) {
+                error("backward ref to unknown label \"" + num + ":\"");
+                m_symbol = null; // as goes on with a 0
+                m_value = 0;
+                return true;
+            }
+            m_symbol = symbol(localLabelName(num, instance));
+            m_value = 0;
+            return true;
+        }
+
+        int radix = 10;
+        int pos = start;
+        if (m_s.charAt(pos) == '0' && pos + 1 < m_s.length()) {
+            char p = m_s.charAt(pos + 1);
+            if (p == 'x' || p == 'X') {
+                radix = 16;
+                pos += 2;
+            }
+            else if ((p == 'b' || p == 'B') && pos + 2 < m_s.length() && (m_s.charAt(pos + 2) == '0' || m_s.charAt(pos + 2) == '1')) {
+                radix = 2;
+                pos += 2;
+            }
+            else if (isDigit(p)) {
+                radix = 8;
+                pos += 1;
+            }
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < m_s.length()) {
+            int d = hexValue(m_s.charAt(pos));
+            if (d < 0 || d >= radix)
+                break;
+            value = value * radix + d;
+            if (value > 0xffffffffL)
+                return false; // as only has 32 bit numbers, wider ones are bignums it can't use
+            ++pos;
+            ++digits;
+        }
+        if (radix != 10 && radix != 8 && digits == 0)
+            return false;
+        if (pos < m_s.length() && isNamePart(m_s.charAt(pos)))
+            return false;
+        m_pos = pos;
+        m_value = (int) value;
+        return true;
+    }
+
+    // ---------------------------------------------------------------- characters
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '.' || c == '$';
+    }
+
+    private static boolean isNamePart(char c) {
+        return isNameStart(c) || isDigit(c);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        return -1;
+    }
+
+    /** @return the end of the name that starts at the position, the position if there is none */
+    private static int nameEnd(String s, int pos) {
+        if (pos >= s.length() || !isNameStart(s.charAt(pos)))
+            return pos;
+        int end = pos + 1;
+        while (end < s.length() && isNamePart(s.charAt(end)))
+            ++end;
+        return end;
+    }
+
+    private static int skipSpaces(String s, int pos) {
+        while (pos < s.length() && isSpace(s.charAt(pos)))
+            ++pos;
+        return pos;
+    }
+
+    /** the statement as the messages of as show it */
+    private static String collapseSpaces(String s) {
+        StringBuilder sb = new StringBuilder();
+        boolean space = false;
+        for (int i = 0; i < s.length(); ++i) {
+            char c = s.charAt(i);
+            if (isSpace(c)) {
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0 && c != ',' && sb.charAt(sb.length() - 1) != ',')
+                sb.append(' ');
+            space = false;
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package il.co.codeguru.corewars8086.utils.disassembler;
+
+import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars8086.cpu.riscv.DecodeCache;
+import il.co.codeguru.corewars8086.cpu.riscv.Instruction;
+
+import java.util.Arrays;
+
+/**
+ * The opcodes of a range of memory as {@link DisassemblerRiscV#disassembleRange} found them, one entry per
+ * opcode in flat arrays. The operands are in the raw bits, and the text of an opcode is made only when asked.
+ * A range can be filled again and again, the arrays only grow.
+ */
+public class DisassembledRange {
+    /** id of a byte that is not the start of a valid opcode, see {@link Instruction.InstructionInfo#getId()} */
+    public static final int INVALID = -1;
+
+    int count = 0;
+    int[] offsets = new int[64];
+    byte[] lengths = new byte[64];
+    int[] ids = new int[64];
+    int[] raws = new int[64]; // the 16 bits of a compressed opcode, the 32 bits of any other, the byte of an invalid one
+    DecodeCache decodeCache;
+
+    /** @return how many opcodes were found */
+    public int getCount() {
+        return count;
+    }
+
+    public int getOffset(int i) {
+        return offsets[i];
+    }
+
+    /** @return the size of an opcode in bytes, 1 for an invalid byte */
+    public int getLength(int i) {
+        return lengths[i];
+    }
+
+    /** @return the id of the instruction of an opcode or INVALID */
+    public int getId(int i) {
+        return ids[i];
+    }
+
+    public int getRaw(int i) {
+        return raws[i];
+    }
+
+    /** @return the text of an opcode like the disassembler gives it, null for an invalid byte */
+    public String getText(int i) {
+        if (ids[i] == INVALID)
+            return null;
+        Instruction instruction;
+        if (lengths[i] == 2) {
+            instruction = decodeCache.decodeCompressed((short) raws[i]);
+        }
+        else {
+            try {
+                instruction = decodeCache.decode(raws[i]);
+            } catch (InvalidOpcodeException e) {
+                return null; // can't happen, it decoded when the range was filled
+            }
+        }
+        return instruction.getFormat().format(instruction.getInfo());
+    }
+
+    void add(int offset, int length, int id, int raw) {
+        if (count == offsets.length) {
+            int size = count * 2;
+            offsets = Arrays.copyOf(offsets, size);
+            lengths = Arrays.copyOf(lengths, size);
+            ids = Arrays.copyOf(ids, size);
+            raws = Arrays.copyOf(raws, size);
+        }
+        offsets[count] = offset;
+        lengths[count] = (byte) length;
+        ids[count] = id;
+        raws[count] = raw;
+        ++count;
+    }
+}
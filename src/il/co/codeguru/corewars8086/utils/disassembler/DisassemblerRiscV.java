@@ -1,18 +1,13 @@
 package il.co.codeguru.corewars8086.utils.disassembler;
 
 import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars8086.cpu.riscv.DecodeCache;
 import il.co.codeguru.corewars8086.cpu.riscv.Instruction;
-import il.co.codeguru.corewars8086.cpu.riscv.InstructionDecoder;
 import il.co.codeguru.corewars8086.cpu.riscv.Memory;
-import il.co.codeguru.corewars8086.cpu.riscv.instruction_formats.InstructionFormatBase;
-import il.co.codeguru.corewars8086.cpu.riscv.rv32c.InstructionDecoderRv32c;
-import il.co.codeguru.corewars8086.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
-import il.co.codeguru.corewars8086.utils.Logger;
 
 public class DisassemblerRiscV implements IDisassembler {
 
-    private InstructionDecoder decoder;
-    private InstructionDecoderRv32c cDecoder;
+    private DecodeCache decodeCache;
 
     private Memory memory;
     private int index;
@@ -20,12 +15,15 @@ public class DisassemblerRiscV implements IDisassembler {
     private int lastOpcdodeSize = 0;
 
     public DisassemblerRiscV(byte[] memory, int index, int endIndex) {
+        this(memory, index, endIndex, new DecodeCache());
+    }
+
+    /** @param decodeCache  of the cpu that runs the code in this memory if there is one, see {@link il.co.codeguru.corewars8086.cpu.riscv.CpuRiscV#getDecodeCache()} */
+    public DisassemblerRiscV(byte[] memory, int index, int endIndex, DecodeCache decodeCache) {
         this.memory = new Memory(memory);
         this.index = index;
         this.endIndex = endIndex;
-
-        this.decoder = new InstructionDecoder();
-        this.cDecoder= new InstructionDecoderRv32c();
+        this.decodeCache = decodeCache;
     }
 
     @Override
@@ -34,12 +32,6 @@ public class DisassemblerRiscV implements IDisassembler {
         this.endIndex = endOffset;
     }
 
-    private Instruction getCInstruction() {
-        short rawInstruction = memory.loadHalfWord(this.index);
-        CInstructionFormatBase instructionFormat = new CInstructionFormatBase(rawInstruction);
-        return cDecoder.decode(instructionFormat);
-    }
-
     @Override
     public int lastOpcodeSize() {
         return lastOpcdodeSize;
@@ -47,16 +39,14 @@ public class DisassemblerRiscV implements IDisassembler {
 
     @Override
     public String nextOpcode() throws DisassemblerException {
-        int rawInstruction = memory.loadWord(this.index);
-        InstructionFormatBase instructionFormat = new InstructionFormatBase(rawInstruction);
-        Instruction instruction= getCInstruction();
+        Instruction instruction = decodeCache.decodeCompressed(memory.loadHalfWord(this.index));
 
         if(instruction != null){
             lastOpcdodeSize = 2;
         }
         else {
             try {
-                instruction = decoder.decode(instructionFormat);
+                instruction = decodeCache.decode(memory.loadWord(this.index));
                 lastOpcdodeSize = 4;
             } catch (InvalidOpcodeException iv) {
                 throw new DisassemblerException();
@@ -65,4 +55,40 @@ public class DisassemblerRiscV implements IDisassembler {
         index += lastOpcdodeSize;
         return instruction.getFormat().format(instruction.getInfo());
     }
+
+    /**
+     * Disassembles all of a range at once, without making any text.
+     * A byte that doesn't start a valid opcode becomes an INVALID entry of its own and disassembly goes on from
+     * the byte after it, an opcode that would cross the end of the range is invalid too.
+     * @param out  emptied and filled with the opcodes of the range in order
+     */
+    public void disassembleRange(int start, int end, DisassembledRange out) {
+        out.count = 0;
+        out.decodeCache = decodeCache;
+        int offset = start;
+        while (offset < end) {
+            if (end - offset >= 2) {
+                short cRaw = memory.loadHalfWord(offset);
+                Instruction instruction = decodeCache.decodeCompressed(cRaw);
+                if (instruction != null) {
+                    out.add(offset, 2, instruction.getInfo().getId(), cRaw & 0xffff);
+                    offset += 2;
+                    continue;
+                }
+                if (end - offset >= 4) {
+                    int raw = memory.loadWord(offset);
+                    try {
+                        instruction = decodeCache.decode(raw);
+                        out.add(offset, 4, instruction.getInfo().getId(), raw);
+                        offset += 4;
+                        continue;
+                    } catch (InvalidOpcodeException e) {
+                        // an invalid byte, below
+                    }
+                }
+            }
+            out.add(offset, 1, DisassembledRange.INVALID, memory.loadByte(offset) & 0xff);
+            ++offset;
+        }
+    }
 }
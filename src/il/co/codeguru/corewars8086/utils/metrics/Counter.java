@@ -0,0 +1,22 @@
+package il.co.codeguru.corewars8086.utils.metrics;
+
+/**
+ * A count that only one thread adds to, one stripe of an engine wide count, see {@link MetricsRegistry}.
+ * The value is volatile so that the reporter thread sees whole, recent values without locking. Adding isn't
+ * atomic, which is fine with the single writer, and the writer pays a volatile write and no more.
+ */
+public class Counter {
+    private volatile long m_value = 0;
+
+    public void inc() {
+        ++m_value;
+    }
+
+    public void add(long n) {
+        m_value += n;
+    }
+
+    public long get() {
+        return m_value;
+    }
+}
@@ -0,0 +1,106 @@
+package il.co.codeguru.corewars8086.utils.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The metrics of the wars one thread runs, a stripe of the engine wide metrics in {@link MetricsRegistry}.
+ *
+ * A competition bumps these directly when it is given a stripe with
+ * {@link il.co.codeguru.corewars8086.war.Competition#setMetrics(EngineMetrics)}, and doesn't pay anything
+ * besides a null check otherwise. Besides the fixed metrics any part of the engine can add its own named
+ * counters, like the hits and misses of a cache.
+ *
+ * The war times are taken from the {@link Clock} of the stripe. The default one counts milliseconds, since
+ * System.nanoTime() doesn't exist in the browser; the JVM runners set a finer one with {@link #setClock(Clock)}.
+ */
+public class EngineMetrics {
+    public static final String WARS = "wars";
+    public static final String ROUNDS = "rounds";
+    public static final String TURNS = "turns";
+    public static final String INSTRUCTIONS = "instructions";
+    public static final String DEATHS_PREFIX = "deaths.";
+    public static final String ROUNDS_PER_WAR = "roundsPerWar";
+    public static final String WAR_MICROS = "warMicros";
+    public static final String SETUP_MICROS = "setupMicros";
+    public static final String DECODE_HITS = "decodeCache.hits";
+    public static final String DECODE_MISSES = "decodeCache.misses";
+    public static final String DECODE_EVICTIONS = "decodeCache.evictions";
+    /** not a counter, the hits out of all the decodes, as the reporters show it */
+    public static final String DECODE_HIT_RATE = "decodeCache.hitRate";
+
+    public final Counter wars = new Counter();
+    public final Counter rounds = new Counter();
+    /** turns of living warriors, each runs one or two instructions */
+    public final Counter turns = new Counter();
+    public final Counter instructions = new Counter();
+    /** decodes of the warriors' {@link il.co.codeguru.corewars8086.cpu.riscv.DecodeCache}, added when a war ends */
+    public final Counter decodeHits = new Counter();
+    public final Counter decodeMisses = new Counter();
+    public final Counter decodeEvictions = new Counter();
+    public final Histogram roundsPerWar = new Histogram();
+    /** wall time of a war from the start of loading its warriors to its end */
+    public final Histogram warMicros = new Histogram();
+    /** time it takes to create a war and load its warriors */
+    public final Histogram setupMicros = new Histogram();
+
+    /** Source of the war times */
+    public interface Clock {
+        long nowMicros();
+    }
+
+    public static final Clock MILLIS_CLOCK = () -> System.currentTimeMillis() * 1000;
+
+    private final Map<String, Counter> m_counters = new LinkedHashMap<>();
+    private Clock m_clock = MILLIS_CLOCK;
+
+    public EngineMetrics() {
+        m_counters.put(WARS, wars);
+        m_counters.put(ROUNDS, rounds);
+        m_counters.put(TURNS, turns);
+        m_counters.put(INSTRUCTIONS, instructions);
+        m_counters.put(DECODE_HITS, decodeHits);
+        m_counters.put(DECODE_MISSES, decodeMisses);
+        m_counters.put(DECODE_EVICTIONS, decodeEvictions);
+    }
+
+    public void setClock(Clock clock) {
+        m_clock = clock;
+    }
+
+    /** @return the current time of the clock of this stripe, for measuring the time of wars */
+    public long nowMicros() {
+        return m_clock.nowMicros();
+    }
+
+    /** @return the counter with the given name, created on first use */
+    public Counter counter(String name) {
+        synchronized (m_counters) {
+            Counter c = m_counters.get(name);
+            if (c == null) {
+                c = new Counter();
+                m_counters.put(name, c);
+            }
+            return c;
+        }
+    }
+
+    /**
+     * Counts a death by its reason, only the part before a ':' so that details like addresses don't make a
+     * counter of their own.
+     */
+    public void death(String reason) {
+        int colon = reason.indexOf(':');
+        counter(DEATHS_PREFIX + (colon < 0 ? reason : reason.substring(0, colon))).inc();
+    }
+
+    /** @return a copy of the names and current values of all the counters */
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        synchronized (m_counters) {
+            for (Map.Entry<String, Counter> e : m_counters.entrySet())
+                values.put(e.getKey(), e.getValue().get());
+        }
+        return values;
+    }
+}
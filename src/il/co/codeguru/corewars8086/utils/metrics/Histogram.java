@@ -0,0 +1,71 @@
+package il.co.codeguru.corewars8086.utils.metrics;
+
+/**
+ * Distribution of non negative values in power of two buckets, bucket i holds the values that need i bits.
+ * Like {@link Counter}, only one thread records to a histogram. Reading from another thread isn't synchronized,
+ * the reader may see a record in some of the fields and not yet in others, which is fine for monitoring.
+ */
+public class Histogram {
+    public static final int NUM_BUCKETS = 64;
+
+    private final long[] m_buckets = new long[NUM_BUCKETS];
+    private long m_count = 0;
+    private long m_sum = 0;
+    private long m_max = 0;
+
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        ++m_buckets[64 - Long.numberOfLeadingZeros(value)];
+        ++m_count;
+        m_sum += value;
+        if (value > m_max)
+            m_max = value;
+    }
+
+    /** adds the values of another histogram to this one */
+    public void add(Histogram other) {
+        for (int i = 0; i < NUM_BUCKETS; ++i)
+            m_buckets[i] += other.m_buckets[i];
+        m_count += other.m_count;
+        m_sum += other.m_sum;
+        m_max = Math.max(m_max, other.m_max);
+    }
+
+    public long getCount() {
+        return m_count;
+    }
+
+    public long getSum() {
+        return m_sum;
+    }
+
+    public long getMax() {
+        return m_max;
+    }
+
+    public double getMean() {
+        return m_count == 0 ? 0 : (double)m_sum / m_count;
+    }
+
+    /**
+     * @param fraction  0.5 for the median, 0.99 for the 99th percentile
+     * @return an upper bound of the value at the fraction, the top of its bucket
+     */
+    public long getPercentile(double fraction) {
+        long rank = (long)Math.ceil(fraction * m_count);
+        long seen = 0;
+        for (int i = 0; i < NUM_BUCKETS; ++i) {
+            seen += m_buckets[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(m_max, i == 0 ? 0 : (1L << i) - 1);
+        }
+        return m_max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + m_count + " mean=" + (long)getMean() + " p50=" + getPercentile(0.5) +
+               " p99=" + getPercentile(0.99) + " max=" + m_max;
+    }
+}
@@ -0,0 +1,85 @@
+package il.co.codeguru.corewars8086.utils.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Engine wide metrics, kept as one {@link EngineMetrics} stripe per thread that runs wars.
+ *
+ * Every stripe is written by a single thread without any synchronization, so counting costs the same as
+ * bumping a field. Readers sum the stripes into a {@link Snapshot}, which may be a little behind the writers.
+ * This works the same in the browser, where there is a single thread, and on the JVM.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry s_global = new MetricsRegistry();
+
+    private final List<EngineMetrics> m_stripes = new ArrayList<>();
+
+    /** @return the registry of the whole process */
+    public static MetricsRegistry global() {
+        return s_global;
+    }
+
+    /** @return a new stripe for a thread that runs wars, counted in every snapshot from now on */
+    public EngineMetrics newStripe() {
+        EngineMetrics stripe = new EngineMetrics();
+        synchronized (m_stripes) {
+            m_stripes.add(stripe);
+        }
+        return stripe;
+    }
+
+    /** The metrics of all the stripes summed at some point in time */
+    public static class Snapshot {
+        /** System.currentTimeMillis() when it was taken */
+        public final long timeMillis;
+        public final Map<String, Long> counters = new LinkedHashMap<>();
+        public final Histogram roundsPerWar = new Histogram();
+        public final Histogram warMicros = new Histogram();
+        public final Histogram setupMicros = new Histogram();
+
+        Snapshot(long timeMillis) {
+            this.timeMillis = timeMillis;
+        }
+
+        public long get(String counter) {
+            Long v = counters.get(counter);
+            return v != null ? v : 0;
+        }
+
+        /** @return the part of the decodes that found their instruction in the decode cache, 0 if there were none */
+        public double getDecodeHitRate() {
+            long hits = get(EngineMetrics.DECODE_HITS);
+            long all = hits + get(EngineMetrics.DECODE_MISSES);
+            return (all > 0) ? (double) hits / all : 0;
+        }
+
+        /** @return how much a counter grew per second since an earlier snapshot */
+        public double rate(String counter, Snapshot earlier) {
+            long millis = timeMillis - earlier.timeMillis;
+            if (millis <= 0)
+                return 0;
+            return (get(counter) - earlier.get(counter)) * 1000.0 / millis;
+        }
+    }
+
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot(System.currentTimeMillis());
+        List<EngineMetrics> stripes;
+        synchronized (m_stripes) {
+            stripes = new ArrayList<>(m_stripes);
+        }
+        for (EngineMetrics stripe : stripes) {
+            for (Map.Entry<String, Long> e : stripe.getCounters().entrySet()) {
+                Long v = s.counters.get(e.getKey());
+                s.counters.put(e.getKey(), (v != null ? v : 0) + e.getValue());
+            }
+            s.roundsPerWar.add(stripe.roundsPerWar);
+            s.warMicros.add(stripe.warMicros);
+            s.setupMicros.add(stripe.setupMicros);
+        }
+        return s;
+    }
+}
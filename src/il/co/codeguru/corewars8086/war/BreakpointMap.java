@@ -0,0 +1,62 @@
+package il.co.codeguru.corewars8086.war;
+
+import java.util.Arrays;
+
+/**
+ * The breakpoints of all the players as a bit for every arena offset, and a mask of the warriors they stop.
+ * The war tests a single bit after every instruction, so running to a breakpoint costs about the same as
+ * running with no breakpoints. The condition of a breakpoint, if it has one, is evaluated only where its bit is set.
+ */
+public class BreakpointMap {
+    /** Mask of {@link #setWarriorMask(long)} that makes the breakpoints stop every warrior */
+    public static final long ALL_WARRIORS = -1L;
+
+    private final int[] m_bits = new int[War.ARENA_SIZE >> 5];
+    private int m_count = 0;
+    private long m_warriorMask = ALL_WARRIORS;
+
+    public void set(int offset, boolean on) {
+        boolean was = isSet(offset);
+        if (on && !was) {
+            m_bits[offset >> 5] |= (1 << offset);
+            ++m_count;
+        }
+        else if (!on && was) {
+            m_bits[offset >> 5] &= ~(1 << offset);
+            --m_count;
+        }
+    }
+
+    public boolean isSet(int offset) {
+        return (m_bits[offset >> 5] & (1 << offset)) != 0;
+    }
+
+    public void clear() {
+        Arrays.fill(m_bits, 0);
+        m_count = 0;
+    }
+
+    /** @return number of offsets that have a breakpoint */
+    public int getCount() {
+        return m_count;
+    }
+
+    /** @param mask  a bit for every warrior index that the breakpoints stop, warriors above 63 are never stopped */
+    public void setWarriorMask(long mask) {
+        m_warriorMask = mask;
+    }
+
+    public long getWarriorMask() {
+        return m_warriorMask;
+    }
+
+    /**
+     * @param warrior  index of the warrior that just ran
+     * @param offset   arena offset of the instruction it runs next
+     * @return true if the warrior got to a breakpoint, not counting its condition
+     */
+    public boolean isHit(int warrior, int offset) {
+        return m_count != 0 && warrior < 64 && (m_warriorMask & (1L << warrior)) != 0
+            && (m_bits[offset >> 5] & (1 << offset)) != 0;
+    }
+}
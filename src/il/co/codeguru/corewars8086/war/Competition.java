@@ -1,9 +1,16 @@
 package il.co.codeguru.corewars8086.war;
 
+import il.co.codeguru.corewars8086.cpu.riscv.DecodeCache;
 import il.co.codeguru.corewars8086.memory.MemoryEventListener;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
+import il.co.codeguru.corewars8086.utils.metrics.MetricsRegistry;
 //import il.co.codeguru.corewars8086.utils.EventMulticaster;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import il.co.codeguru.corewars8086.gui.widgets.*;
 
 
@@ -11,7 +18,8 @@ public class Competition {
 
     /** Maximum number of rounds in a single war. */
     public final static int MAX_ROUND = 200000;
-    private static final String SCORE_FILENAME= "scores.csv";
+    /** File name of the final scores table, see {@link WarriorRepository#getScores()} */
+    public static final String SCORE_FILENAME= "scores.csv";
 
     private CompetitionIterator competitionIterator;
 
@@ -19,10 +27,24 @@ public class Competition {
     public EventMulticasterMemory memoryEventCaster;
     public CompetitionEventListener competitionEventListener;
     private MemoryEventListener memoryEventListener;
+    private boolean roundEvents = true; // false while competitionEventListener is the compete proxy, which drops round events
 
     private WarriorRepository warriorRepository;
 
     private War currentWar;
+    private int[] currentCombination; // group indices of the war that is currently running
+    private RealModeMemoryImpl warMemory = null; // reused by all wars if set
+    private List<int[]> watchpoints = new ArrayList<>(); // arena offset and length of every watched range
+    private boolean profiling = false; // count what the warriors execute, read and write, see WarProfile
+    private int flightRecorderSize = 0; // how many instructions every warrior remembers, 0 for none
+    private EngineMetrics metrics = null; // engine wide metrics of the thread that runs this, null to not count
+    private long warStartMicros; // when the current war started by the clock of the metrics
+    private FrameBudget frameBudget = null; // how many rounds fit in a frame, null to run a whole war per call
+    private FrameDeltaRecorder frameDeltaRecorder = null; // made when the first frame delta listener is added
+    private List<FrameDeltaListener> frameDeltaListeners = new ArrayList<>();
+    private MemoryEventListener frameDeltaSavedListener; // the memory listener of the war while the recorder replaces it
+    private boolean frameDeltaPending = false; // recording a debugger frame that was not sent yet
+    private boolean runToBreakpoint = false; // the debugged war runs with no listeners until it stops, see continueToBreakpoint()
 
     private int warsPerCombination= 20;
 
@@ -65,26 +87,40 @@ public class Competition {
     private void switchToCompete() {
         competitionEventListener = competitionEventCaster.competeProxy;
         memoryEventListener = memoryEventCaster.competeProxy;
+        roundEvents = false;
     }
     private void switchToDebug() {
         competitionEventListener = competitionEventCaster.debugProxy;
         memoryEventListener = memoryEventCaster.debugProxy;
+        roundEvents = true;
     }
 
     private void doneCompetition() {
+        warriorRepository.flushScoreEvents();
         competitionEventListener.onCompetitionEnd();
         long elapsed = System.currentTimeMillis() - compState.startTime;
-        Console.log("Total time=" + Double.toString(elapsed / 1000.0) );
+        Logger.log("Total time=" + Double.toString(elapsed / 1000.0) );
         compState = null;
     }
 
-    // return true if need to continue after
+    /**
+     * Runs what fits in a single animation frame. The scores of the wars that ended in it are told to the score
+     * listeners at its end, in one event.
+     * @return true if need to continue after
+     */
     public boolean continueRun(boolean stillAnimateRound) throws Exception
+    {
+        boolean needMore = continueFrame();
+        warriorRepository.flushScoreEvents();
+        return needMore;
+    }
+
+    private boolean continueFrame() throws Exception
     {
         if (globalPause)
             return false;
         if (compState.abort) {
-            Console.log("Abort");
+            Logger.log("Abort");
             doneWar();
             doneCompetition();
             return false;
@@ -93,7 +129,8 @@ public class Competition {
         {
             if (compState.warIndex < warsPerCombination) 
             {
-                startWar( warriorRepository.createGroupList(competitionIterator.next()) );
+                currentCombination = competitionIterator.next();
+                startWar( warriorRepository.createGroupList(currentCombination) );
                 compState.state = CompState.State.RUN_ROUND;
                 boolean wasStartPaused = compState.startPaused;
                 compState.startPaused = false; // start paused only applies to the first war
@@ -108,7 +145,10 @@ public class Competition {
         {
             //compState.isInDebugger = stillAnimateRound; // this is never false in the current GUI, this was just a confusing option
             int needMore = 1;
-            if (compState.isInDebugger) {
+            if (compState.isInDebugger && runToBreakpoint) {
+                needMore = runToBreakpoint();
+            }
+            else if (compState.isInDebugger) {
                 int stepsCount = 1;
                 if (!currentWar.isSingleRound()) { // speed doesn't do anyhthing when clicking single step
                     if (speed > 1)
@@ -125,20 +165,17 @@ public class Competition {
                     }
                 }
                 if (stepsCount > 0) {
+                    beginFrameDelta();
                     switchToCompete();
-                    while (needMore == 1 && stepsCount > 1) {
-                        needMore = runRound();
-                        --stepsCount;
-                    }
+                    needMore = runRounds(stepsCount - 1);
                     switchToDebug();
                     if (needMore == 1)
                         needMore = runRound();
+                    endFrameDelta(); // if the last round didn't run
                 }
             }
             else {
-                do {
-                    needMore = runRound();
-                } while (needMore == 1);
+                needMore = runRounds(Integer.MAX_VALUE);
             }
 
             if (compState.isInDebugger && currentWar.hasEnded() && currentWar.getNumRemainingWarriors() == 0) {
@@ -172,7 +209,7 @@ public class Competition {
 
         // run on every possible combination of warrior groups
         competitionEventListener.onCompetitionStart();
-        Console.log("runCompetition " + Integer.toString(warsPerCombination) + " wars");
+        Logger.log("runCompetition " + Integer.toString(warsPerCombination) + " wars");
 
         compState = new CompState();
         compState.warIndex = 0;
@@ -188,14 +225,94 @@ public class Competition {
 
     }
 
+    /**
+     * Continues a competition that was stopped after some of its wars were completed.
+     * The combination iterator is re-seeded with the seed the competition originally started with and
+     * advanced past the completed wars, so the remaining wars get exactly the combinations and seeds
+     * they would have gotten in an uninterrupted run.
+     * Accumulated scores are not touched, the caller restores them through the WarriorRepository.
+     * @param startSeed      the seed the competition was originally started with
+     * @param completedWars  number of wars that were already completed
+     * @param nextSeed       the seed of the first war that was not completed
+     */
+    public void resumeCompetition(int warsPerCombination, int warriorsPerGroup, long startSeed, int completedWars, long nextSeed) throws Exception
+    {
+        this.seed = startSeed;
+        runCompetition(warsPerCombination, warriorsPerGroup, false, false);
+        competitionIterator.skip(completedWars);
+        compState.warIndex = completedWars;
+        this.seed = nextSeed;
+        Logger.log("resumeCompetition from war " + Integer.toString(completedWars));
+    }
+
     public int getTotalNumberOfWars() {
         return (int) competitionIterator.getNumberOfItems() * warsPerCombination;
     }
 
+    /**
+     * Runs rounds until the war stops, the given number of rounds ran or the frame budget is used up.
+     * @return the result of the last {@link #runRound()}, 1 if none ran
+     */
+    private int runRounds(int maxRounds)
+    {
+        int needMore = 1;
+        if (frameBudget == null) {
+            for (; needMore == 1 && maxRounds > 0; --maxRounds)
+                needMore = runRound();
+            return needMore;
+        }
+        frameBudget.startSlice();
+        while (needMore == 1 && maxRounds > 0) {
+            int batch = Math.min(frameBudget.nextBatch(), maxRounds);
+            if (batch == 0)
+                break; // the rest in the next frame
+            int ran = 0;
+            while (needMore == 1 && ran < batch) {
+                needMore = runRound();
+                ++ran;
+            }
+            frameBudget.endBatch(ran);
+            maxRounds -= ran;
+        }
+        return needMore;
+    }
+
+    /**
+     * Resumes the debugged war at compete speed: it runs with no listeners, as many rounds in a frame as the
+     * frame budget allows, until it gets to a breakpoint or watchpoint, is paused or ends.
+     * The debugger is then shown the state it got to in one pass, like after seeking to a round.
+     */
+    public void continueToBreakpoint()
+    {
+        if (compState == null || !compState.isInDebugger || currentWar == null)
+            return;
+        runToBreakpoint = true;
+        currentWar.resume();
+    }
+
+    /**
+     * Runs the rounds of a frame of {@link #continueToBreakpoint()}, and attaches the war to the debugger
+     * again once it stops.
+     * @return the result of the last {@link #runRound()}, 1 if none ran
+     */
+    private int runToBreakpoint()
+    {
+        currentWar.setListeners(null, null);
+        switchToCompete();
+        int needMore = runRounds(Integer.MAX_VALUE);
+        switchToDebug();
+        if (needMore != 1) {
+            runToBreakpoint = false;
+            attachToDebugger();
+        }
+        return needMore;
+    }
+
     // return 1 if need another round, 0 if paused, -1 if we're done
     public int runRound()
     {
-        competitionEventListener.onRound(compState.round);
+        if (roundEvents)
+            competitionEventListener.onRound(compState.round);
 
      //moved   competitionEventListener.onEndRound();
 
@@ -229,7 +346,10 @@ public class Competition {
 
         ++compState.round;
 
-        competitionEventListener.onEndRound();
+        if (frameDeltaPending && roundEvents)
+            endFrameDelta();
+        else if (roundEvents)
+            competitionEventListener.onEndRound();
 
         // it's possible to continue stepping in a war that has ended and was over
         // don't tell that it's over every time, just on the time it ended first.
@@ -259,12 +379,51 @@ public class Competition {
     public void startWar(WarriorGroup[] warriorGroups) throws Exception
     {
         //Console.log("runWar");
-        currentWar = new War(memoryEventListener, competitionEventListener, compState.startPaused);
+        markWarStart();
+        // a war that competes gets no listeners where the compete proxies would drop what they're told,
+        // so its writes, births and deaths don't pay for a UI that doesn't show them
+        MemoryEventListener warMemoryListener = compState.isInDebugger ? memoryEventListener : null;
+        CompetitionEventListener warListener = (compState.isInDebugger || competitionEventCaster.isCompeteDeaths()) ? competitionEventListener : null;
+        currentWar = new War(warMemoryListener, warListener, compState.startPaused, warMemory);
         currentWar.setSeed(this.seed);
         competitionEventListener.onWarPreStartClear();
         currentWar.loadWarriorGroups(warriorGroups);
+        if (compState.isInDebugger)
+            currentWar.enableHistory(WarHistory.DEFAULT_INTERVAL, WarHistory.DEFAULT_MAX_SNAPSHOTS);
+        instrumentWar();
+        if (metrics != null)
+            metrics.setupMicros.record(metrics.nowMicros() - warStartMicros);
         competitionEventListener.onWarStart(); // need to be before loadWarriorGroups since this clears the canvas and that writes the warriors to the canvas
         compState.round = 0;
+        runToBreakpoint = false;
+        if (frameDeltaRecorder != null)
+            frameDeltaRecorder.startWar(currentWar);
+    }
+
+    /**
+     * Makes the war write to the frame delta recorder instead of the memory listeners, for the rounds of a
+     * debugger frame. Writes that are not made by running rounds, like loading the warriors or edits in the
+     * debugger, still go to the memory listeners.
+     */
+    private void beginFrameDelta() {
+        if (frameDeltaRecorder == null)
+            return;
+        RealModeMemoryImpl memory = currentWar.getMemory();
+        frameDeltaSavedListener = memory.getListener();
+        memory.setListener(frameDeltaRecorder);
+        frameDeltaPending = true;
+    }
+
+    /** Sends what changed in the frame to the frame delta listeners and tells that the round ended */
+    private void endFrameDelta() {
+        if (!frameDeltaPending)
+            return;
+        frameDeltaPending = false;
+        currentWar.getMemory().setListener(frameDeltaSavedListener);
+        FrameDelta delta = frameDeltaRecorder.seal(compState.round, currentWar.getUiWarrior());
+        for (FrameDeltaListener lis : frameDeltaListeners)
+            lis.onFrameDelta(delta);
+        competitionEventListener.onEndRound();
     }
 
     public void doneWar() 
@@ -276,24 +435,323 @@ public class Competition {
 
         ++seed; // make sure the next war is differently randomized
 
-        int numAlive = currentWar.getNumRemainingWarriors();
         String names = currentWar.getRemainingWarriorNames();
 
-        if (numAlive == 1) { // we have a single winner!
-            competitionEventListener.onWarEnd(CompetitionEventListener.SINGLE_WINNER, names, compState.isInDebugger);
+        int reason = getWarEndReason(currentWar, compState.round);
+        competitionEventListener.onWarEnd(reason, names, compState.isInDebugger);
+        // don't update scores on abort since that would create fraction score
+        if (reason != CompetitionEventListener.ABORTED)
             currentWar.updateScores(warriorRepository);
-        } else if (compState.round == MAX_ROUND) { // maximum round reached
-            competitionEventListener.onWarEnd(CompetitionEventListener.MAX_ROUND_REACHED, names, compState.isInDebugger);
-            currentWar.updateScores(warriorRepository);
-        } else { // user abort
-            competitionEventListener.onWarEnd(CompetitionEventListener.ABORTED, names, compState.isInDebugger);
-            // don't update scores on abort since that would create fraction score
-        }
         currentWar.setEnded();
         //currentWar = null; // keep war alive so it would be possible to get registers and memory state at the end
         ++compState.warIndex;
+        if (metrics != null)
+            countWar(compState.round);
+
+
+    }
+
+    /**
+     * @param war     a war that has ended
+     * @param rounds  number of rounds the war ran
+     * @return one of the reasons in {@link CompetitionEventListener}
+     */
+    public static int getWarEndReason(War war, int rounds) {
+        if (war.getNumRemainingWarriors() == 1) // we have a single winner!
+            return CompetitionEventListener.SINGLE_WINNER;
+        if (rounds == MAX_ROUND) // maximum round reached
+            return CompetitionEventListener.MAX_ROUND_REACHED;
+        return CompetitionEventListener.ABORTED; // user abort or no one left alive
+    }
+
+    /**
+     * Runs a single war of the given groups to its end, outside of any running competition.
+     * Used by workers that get their combinations and seeds from a coordinator.
+     * No events are fired and the repository scores are not updated, the war stays available
+     * through {@link #getCurrentWar()} for reading the outcome.
+     * @return the number of rounds played
+     */
+    public int runDetachedWar(int[] groupIndices, long warSeed) throws Exception
+    {
+        currentCombination = groupIndices;
+        markWarStart();
+        currentWar = new War(null, null, false, warMemory);
+        currentWar.setSeed(warSeed);
+        currentWar.loadWarriorGroups(warriorRepository.createGroupList(groupIndices));
+        if (metrics != null) {
+            currentWar.setMetrics(metrics);
+            metrics.setupMicros.record(metrics.nowMicros() - warStartMicros);
+        }
+        int round = 0;
+        do {
+            currentWar.nextRound(round);
+            ++round;
+        } while (!currentWar.isOver() && round < MAX_ROUND);
+        currentWar.setEnded();
+        if (metrics != null)
+            countWar(round);
+        return round;
+    }
+
+    private void markWarStart() {
+        if (metrics != null)
+            warStartMicros = metrics.nowMicros();
+    }
+
+    private void countWar(int rounds) {
+        metrics.wars.inc();
+        metrics.roundsPerWar.record(rounds);
+        metrics.warMicros.record(metrics.nowMicros() - warStartMicros);
+        for (int i = 0; i < currentWar.getNumWarriors(); ++i) {
+            DecodeCache cache = currentWar.getWarrior(i).getDecodeCache();
+            metrics.decodeHits.add(cache.getHits());
+            metrics.decodeMisses.add(cache.getMisses());
+            metrics.decodeEvictions.add(cache.getEvictions());
+        }
+    }
 
+    /**
+     * Counts the wars this competition runs, their rounds, instructions and deaths to engine wide metrics,
+     * see {@link MetricsRegistry}. Wars that start from now on are counted.
+     * @param metrics  the stripe of the thread that runs the competition, null to stop counting
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return a descriptor that allows running the current war again, see {@link #startReplay(WarReplay, int)}.
+     * null if there's no war or it didn't come from a competition.
+     */
+    public WarReplay getCurrentReplay() {
+        if (currentWar == null || currentCombination == null)
+            return null;
+        return WarReplay.record(currentWar, warriorRepository.createGroupList(currentCombination));
+    }
 
+    /**
+     * Runs a recorded war again, from warriors already loaded to the repository, and stops it paused at the given
+     * round in debug mode.
+     * The rounds up to the target round run with no listeners at all, at full speed. Only then the listeners are
+     * attached and told about the war as if it just started, so the debugger shows its state at that round.
+     * @throws Exception if the replay was recorded by another engine version or with different warriors
+     */
+    public void startReplay(WarReplay replay, int targetRound) throws Exception
+    {
+        if (replay.getEngineVersion() != WarReplay.ENGINE_VERSION)
+            throw new Exception("replay was recorded with engine version " + replay.getEngineVersion() +
+                                ", this is version " + WarReplay.ENGINE_VERSION);
+        WarriorGroup[] groups = replay.createGroupList(warriorRepository);
+        WarriorRepository.m_Fixed_loadAddressChecker = WarReplay.createFixedChecker(groups);
+
+        warsPerCombination = 1;
+        currentCombination = null; // not part of a competition
+        compState = new CompState();
+        compState.warIndex = 0;
+        compState.state = CompState.State.RUN_ROUND;
+        compState.isInDebugger = true;
+        compState.startTime = System.currentTimeMillis();
+        switchToDebug();
+
+        this.seed = replay.getSeed();
+        markWarStart();
+        currentWar = new War(null, null, false, warMemory);
+        currentWar.setSeed(replay.getSeed());
+        currentWar.loadWarriorGroups(groups);
+        replay.checkLoadOffsets(currentWar);
+        currentWar.enableHistory(WarHistory.DEFAULT_INTERVAL, WarHistory.DEFAULT_MAX_SNAPSHOTS);
+        instrumentWar();
+
+        compState.round = runWithoutListeners(0, targetRound);
+        Logger.log("replayed war to round " + Integer.toString(compState.round));
+        attachToDebugger();
+    }
+
+    /**
+     * Moves the war in the debugger to the given round, backwards or forwards, and leaves it paused there.
+     * Going back restores the last snapshot before the round and runs from it, see {@link WarHistory}.
+     * Rounds run with no listeners and breakpoints don't stop them, the listeners are told about the war
+     * only once it reaches the round.
+     * @return false if the war doesn't keep history
+     */
+    public boolean seekRound(int targetRound) throws Exception
+    {
+        if (compState == null || currentWar == null || currentWar.getHistory() == null)
+            return false;
+        return goToRound(targetRound, false);
+    }
+
+    /**
+     * @param restore  restore a snapshot even when going forward, since the war is not at compState.round
+     */
+    private boolean goToRound(int targetRound, boolean restore) throws Exception
+    {
+        targetRound = Math.max(0, Math.min(targetRound, MAX_ROUND));
+        int round = compState.round;
+        if (restore || targetRound < round) {
+            round = currentWar.getHistory().restore(targetRound);
+            if (round < 0)
+                return false;
+        }
+        compState.round = runWithoutListeners(round, targetRound);
+        attachToDebugger();
+        // got to where the war ends for the first time, end it like continueRun() would
+        if (!currentWar.hasEnded() && currentWar.isOver())
+            doneWar();
+        return true;
+    }
+
+    /** Goes back a single round in the debugger, see {@link #seekRound(int)} */
+    public boolean stepBack() throws Exception
+    {
+        if (compState == null)
+            return false;
+        return seekRound(compState.round - 1);
+    }
+
+    /**
+     * Goes back to the last round before the current one where the war stopped on a breakpoint.
+     * Snapshots are searched from the latest back, running the rounds after each to find breakpoint hits.
+     * @return false if there's no earlier breakpoint hit, the war stays where it was
+     */
+    public boolean seekPreviousBreakpoint() throws Exception
+    {
+        if (compState == null || currentWar == null || currentWar.getHistory() == null)
+            return false;
+        int current = compState.round;
+        // a hit in a round stops the war after it, so hits in rounds before end stop it before the current round
+        int end = current - 1;
+        int hitRound = -1;
+        currentWar.setListeners(null, null);
+        while (end > 0 && hitRound < 0) {
+            int start = currentWar.getHistory().restore(end - 1);
+            if (start < 0)
+                break;
+            for (int round = start; round < end; ++round) {
+                if (currentWar.nextRound(round))
+                    hitRound = round;
+            }
+            end = start;
+        }
+        // the war is somewhere in the past now
+        goToRound(hitRound >= 0 ? hitRound + 1 : current, true);
+        return hitRound >= 0;
+    }
+
+    /**
+     * Runs the current war from the round it's in to the target round, with no listeners.
+     * Stops early where the war ends, unless it already ended and is stepped through in the debugger.
+     * @return the round the war got to
+     */
+    private int runWithoutListeners(int round, int targetRound)
+    {
+        currentWar.setListeners(null, null);
+        while (round < targetRound && (currentWar.hasEnded() || !currentWar.isOver())) {
+            currentWar.nextRound(round);
+            ++round;
+        }
+        return round;
+    }
+
+    /**
+     * Attaches the listeners to a war that ran without them and tells them about it as if it just started,
+     * so the debugger shows the current state.
+     */
+    private void attachToDebugger()
+    {
+        currentWar.setListeners(memoryEventListener, competitionEventListener);
+        currentWar.pause();
+        competitionEventListener.onWarPreStartClear();
+        for (int i = 0; i < currentWar.getNumWarriors(); ++i) {
+            Warrior w = currentWar.getWarrior(i);
+            competitionEventListener.onWarriorBirth(w);
+            if (!w.isAlive())
+                competitionEventListener.onWarriorDeath(w, w.getDeathReason());
+        }
+        competitionEventListener.onWarStart();
+        if (frameDeltaRecorder != null)
+            frameDeltaRecorder.startWar(currentWar);
+        competitionEventListener.onEndRound();
+    }
+
+    /**
+     * Watches writes to a range of arena offsets in the current war and in every war that starts later.
+     * A write to it stops the war at the end of the round, like a breakpoint, and the war tells who wrote
+     * through {@link War#getWatchHit()}.
+     */
+    public void addWatchpoint(int offset, int length) {
+        watchpoints.add(new int[]{offset, length});
+        if (currentWar != null)
+            currentWar.setWatched(offset, length, true);
+    }
+
+    public void removeWatchpoint(int offset, int length) {
+        for (int i = watchpoints.size() - 1; i >= 0; --i) {
+            int[] w = watchpoints.get(i);
+            if (w[0] == offset && w[1] == length)
+                watchpoints.remove(i);
+        }
+        if (currentWar != null) {
+            currentWar.getMemory().clearWatched();
+            applyWatchpoints();
+        }
+    }
+
+    public void clearWatchpoints() {
+        watchpoints.clear();
+        if (currentWar != null)
+            currentWar.getMemory().clearWatched();
+    }
+
+    // after the warriors are loaded, so loading them doesn't count as a hit
+    private void applyWatchpoints() {
+        for (int[] w : watchpoints)
+            currentWar.setWatched(w[0], w[1], true);
+    }
+
+    // watchpoints, profiling and recording of a war that just loaded its warriors
+    private void instrumentWar() {
+        applyWatchpoints();
+        currentWar.setMetrics(metrics);
+        if (profiling)
+            currentWar.enableProfile();
+        if (flightRecorderSize > 0)
+            currentWar.enableFlightRecorder(flightRecorderSize);
+    }
+
+    /**
+     * Makes every war that starts from now on count what each warrior executes, reads and writes at every
+     * arena offset, see {@link War#getProfile()}. The current war starts counting from its current round.
+     */
+    public void setProfiling(boolean enable) {
+        profiling = enable;
+        if (enable && currentWar != null && !currentWar.hasEnded())
+            currentWar.enableProfile();
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * Makes the warriors of every war that starts from now on remember their last instructions, so listeners
+     * of {@link CompetitionEventListener#onWarriorDeath} can see what killed them through
+     * {@link Warrior#getFlightRecorder()}.
+     * @param size  number of instructions every warrior remembers, 0 to stop recording
+     */
+    public void setFlightRecorderSize(int size) {
+        flightRecorderSize = size;
+        if (size > 0 && currentWar != null && !currentWar.hasEnded())
+            currentWar.enableFlightRecorder(size);
+    }
+
+    /**
+     * Makes every war run in the given memory instead of allocating a new one.
+     * A finished war can't be examined once the next one starts, so this is only for runs that don't
+     * need the memory of past wars, like the headless runner.
+     */
+    public void setWarMemory(RealModeMemoryImpl memory) {
+        warMemory = memory;
     }
 
     public int getCurrentWarrior() {
@@ -319,12 +777,41 @@ public class Competition {
     /*public void removeMemoryEventLister(MemoryEventListener lis) {
     	memoryEventCaster.remove(lis);
     }*/
+
+    /**
+     * Adds a listener that gets what changed in every debugger frame, see {@link FrameDelta}.
+     * While any is added, the memory listeners don't get the writes of the rounds that run in the debugger.
+     */
+    public void addFrameDeltaListener(FrameDeltaListener lis) {
+        if (frameDeltaRecorder == null) {
+            frameDeltaRecorder = new FrameDeltaRecorder();
+            if (currentWar != null)
+                frameDeltaRecorder.startWar(currentWar);
+        }
+        frameDeltaListeners.add(lis);
+    }
+
+    /** Makes the next frame delta have all the registers, after they were edited in the debugger */
+    public void invalidateFrameDelta() {
+        if (frameDeltaRecorder != null)
+            frameDeltaRecorder.invalidateRegisters();
+    }
     
     public WarriorRepository getWarriorRepository() {
         return warriorRepository;
     }
 
 
+    /**
+     * Limits the time a single {@link #continueRun(boolean)} spends running rounds, so the page stays responsive.
+     * A war in compete mode is then run over as many frames as it needs, and a fast debug speed runs fewer
+     * rounds in a frame than it asks for if they don't fit.
+     * @param frameBudget  null to run a whole war in every call, as the headless runner wants
+     */
+    public void setFrameBudget(FrameBudget frameBudget) {
+        this.frameBudget = frameBudget;
+    }
+
     public void setSpeed(int speed) {
         this.speed = speed;
     }
@@ -343,6 +830,15 @@ public class Competition {
     public War getCurrentWar(){
     	return currentWar;
     }
+
+    /** @return the group indices of the current war, as drawn from the competition iterator */
+    public int[] getCurrentCombination() {
+        return currentCombination;
+    }
+
+    public int getWarsPerCombination() {
+        return warsPerCombination;
+    }
     
     public void setSeed(long seed){
     	this.seed = seed;
@@ -44,6 +44,7 @@ public interface CompetitionEventListener   {
 
     /**
      * Called when a warrior dies.
+     * If the war records them, {@link Warrior#getFlightRecorder()} has the last instructions it executed.
      * @param warrior      Warrior.
      * @param reason       Reason for death.
      */
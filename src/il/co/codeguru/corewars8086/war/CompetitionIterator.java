@@ -29,6 +29,16 @@ public class CompetitionIterator implements Iterator<int[]> {
 		return rnd.nextPermutation(numItems, groupSize);
     }
 
+    /**
+     * Advances the sequence past the given number of groups, used when resuming a competition
+     */
+    public void skip(int count)
+    {
+        for (int i = 0; i < count; ++i) {
+            next();
+        }
+    }
+
 	public boolean hasNext() {
         return counters[0] != -1;
     }
@@ -0,0 +1,60 @@
+package il.co.codeguru.corewars8086.war;
+
+/**
+ * Decides how many rounds fit in one animation frame, so the browser keeps drawing while wars run as fast as
+ * they can.
+ *
+ * A frame is run as a slice of batches. Every batch aims at half of the time left in the slice according to
+ * how long a round took so far, and is at most twice the previous batch, so a bad estimate or a coarse clock
+ * can't overshoot the budget by much. The clock is only read between batches.
+ */
+public class FrameBudget {
+    /** Source of time, the page's performance.now() in the browser and a fake one in tests */
+    public interface Clock {
+        double nowMillis();
+    }
+
+    public static final double DEFAULT_BUDGET_MILLIS = 12;
+    static final int MAX_BATCH = 1 << 16;
+
+    private final Clock m_clock;
+    private final double m_budgetMillis;
+    private double m_millisPerRound = 0.01; // refined by every batch that took measurable time
+    private int m_lastBatch = 1;
+    private double m_sliceStart;
+    private double m_now;
+
+    public FrameBudget(double budgetMillis, Clock clock) {
+        m_budgetMillis = budgetMillis;
+        m_clock = clock;
+    }
+
+    /** called at the start of every frame */
+    public void startSlice() {
+        m_sliceStart = m_now = m_clock.nowMillis();
+    }
+
+    /** @return how many rounds to run before calling {@link #endBatch(int)}, 0 when the frame is used up */
+    public int nextBatch() {
+        double left = m_budgetMillis - (m_now - m_sliceStart);
+        if (left < m_millisPerRound)
+            return 0;
+        double rounds = left / 2 / m_millisPerRound;
+        int batch = (int)Math.min(rounds, Math.min(2L * m_lastBatch, MAX_BATCH));
+        m_lastBatch = Math.max(batch, 1);
+        return m_lastBatch;
+    }
+
+    /** @param rounds  how many rounds actually ran, fewer than asked if the war stopped */
+    public void endBatch(int rounds) {
+        double now = m_clock.nowMillis();
+        if (rounds > 0 && now > m_now)
+            m_millisPerRound = (now - m_now) / rounds;
+        m_now = now;
+    }
+
+    /** @return the current estimate of how long a round takes */
+    public double getMillisPerRound() {
+        return m_millisPerRound;
+    }
+}
@@ -0,0 +1,164 @@
+package il.co.codeguru.corewars8086.war;
+
+import java.util.Arrays;
+
+/**
+ * What changed in a war during a single debugger frame, made by {@link FrameDeltaRecorder} and handed to every
+ * {@link FrameDeltaListener} once the frame ran its rounds.
+ * Holds the written memory as ranges of linear addresses with the value and writer of every byte, the pc and
+ * alive flag of every warrior, the registers of the selected warrior that changed and the warriors that died.
+ * The arrays are reused by the next frame, listeners should not keep the object.
+ */
+public class FrameDelta {
+    /** Register indices of {@link #getRegIndex(int)}, 0-31 are x0-x31 */
+    public static final int REG_PC = 32;
+    public static final int NUM_REGS = 33;
+
+    private int round;
+
+    private int rangeCount;
+    private int[] rangeStart = new int[16]; // linear address of the first byte
+    private int[] rangeEnd = new int[16]; // one after the last byte
+    private int[] rangeData = new int[16]; // index of the first byte in values and writers
+    private int valueCount;
+    private byte[] values = new byte[256];
+    private byte[] writers = new byte[256];
+
+    private int numWarriors;
+    private int[] pcs = new int[0]; // arena offset
+    private boolean[] alive = new boolean[0];
+
+    private int selectedWarrior = -1;
+    private boolean allRegs;
+    private int regCount;
+    private final int[] regIndex = new int[NUM_REGS];
+    private final int[] regValue = new int[NUM_REGS];
+
+    private int deathCount;
+    private int[] deaths = new int[0];
+
+    void reset(int round, int numWarriors) {
+        this.round = round;
+        rangeCount = 0;
+        valueCount = 0;
+        regCount = 0;
+        deathCount = 0;
+        selectedWarrior = -1;
+        allRegs = false;
+        this.numWarriors = numWarriors;
+        if (pcs.length < numWarriors) {
+            pcs = new int[numWarriors];
+            alive = new boolean[numWarriors];
+            deaths = new int[numWarriors];
+        }
+    }
+
+    /** adds a written byte, bytes must come in ascending addresses */
+    void addByte(int address, byte value, byte writer) {
+        if (rangeCount == 0 || rangeEnd[rangeCount - 1] != address) {
+            if (rangeCount == rangeStart.length) {
+                rangeStart = Arrays.copyOf(rangeStart, rangeCount * 2);
+                rangeEnd = Arrays.copyOf(rangeEnd, rangeCount * 2);
+                rangeData = Arrays.copyOf(rangeData, rangeCount * 2);
+            }
+            rangeStart[rangeCount] = address;
+            rangeData[rangeCount] = valueCount;
+            ++rangeCount;
+        }
+        rangeEnd[rangeCount - 1] = address + 1;
+        if (valueCount == values.length) {
+            values = Arrays.copyOf(values, valueCount * 2);
+            writers = Arrays.copyOf(writers, valueCount * 2);
+        }
+        values[valueCount] = value;
+        writers[valueCount] = writer;
+        ++valueCount;
+    }
+
+    void setWarrior(int index, int pc, boolean isAlive) {
+        pcs[index] = pc;
+        alive[index] = isAlive;
+    }
+
+    void addDeath(int index) {
+        deaths[deathCount++] = index;
+    }
+
+    void setSelectedWarrior(int index, boolean all) {
+        selectedWarrior = index;
+        allRegs = all;
+    }
+
+    void addReg(int index, int value) {
+        regIndex[regCount] = index;
+        regValue[regCount] = value;
+        ++regCount;
+    }
+
+    /** @return the round the war got to at the end of the frame */
+    public int getRound() {
+        return round;
+    }
+
+    /** @return number of ranges of written memory, in ascending addresses and never adjacent */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+    public int getRangeStart(int range) {
+        return rangeStart[range];
+    }
+    /** @return one after the last written address of the range */
+    public int getRangeEnd(int range) {
+        return rangeEnd[range];
+    }
+    /** @return the value at the end of the frame of an address inside the range */
+    public byte getValue(int range, int address) {
+        return values[rangeData[range] + address - rangeStart[range]];
+    }
+    /** @return the warrior that wrote last to an address inside the range, -1 if it wasn't written by a warrior */
+    public byte getWriter(int range, int address) {
+        return writers[rangeData[range] + address - rangeStart[range]];
+    }
+    /** @return total number of bytes written */
+    public int getWrittenCount() {
+        return valueCount;
+    }
+
+    public int getNumWarriors() {
+        return numWarriors;
+    }
+    /** @return the arena offset of the warrior's pc */
+    public int getPc(int warrior) {
+        return pcs[warrior];
+    }
+    public boolean isAlive(int warrior) {
+        return alive[warrior];
+    }
+
+    /** @return the warrior whose registers are in this delta, -1 if none is selected */
+    public int getSelectedWarrior() {
+        return selectedWarrior;
+    }
+    /** @return true if all the registers are in this delta and not just the ones that changed */
+    public boolean hasAllRegs() {
+        return allRegs;
+    }
+    public int getRegCount() {
+        return regCount;
+    }
+    /** @return register number, x0-x31 or {@link #REG_PC} */
+    public int getRegIndex(int i) {
+        return regIndex[i];
+    }
+    public int getRegValue(int i) {
+        return regValue[i];
+    }
+
+    /** @return number of warriors that died in this frame */
+    public int getDeathCount() {
+        return deathCount;
+    }
+    public int getDeath(int i) {
+        return deaths[i];
+    }
+}
@@ -0,0 +1,9 @@
+package il.co.codeguru.corewars8086.war;
+
+/**
+ * Gets what changed in the war in every debugger frame, instead of a callback for every byte written.
+ * Called right before {@link CompetitionEventListener#onEndRound()} of the frame.
+ */
+public interface FrameDeltaListener {
+    void onFrameDelta(FrameDelta delta);
+}
@@ -0,0 +1,126 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.memory.MemoryEventListener;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+
+import java.util.Arrays;
+
+/**
+ * Collects what a war changes while it runs the rounds of a debugger frame, and makes a {@link FrameDelta} of it
+ * at the end of the frame.
+ * It is the memory listener of the war during the frame, every write only marks the byte and its writer in a
+ * per page array. The values are read from the memory when the delta is made, so a byte written many times is
+ * sent once.
+ * The registers and alive flags are compared to the last delta, a warrior that died in the frame is sent as
+ * a death even if its memory writes were not.
+ */
+public class FrameDeltaRecorder implements MemoryEventListener {
+    private static final int PAGE_MASK = RealModeMemoryImpl.PAGE_SIZE - 1;
+    private static final int WRITER_BIAS = 2; // so that writes outside of rounds, by warrior -1, are marked too
+
+    private War war;
+    private final FrameDelta delta = new FrameDelta();
+
+    // for every written byte the warrior that wrote it plus WRITER_BIAS, 0 for not written. pages are made on first write
+    private final byte[][] writers = new byte[RealModeMemoryImpl.NUM_PAGES][];
+    private final boolean[] dirtyPages = new boolean[RealModeMemoryImpl.NUM_PAGES];
+
+    private boolean[] lastAlive = new boolean[0];
+    private int lastSelected = -1; // whose registers lastRegs are, -1 to send all of them
+    private final int[] lastRegs = new int[FrameDelta.NUM_REGS];
+
+    /**
+     * Starts recording a war that was just loaded or attached to the debugger, from its current state.
+     * Writes that were recorded for the previous war are dropped.
+     */
+    public void startWar(War war) {
+        this.war = war;
+        for (int page = 0; page < dirtyPages.length; ++page) {
+            if (dirtyPages[page]) {
+                Arrays.fill(writers[page], (byte)0);
+                dirtyPages[page] = false;
+            }
+        }
+        lastAlive = new boolean[war.getNumWarriors()];
+        for (int i = 0; i < lastAlive.length; ++i)
+            lastAlive[i] = war.getWarrior(i).isAlive();
+        lastSelected = -1;
+    }
+
+    /** Makes the next delta have all the registers, after they were changed not by the war */
+    public void invalidateRegisters() {
+        lastSelected = -1;
+    }
+
+    @Override
+    public void onMemoryWrite(RealModeAddress address, byte value) {
+        int linearAddress = address.getLinearAddress();
+        int page = linearAddress >> RealModeMemoryImpl.PAGE_SHIFT;
+        byte[] pageWriters = writers[page];
+        if (pageWriters == null) {
+            pageWriters = new byte[RealModeMemoryImpl.PAGE_SIZE];
+            writers[page] = pageWriters;
+        }
+        dirtyPages[page] = true;
+        pageWriters[linearAddress & PAGE_MASK] = (byte)(war.getCurrentWarrior() + WRITER_BIAS);
+    }
+
+    @Override
+    public void onWriteState(EWriteState state) {
+    }
+
+    /**
+     * Makes the delta of everything recorded since the last one and starts recording the next frame.
+     * @param round            the round the war got to
+     * @param selectedWarrior  the warrior whose registers are sent, -1 for none
+     * @return the delta, reused by the next call
+     */
+    public FrameDelta seal(int round, int selectedWarrior) {
+        int numWarriors = war.getNumWarriors();
+        delta.reset(round, numWarriors);
+
+        RealModeMemoryImpl memory = war.getMemory();
+        for (int page = 0; page < dirtyPages.length; ++page) {
+            if (!dirtyPages[page])
+                continue;
+            dirtyPages[page] = false;
+            byte[] pageWriters = writers[page];
+            int base = page << RealModeMemoryImpl.PAGE_SHIFT;
+            for (int i = 0; i < pageWriters.length; ++i) {
+                if (pageWriters[i] == 0)
+                    continue;
+                delta.addByte(base + i, memory.readByte(base + i), (byte)(pageWriters[i] - WRITER_BIAS));
+                pageWriters[i] = 0;
+            }
+        }
+
+        for (int i = 0; i < numWarriors; ++i) {
+            Warrior warrior = war.getWarrior(i);
+            CpuStateRiscV state = warrior.getCpuState();
+            int pc = RealModeAddress.linearAddress(state.getCS(), (short)state.getPc()) - War.ARENA_START;
+            boolean alive = warrior.isAlive();
+            delta.setWarrior(i, pc, alive);
+            if (lastAlive[i] && !alive)
+                delta.addDeath(i);
+            lastAlive[i] = alive;
+        }
+
+        if (selectedWarrior < 0 || selectedWarrior >= numWarriors) {
+            lastSelected = -1;
+            return delta;
+        }
+        boolean all = (selectedWarrior != lastSelected);
+        delta.setSelectedWarrior(selectedWarrior, all);
+        CpuStateRiscV state = war.getWarrior(selectedWarrior).getCpuState();
+        for (int reg = 0; reg < FrameDelta.NUM_REGS; ++reg) {
+            int value = (reg == FrameDelta.REG_PC) ? state.getPc() : state.getReg(reg);
+            if (all || value != lastRegs[reg])
+                delta.addReg(reg, value);
+            lastRegs[reg] = value;
+        }
+        lastSelected = selectedWarrior;
+        return delta;
+    }
+}
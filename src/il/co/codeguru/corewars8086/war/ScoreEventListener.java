@@ -6,5 +6,10 @@ import java.util.EventListener;
  * @author BS
  */
 public interface ScoreEventListener  {
-    void scoreChanged(String name, float addedValue, int groupIndex, int subIndex);
+    /**
+     * Called once for all the scores added since the last call, see {@link WarriorRepository#flushScoreEvents()}.
+     * @param addedScores  the score added to every warrior by group index and index in the group.
+     *                     the arrays are reused, listeners should not keep them
+     */
+    void scoresChanged(float[][] addedScores);
 }
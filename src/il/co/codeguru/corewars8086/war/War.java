@@ -1,18 +1,20 @@
 package il.co.codeguru.corewars8086.war;
 
 import il.co.codeguru.corewars8086.cpu.exceptions.CpuException;
+import il.co.codeguru.corewars8086.cpu.riscv.FlightRecorder;
 import il.co.codeguru.corewars8086.gui.IBreakpointCheck;
+import il.co.codeguru.corewars8086.jsadd.Random;
 import il.co.codeguru.corewars8086.memory.MemoryEventListener;
 import il.co.codeguru.corewars8086.memory.MemoryException;
 import il.co.codeguru.corewars8086.memory.RealModeAddress;
 import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
 import il.co.codeguru.corewars8086.utils.Logger;
 import il.co.codeguru.corewars8086.utils.Unsigned;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
 
 /**
@@ -26,6 +28,8 @@ public class War {
     /** Arena's size in bytes (= size of a single segment) */
     public final static int ARENA_SIZE =
         RealModeAddress.PARAGRAPHS_IN_SEGMENT * RealModeAddress.PARAGRAPH_SIZE;
+    /** Linear address of the first byte of the arena */
+    public final static int ARENA_START = RealModeAddress.PARAGRAPH_SIZE * ARENA_SEGMENT;
     /** Warrior's private stack size */
     private final static short STACK_SIZE = 2*1024;
     /** Group-shared private memory size */
@@ -60,7 +64,8 @@ public class War {
     private CompetitionEventListener m_warListener;
 
     private IBreakpointCheck m_breakpointCheck = null;
-    private int m_uiWarriorIndex = -1; // break in breakpoints only of this warrior (he's the one selected in the PlayersPanel)
+    private BreakpointMap m_breakpoints = null; // of m_breakpointCheck, tested after every instruction
+    private int m_uiWarriorIndex = -1; // the warrior selected in the PlayersPanel, whose registers the debugger shows
     private boolean m_inDebugger = false; // controls the end condition
     private boolean m_hasEnded = false; // this war has ended but the object remains alive for post-mortem examination
 
@@ -70,8 +75,21 @@ public class War {
         else
             m_uiWarriorIndex = -1; // can happen if we're not debugging right now
     }
+    /** @return index of the warrior selected in the debugger, -1 if none */
+    public int getUiWarrior() {
+        return m_uiWarriorIndex;
+    }
+    /** Makes the war stop at the breakpoints of brc, of every warrior in their mask. null for no breakpoints */
     public void setBreakpointCheck(IBreakpointCheck brc) {
         m_breakpointCheck = brc;
+        m_breakpoints = (brc != null) ? brc.getBreakpoints() : null;
+    }
+    /**
+     * Attaches listeners to a war that ran without them so far, like a replayed war that is handed to the debugger.
+     */
+    public void setListeners(MemoryEventListener memoryListener, CompetitionEventListener warListener) {
+        m_core.setListener(memoryListener);
+        m_warListener = warListener;
     }
     public void setInDebugger() {
         m_inDebugger = true;
@@ -88,19 +106,33 @@ public class War {
      * Fills the Arena with its initial data. 
      */
     public War(MemoryEventListener memoryListener, CompetitionEventListener warListener, boolean startPaused) {
+        this(memoryListener, warListener, startPaused, null);
+    }
+
+    /**
+     * Constructor that reuses the memory of a previous war instead of allocating a new one.
+     * @param core  memory to reuse, its content is overwritten. null to allocate new memory.
+     */
+    public War(MemoryEventListener memoryListener, CompetitionEventListener warListener, boolean startPaused, RealModeMemoryImpl core) {
     	isPaused = startPaused; //startPaused; // startPause just causes control to  return after startWar, we don't want to pause the first round
         m_warListener = warListener;
         m_warriors = new Warrior[MAX_WARRIORS];
         m_numWarriors = 0;
         m_numWarriorsAlive = 0;
-        m_core = new RealModeMemoryImpl();
+        if (core != null) {
+            core.setListener(null);
+            core.clear();
+            core.clearWatched();
+            m_core = core;
+        }
+        else {
+            m_core = new RealModeMemoryImpl();
+        }
         m_nextFreeAddress = RealModeAddress.PARAGRAPH_SIZE * (ARENA_SEGMENT + RealModeAddress.PARAGRAPHS_IN_SEGMENT);
 
-        // initialize arena
-        for (int offset = 0; offset < ARENA_SIZE; ++offset) {
-            RealModeAddress tmp = new RealModeAddress(ARENA_SEGMENT, (short)offset);
-            m_core.writeByte(tmp, ARENA_BYTE);			
-        }
+        // initialize arena, no listener is set yet so there's no one to notify about every byte
+        int arenaStart = RealModeAddress.PARAGRAPH_SIZE * ARENA_SEGMENT;
+        Arrays.fill(m_core.m_data, arenaStart, arenaStart + ARENA_SIZE, ARENA_BYTE);
 
         isSingleRound = false;
         
@@ -114,46 +146,129 @@ public class War {
      * @return true when a breakpoint was hit
      */
     public boolean nextRound(int round) {
+        if (m_history != null)
+            m_history.beforeRound(round);
         boolean atBreakpoint = false;
+        int turns = 0, instructions = 0; // for the metrics
+        m_watchHit = null;
+        m_core.clearWatchHit();
         for (int i = 0; i < m_numWarriors; ++i)
         {
             Warrior warrior = m_warriors[i];
             m_currentWarrior = i;
             if (warrior.isAlive()) {
                 short savedIp = (short) warrior.getCpuState().getPc();
+                int[] executions = null;
+                if (m_profile != null) {
+                    executions = m_profile.getCounts(i, WarProfile.EXECUTIONS);
+                    m_core.setAccessCounters(m_profile.getCounts(i, WarProfile.READS),
+                                             m_profile.getCounts(i, WarProfile.WRITES), ARENA_START);
+                }
+                ++turns;
                 try {
 
                     // run first InstructionInfo
+                    if (executions != null)
+                        ++executions[savedIp & 0xffff];
+                    ++instructions;
                     warrior.nextOpcode();
-                    atBreakpoint |= (m_breakpointCheck != null && m_currentWarrior == m_uiWarriorIndex && m_breakpointCheck.shouldBreak(warrior.getCpuState()));
+                    atBreakpoint |= isAtBreakpoint(i, warrior);
+                    if (m_core.getWatchHitAddress() >= 0)
+                        atBreakpoint |= recordWatchHit(round, warrior, savedIp & 0xffff);
 
                     // run one extra InstructionInfo, if warrior deserves it :)
                     updateWarriorEnergy(warrior, round);
                     if (shouldRunExtraOpcode(warrior)) {
+                        int pc = warrior.getCpuState().getPc();
+                        if (executions != null)
+                            ++executions[pc & 0xffff];
+                        ++instructions;
                         warrior.nextOpcode();
-                        atBreakpoint |= (m_breakpointCheck != null && m_currentWarrior == m_uiWarriorIndex && m_breakpointCheck.shouldBreak(warrior.getCpuState()));
+                        atBreakpoint |= isAtBreakpoint(i, warrior);
+                        if (m_core.getWatchHitAddress() >= 0)
+                            atBreakpoint |= recordWatchHit(round, warrior, pc);
                     }
                 }
                 catch (CpuException e) {
+                    if (m_profile != null)
+                        m_profile.getInstructionMix(i).countDeath(e);
+                    if (m_metrics != null)
+                        m_metrics.death("CPU exception");
                     if(m_warListener != null)
                         m_warListener.onWarriorDeath(warrior, "CPU exception");
-                    warrior.kill();
+                    warrior.kill(round, "CPU exception");
                     warrior.getCpuState().setPc(savedIp); // don't advance IP, show where the exception occured
                     --m_numWarriorsAlive;
+                    if (m_core.getWatchHitAddress() >= 0)
+                        atBreakpoint |= recordWatchHit(round, warrior, savedIp & 0xffff);
                 }
                 catch (MemoryException e) {
+                    if (m_profile != null)
+                        m_profile.getInstructionMix(i).countDeath(e);
+                    String reason = "memory exception: " + e.getMessage();
+                    if (m_metrics != null)
+                        m_metrics.death(reason);
                     if(m_warListener != null)
-                        m_warListener.onWarriorDeath(warrior, "memory exception: " + e.getMessage());
-                    warrior.kill();
+                        m_warListener.onWarriorDeath(warrior, reason);
+                    warrior.kill(round, reason);
                     warrior.getCpuState().setPc(savedIp);
                     --m_numWarriorsAlive;
+                    if (m_core.getWatchHitAddress() >= 0)
+                        atBreakpoint |= recordWatchHit(round, warrior, savedIp & 0xffff);
                 }
             }
         }
         m_currentWarrior = -1;
+        if (m_profile != null)
+            m_core.setAccessCounters(null, null, 0); // edits from the debugger are not the warriors'
+        if (m_metrics != null) {
+            m_metrics.rounds.inc();
+            m_metrics.turns.add(turns);
+            m_metrics.instructions.add(instructions);
+        }
         return atBreakpoint;
     }
 
+    /** @return true if the warrior that just ran got to a breakpoint and its condition, if any, is true */
+    private boolean isAtBreakpoint(int index, Warrior warrior) {
+        // warriors run in the arena segment, so the pc is the arena offset
+        if (m_breakpoints == null || !m_breakpoints.isHit(index, warrior.getCpuState().getPc() & 0xffff))
+            return false;
+        return m_breakpointCheck.shouldBreak(warrior.getCpuState());
+    }
+
+    /**
+     * Turns a write the memory noticed to a watched address to a hit of the warrior that just ran.
+     * @return true, the war should stop
+     */
+    private boolean recordWatchHit(int round, Warrior warrior, int pc) {
+        if (m_watchHit == null) {
+            int address = m_core.getWatchHitAddress() - ARENA_START;
+            m_watchHit = new WatchpointHit(round, warrior.m_myIndex, warrior.getName(), pc, address,
+                                           m_core.getWatchHitOldValue(), m_core.getWatchHitNewValue());
+        }
+        m_core.clearWatchHit();
+        return true;
+    }
+
+    /** @return the first write to a watched address in the last round, null if there was none */
+    public WatchpointHit getWatchHit() {
+        return m_watchHit;
+    }
+
+    /**
+     * Watches writes to a range of arena offsets, a write to it stops the war after the round like a breakpoint.
+     * A range that runs past the end of the arena goes on from its start, like the arena addresses do.
+     */
+    public void setWatched(int offset, int length, boolean watched) {
+        offset &= ARENA_SIZE - 1;
+        length = Math.min(length, ARENA_SIZE);
+        int first = Math.min(length, ARENA_SIZE - offset);
+        m_core.setWatched(ARENA_START + offset, first, watched);
+        if (first < length)
+            m_core.setWatched(ARENA_START, length - first, watched);
+    }
+
     /**
      * @return whether or not the War is over.
      */
@@ -279,6 +394,7 @@ public class War {
                     groupSharedMemory,
                     GROUP_SHARED_MEMORY_SIZE,
                     m_numWarriors);
+            w.m_scoreIndex = warrior.getScoreIndex();
             m_warriors[m_numWarriors++] = w;
 
             // load warrior to arena
@@ -429,27 +545,99 @@ public class War {
     	return names;
     }    
  
+    /** @return the score every surviving warrior gets when the war ends now. */
+    public float getSurvivorScore() {
+        return (float)1.0 / m_numWarriorsAlive;
+    }
+
     /**
      * Updates the scores in a given score-board.
      */
     public void updateScores(WarriorRepository repository) {
-        float score = (float)1.0 / m_numWarriorsAlive;
+        float score = getSurvivorScore();
     	for (int i = 0; i < m_numWarriors; ++i) {
             Warrior warrior = m_warriors[i];
             if (warrior.isAlive()) {
-                repository.addScore(warrior.getName(), score);
+                repository.addScore(warrior.m_scoreIndex, score);
             }
     	}
     }
     
     private Random rand = new Random();
+    private long m_seed;
+    private WarHistory m_history = null;
+    private WatchpointHit m_watchHit = null;
+    private WarProfile m_profile = null;
+    private EngineMetrics m_metrics = null;
     
     private boolean isSingleRound;
     private boolean isPaused;
     
     public void setSeed(long seed){
+        m_seed = seed;
     	rand.setSeed(seed);
     }
+
+    public long getSeed(){
+        return m_seed;
+    }
+
+    /**
+     * Starts taking snapshots of the war so it can go back to earlier rounds, see {@link WarHistory}.
+     * Should be called after the warriors are loaded.
+     */
+    public void enableHistory(int interval, int maxSnapshots) {
+        m_history = new WarHistory(this, interval, maxSnapshots);
+    }
+
+    /** @return the war's snapshots, null if history was not enabled */
+    public WarHistory getHistory() {
+        return m_history;
+    }
+
+    /**
+     * Starts counting what every warrior executes, reads and writes at each arena offset, see {@link WarProfile}.
+     * Should be called after the warriors are loaded, so loading them doesn't count.
+     */
+    public void enableProfile() {
+        if (m_profile != null)
+            return;
+        m_profile = new WarProfile(m_numWarriors);
+        for (int i = 0; i < m_numWarriors; ++i)
+            m_warriors[i].setInstructionMix(m_profile.getInstructionMix(i));
+    }
+
+    /**
+     * Makes every warrior remember the last instructions it executed, so a warrior that dies can tell how,
+     * see {@link Warrior#getFlightRecorder()}.
+     * @param size  number of instructions to remember
+     */
+    public void enableFlightRecorder(int size) {
+        for (int i = 0; i < m_numWarriors; ++i) {
+            if (m_warriors[i].getFlightRecorder() == null)
+                m_warriors[i].setFlightRecorder(new FlightRecorder(size));
+        }
+    }
+
+    /** counts the rounds, instructions and deaths of this war to engine wide metrics, null to not count */
+    public void setMetrics(EngineMetrics metrics) {
+        m_metrics = metrics;
+    }
+
+    /** @return the war's counters, null if profiling was not enabled */
+    public WarProfile getProfile() {
+        return m_profile;
+    }
+
+    long getRandState() {
+        return rand.getState();
+    }
+
+    /** restores the state that is not kept in the memory or the warriors, see {@link WarHistory} */
+    void restore(long randState, int numWarriorsAlive) {
+        rand.setState(randState);
+        m_numWarriorsAlive = numWarriorsAlive;
+    }
     
     public void pause(){
     	isPaused = true;
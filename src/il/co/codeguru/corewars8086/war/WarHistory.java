@@ -0,0 +1,177 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshots of a war taken every few rounds, so the debugger can go back to an earlier round quickly.
+ *
+ * Going to round N restores the last snapshot before it and runs the rounds in between again. This gives
+ * exactly the same state as the first time since the war is deterministic given its random generator state,
+ * which is part of the snapshot.
+ *
+ * Memory is snapshot by pages. A snapshot only copies the pages that were written since the previous one and
+ * shares the rest with it, so a snapshot of a war where the warriors write to a few pages costs a few pages.
+ * When there are too many snapshots every second one is dropped and the interval is doubled, so the history
+ * always covers the whole war with a bounded number of snapshots.
+ */
+public class WarHistory {
+
+    public static final int DEFAULT_INTERVAL = 64;
+    public static final int DEFAULT_MAX_SNAPSHOTS = 64;
+
+    private static class Snapshot {
+        int round;
+        byte[][] pages; // may be shared with other snapshots, never modified
+        long randState;
+        int numWarriorsAlive;
+        CpuStateRiscV[] states;
+        boolean[] alive;
+        int[] deathRounds;
+        String[] deathReasons;
+    }
+
+    private final War m_war;
+    private final RealModeMemoryImpl m_core;
+    private final int m_maxSnapshots;
+    private int m_interval;
+
+    /** sorted by round */
+    private final List<Snapshot> m_snapshots = new ArrayList<>();
+    /** pages the memory had at the time the dirty pages were last cleared */
+    private byte[][] m_basePages = new byte[RealModeMemoryImpl.NUM_PAGES][];
+    /** the round the war is about to run */
+    private int m_round = 0;
+
+    WarHistory(War war, int interval, int maxSnapshots) {
+        m_war = war;
+        m_core = war.getMemory();
+        m_interval = interval;
+        m_maxSnapshots = Math.max(2, maxSnapshots);
+        m_core.setDirtyTracking(true);
+    }
+
+    /**
+     * Called before every round, takes a snapshot if it's time for one.
+     */
+    void beforeRound(int round) {
+        m_round = round;
+        if (round % m_interval != 0)
+            return;
+        int index = findIndex(round);
+        if (index >= 0 && m_snapshots.get(index).round == round) {
+            // ran this round before, memory is the same as in the snapshot since it's the same war
+            m_basePages = m_snapshots.get(index).pages;
+            m_core.clearDirtyPages();
+            return;
+        }
+        m_snapshots.add(index + 1, take(round));
+        if (m_snapshots.size() > m_maxSnapshots)
+            thin();
+    }
+
+    /**
+     * The war was changed in a way that doesn't follow from running it, like a register edited by hand.
+     * Snapshots of the current round and later describe a different war now.
+     */
+    public void discardFuture() {
+        for (int i = m_snapshots.size() - 1; i >= 0 && m_snapshots.get(i).round >= m_round; --i)
+            m_snapshots.remove(i);
+    }
+
+    /**
+     * Restores the war to the last snapshot at or before the given round.
+     * @return the round of the restored snapshot, the war should run from it to reach the round asked for.
+     * -1 if there's no such snapshot.
+     */
+    int restore(int round) {
+        int index = findIndex(round);
+        if (index < 0)
+            return -1;
+        Snapshot s = m_snapshots.get(index);
+
+        // only pages that differ from the snapshot need copying
+        boolean[] dirty = m_core.getDirtyPages();
+        for (int p = 0; p < RealModeMemoryImpl.NUM_PAGES; ++p) {
+            if (dirty[p] || m_basePages[p] != s.pages[p])
+                System.arraycopy(s.pages[p], 0, m_core.m_data, p * RealModeMemoryImpl.PAGE_SIZE, RealModeMemoryImpl.PAGE_SIZE);
+        }
+        m_basePages = s.pages;
+        m_core.clearDirtyPages();
+
+        m_war.restore(s.randState, s.numWarriorsAlive);
+        for (int i = 0; i < s.states.length; ++i)
+            m_war.getWarrior(i).restore(s.states[i], s.alive[i], s.deathRounds[i], s.deathReasons[i]);
+        m_round = s.round;
+        return s.round;
+    }
+
+    /** @return the rounds of all the snapshots, oldest first */
+    public int[] getSnapshotRounds() {
+        int[] rounds = new int[m_snapshots.size()];
+        for (int i = 0; i < rounds.length; ++i)
+            rounds[i] = m_snapshots.get(i).round;
+        return rounds;
+    }
+
+    public int getInterval() {
+        return m_interval;
+    }
+
+    /** @return index of the last snapshot at or before the round, -1 if none */
+    private int findIndex(int round) {
+        int index = -1;
+        for (int i = 0; i < m_snapshots.size() && m_snapshots.get(i).round <= round; ++i)
+            index = i;
+        return index;
+    }
+
+    private Snapshot take(int round) {
+        Snapshot s = new Snapshot();
+        s.round = round;
+
+        boolean[] dirty = m_core.getDirtyPages();
+        s.pages = new byte[RealModeMemoryImpl.NUM_PAGES][];
+        for (int p = 0; p < RealModeMemoryImpl.NUM_PAGES; ++p) {
+            if (dirty[p] || m_basePages[p] == null) {
+                byte[] page = new byte[RealModeMemoryImpl.PAGE_SIZE];
+                System.arraycopy(m_core.m_data, p * RealModeMemoryImpl.PAGE_SIZE, page, 0, RealModeMemoryImpl.PAGE_SIZE);
+                s.pages[p] = page;
+            }
+            else {
+                s.pages[p] = m_basePages[p];
+            }
+        }
+        m_basePages = s.pages;
+        m_core.clearDirtyPages();
+
+        s.randState = m_war.getRandState();
+        s.numWarriorsAlive = m_war.getNumRemainingWarriors();
+        int count = m_war.getNumWarriors();
+        s.states = new CpuStateRiscV[count];
+        s.alive = new boolean[count];
+        s.deathRounds = new int[count];
+        s.deathReasons = new String[count];
+        for (int i = 0; i < count; ++i) {
+            Warrior w = m_war.getWarrior(i);
+            s.states[i] = new CpuStateRiscV();
+            s.states[i].copyFrom(w.getCpuState());
+            s.alive[i] = w.isAlive();
+            s.deathRounds[i] = w.getDeathRound();
+            s.deathReasons[i] = w.getDeathReason();
+        }
+        return s;
+    }
+
+    /** drops every second snapshot, keeping the first one */
+    private void thin() {
+        for (int i = m_snapshots.size() - 1; i > 0; --i) {
+            if (i % 2 == 1)
+                m_snapshots.remove(i);
+        }
+        m_interval *= 2;
+    }
+}
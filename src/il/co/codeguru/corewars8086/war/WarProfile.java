@@ -0,0 +1,73 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.cpu.riscv.InstructionMix;
+
+/**
+ * Counts, for every warrior and every arena offset, how many instructions the warrior ran there and how many
+ * bytes it read and wrote there, and for every warrior which instructions it ran, see {@link InstructionMix}.
+ * Shows warrior authors where their cycles and bombs go.
+ *
+ * The counters are plain arrays that the war bumps directly, the memory gets the ones of the warrior that runs
+ * through {@link il.co.codeguru.corewars8086.memory.RealModeMemoryImpl#setAccessCounters(int[], int[], int)}.
+ * A war without a profile doesn't pay anything for it besides a null check.
+ * Counters are not part of the {@link WarHistory} snapshots, rounds that run again after seeking back count again.
+ */
+public class WarProfile {
+    public static final int EXECUTIONS = 0;
+    public static final int READS = 1;
+    public static final int WRITES = 2;
+    public static final int NUM_KINDS = 3;
+
+    private final int[][][] m_counts; // [warrior][kind][arena offset]
+    private final InstructionMix[] m_mixes;
+
+    public WarProfile(int numWarriors) {
+        m_counts = new int[numWarriors][NUM_KINDS][War.ARENA_SIZE];
+        m_mixes = new InstructionMix[numWarriors];
+        for (int i = 0; i < numWarriors; ++i)
+            m_mixes[i] = new InstructionMix();
+    }
+
+    public int getNumWarriors() {
+        return m_counts.length;
+    }
+
+    /**
+     * @param kind  one of EXECUTIONS, READS, WRITES
+     * @return the counter of every arena offset, owned by the profile
+     */
+    public int[] getCounts(int warriorIndex, int kind) {
+        return m_counts[warriorIndex][kind];
+    }
+
+    /** @return the counters of all the warriors summed, a new array */
+    public int[] getTotalCounts(int kind) {
+        int[] total = new int[War.ARENA_SIZE];
+        for (int[][] warrior : m_counts) {
+            int[] counts = warrior[kind];
+            for (int i = 0; i < total.length; ++i)
+                total[i] += counts[i];
+        }
+        return total;
+    }
+
+    public InstructionMix getInstructionMix(int warriorIndex) {
+        return m_mixes[warriorIndex];
+    }
+
+    /** @return the instructions of all the warriors summed, a new mix */
+    public InstructionMix getTotalInstructionMix() {
+        InstructionMix total = new InstructionMix();
+        for (InstructionMix mix : m_mixes)
+            total.add(mix);
+        return total;
+    }
+
+    /** @return the largest counter of the array, for scaling a heatmap */
+    public static int max(int[] counts) {
+        int max = 0;
+        for (int c : counts)
+            max = Math.max(max, c);
+        return max;
+    }
+}
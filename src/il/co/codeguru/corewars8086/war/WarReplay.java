@@ -0,0 +1,215 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.gui.FixedLoadAddressChecker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact description of a single war, enough to run it again exactly given the warriors' binaries.
+ *
+ * Holds the engine version, the war's seed and the groups in the order they were handed to
+ * {@link War#loadWarriorGroups(WarriorGroup[])}, with a hash of every warrior's code and the offset it was
+ * loaded at. The offsets are not needed for running the war again (they come from the seed), they are used
+ * for verifying that the replay really is the same war.
+ *
+ * The text form is
+ * <pre>
+ * ENGINE;SEED;GROUP:WARRIOR,WARRIOR;GROUP:WARRIOR...
+ * </pre>
+ * where a warrior is NAME@OFFSET#HASH for a random load address or NAME!OFFSET#HASH for a fixed one,
+ * offset and hash in hex.
+ */
+public class WarReplay {
+
+    /**
+     * Version of the war logic. Needs to be bumped whenever a change in War, Warrior or the CPU makes the same
+     * seed and warriors produce a different war, since old replays are not valid anymore.
+     */
+    public static final int ENGINE_VERSION = 1;
+
+    public static class WarriorEntry {
+        public final String name;
+        public final int loadOffset;
+        public final boolean fixedOffset;
+        public final int codeHash;
+
+        public WarriorEntry(String name, int loadOffset, boolean fixedOffset, int codeHash) {
+            this.name = name;
+            this.loadOffset = loadOffset;
+            this.fixedOffset = fixedOffset;
+            this.codeHash = codeHash;
+        }
+    }
+
+    public static class GroupEntry {
+        public final String name;
+        public final List<WarriorEntry> warriors = new ArrayList<>();
+
+        public GroupEntry(String name) {
+            this.name = name;
+        }
+    }
+
+    private final int engineVersion;
+    private final long seed;
+    private final List<GroupEntry> groups;
+
+    public WarReplay(int engineVersion, long seed, List<GroupEntry> groups) {
+        this.engineVersion = engineVersion;
+        this.seed = seed;
+        this.groups = groups;
+    }
+
+    public int getEngineVersion() {
+        return engineVersion;
+    }
+    public long getSeed() {
+        return seed;
+    }
+    public List<GroupEntry> getGroups() {
+        return groups;
+    }
+
+    /** 32 bit FNV-1a hash of a warrior's code */
+    public static int hashCode(byte[] code) {
+        int hash = 0x811c9dc5;
+        for (byte b : code) {
+            hash ^= (b & 0xff);
+            hash = (hash << 24) + hash * 0x193; // * 0x01000193 without overflowing a double in javascript
+        }
+        return hash;
+    }
+
+    /**
+     * Describes a war that was already loaded.
+     * @param war     the war, after loadWarriorGroups
+     * @param groups  the same groups that were given to loadWarriorGroups, in the same order
+     */
+    public static WarReplay record(War war, WarriorGroup[] groups) {
+        List<GroupEntry> entries = new ArrayList<>();
+        for (WarriorGroup group : groups) {
+            GroupEntry entry = new GroupEntry(group.getName());
+            for (WarriorData data : group.getWarriors()) {
+                Warrior w = war.getWarriorByLabel(data.getLabel());
+                entry.warriors.add(new WarriorEntry(data.getName(), (w != null) ? w.getLoadOffsetInt() : -1,
+                        data.m_debugFixedLoadAddress >= 0, hashCode(data.getCode())));
+            }
+            entries.add(entry);
+        }
+        return new WarReplay(ENGINE_VERSION, war.getSeed(), entries);
+    }
+
+    /**
+     * Builds the list of groups to load for replaying the war, from the warriors in the repository.
+     * @throws Exception if a warrior is missing or its code is not the one the war was recorded with
+     */
+    public WarriorGroup[] createGroupList(WarriorRepository repository) throws Exception {
+        WarriorGroup[] result = new WarriorGroup[groups.size()];
+        for (int i = 0; i < groups.size(); ++i) {
+            GroupEntry entry = groups.get(i);
+            WarriorGroup group = new WarriorGroup(entry.name);
+            for (WarriorEntry w : entry.warriors) {
+                WarriorData data = repository.findWarrior(w.name);
+                if (data == null)
+                    throw new Exception("replay warrior " + w.name + " is not loaded");
+                if (hashCode(data.getCode()) != w.codeHash)
+                    throw new Exception("replay warrior " + w.name + " has different code than in the recorded war");
+                group.addWarrior(new WarriorData(data.getName(), data.getCode(), data.getLabel(),
+                                                 w.fixedOffset ? w.loadOffset : -1));
+            }
+            result[i] = group;
+        }
+        return result;
+    }
+
+    /**
+     * @param groups  the groups from {@link #createGroupList(WarriorRepository)}
+     * @return the fixed load address checker the war was loaded with, random load addresses depend on it.
+     * null if no warrior had a fixed address.
+     */
+    static FixedLoadAddressChecker createFixedChecker(WarriorGroup[] groups) {
+        FixedLoadAddressChecker checker = null;
+        for (WarriorGroup group : groups) {
+            for (WarriorData data : group.getWarriors()) {
+                if (data.m_debugFixedLoadAddress < 0)
+                    continue;
+                if (checker == null)
+                    checker = new FixedLoadAddressChecker(groups.length);
+                checker.addCheck(Integer.toHexString(data.m_debugFixedLoadAddress), data.getCode().length, data.getName());
+            }
+        }
+        return checker;
+    }
+
+    /**
+     * @throws Exception if the war didn't load its warriors where the recorded war did
+     */
+    public void checkLoadOffsets(War war) throws Exception {
+        for (GroupEntry group : groups) {
+            for (WarriorEntry w : group.warriors) {
+                Warrior warrior = null;
+                for (int i = 0; i < war.getNumWarriors(); ++i) {
+                    if (war.getWarrior(i).getName().equals(w.name))
+                        warrior = war.getWarrior(i);
+                }
+                if (warrior == null || warrior.getLoadOffsetInt() != w.loadOffset)
+                    throw new Exception("replay of " + w.name + " didn't load at the recorded address, not the same war");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(engineVersion).append(';').append(seed);
+        for (GroupEntry group : groups) {
+            sb.append(';').append(group.name).append(':');
+            for (int i = 0; i < group.warriors.size(); ++i) {
+                WarriorEntry w = group.warriors.get(i);
+                if (i > 0)
+                    sb.append(',');
+                sb.append(w.name)
+                  .append(w.fixedOffset ? '!' : '@').append(Integer.toHexString(w.loadOffset))
+                  .append('#').append(Integer.toHexString(w.codeHash));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses the text form of a replay.
+     * @throws Exception if the text is not a valid replay
+     */
+    public static WarReplay parse(String text) throws Exception {
+        String[] fields = text.trim().split(";");
+        if (fields.length < 3)
+            throw new Exception("not a war replay: " + text);
+        try {
+            int engineVersion = Integer.parseInt(fields[0]);
+            long seed = Long.parseLong(fields[1]);
+            List<GroupEntry> groups = new ArrayList<>();
+            for (int i = 2; i < fields.length; ++i) {
+                int colon = fields[i].lastIndexOf(':');
+                if (colon < 0)
+                    throw new Exception("bad group in replay: " + fields[i]);
+                GroupEntry group = new GroupEntry(fields[i].substring(0, colon));
+                for (String w : fields[i].substring(colon + 1).split(",")) {
+                    int hashAt = w.lastIndexOf('#');
+                    int offsetAt = Math.max(w.lastIndexOf('@'), w.lastIndexOf('!'));
+                    if (hashAt < 0 || offsetAt < 0 || offsetAt > hashAt)
+                        throw new Exception("bad warrior in replay: " + w);
+                    group.warriors.add(new WarriorEntry(w.substring(0, offsetAt),
+                            (int)Long.parseLong(w.substring(offsetAt + 1, hashAt), 16),
+                            w.charAt(offsetAt) == '!',
+                            (int)Long.parseLong(w.substring(hashAt + 1), 16)));
+                }
+                groups.add(group);
+            }
+            return new WarReplay(engineVersion, seed, groups);
+        }
+        catch (NumberFormatException e) {
+            throw new Exception("bad number in replay: " + text);
+        }
+    }
+}
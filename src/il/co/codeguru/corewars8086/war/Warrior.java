@@ -2,9 +2,12 @@ package il.co.codeguru.corewars8086.war;
 
 import il.co.codeguru.corewars8086.cpu.riscv.CpuRiscV;
 import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.cpu.riscv.DecodeCache;
 import il.co.codeguru.corewars8086.cpu.x86.Cpu;
 import il.co.codeguru.corewars8086.cpu.exceptions.CpuException;
 import il.co.codeguru.corewars8086.cpu.x86.CpuState;
+import il.co.codeguru.corewars8086.cpu.riscv.FlightRecorder;
+import il.co.codeguru.corewars8086.cpu.riscv.InstructionMix;
 import il.co.codeguru.corewars8086.memory.MemoryException;
 import il.co.codeguru.corewars8086.memory.RealModeAddress;
 import il.co.codeguru.corewars8086.memory.RealModeMemory;
@@ -89,6 +92,36 @@ public class Warrior
         m_isAlive = false;
     }	
 
+    /**
+     * Kills the warrior and remembers when and why it happened.
+     * @param round   the round in which the warrior died.
+     * @param reason  reason for death.
+     */
+    public void kill(int round, String reason) {
+        m_deathRound = round;
+        m_deathReason = reason;
+        kill();
+    }
+
+    /**
+     * Puts the warrior back in a state it had before, see {@link WarHistory}.
+     */
+    void restore(CpuStateRiscV state, boolean alive, int deathRound, String deathReason) {
+        m_state.copyFrom(state);
+        m_isAlive = alive;
+        m_deathRound = deathRound;
+        m_deathReason = deathReason;
+    }
+
+    /** @return the round in which the warrior died, or -1 if it didn't die (yet). */
+    public int getDeathRound() {
+        return m_deathRound;
+    }
+    /** @return the reason the warrior died, or null if it didn't die (yet). */
+    public String getDeathReason() {
+        return m_deathReason;
+    }
+
     /**
      * @return the warrior's name.
      */
@@ -136,6 +169,25 @@ public class Warrior
         m_cpu.nextOpcode();
     }
 
+    /** counts the instructions this warrior executes from now on, null to stop counting */
+    void setInstructionMix(InstructionMix mix) {
+        m_cpu.setInstructionMix(mix);
+    }
+
+    void setFlightRecorder(FlightRecorder recorder) {
+        m_cpu.setFlightRecorder(recorder);
+    }
+
+    /** @return the instructions this warrior decoded in this war */
+    public DecodeCache getDecodeCache() {
+        return m_cpu.getDecodeCache();
+    }
+
+    /** @return the last instructions this warrior executed, null if the war doesn't record them */
+    public FlightRecorder getFlightRecorder() {
+        return m_cpu.getFlightRecorder();
+    }
+
     /**
      * Initializes the CpuRiscV registers & flags:
      *  CS,DS                    - set to the core's segment.
@@ -198,6 +250,10 @@ public class Warrior
     private CpuRiscV m_cpu;
     /** Whether or not the warrior is still alive */
     private boolean m_isAlive;
+    /** Round and reason of the warrior's death */
+    private int m_deathRound = -1;
+    private String m_deathReason = null;
 
     public final int m_myIndex; // in the War m_warriors array. used for identifying breakpoints
+    public int m_scoreIndex = -1; // of its WarriorData, where the war adds its score
 }
\ No newline at end of file
@@ -39,6 +39,16 @@ public class WarriorData {
     /** Holds warrior's code */
     private final byte[] m_code;
     public int m_debugFixedLoadAddress; // -1 for random or an address of the UI
+    private int m_scoreIndex = -1; // set by the WarriorRepository that loaded it, -1 for zombies
+
+
+    /** @return the index of the warrior's score in its {@link WarriorRepository}, -1 if it doesn't get a score */
+    public int getScoreIndex() {
+        return m_scoreIndex;
+    }
+    void setScoreIndex(int scoreIndex) {
+        m_scoreIndex = scoreIndex;
+    }
 
 
     @Override
@@ -1,31 +1,32 @@
 package il.co.codeguru.corewars8086.war;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class WarriorGroup {
     private String name;
     private ArrayList<WarriorData> warriorData;
-    private List<Float> scores;
+    private float[] scores = new float[0]; // of every warrior, in the order they were added
     private float groupScore;
 
     public WarriorGroup(String name) {
         this.name = name;
         warriorData = new ArrayList<>();
-        scores = new ArrayList<>();
     }
 
     public void addWarrior(WarriorData data) {
         warriorData.add(data);
-        scores.add((float) 0);
+        scores = Arrays.copyOf(scores, warriorData.size());
     }
 
     public List<WarriorData> getWarriors() {
         return warriorData;
     }
 
-    public List<Float> getScores() {
-        return scores;
+    /** @return the score of the warrior at the given index in {@link #getWarriors()} */
+    public float getScore(int index) {
+        return scores[index];
     }
 
     public String getName() {
@@ -36,16 +37,8 @@ public class WarriorGroup {
         return groupScore;
     }
 
-    public int addScoreToWarrior(String name, float value) {
-        // find this warrior
-        int i;
-        for (i = 0; i < warriorData.size(); i++) {
-            if (warriorData.get(i).getName().equals(name)) {
-                scores.set(i, scores.get(i) + value);
-                break;
-            }
-        }
+    public void addScore(int index, float value) {
+        scores[index] += value;
         groupScore += value;
-        return i;
     }
-}
\ No newline at end of file
+}
@@ -20,13 +20,17 @@ public class WarriorRepository {
 
     private List<WarriorGroup> warriorGroups;
     private WarriorGroup zombieGroup;
-    private Map<String,Integer> warriorNameToGroup;  // map name to group index in warriorGroups
+    // score index of every warrior to its group index in warriorGroups and its index in the group, see resolveScoreIndices()
+    private int[] scoreGroup = new int[0];
+    private int[] scoreSubIndex = new int[0];
+    private Map<String,Integer> warriorNameToScoreIndex = new HashMap<>(); // for scores that come by name
+    private float[][] pendingScores = new float[0][]; // added since the last flushScoreEvents(), by group and index in it
+    private boolean scoresPending = false;
 
     private EventMulticasterScore scoreEventsCaster;
     private ScoreEventListener scoreListener;
 
     public WarriorRepository() {
-        warriorNameToGroup = new HashMap<>();
         warriorGroups = new ArrayList<>();
 
         scoreEventsCaster = new EventMulticasterScore();
@@ -38,15 +42,84 @@ public class WarriorRepository {
         scoreEventsCaster.doneAdding();
     }
 
+    /** Adds to the score of a warrior by name, for scores that come from outside of a war */
     public void addScore(String name, float value) {
-        Integer groupIndex = warriorNameToGroup.get(name);
-        if (groupIndex == null) {// zombies
+        Integer scoreIndex = warriorNameToScoreIndex.get(name);
+        if (scoreIndex == null) {// zombies
             return;
         }
-        WarriorGroup group = warriorGroups.get(groupIndex);
-        int subIndex = group.addScoreToWarrior(name, value);
-        if(scoreEventsCaster.isEnabled())
-            scoreListener.scoreChanged(name, value, groupIndex, subIndex);
+        addScore(scoreIndex, value);
+    }
+
+    /**
+     * Adds to the score of a warrior. The listeners are told on the next {@link #flushScoreEvents()}.
+     * @param scoreIndex  {@link WarriorData#getScoreIndex()} of the warrior, -1 for zombies, which get no score
+     */
+    public void addScore(int scoreIndex, float value) {
+        if (scoreIndex < 0)
+            return;
+        int groupIndex = scoreGroup[scoreIndex], subIndex = scoreSubIndex[scoreIndex];
+        warriorGroups.get(groupIndex).addScore(subIndex, value);
+        pendingScores[groupIndex][subIndex] += value;
+        scoresPending = true;
+    }
+
+    /**
+     * Tells the score listeners about all the scores added since the last call, in a single event.
+     * Called once a frame, so a frame that ends wars of many warriors redraws the scores once.
+     */
+    public void flushScoreEvents() {
+        if (!scoresPending)
+            return;
+        scoresPending = false;
+        if (scoreEventsCaster.isEnabled())
+            scoreListener.scoresChanged(pendingScores);
+        for (float[] groupScores : pendingScores)
+            Arrays.fill(groupScores, 0);
+    }
+
+    /** Gives every survivor the index of its score, once for every competition that the warriors are loaded for */
+    private void resolveScoreIndices() {
+        int count = 0;
+        for (WarriorGroup group : warriorGroups)
+            count += group.getWarriors().size();
+        scoreGroup = new int[count];
+        scoreSubIndex = new int[count];
+        warriorNameToScoreIndex.clear();
+        pendingScores = new float[warriorGroups.size()][];
+        scoresPending = false;
+
+        int scoreIndex = 0;
+        for (int groupIndex = 0; groupIndex < warriorGroups.size(); ++groupIndex) {
+            List<WarriorData> warriors = warriorGroups.get(groupIndex).getWarriors();
+            pendingScores[groupIndex] = new float[warriors.size()];
+            for (int subIndex = 0; subIndex < warriors.size(); ++subIndex) {
+                WarriorData data = warriors.get(subIndex);
+                data.setScoreIndex(scoreIndex);
+                scoreGroup[scoreIndex] = groupIndex;
+                scoreSubIndex[scoreIndex] = subIndex;
+                warriorNameToScoreIndex.put(data.getName(), scoreIndex);
+                ++scoreIndex;
+            }
+        }
+        if (zombieGroup != null) {
+            for (WarriorData data : zombieGroup.getWarriors())
+                data.setScoreIndex(-1);
+        }
+    }
+
+    /** @return the warrior with the given name, survivor or zombie, or null if there's none */
+    public WarriorData findWarrior(String name) {
+        List<WarriorGroup> groups = new ArrayList<>(warriorGroups);
+        if (zombieGroup != null)
+            groups.add(zombieGroup);
+        for (WarriorGroup group : groups) {
+            for (WarriorData data : group.getWarriors()) {
+                if (data.getName().equals(name))
+                    return data;
+            }
+        }
+        return null;
     }
 
     public int getNumberOfGroups() {
@@ -61,6 +134,25 @@ public class WarriorRepository {
         return names.toArray(new String[0]);
     }
 
+    /**
+     * @return the accumulated scores as csv text, groups first and then every warrior.
+     */
+    public String getScores() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Groups:\n");
+        for (WarriorGroup group : warriorGroups) {
+            sb.append(group.getName()).append(",").append(group.getGroupScore()).append("\n");
+        }
+        sb.append("\nWarriors:\n");
+        for (WarriorGroup group : warriorGroups) {
+            List<WarriorData> warriors = group.getWarriors();
+            for (int i = 0; i < warriors.size(); ++i) {
+                sb.append(warriors.get(i).getName()).append(",").append(group.getScore(i)).append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
     private byte[] truncToSize(byte[] arr) {
         if (arr.length > MAX_WARRIOR_SIZE)
             return Arrays.copyOf(arr, MAX_WARRIOR_SIZE);
@@ -74,7 +166,6 @@ public class WarriorRepository {
 
     public boolean loadWarriors(PlayersPanel.Code[] files, PlayersPanel.Code[] zombies, boolean isInDebug)
     {
-        warriorNameToGroup.clear();
         warriorGroups.clear();
 
         Logger.log("Found " + Integer.toString(files.length) + " survivors, " + Integer.toString(zombies.length) + " zombies");
@@ -103,6 +194,28 @@ public class WarriorRepository {
         if (!readZombiesFromUI(zombies, m_Fixed_loadAddressChecker))
             return false;
 
+        resolveScoreIndices();
+        return true;
+    }
+
+    /**
+     * Loads warrior groups that were put together outside of the UI, for instance by the headless runner.
+     * @param groups   survivor groups, a group's index is its position in the list
+     * @param zombies  the zombies group, or null if there are no zombies
+     */
+    public boolean loadWarriorGroups(List<WarriorGroup> groups, WarriorGroup zombies)
+    {
+        warriorGroups.clear();
+        m_Fixed_loadAddressChecker = null;
+
+        warriorGroups.addAll(groups);
+
+        if (warriorGroups.isEmpty()) {
+            Logger.error("no players to start a competition with");
+            return false;
+        }
+        zombieGroup = zombies;
+        resolveScoreIndices();
         return true;
     }
 
@@ -194,11 +307,9 @@ public class WarriorRepository {
                     // start a new group!
                     currentGroup = new WarriorGroup(data.getName().substring(0, data.getName().length()-1));
                     currentGroup.addWarrior(data);
-                    warriorNameToGroup.put(data.getName(), warriorGroups.size());
                 }
                 else if (data.getLabel().endsWith("1")) {
                     currentGroup.addWarrior(data);
-                    warriorNameToGroup.put(data.getName(), warriorGroups.size());
                     warriorGroups.add(currentGroup);
                     currentGroup = null;
                 }
@@ -208,7 +319,6 @@ public class WarriorRepository {
             } else {
                 currentGroup = new WarriorGroup(data.getName());
                 currentGroup.addWarrior(data);
-                warriorNameToGroup.put(data.getName(), warriorGroups.size());
                 warriorGroups.add(currentGroup);
                 currentGroup = null;
             }
@@ -0,0 +1,32 @@
+package il.co.codeguru.corewars8086.war;
+
+/**
+ * A write to a watched arena address, see {@link Competition#addWatchpoint(int, int)}.
+ */
+public class WatchpointHit {
+    public final int round;
+    public final int warriorIndex;
+    public final String warriorName;
+    /** address of the instruction that wrote */
+    public final int pc;
+    /** offset in the arena that was written */
+    public final int address;
+    public final byte oldValue;
+    public final byte newValue;
+
+    public WatchpointHit(int round, int warriorIndex, String warriorName, int pc, int address, byte oldValue, byte newValue) {
+        this.round = round;
+        this.warriorIndex = warriorIndex;
+        this.warriorName = warriorName;
+        this.pc = pc;
+        this.address = address;
+        this.oldValue = oldValue;
+        this.newValue = newValue;
+    }
+
+    @Override
+    public String toString() {
+        return warriorName + " at " + Integer.toHexString(pc) + " wrote " + Integer.toHexString(newValue & 0xff) +
+               " over " + Integer.toHexString(oldValue & 0xff) + " at " + Integer.toHexString(address);
+    }
+}
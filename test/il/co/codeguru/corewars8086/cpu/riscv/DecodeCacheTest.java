@@ -0,0 +1,52 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodeCacheTest {
+    private static final int JAL_LOOP = 0x0000006f; // jal x0, 0
+    private static final int JAL_OTHER = 0x0000c0ef; // jal x1, another offset, in the same slot as the loop
+
+    @Test
+    public void countsHitsMissesAndEvictions() throws Exception
+    {
+        DecodeCache cache = new DecodeCache();
+        Instruction first = cache.decode(JAL_LOOP);
+        assertSame(first, cache.decode(JAL_LOOP));
+        assertSame(first, cache.decode(JAL_LOOP));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+
+        // bits that map to the same slot throw out the loop
+        assertEquals(slot(JAL_LOOP), slot(JAL_OTHER));
+        cache.decode(JAL_OTHER);
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        assertNotSame(first, cache.decode(JAL_LOOP));
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    public void invalidBitsAreCachedToo()
+    {
+        DecodeCache cache = new DecodeCache();
+        for (int i = 0; i < 2; ++i) {
+            try {
+                cache.decode(0);
+                fail("decoded an illegal instruction");
+            } catch (InvalidOpcodeException e) {
+                // expected
+            }
+        }
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static int slot(int raw)
+    {
+        return (raw ^ (raw >>> 7) ^ (raw >>> 15)) & (DecodeCache.SIZE - 1);
+    }
+}
@@ -0,0 +1,31 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void keepsTheLastEntries()
+    {
+        FlightRecorder recorder = new FlightRecorder(3); // rounded to 4
+        assertEquals(4, recorder.getCapacity());
+        assertEquals(0, recorder.size());
+        for (int i = 0; i < 10; ++i) {
+            recorder.record(i * 4, 0x100 + i, 0);
+            recorder.setLastRdValue(i);
+        }
+        assertEquals(4, recorder.size());
+        for (int i = 0; i < 4; ++i) {
+            assertEquals((6 + i) * 4, recorder.getPc(i));
+            assertEquals(0x106 + i, recorder.getRaw(i));
+            assertEquals(6 + i, recorder.getRdValue(i));
+        }
+        assertEquals("18:106:6;1c:107:7;20:108:8;24:109:9", recorder.toString());
+
+        recorder.clear();
+        assertEquals(0, recorder.size());
+        assertEquals("", recorder.toString());
+    }
+}
@@ -0,0 +1,89 @@
+package il.co.codeguru.corewars8086.cpu.riscv;
+
+import il.co.codeguru.corewars8086.cpu.exceptions.InvalidOpcodeException;
+import il.co.codeguru.corewars8086.cpu.riscv.rv32c.RV32C;
+import il.co.codeguru.corewars8086.memory.MemoryException;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static il.co.codeguru.corewars8086.war.War.ARENA_SEGMENT;
+import static org.junit.Assert.*;
+
+public class InstructionMixTest {
+    private CpuStateRiscV state;
+    private RealModeMemoryImpl memory;
+    private CpuRiscV cpu;
+    private InstructionMix mix;
+
+    @Before
+    public void setUp() {
+        state = new CpuStateRiscV();
+        memory = new RealModeMemoryImpl();
+        cpu = new CpuRiscV(state, memory);
+        mix = new InstructionMix();
+        cpu.setInstructionMix(mix);
+        Logger.setTestingMode();
+    }
+
+    private void put(int pc, int raw) throws MemoryException {
+        memory.write32Bit(new RealModeAddress(ARENA_SEGMENT, (short)pc), raw);
+    }
+
+    @Test
+    public void countsInstructionsAndBranches() throws Exception {
+        put(0x100, RV32I.instructionI(RV32I.Opcodes.Addi, 1, 0, 1).getRaw());
+        put(0x104, RV32I.instructionSB(RV32I.Opcodes.Beq, 1, 0, 8).getRaw());  // not taken
+        put(0x108, RV32I.instructionSB(RV32I.Opcodes.Bne, 1, 0, 8).getRaw());  // taken, skips 0x10c
+        put(0x110, RV32I.instructionS(RV32I.Opcodes.Sw, 0, 1, 0x40).getRaw());
+        put(0x114, RV32I.instructionS(RV32I.Opcodes.Sb, 0, 1, 0x44).getRaw());
+        memory.write16Bit(new RealModeAddress(ARENA_SEGMENT, (short)0x118), RV32C.cInstructionFormatCI(RV32C.Opcodes.CLI, 2, 5).getRaw());
+        state.setPc(0x100);
+        for (int i = 0; i < 6; ++i)
+            cpu.nextOpcode();
+        assertEquals(0x11a, state.getPc());
+
+        int[] executed = mix.getExecuted();
+        int[] taken = mix.getTaken();
+        assertEquals(6, mix.getTotalExecuted());
+        assertEquals(1, executed[RV32I.Opcodes.Beq.getId()]);
+        assertEquals(0, taken[RV32I.Opcodes.Beq.getId()]);
+        assertEquals(1, taken[RV32I.Opcodes.Bne.getId()]);
+        assertEquals(0, taken[RV32I.Opcodes.Addi.getId()]);
+        assertEquals(1, executed[RV32C.Opcodes.CLI.getId()]);
+        assertEquals(1, mix.getStoreCount(4));
+        assertEquals(1, mix.getStoreCount(1));
+        assertEquals(0, mix.getStoreCount(2));
+
+        String summary = mix.summary();
+        assertTrue(summary, summary.contains("Bne 1 (taken 1, not taken 0)"));
+        assertTrue(summary, summary.indexOf("RV32I:") < summary.indexOf("RV32C:"));
+    }
+
+    @Test
+    public void addAndDeaths() {
+        mix.countDeath(new InvalidOpcodeException());
+        mix.countDeath(new MemoryException("x"));
+        InstructionMix total = new InstructionMix();
+        total.add(mix);
+        total.add(mix);
+        assertEquals(2, total.getDeaths(InstructionMix.DEATH_INVALID_OPCODE));
+        assertEquals(2, total.getDeaths(InstructionMix.DEATH_MEMORY));
+        assertEquals(0, total.getDeaths(InstructionMix.DEATH_MISALIGNED));
+    }
+
+    @Test
+    public void idsAreUnique() {
+        boolean[] seen = new boolean[InstructionMix.NUM_IDS];
+        for (int id = 0; id < InstructionMix.NUM_IDS; ++id) {
+            Instruction.InstructionInfo info = Instruction.InstructionInfo.byId(id);
+            assertEquals(id, info.getId());
+            assertFalse(seen[id]);
+            seen[id] = true;
+        }
+        assertTrue(RV32C.Opcodes.CSW.isCompressed());
+        assertFalse(RV32I.Opcodes.Lw.isCompressed());
+    }
+}
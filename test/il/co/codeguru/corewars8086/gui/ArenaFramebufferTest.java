@@ -0,0 +1,107 @@
+package il.co.codeguru.corewars8086.gui;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static il.co.codeguru.corewars8086.gui.ArenaFramebuffer.EMPTY;
+import static il.co.codeguru.corewars8086.gui.ArenaFramebuffer.SIZE;
+import static org.junit.Assert.*;
+
+public class ArenaFramebufferTest {
+    private static final int BLACK = 0xff000000;
+    private ArenaFramebuffer frame;
+
+    @Before
+    public void setUp()
+    {
+        frame = new ArenaFramebuffer();
+        frame.clearDirty(); // as after the first paint
+    }
+
+    private static int color(int warrior, boolean pointer)
+    {
+        return ArenaFramebuffer.toPixel(ColorHolder.getInstance().getColor(warrior, pointer));
+    }
+
+    @Test
+    public void clearMakesEverythingBlackAndDirty()
+    {
+        frame.write(5, (byte)1, (byte)0x42);
+        frame.clear();
+        assertEquals(BLACK, frame.getPixels()[5]);
+        assertEquals(EMPTY, frame.getOwner(5));
+        assertEquals(0, frame.nextDirtyRow(0));
+        assertEquals(SIZE, frame.dirtyRunEnd(0));
+    }
+
+    @Test
+    public void writesColorTheOwnerAndMarkTheirRow()
+    {
+        assertTrue(frame.write(3 * SIZE + 7, (byte)2, (byte)0x42)); // first change asks for a flush
+        assertFalse(frame.write(3 * SIZE + 8, (byte)2, (byte)0x43));
+        assertEquals(color(2, false), frame.getPixels()[3 * SIZE + 7]);
+        assertEquals(0x42, frame.getValue(3 * SIZE + 7));
+
+        // a write without an owner keeps the color
+        frame.write(3 * SIZE + 7, EMPTY, (byte)0x11);
+        assertEquals(color(2, false), frame.getPixels()[3 * SIZE + 7]);
+        assertEquals(0x11, frame.getValue(3 * SIZE + 7));
+
+        assertEquals(3, frame.nextDirtyRow(0));
+        assertEquals(4, frame.dirtyRunEnd(3));
+        assertEquals(-1, frame.nextDirtyRow(4));
+        frame.clearDirty();
+        assertFalse(frame.isDirty());
+        assertEquals(-1, frame.nextDirtyRow(0));
+    }
+
+    @Test
+    public void dirtyRowsFormRuns()
+    {
+        frame.write(10 * SIZE, (byte)0, (byte)1);
+        frame.write(11 * SIZE + 255, (byte)0, (byte)1);
+        frame.write(20 * SIZE, (byte)0, (byte)1);
+        assertEquals(10, frame.nextDirtyRow(0));
+        assertEquals(12, frame.dirtyRunEnd(10));
+        assertEquals(20, frame.nextDirtyRow(12));
+        assertEquals(21, frame.dirtyRunEnd(20));
+    }
+
+    @Test
+    public void pointersCoverTheOwnerUntilCleared()
+    {
+        int offset = 100 * SIZE + 100;
+        frame.write(offset, (byte)1, (byte)0);
+        frame.setPointer(offset, (byte)3);
+        frame.setPointer(offset + 1, (byte)3);
+        assertEquals(color(3, true), frame.getPixels()[offset]);
+        assertEquals(ColorHolder.getInstance().getColor(3, true), frame.getColor(offset));
+        frame.clearDirty();
+
+        assertTrue(frame.clearPointers());
+        assertEquals(EMPTY, frame.getPointer(offset));
+        assertEquals(color(1, false), frame.getPixels()[offset]);
+        assertEquals(BLACK, frame.getPixels()[offset + 1]);
+        assertNull(frame.getColor(offset + 1));
+        assertEquals(100, frame.nextDirtyRow(0));
+        assertFalse(frame.clearPointers()); // already dirty
+    }
+
+    @Test
+    public void heatIsMoreOpaqueWhereUsedMore()
+    {
+        int[] counts = new int[SIZE * SIZE];
+        int[] pixels = new int[SIZE * SIZE];
+        assertFalse(ArenaFramebuffer.heatPixels(counts, pixels)); // nothing ran yet
+
+        counts[1] = 1;
+        counts[2] = 1000;
+        pixels[0] = BLACK; // left from an earlier overlay
+        assertTrue(ArenaFramebuffer.heatPixels(counts, pixels));
+        assertEquals(0, pixels[0]); // unused cells are transparent
+        int low = pixels[1] >>> 24, high = pixels[2] >>> 24;
+        assertTrue(low > 0 && low < high);
+        assertEquals(0xff, high);
+        assertEquals(pixels[1] & 0xffffff, pixels[2] & 0xffffff); // the same color
+    }
+}
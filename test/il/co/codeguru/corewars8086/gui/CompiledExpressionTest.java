@@ -0,0 +1,126 @@
+package il.co.codeguru.corewars8086.gui;
+
+import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompiledExpressionTest {
+    private CpuStateRiscV state;
+    private RealModeMemoryImpl memory;
+
+    @Before
+    public void setUp()
+    {
+        state = new CpuStateRiscV();
+        memory = new RealModeMemoryImpl();
+        state.setDS((short)0x1000);
+        state.setPc(0x120);
+        state.setEnergy((short)7);
+        state.setReg(2, 0x400);   // sp
+        state.setReg(10, 0x11234); // a0, wider than 16 bits
+        state.setReg(11, 3);
+        memory.writeByte(new RealModeAddress((short)0x1000, (short)0x404), (byte)0x08);
+        memory.writeByte(new RealModeAddress((short)0x1000, (short)0x405), (byte)0x01);
+        memory.writeByte(new RealModeAddress((short)0x1000, (short)0x406), (byte)0x02);
+        memory.writeByte(new RealModeAddress((short)0x1000, (short)0x407), (byte)0x80);
+    }
+
+    /** the 16 bit value the tree evaluation of the watches gives */
+    private int evalTree(String text) throws Exception
+    {
+        ExpressionParser parser = new ExpressionParser();
+        parser.m_stateAccess = new ExpressionParser.IStateAccess() {
+            @Override
+            public short getRegisterValue(String name) throws Exception {
+                int index = ExpressionParser.registerIndex(name);
+                if (index == ExpressionParser.REG_PC)
+                    return (short)state.getPc();
+                if (index == ExpressionParser.REG_ENERGY)
+                    return state.getEnergy();
+                if (index == ExpressionParser.REG_FLAGS)
+                    return state.getFlags();
+                return (short)state.getReg(index);
+            }
+            @Override
+            public int getIdentifierValue(String name) throws Exception {
+                throw new Exception("unknown identifier " + name);
+            }
+            @Override
+            public int getMemory(int addr, int seg, int size) throws Exception {
+                short sseg = (seg == -1) ? state.getDS() : (short)seg;
+                int low = memory.readByte(RealModeAddress.linearAddress(sseg, (short)addr)) & 0xff;
+                if (size == 1)
+                    return low;
+                return low | ((memory.readByte(RealModeAddress.linearAddress(sseg, (short)(addr + 1))) & 0xff) << 8);
+            }
+        };
+        return parser.eval(text).eval();
+    }
+
+    private void check(String text, int expected) throws Exception
+    {
+        assertEquals(text, expected, CompiledExpression.compile(text).eval(state, memory));
+    }
+
+    /** for expressions that fit in 16 bits, where both evaluations agree */
+    private void checkBoth(String text, int expected) throws Exception
+    {
+        check(text, expected);
+        assertEquals(text, expected, evalTree(text));
+    }
+
+    @Test
+    public void arithmetic() throws Exception
+    {
+        checkBoth("1 + 2 * 3", 7);
+        checkBoth("(1 + 2) * 3", 9);
+        checkBoth("2 ** 3 ** 2", 512);
+        checkBoth("0x10 >> 2 | 1", 5);
+        check("-1", -1);
+        check("~0x00ff", 0xffffff00);
+        check("0x8000 * 4", 0x20000);
+        assertEquals(0xffff, evalTree("-1"));
+    }
+
+    @Test
+    public void registersAndMemory() throws Exception
+    {
+        check("a0", 0x11234);
+        check("x10 == 0x1234", 0); // all 32 bits are compared
+        check("x10 == 0x11234", 1);
+        checkBoth("pc + energy", 0x127);
+        checkBoth("[sp+4]", 0x08);
+        checkBoth("[sp+4]w", 0x108);
+        check("[sp+4]d", 0x80020108);
+        check("[sp+4]d < 0", 1);
+        checkBoth("[0x1000:sp+5]", 0x01);
+        checkBoth("x0", 0);
+    }
+
+    @Test
+    public void conditions() throws Exception
+    {
+        check("x10 == 0x11234 && [sp+4] > 7", 1);
+        check("x10 == 0x11234 && [sp+4] > 8", 0);
+        checkBoth("a1 < 2 || a1 >= 3", 1);
+        checkBoth("a1 <= 2 || a1 != 3", 0);
+        checkBoth("1 < 2 == 1", 1);
+        checkBoth("1 << 2 < 5", 1);
+    }
+
+    @Test(expected = Exception.class)
+    public void unknownIdentifier() throws Exception
+    {
+        CompiledExpression.compile("foo == 1");
+    }
+
+    @Test(expected = Exception.class)
+    public void divisionByZero() throws Exception
+    {
+        CompiledExpression.compile("a1 / x0").eval(state, memory);
+    }
+}
@@ -0,0 +1,64 @@
+package il.co.codeguru.corewars8086.gui;
+
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemRegionLinesTest {
+    private MemRegionLines lines;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+        lines = new MemRegionLines(2);
+        lines.setRegion(0x20000, 0x200ff);
+    }
+
+    @Test
+    public void formatsLines()
+    {
+        RealModeMemoryImpl memory = new RealModeMemoryImpl();
+        memory.m_data[0x20010] = (byte)0xab;
+        memory.m_data[0x20011] = 0x05;
+        assertEquals(128, lines.getCount());
+        assertEquals(8, lines.getLine(0x20011));
+        assertEquals("20010   AB\u202f05", lines.formatLine(8, memory));
+    }
+
+    @Test
+    public void marksEveryLineOnce()
+    {
+        lines.markWritten(0x20011);
+        lines.markWritten(0x20010);
+        lines.markWritten(0x20100); // outside
+        lines.markWritten(0x1ffff);
+        assertEquals(1, lines.getDirtyCount());
+        assertEquals(8, lines.getDirtyLine(0));
+
+        lines.markRange(0x1fff0, 0x20003); // the part inside is two lines
+        lines.markRange(0x20005, 0x20007); // starts in the middle of a line and ends in the next
+        assertEquals(5, lines.getDirtyCount());
+        assertEquals(0, lines.getDirtyLine(1));
+        assertEquals(1, lines.getDirtyLine(2));
+        assertEquals(2, lines.getDirtyLine(3));
+        assertEquals(3, lines.getDirtyLine(4));
+
+        lines.clearDirty();
+        assertEquals(0, lines.getDirtyCount());
+        lines.markWritten(0x20010);
+        assertEquals(1, lines.getDirtyCount());
+    }
+
+    @Test
+    public void emptyRegionHasNoLines()
+    {
+        lines.setRegion(-1, -1);
+        assertEquals(0, lines.getCount());
+        lines.markRange(0, 0x100000);
+        assertEquals(0, lines.getDirtyCount());
+    }
+}
@@ -0,0 +1,85 @@
+package il.co.codeguru.corewars8086.gui.asm_parsers;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ListingScannerTest {
+    private static final String S = "&#x202f;";
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void scansGasListing()
+    {
+        String lst = "   1 0000 93001000 \taddi x1,x0,1\n" +
+                     "   2              \tloop:\n" +
+                     "   3 0004 6F000000 \tj loop\n" +
+                     "DEFINED SYMBOLS\n" +
+                     "    test.s:2      .text:00000004 loop\n";
+        ListingScanner scanner = new ListingScanner(ListingScanner.GAS);
+        StringBuilder opcodes = new StringBuilder();
+        assertTrue(scanner.scan(lst, opcodes));
+
+        assertEquals(3, scanner.getCount());
+        assertEquals(1, scanner.getLineNum(0));
+        assertEquals(0, scanner.getAddress(0));
+        assertEquals(4, scanner.getOpcodesCount(0));
+        assertEquals("93" + S + "00" + S + "10" + S + "00" + S, scanner.getOpcode(0));
+        assertEquals("addi x1,x0,1", scanner.getCode(0));
+
+        assertEquals(-1, scanner.getAddress(1));
+        assertEquals(0, scanner.getOpcodesCount(1));
+        assertEquals("", scanner.getOpcode(1));
+        assertEquals("\tloop:", scanner.getCode(1)); // the indentation is kept
+
+        assertEquals(4, scanner.getAddress(2));
+        assertEquals("j loop", scanner.getCode(2));
+        assertEquals(scanner.getOpcode(0) + "\n\n" + scanner.getOpcode(2) + "\n", opcodes.toString());
+    }
+
+    @Test
+    public void countsContinuationLinesAndSkipsWarnings()
+    {
+        String lst = "     1 00000000 414243444546474849-     db 'ABCDEFGHIJKLMN'\n" +
+                     "     1 00000009 4A4B4C4D4E         \n" +
+                     "     2          ******************       warning: something\n" +
+                     "     2 0000000E EBFE                    jmp $\n";
+        ListingScanner scanner = new ListingScanner(ListingScanner.NASM);
+        StringBuilder opcodes = new StringBuilder();
+        assertTrue(scanner.scan(lst, opcodes));
+
+        assertEquals(2, scanner.getCount());
+        assertEquals(14, scanner.getOpcodesCount(0)); // both lines of the string
+        assertEquals("db 'ABCDEFGHIJKLMN'", scanner.getCode(0));
+        assertEquals(0xe, scanner.getAddress(1));
+        assertEquals(2, scanner.getLineNum(1));
+        assertEquals(2, scanner.getOpcodesCount(1));
+        assertEquals("jmp $", scanner.getCode(1));
+        assertEquals(2, opcodes.toString().split("\n").length);
+    }
+
+    @Test
+    public void wrongLineNumberFails()
+    {
+        ListingScanner scanner = new ListingScanner(ListingScanner.NASM);
+        assertFalse(scanner.scan("     2 00000000 90                      nop\n     1 00000001 90                      nop\n", new StringBuilder()));
+        assertFalse(scanner.scan("x", new StringBuilder()));
+    }
+
+    @Test
+    public void spacedHexTrimsAndEscapes()
+    {
+        StringBuilder bs = new StringBuilder();
+        ListingScanner.appendSpacedHex(bs, "xx<00> ", 2, 7);
+        assertEquals("&lt;00&gt;", bs.toString());
+        assertEquals(0, ListingScanner.countDigits("<00>", 0, 4));
+        assertEquals(3, ListingScanner.countDigits("A-BC", 0, 4));
+    }
+}
@@ -0,0 +1,39 @@
+package il.co.codeguru.corewars8086.gui.code_editor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AssemblyCacheTest {
+    private static AssemblyCache.Result result(int retcode)
+    {
+        return new AssemblyCache.Result(retcode, "");
+    }
+
+    @Test
+    public void resultsAreKeptByPlatformAndText()
+    {
+        AssemblyCache cache = new AssemblyCache();
+        AssemblyCache.Result r = result(0);
+        cache.put("riscv", "nop", r);
+        assertSame(r, cache.get("riscv", "nop"));
+        assertSame(r, cache.get("riscv", new String("nop"))); // by value, not by reference
+        assertNull(cache.get("8086", "nop"));
+        assertNull(cache.get("riscv", "nop\n"));
+    }
+
+    @Test
+    public void theLeastRecentlyUsedResultIsDropped()
+    {
+        AssemblyCache cache = new AssemblyCache(2);
+        AssemblyCache.Result a = result(0), b = result(1), c = result(2);
+        cache.put("riscv", "a", a);
+        cache.put("riscv", "b", b);
+        assertSame(a, cache.get("riscv", "a")); // now b is the least recently used
+        cache.put("riscv", "c", c);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("riscv", "b"));
+        assertSame(a, cache.get("riscv", "a"));
+        assertSame(c, cache.get("riscv", "c"));
+    }
+}
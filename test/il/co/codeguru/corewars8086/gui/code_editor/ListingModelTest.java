@@ -0,0 +1,107 @@
+package il.co.codeguru.corewars8086.gui.code_editor;
+
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ListingModelTest {
+    private static final int PAGE_SIZE = 512;
+    private static final int ARENA = 0x10000;
+    private static final byte[] ADD_X3_X1_X2 = { (byte)0xb3, (byte)0x81, 0x20, 0x00 };
+
+    private RealModeMemoryImpl mem;
+    private ListingModel listing;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+        mem = new RealModeMemoryImpl();
+        listing = new ListingModel(PAGE_SIZE);
+        listing.setMemory(mem);
+        for (int p = 0; p < listing.getPageCount(); ++p)
+            listing.clearPageDirty(p); // as after all the pages were rendered
+    }
+
+    private void write(int addr, byte[] bytes)
+    {
+        for (int i = 0; i < bytes.length; ++i) {
+            mem.writeByte(new RealModeAddress(ARENA + addr + i), bytes[i]);
+            listing.write(addr + i);
+        }
+    }
+
+    @Test
+    public void clearFillsEverythingAndMarksItDirty()
+    {
+        listing.clear();
+        assertEquals(ListingModel.KIND_FILL, listing.getKind(1234));
+        assertEquals(ListingModel.FILL_TEXT, listing.getText(1234));
+        assertTrue(listing.isPageDirty(2));
+        assertTrue(listing.isLineDirty(1234));
+        listing.clearPageDirty(2);
+        assertFalse(listing.isPageDirty(2));
+        assertFalse(listing.isLineDirty(1234));
+    }
+
+    @Test
+    public void writeMakesAByteLineAndMarksOnlyItDirty()
+    {
+        write(PAGE_SIZE + 3, new byte[] { 0x4f });
+        assertEquals(ListingModel.KIND_BYTE, listing.getKind(PAGE_SIZE + 3));
+        assertEquals("<span class='dbg_opcodes'>4F</span>db 4Fh", listing.getText(PAGE_SIZE + 3));
+        assertTrue(listing.isPageDirty(1));
+        assertTrue(listing.isLineDirty(PAGE_SIZE + 3));
+        assertFalse(listing.isLineDirty(PAGE_SIZE + 4));
+        assertFalse(listing.isPageDirty(0));
+    }
+
+    @Test
+    public void executedBytesAreDisassembledOnce()
+    {
+        write(100, ADD_X3_X1_X2);
+        listing.prepareExecuted(100);
+        assertEquals(ListingModel.KIND_TEXT, listing.getKind(100));
+        assertTrue(listing.getText(100).endsWith("add x3, x1, x2"));
+        assertEquals(0, listing.getFlags(100) & ListingModel.FLAG_UNPARSED);
+        for (int i = 1; i < 4; ++i)
+            assertTrue(listing.isHidden(100 + i));
+        assertEquals(104, listing.getOpcodeEnd(100));
+        assertEquals(ListingModel.KIND_FILL, listing.getKind(104));
+
+        // writing inside the Opcode turns all of it back to bytes
+        write(102, new byte[] { 0x21 });
+        for (int i = 0; i < 4; ++i)
+            assertEquals(ListingModel.KIND_BYTE, listing.getKind(100 + i));
+        assertEquals("<span class='dbg_opcodes'>21</span>db 21h", listing.getText(102));
+    }
+
+    @Test
+    public void jumpingIntoAnOpcodeBreaksIt()
+    {
+        listing.setLine(200, "code", ListingModel.FLAG_DEFINE_CODE);
+        for (int i = 1; i < 4; ++i)
+            listing.hide(200 + i);
+        write(202, new byte[] { 0x01, 0x00 }); // c.nop
+        listing.prepareExecuted(202);
+        assertEquals(ListingModel.KIND_BYTE, listing.getKind(200));
+        assertEquals(ListingModel.KIND_BYTE, listing.getKind(201));
+        assertEquals(ListingModel.KIND_TEXT, listing.getKind(202));
+        assertEquals(204, listing.getOpcodeEnd(202));
+    }
+
+    @Test
+    public void commentsAreAppendedToTheLineBefore()
+    {
+        listing.appendComment(10, "; hello");
+        assertEquals(ListingModel.KIND_TEXT, listing.getKind(10));
+        assertTrue(listing.getText(10).startsWith(ListingModel.FILL_TEXT));
+        assertTrue(listing.getText(10).contains("; hello"));
+        assertNotEquals(0, listing.getFlags(10) & ListingModel.FLAG_HAS_COMMENT);
+        assertEquals(ListingModel.FILL_TEXT, listing.getText(11));
+    }
+}
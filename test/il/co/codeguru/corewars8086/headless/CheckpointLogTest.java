@@ -0,0 +1,136 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CheckpointLogTest {
+    private static final int WARS = 6;
+    private static final long SEED = 1234;
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+
+    private File fullFile;
+    private File resumedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        Logger.setTestingMode();
+        fullFile = File.createTempFile("checkpoint", ".log");
+        resumedFile = File.createTempFile("checkpoint", ".log");
+    }
+
+    @After
+    public void tearDown()
+    {
+        fullFile.delete();
+        resumedFile.delete();
+    }
+
+    private static Competition createCompetition()
+    {
+        List<WarriorGroup> groups = new ArrayList<>();
+        String[] names = {"loop1", "loop2", "die1", "die2"};
+        for (String name : names) {
+            WarriorGroup group = new WarriorGroup(name);
+            group.addWarrior(new WarriorData(name, name.startsWith("loop") ? LOOP : DIE, name, -1));
+            groups.add(group);
+        }
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        return competition;
+    }
+
+    private static float[] scores(Competition competition)
+    {
+        List<WarriorGroup> groups = competition.getWarriorRepository().getWarriorGroups();
+        float[] scores = new float[groups.size()];
+        for (int i = 0; i < scores.length; ++i)
+            scores[i] = groups.get(i).getGroupScore();
+        return scores;
+    }
+
+    private static float[] runUninterrupted(File file) throws Exception
+    {
+        Competition competition = createCompetition();
+        CheckpointLog log = CheckpointLog.create(file, competition, SEED, WARS, 0);
+        competition.addCompetitionEventListener(log);
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.setSeed(SEED);
+        competition.runCompetition(WARS, 2, false, false);
+        while (competition.continueRun(false));
+        log.close();
+        return scores(competition);
+    }
+
+    @Test
+    public void resumeGivesSameScores() throws Exception
+    {
+        float[] expected = runUninterrupted(fullFile);
+
+        // first run is killed after 3 wars
+        Competition first = createCompetition();
+        CheckpointLog log = CheckpointLog.create(resumedFile, first, SEED, WARS, 0);
+        first.addCompetitionEventListener(log);
+        first.competitionEventCaster.doneAdding();
+        first.memoryEventCaster.doneAdding();
+        first.setSeed(SEED);
+        first.runCompetition(WARS, 2, false, false);
+        for (int i = 0; i < 3 * 2; ++i) // starting a war and running it are separate calls
+            first.continueRun(false);
+        log.close();
+
+        CheckpointLog.State state = CheckpointLog.read(resumedFile);
+        assertEquals(3, state.getCompletedWars());
+        assertEquals(SEED + 3, state.getNextSeed());
+
+        Competition second = createCompetition();
+        log = CheckpointLog.reopen(resumedFile, state, second, 0);
+        second.addCompetitionEventListener(log);
+        second.competitionEventCaster.doneAdding();
+        second.memoryEventCaster.doneAdding();
+        CheckpointLog.restore(state, second, 2);
+        while (second.continueRun(false));
+        log.close();
+
+        assertArrayEquals(expected, scores(second), 0.0001f);
+        assertArrayEquals(Files.readAllBytes(fullFile.toPath()), Files.readAllBytes(resumedFile.toPath()));
+    }
+
+    @Test
+    public void tornLastLineIsDropped() throws Exception
+    {
+        runUninterrupted(fullFile);
+        Files.write(fullFile.toPath(), "war\t6\t12".getBytes(), StandardOpenOption.APPEND);
+
+        CheckpointLog.State state = CheckpointLog.read(fullFile);
+        assertEquals(WARS, state.getCompletedWars());
+        assertEquals(4, state.groupNames.length);
+
+        CheckpointLog.reopen(fullFile, state, createCompetition(), 0).close();
+        assertEquals(WARS, CheckpointLog.read(fullFile).getCompletedWars());
+        assertFalse(new String(Files.readAllBytes(fullFile.toPath())).endsWith("12"));
+    }
+
+    @Test(expected = IOException.class)
+    public void notACheckpoint() throws Exception
+    {
+        Files.write(fullFile.toPath(), "hello\n".getBytes());
+        CheckpointLog.read(fullFile);
+    }
+}
@@ -0,0 +1,56 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DeathLogTest {
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+
+    @Test
+    public void logsDeathsWhileCompeting() throws Exception
+    {
+        Logger.setTestingMode();
+        List<WarriorGroup> groups = new ArrayList<>();
+        String[] names = {"loop1", "die1"};
+        for (String name : names) {
+            WarriorGroup group = new WarriorGroup(name);
+            group.addWarrior(new WarriorData(name, name.startsWith("loop") ? LOOP : DIE, name, -1));
+            groups.add(group);
+        }
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+
+        File file = File.createTempFile("deaths", ".csv");
+        try {
+            DeathLog log = new DeathLog(file, competition, 4);
+            competition.addCompetitionEventListener(log);
+            competition.competitionEventCaster.doneAdding();
+            competition.memoryEventCaster.doneAdding();
+            competition.setSeed(1);
+            competition.runCompetition(2, 2, false, false);
+            while (competition.continueRun(false));
+            log.close();
+
+            List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(1).startsWith("0,0,die1,"));
+            assertTrue(lines.get(2).startsWith("1,0,die1,"));
+            assertTrue(lines.get(2).endsWith(":0:0")); // the illegal instruction that killed it
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JfrEventsTest {
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+
+    @Test
+    public void recordsTheCompetition() throws Exception
+    {
+        Logger.setTestingMode();
+        List<WarriorGroup> groups = new ArrayList<>();
+        String[] names = {"loop1", "die1"};
+        for (String name : names) {
+            WarriorGroup group = new WarriorGroup(name);
+            group.addWarrior(new WarriorData(name, name.startsWith("loop") ? LOOP : DIE, name, -1));
+            groups.add(group);
+        }
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        competition.addCompetitionEventListener(new JfrEvents(competition));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+
+        File file = File.createTempFile("events", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrEvents.CompetitionEvent.class);
+            recording.enable(JfrEvents.WarEvent.class);
+            recording.enable(JfrEvents.WarriorDeathEvent.class);
+            recording.enable(JfrEvents.DecodeCacheEvent.class);
+            recording.start();
+            competition.setSeed(1);
+            competition.runCompetition(3, 2, false, false);
+            while (competition.continueRun(false));
+            recording.stop();
+            recording.dump(file.toPath());
+
+            int competitions = 0, wars = 0, deaths = 0, caches = 0;
+            for (RecordedEvent e : RecordingFile.readAllEvents(file.toPath())) {
+                String type = e.getEventType().getName();
+                if (type.endsWith(".Competition")) {
+                    ++competitions;
+                    assertEquals(3, e.getInt("wars"));
+                }
+                else if (type.endsWith(".War")) {
+                    ++wars;
+                    assertEquals(2, e.getString("groups").split(",").length);
+                    assertEquals("single winner", e.getString("endReason"));
+                    assertEquals("loop1", e.getString("survivors"));
+                }
+                else if (type.endsWith(".DecodeCache")) {
+                    ++caches;
+                    assertTrue(e.getLong("misses") > 0); // the war ends in its first round, every decode misses
+                }
+                else if (type.endsWith(".WarriorDeath")) {
+                    ++deaths;
+                    assertEquals("die1", e.getString("warrior"));
+                }
+            }
+            assertEquals(1, competitions);
+            assertEquals(3, wars);
+            assertEquals(3, deaths);
+            assertEquals(3, caches);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void asksForDeathsOnlyWhileTheyAreRecorded() throws Exception
+    {
+        Logger.setTestingMode();
+        Competition competition = new Competition();
+        JfrEvents events = new JfrEvents(competition);
+        events.onCompetitionStart();
+        assertFalse(competition.competitionEventCaster.isCompeteDeaths());
+
+        try (Recording recording = new Recording()) {
+            recording.enable(JfrEvents.WarriorDeathEvent.class);
+            recording.start();
+            events.onWarEnd(JfrEvents.SINGLE_WINNER, "", false);
+            assertTrue(competition.competitionEventCaster.isCompeteDeaths());
+            recording.stop();
+        }
+        events.onWarEnd(JfrEvents.SINGLE_WINNER, "", false);
+        assertFalse(competition.competitionEventCaster.isCompeteDeaths());
+        events.onCompetitionEnd();
+        assertFalse(competition.competitionEventCaster.isCompeteDeaths());
+    }
+}
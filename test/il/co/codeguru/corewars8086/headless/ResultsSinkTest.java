@@ -0,0 +1,249 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ResultsSinkTest {
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+    private static final String WINNER = "comma,one";
+    private static final String LOSER = "say \"hi\"\\";
+    private static final int WARS = 3;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    private static Competition loadCompetition() throws Exception
+    {
+        List<WarriorGroup> groups = new ArrayList<>();
+        WarriorGroup winner = new WarriorGroup(WINNER);
+        winner.addWarrior(new WarriorData(WINNER, LOOP, "a", -1));
+        groups.add(winner);
+        WarriorGroup loser = new WarriorGroup(LOSER);
+        loser.addWarrior(new WarriorData(LOSER, DIE, "b", -1));
+        groups.add(loser);
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        return competition;
+    }
+
+    private static void run(Competition competition, ResultsSink sink) throws Exception
+    {
+        competition.addCompetitionEventListener(sink);
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.setSeed(7);
+        competition.runCompetition(WARS, 2, false, false);
+        while (competition.continueRun(false));
+    }
+
+    private static List<String> runToFile(ResultsSink.Format format) throws Exception
+    {
+        File file = File.createTempFile("results", format == ResultsSink.Format.CSV ? ".csv" : ".jsonl");
+        try {
+            Competition competition = loadCompetition();
+            ResultsSink sink = new ResultsSink(file, format, competition);
+            run(competition, sink);
+            sink.close(); // everything queued is written by now
+            return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        }
+        finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void csvRecordsParseBack() throws Exception
+    {
+        List<String> lines = runToFile(ResultsSink.Format.CSV);
+        assertEquals(WARS + 1, lines.size());
+        assertEquals("war,seed,groups,rounds,reason,survivors,warriors,replay", lines.get(0));
+        for (int war = 0; war < WARS; ++war) {
+            List<String> fields = parseCsv(lines.get(war + 1));
+            assertEquals(8, fields.size());
+            assertEquals(Integer.toString(war), fields.get(0));
+            assertEquals(Long.toString(7 + war), fields.get(1));
+            String groups = fields.get(2);
+            assertTrue(groups.equals(WINNER + ";" + LOSER) || groups.equals(LOSER + ";" + WINNER));
+            assertEquals("1", fields.get(3));
+            assertEquals("SINGLE_WINNER", fields.get(4));
+            assertEquals(WINNER, fields.get(5));
+            assertTrue(fields.get(6).contains(WINNER + ":-1:1.0:"));
+            assertTrue(fields.get(6).contains(LOSER + ":0:0.0:CPU exception"));
+            assertTrue(fields.get(7).contains(WINNER));
+        }
+    }
+
+    @Test
+    public void jsonlRecordsParseBack() throws Exception
+    {
+        List<String> lines = runToFile(ResultsSink.Format.JSONL);
+        assertEquals(WARS, lines.size());
+        for (int war = 0; war < WARS; ++war) {
+            Map<?, ?> record = (Map<?, ?>) new JsonReader(lines.get(war)).read();
+            assertEquals((double) war, record.get("war"));
+            assertEquals((double) (7 + war), record.get("seed"));
+            assertTrue(((List<?>) record.get("groups")).contains(LOSER));
+            assertEquals("SINGLE_WINNER", record.get("reason"));
+            assertEquals(1, ((List<?>) record.get("survivors")).size());
+            assertEquals(WINNER, ((List<?>) record.get("survivors")).get(0));
+            List<?> warriors = (List<?>) record.get("warriors");
+            assertEquals(2, warriors.size());
+            for (Object o : warriors) {
+                Map<?, ?> w = (Map<?, ?>) o;
+                if (WINNER.equals(w.get("name"))) {
+                    assertEquals(-1.0, w.get("deathRound"));
+                    assertNull(w.get("deathReason"));
+                    assertEquals(1.0, w.get("score"));
+                }
+                else {
+                    assertEquals(LOSER, w.get("name"));
+                    assertEquals(0.0, w.get("deathRound"));
+                    assertNotNull(w.get("deathReason"));
+                    assertEquals(0.0, w.get("score"));
+                }
+            }
+            assertTrue(((String) record.get("replay")).contains(LOSER));
+        }
+    }
+
+    @Test
+    public void stopsQueuingAfterWriteError() throws Exception
+    {
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+            @Override
+            public void flush() {
+            }
+            @Override
+            public void close() {
+            }
+        };
+        Competition competition = loadCompetition();
+        ResultsSink sink = new ResultsSink(failing, ResultsSink.Format.CSV, competition);
+        while (sink.getWriteError() == null) // fails on the header
+            Thread.sleep(1);
+        run(competition, sink);
+        assertEquals(0, sink.getPendingCount());
+        try {
+            sink.close();
+            fail("expected the write error");
+        }
+        catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    private static List<String> parseCsv(String line)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    ++i;
+                }
+                else if (c == '"')
+                    quoted = false;
+                else
+                    field.append(c);
+            }
+            else if (c == '"')
+                quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+                field.append(c);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /** just enough json for the records: objects, arrays, strings, numbers and null */
+    private static class JsonReader {
+        private final String s;
+        private int pos = 0;
+
+        JsonReader(String s) {
+            this.s = s;
+        }
+
+        Object read() {
+            char c = s.charAt(pos);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<>();
+                ++pos;
+                while (s.charAt(pos) != '}') {
+                    String key = (String) read();
+                    assertEquals(':', s.charAt(pos++));
+                    map.put(key, read());
+                    if (s.charAt(pos) == ',')
+                        ++pos;
+                }
+                ++pos;
+                return map;
+            }
+            if (c == '[') {
+                List<Object> list = new ArrayList<>();
+                ++pos;
+                while (s.charAt(pos) != ']') {
+                    list.add(read());
+                    if (s.charAt(pos) == ',')
+                        ++pos;
+                }
+                ++pos;
+                return list;
+            }
+            if (c == '"') {
+                StringBuilder sb = new StringBuilder();
+                ++pos;
+                while ((c = s.charAt(pos++)) != '"') {
+                    if (c != '\\')
+                        sb.append(c);
+                    else if ((c = s.charAt(pos++)) == 'u') {
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    else
+                        sb.append(c);
+                }
+                return sb.toString();
+            }
+            if (s.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < s.length() && "-+.eE0123456789".indexOf(s.charAt(pos)) >= 0)
+                ++pos;
+            return Double.parseDouble(s.substring(start, pos));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import il.co.codeguru.corewars8086.war.WarriorRepository;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TournamentCoordinatorTest {
+    private static final int WARS = 8;
+    private static final long SEED = 4321;
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    private static Competition createCompetition()
+    {
+        List<WarriorGroup> groups = new ArrayList<>();
+        String[] names = {"loop1", "loop2", "die1", "die2"};
+        for (String name : names) {
+            WarriorGroup group = new WarriorGroup(name);
+            group.addWarrior(new WarriorData(name, name.startsWith("loop") ? LOOP : DIE, name, -1));
+            groups.add(group);
+        }
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        return competition;
+    }
+
+    private static Thread startWorker(final int port)
+    {
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new TournamentWorker("localhost", port).run();
+                } catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            }
+        });
+        t.start();
+        return t;
+    }
+
+    @Test
+    public void sameScoresAsSingleProcess() throws Exception
+    {
+        Competition single = createCompetition();
+        single.competitionEventCaster.doneAdding();
+        single.memoryEventCaster.doneAdding();
+        single.setSeed(SEED);
+        single.runCompetition(WARS, 2, false, false);
+        while (single.continueRun(false));
+
+        WarriorRepository repository = createCompetition().getWarriorRepository();
+        final TournamentCoordinator coordinator = new TournamentCoordinator(repository, null, WARS, 2, SEED, null, 0, 10000);
+        Thread coordinatorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    coordinator.run();
+                } catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            }
+        });
+        coordinatorThread.start();
+
+        // a worker that takes a war and dies, its war should go to someone else
+        Thread crashing = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+                    PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    out.println(TournamentCoordinator.HELLO);
+                    String line;
+                    while ((line = in.readLine()) != null && !line.startsWith(TournamentCoordinator.WAR + '\t'));
+                } catch (Exception e) {
+                    e.printStackTrace(System.err);
+                }
+            }
+        });
+        crashing.start();
+        crashing.join();
+
+        Thread w1 = startWorker(coordinator.getPort());
+        Thread w2 = startWorker(coordinator.getPort());
+        coordinatorThread.join();
+        w1.join();
+        w2.join();
+
+        assertEquals(single.getWarriorRepository().getScores(), repository.getScores());
+    }
+
+    @Test
+    public void failsWhenNoWorkerIsLeft() throws Exception
+    {
+        WarriorRepository repository = createCompetition().getWarriorRepository();
+        TournamentCoordinator coordinator = new TournamentCoordinator(repository, null, WARS, 2, SEED, null, 0, 200);
+        try {
+            coordinator.run();
+            fail("expected run() to give up");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().contains(WARS + " wars have no result"));
+        }
+        assertEquals(0f, repository.getWarriorGroups().get(0).getGroupScore(), 0f);
+    }
+}
@@ -0,0 +1,166 @@
+package il.co.codeguru.corewars8086.headless;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TournamentServiceTest {
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final byte[] DIE = new byte[]{0x00, 0x00, 0x00, 0x00}; // illegal instruction
+
+    private TournamentService service;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        Logger.setTestingMode();
+        service = new TournamentService(0, 1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        service.stop();
+    }
+
+    private static String warrior(String type, String name, byte[] code)
+    {
+        return type + "\t" + name + "\t" + Base64.getEncoder().encodeToString(code) + "\n";
+    }
+
+    /** a job whose every war ends in the first round */
+    private static String shortJob()
+    {
+        return warrior("survivor", "loop", LOOP) + warrior("survivor", "die", DIE);
+    }
+
+    /** @return the response code, and the body if the request was accepted */
+    private Object[] post(String query, String body) throws Exception
+    {
+        HttpURLConnection c = (HttpURLConnection) new URL("http://localhost:" + service.getPort() + "/jobs?" + query).openConnection();
+        c.setRequestMethod("POST");
+        c.setDoOutput(true);
+        try (OutputStream out = c.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int code = c.getResponseCode();
+        InputStream in = (code < 400) ? c.getInputStream() : c.getErrorStream();
+        String text = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)).readLine();
+        return new Object[]{code, text};
+    }
+
+    private int submit(String query, String body) throws Exception
+    {
+        Object[] answer = post(query, body);
+        assertEquals(202, answer[0]);
+        return Integer.parseInt((String) answer[1]);
+    }
+
+    private BufferedReader stream(int id) throws Exception
+    {
+        HttpURLConnection c = (HttpURLConnection) new URL("http://localhost:" + service.getPort() + "/jobs/" + id).openConnection();
+        assertEquals(200, c.getResponseCode());
+        return new BufferedReader(new InputStreamReader(c.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static List<String> readAll(BufferedReader in) throws Exception
+    {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null)
+            lines.add(line);
+        return lines;
+    }
+
+    @Test
+    public void runsHigherPriorityFirst() throws Exception
+    {
+        service.startServer(); // no runner yet, both jobs wait in the queue
+        int low = submit("wars=1&priority=0", shortJob());
+        // two warriors that never die, a full length war
+        int high = submit("wars=1&priority=5", warrior("survivor", "loopA", LOOP) + warrior("survivor", "loopB", LOOP));
+        service.startRunners();
+
+        BufferedReader highStream = stream(high);
+        assertEquals("queued", highStream.readLine());
+        assertEquals("running", highStream.readLine());
+        // the single runner is busy with the high priority job, the low one can start only once it's done
+        List<String> lowNow = new ArrayList<>();
+        service.getJob(low).eventsFrom(0, lowNow);
+        if (lowNow.contains("running")) {
+            List<String> highNow = new ArrayList<>();
+            service.getJob(high).eventsFrom(0, highNow);
+            assertEquals("scores", highNow.get(highNow.size() - 1).split("\n")[0]);
+        }
+
+        List<String> highRest = readAll(highStream);
+        assertEquals(Arrays.asList("progress\t1/1", "scores"), highRest.subList(0, 2));
+        List<String> lowLines = readAll(stream(low));
+        assertEquals(Arrays.asList("queued", "running", "progress\t1/1", "scores"), lowLines.subList(0, 4));
+    }
+
+    @Test
+    public void refusesBadWarriors() throws Exception
+    {
+        service.start();
+        Object[] answer = post("wars=1", "survivor\tmissing-code\n");
+        assertEquals(400, answer[0]);
+        assertTrue(((String) answer[1]).startsWith("bad warrior line"));
+
+        answer = post("wars=1", warrior("survivor", "bad.s", "this is not an instruction".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(400, answer[0]);
+
+        answer = post("wars=1", warrior("fighter", "loop", LOOP));
+        assertEquals(400, answer[0]);
+        assertEquals("bad warrior type: fighter", answer[1]);
+    }
+
+    @Test
+    public void streamsProgressAndScores() throws Exception
+    {
+        service.start();
+        int id = submit("wars=3&seed=5", shortJob());
+        List<String> lines = readAll(stream(id));
+        assertEquals(Arrays.asList("queued", "running", "progress\t1/3", "progress\t2/3", "progress\t3/3", "scores"),
+                     lines.subList(0, 6));
+        assertTrue(lines.contains("loop,3.0"));
+        assertTrue(lines.contains("die,0.0"));
+    }
+
+    @Test
+    public void keepsOnlyTheLatestEvents() throws Exception
+    {
+        TournamentService.Job job = new TournamentService.Job(1, 0, 100, 0, null, null);
+        job.addEvent("queued");
+        for (int i = 1; i <= 100; ++i)
+            job.addEvent("progress\t" + i + "/100");
+        job.finish("scores");
+
+        List<String> events = new ArrayList<>();
+        int next = job.eventsFrom(0, events); // a late reader skips what was trimmed
+        assertEquals(102, next);
+        assertEquals(TournamentService.MAX_JOB_EVENTS, events.size());
+        assertEquals("progress\t" + (102 - TournamentService.MAX_JOB_EVENTS) + "/100", events.get(0));
+        assertEquals("scores", events.get(events.size() - 1));
+
+        events.clear();
+        assertEquals(102, job.eventsFrom(100, events)); // a reader that kept up gets only what it didn't see
+        assertEquals(Arrays.asList("progress\t100/100", "scores"), events);
+        assertTrue(job.isFinished(next));
+    }
+}
@@ -0,0 +1,36 @@
+package il.co.codeguru.corewars8086.jsadd;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RandomTest {
+
+    @Test
+    public void sameAsJavaRandom()
+    {
+        int[] bounds = {2, 3, 16, 1000, 0x10000};
+        for (long seed = -2; seed < 50; ++seed) {
+            Random ours = new Random();
+            java.util.Random theirs = new java.util.Random();
+            ours.setSeed(seed);
+            theirs.setSeed(seed);
+            for (int i = 0; i < 200; ++i) {
+                int bound = bounds[i % bounds.length];
+                assertEquals(theirs.nextInt(bound), ours.nextInt(bound));
+            }
+        }
+    }
+
+    @Test
+    public void stateContinuesSequence()
+    {
+        Random a = new Random();
+        a.setSeed(1234);
+        a.nextInt(100);
+        Random b = new Random();
+        b.setState(a.getState());
+        for (int i = 0; i < 100; ++i)
+            assertEquals(a.nextInt(16), b.nextInt(16));
+    }
+}
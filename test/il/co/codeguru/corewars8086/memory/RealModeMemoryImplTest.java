@@ -38,4 +38,55 @@ public class RealModeMemoryImplTest {
         assertEquals(0x12345678, memory.read32Bit(new RealModeAddress((short)0,(short)0)));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testWatched() throws MemoryException {
+        RealModeMemoryImpl impl = (RealModeMemoryImpl)memory;
+        impl.setWatched(0x10020, 8, true);
+        impl.setWatched(0x10024, 4, false);
+
+        memory.writeByte(new RealModeAddress((short)0x1000,(short)0x24), (byte)1);
+        assertEquals(-1, impl.getWatchHitAddress());
+        memory.writeByte(new RealModeAddress((short)0x1000,(short)0x23), (byte)2);
+        memory.writeByte(new RealModeAddress((short)0x1000,(short)0x22), (byte)3);
+        assertEquals(0x10023, impl.getWatchHitAddress()); // the first one is kept
+        assertEquals(0, impl.getWatchHitOldValue());
+        assertEquals(2, impl.getWatchHitNewValue());
+
+        impl.clearWatchHit();
+        impl.setWatched(0x10020, 4, false);
+        memory.writeByte(new RealModeAddress((short)0x1000,(short)0x20), (byte)1);
+        assertEquals(-1, impl.getWatchHitAddress());
+    }
+
+    @Test
+    public void testWriteWrapsInSegment() throws MemoryException {
+        memory.write32Bit((short)0x1000, (short)0xfffe, 0x12345678);
+        assertEquals(0x78, memory.readByte(0x1fffe));
+        assertEquals(0x56, memory.readByte(0x1ffff));
+        assertEquals(0x34, memory.readByte(0x10000)); // back to the start of the segment
+        assertEquals(0x12, memory.readByte(0x10001));
+    }
+
+    @Test
+    public void testLinearWriteTellsListener() throws MemoryException {
+        RealModeMemoryImpl impl = (RealModeMemoryImpl)memory;
+        impl.writeByte(0x10005, (byte)1); // no listener
+        assertEquals(1, impl.readByte(0x10005));
+
+        final int[] written = {-1, 0};
+        impl.setListener(new MemoryEventListener() {
+            @Override
+            public void onMemoryWrite(RealModeAddress address, byte value) {
+                written[0] = address.getLinearAddress();
+                written[1] = value;
+            }
+            @Override
+            public void onWriteState(EWriteState state) {
+            }
+        });
+        impl.write16Bit((short)0x1000, (short)6, (short)0x0302);
+        assertEquals(0x10007, written[0]);
+        assertEquals(3, written[1]);
+    }
+}
@@ -4,12 +4,14 @@ import il.co.codeguru.corewars8086.cpu.riscv.RV32I;
 import il.co.codeguru.corewars8086.cpu.riscv.instruction_formats.InstructionFormatBase;
 import il.co.codeguru.corewars8086.cpu.riscv.rv32c.RV32C;
 import il.co.codeguru.corewars8086.cpu.riscv.rv32c.instruction_formats.CInstructionFormatBase;
+import il.co.codeguru.corewars8086.utils.disassembler.DisassembledRange;
 import il.co.codeguru.corewars8086.utils.disassembler.DisassemblerRiscV;
 import il.co.codeguru.corewars8086.utils.disassembler.IDisassembler;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class DisassemblerRiscVTest {
@@ -118,4 +120,47 @@ public class DisassemblerRiscVTest {
 
         disassembler.nextOpcode();
     }
+
+    @Test
+    public void testDisassembleRange()
+    {
+        byte[] instructions = loadInstructions(new InstructionFormatBase[]{
+                RV32I.instructionR(RV32I.Opcodes.Add, 3, 1, 2),
+                RV32I.instructionUJ(RV32I.Opcodes.Jal, 0, 8)
+        });
+        byte[] testData = new byte[12];
+        System.arraycopy(instructions, 0, testData, 0, 4);
+        testData[4] = (byte)0xff; // two bytes that don't start any valid opcode
+        testData[5] = (byte)0xff;
+        System.arraycopy(instructions, 4, testData, 6, 4);
+        testData[10] = 0x13; // the start of an addi cut by the end of the range
+
+        DisassemblerRiscV dis = new DisassemblerRiscV(testData, 0, testData.length);
+        DisassembledRange range = new DisassembledRange();
+        dis.disassembleRange(0, 11, range);
+
+        assertEquals(5, range.getCount());
+        assertEquals(0, range.getOffset(0));
+        assertEquals(4, range.getLength(0));
+        assertEquals(RV32I.Opcodes.Add.getId(), range.getId(0));
+        assertEquals("add x3, x1, x2", range.getText(0));
+
+        assertEquals(4, range.getOffset(1));
+        assertEquals(1, range.getLength(1));
+        assertEquals(DisassembledRange.INVALID, range.getId(1));
+        assertNull(range.getText(1));
+        assertEquals(5, range.getOffset(2));
+        assertEquals(DisassembledRange.INVALID, range.getId(2));
+
+        assertEquals(6, range.getOffset(3));
+        assertEquals("jal x0, 8", range.getText(3));
+        assertEquals(10, range.getOffset(4));
+        assertEquals(DisassembledRange.INVALID, range.getId(4));
+        assertEquals(0x13, range.getRaw(4));
+
+        // filled again, the same as a new range
+        dis.disassembleRange(6, 10, range);
+        assertEquals(1, range.getCount());
+        assertEquals("jal x0, 8", range.getText(0));
+    }
 }
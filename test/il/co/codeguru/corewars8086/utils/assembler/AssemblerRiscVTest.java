@@ -0,0 +1,144 @@
+package il.co.codeguru.corewars8086.utils.assembler;
+
+import il.co.codeguru.corewars8086.gui.asm_parsers.ListingScanner;
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.disassembler.DisassembledRange;
+import il.co.codeguru.corewars8086.utils.disassembler.DisassemblerRiscV;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AssemblerRiscVTest {
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    private static String hex(byte[] bin)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bin)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+
+    private static String assembleHex(String text)
+    {
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble("test.s", text);
+        assertEquals(result.stdout, 0, result.retcode);
+        return hex(result.bin);
+    }
+
+    @Test
+    public void encodesLikeGas()
+    {
+        assertEquals("0505", assembleHex("addi a0,a0,1\n"));
+        assertEquals("b725010093855534", assembleHex("li a1,0x12345\n"));
+        assertEquals("7d57", assembleHex("li x14, 0xffffffff\n")); // 32 bit numbers are signed
+        assertEquals("13000000130000001300000000000000", assembleHex(".option norvc\nnop\n.p2align 3\nnop\n"));
+        assertEquals("01007dddf5bf", assembleHex("start:\nnop\nbeqz a0,start\nj start\n"));
+        assertEquals("0100", assembleHex(".byte 1\n")); // the section is padded to its alignment
+    }
+
+    @Test
+    public void relaxesFarBranches()
+    {
+        assertEquals("63080512", assembleHex("beqz a0,end\n.zero 300\nend:\n").substring(0, 8));
+        // too far for a branch, becomes a branch with the opposite condition over a jump
+        String far = assembleHex("beqz a0,end\n.zero 5000\nend:\n");
+        assertEquals("19e16f10c038", far.substring(0, 12));
+        assertEquals(6 + 5000, far.length() / 2);
+    }
+
+    @Test
+    public void listingScansLikeGas()
+    {
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble("test.s", "K = 3\nloop:\n\tli a1, 0x12345\n\tj loop\n");
+        assertEquals("   1              \tK = 3\n" +
+                     "   2              \tloop:\n" +
+                     "   3 0000 B7250100 \t\tli a1, 0x12345\n" +
+                     "   3      93855534 \n" +
+                     "   4 0008 E5BF     \t\tj loop\n" +
+                     "DEFINED SYMBOLS\n" +
+                     "              test.s:1      *ABS*:00000003 K\n" +
+                     "              test.s:2      .text:00000000 loop\n" +
+                     "\n" +
+                     "NO UNDEFINED SYMBOLS\n", result.listing);
+
+        ListingScanner scanner = new ListingScanner(ListingScanner.GAS);
+        assertTrue(scanner.scan(result.listing, new StringBuilder()));
+        assertEquals(4, scanner.getCount());
+        assertEquals(0, scanner.getAddress(2));
+        assertEquals(8, scanner.getAddress(3));
+    }
+
+    @Test
+    public void roundTripsThroughDisassembler()
+    {
+        String[] lines = {
+                "add x3, x1, x2", "sub x5, x6, x7", "xor x8, x9, x10", "sll x1, x2, x3", "sra x4, x5, x6",
+                "addi x11, x12, -7", "andi x13, x14, 255", "slti x15, x16, 100", "slli x17, x18, 3",
+                "lui x19, 74565", "auipc x20, 1"
+        };
+        StringBuilder source = new StringBuilder(".option norvc\n");
+        for (String line : lines)
+            source.append(line).append('\n');
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble("test.s", source.toString());
+        assertEquals(result.stdout, 0, result.retcode);
+        assertEquals(lines.length * 4, result.bin.length);
+
+        DisassembledRange range = new DisassembledRange();
+        new DisassemblerRiscV(result.bin, 0, result.bin.length).disassembleRange(0, result.bin.length, range);
+        assertEquals(lines.length, range.getCount());
+        for (int i = 0; i < lines.length; ++i) {
+            assertEquals(4, range.getLength(i));
+            // what the disassembler shows assembles back to the same bytes
+            String again = assembleHex(".option norvc\n" + range.getText(i) + "\n");
+            assertEquals(range.getText(i), hex(result.bin).substring(i * 8, i * 8 + 8), again);
+        }
+    }
+
+    @Test
+    public void disassemblesWhatItAssembles()
+    {
+        // the disassembler shows loads and stores in its own syntax, only the decoding is compared
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble("test.s",
+                "addi a0,a0,1\nmv a1,a2\nadd a3,a3,a4\nlw a5,4(a0)\nli a0,-3\nslli s1,s1,2\n" +
+                ".option norvc\nlw x21, 16(x22)\nlb x23, -1(x24)\nsw x25, 8(x26)\nsh x27, 2(x28)\njalr x1, 0(x5)\n");
+        assertEquals(result.stdout, 0, result.retcode);
+        assertEquals(6 * 2 + 5 * 4, result.bin.length);
+        DisassembledRange range = new DisassembledRange();
+        new DisassemblerRiscV(result.bin, 0, result.bin.length).disassembleRange(0, result.bin.length, range);
+        assertEquals(11, range.getCount());
+        for (int i = 0; i < range.getCount(); ++i) {
+            assertEquals(i < 6 ? 2 : 4, range.getLength(i));
+            assertNotEquals(DisassembledRange.INVALID, range.getId(i));
+        }
+    }
+
+    @Test
+    public void reportsErrorsLikeGas()
+    {
+        AssemblerRiscV.Result result = AssemblerRiscV.assemble("w.s", "nop\nfoo a0\naddi a0,a0,4096\nlui a0,-1\nj 1f\n");
+        assertEquals(1, result.retcode);
+        assertNull(result.bin);
+        assertNull(result.listing);
+        assertEquals("w.s:2: Error: unrecognized opcode `foo a0'\n" +
+                     "w.s:3: Error: illegal operands `addi a0,a0,4096'\n" +
+                     "w.s:4: Error: lui expression not in range 0..1048575\n" +
+                     "w.s: Error: local label `\"1\" (instance number 1 of a fb label)' is not defined\n", result.stdout);
+    }
+
+    @Test
+    public void linkerFeaturesAreErrors()
+    {
+        assertEquals(1, AssemblerRiscV.assemble("w.s", "la a0, x\n").retcode);
+        assertEquals(1, AssemblerRiscV.assemble("w.s", "j nowhere\n").retcode);
+        assertEquals(1, AssemblerRiscV.assemble("w.s", "lui a0, %hi(x)\n").retcode);
+        assertEquals(1, AssemblerRiscV.assemble("w.s", "x:\n.word x\n").retcode);
+        assertEquals(1, AssemblerRiscV.assemble("w.s", ".data\n").retcode);
+    }
+}
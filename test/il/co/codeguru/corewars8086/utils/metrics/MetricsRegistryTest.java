@@ -0,0 +1,101 @@
+package il.co.codeguru.corewars8086.utils.metrics;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.war.Competition;
+import il.co.codeguru.corewars8086.war.WarriorData;
+import il.co.codeguru.corewars8086.war.WarriorGroup;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void histogramPercentiles() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getPercentile(0.5));
+        for (int i = 1; i <= 100; ++i)
+            h.record(i);
+        assertEquals(100, h.getCount());
+        assertEquals(5050, h.getSum());
+        assertEquals(100, h.getMax());
+        assertEquals(50.5, h.getMean(), 0.001);
+        assertEquals(63, h.getPercentile(0.5));   // 50 is in the bucket of 32..63
+        assertEquals(100, h.getPercentile(0.99)); // capped by the max
+        assertEquals(1, h.getPercentile(0.01));
+    }
+
+    @Test
+    public void snapshotSumsTheStripes() {
+        MetricsRegistry registry = new MetricsRegistry();
+        EngineMetrics a = registry.newStripe();
+        EngineMetrics b = registry.newStripe();
+        a.wars.inc();
+        a.rounds.add(100);
+        b.wars.inc();
+        b.rounds.add(50);
+        a.roundsPerWar.record(100);
+        b.roundsPerWar.record(50);
+        b.counter("cache.hits").add(7);
+
+        MetricsRegistry.Snapshot s = registry.snapshot();
+        assertEquals(2, s.get(EngineMetrics.WARS));
+        assertEquals(150, s.get(EngineMetrics.ROUNDS));
+        assertEquals(7, s.get("cache.hits"));
+        assertEquals(0, s.get("cache.misses"));
+        assertEquals(2, s.roundsPerWar.getCount());
+        assertEquals(100, s.roundsPerWar.getMax());
+        assertEquals(0, s.getDecodeHitRate(), 0);
+
+        a.decodeHits.add(3);
+        b.decodeHits.add(6);
+        b.decodeMisses.add(3);
+        assertEquals(0.75, registry.snapshot().getDecodeHitRate(), 0.0001);
+    }
+
+    @Test
+    public void deathsAreCountedByReason() {
+        EngineMetrics m = new EngineMetrics();
+        m.death("memory exception: 0x1234");
+        m.death("memory exception: 0x5678");
+        m.death("invalid opcode");
+        assertEquals(2, m.getCounters().get(EngineMetrics.DEATHS_PREFIX + "memory exception").longValue());
+        assertEquals(1, m.getCounters().get(EngineMetrics.DEATHS_PREFIX + "invalid opcode").longValue());
+    }
+
+    @Test
+    public void warsAreTimedByTheStripeClock() throws Exception {
+        Logger.setTestingMode();
+        List<WarriorGroup> groups = new ArrayList<>();
+        WarriorGroup loop = new WarriorGroup("loop");
+        loop.addWarrior(new WarriorData("loop", new byte[]{0x6f, 0x00, 0x00, 0x00}, "loop", -1)); // jal x0, 0
+        groups.add(loop);
+        WarriorGroup die = new WarriorGroup("die");
+        die.addWarrior(new WarriorData("die", new byte[]{0x00, 0x00, 0x00, 0x00}, "die", -1)); // illegal instruction
+        groups.add(die);
+        Competition competition = new Competition();
+        competition.getWarriorRepository().loadWarriorGroups(groups, null);
+
+        EngineMetrics m = new EngineMetrics();
+        m.setClock(new EngineMetrics.Clock() {
+            private long now = 0;
+            @Override
+            public long nowMicros() {
+                now += 10;
+                return now;
+            }
+        });
+        competition.setMetrics(m);
+        competition.runDetachedWar(new int[]{0, 1}, 3);
+
+        assertEquals(1, m.wars.get());
+        assertEquals(10, m.setupMicros.getSum());
+        assertEquals(20, m.warMicros.getSum()); // from the start of the setup
+        assertTrue(m.decodeMisses.get() > 0); // every warrior decoded its first instruction
+        assertEquals(m.decodeHits.get() + m.decodeMisses.get(), m.getCounters().get(EngineMetrics.DECODE_HITS)
+                     + m.getCounters().get(EngineMetrics.DECODE_MISSES).longValue());
+    }
+}
@@ -0,0 +1,52 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BreakpointMapTest {
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    @Test
+    public void hitsSetOffsets()
+    {
+        BreakpointMap map = new BreakpointMap();
+        assertFalse(map.isHit(0, 0x100));
+        map.set(0x100, true);
+        map.set(0x100, true); // counted once
+        map.set(War.ARENA_SIZE - 1, true);
+        assertEquals(2, map.getCount());
+        assertTrue(map.isHit(0, 0x100));
+        assertTrue(map.isHit(5, War.ARENA_SIZE - 1));
+        assertFalse(map.isHit(0, 0x101));
+        assertFalse(map.isHit(0, 0x100 - 32)); // same bit in the previous word
+
+        map.set(0x100, false);
+        assertEquals(1, map.getCount());
+        assertFalse(map.isHit(0, 0x100));
+        map.clear();
+        assertEquals(0, map.getCount());
+        assertFalse(map.isSet(War.ARENA_SIZE - 1));
+    }
+
+    @Test
+    public void stopsOnlyMaskedWarriors()
+    {
+        BreakpointMap map = new BreakpointMap();
+        map.set(0x40, true);
+        map.setWarriorMask((1L << 1) | (1L << 33));
+        assertFalse(map.isHit(0, 0x40));
+        assertTrue(map.isHit(1, 0x40));
+        assertTrue(map.isHit(33, 0x40));
+        assertFalse(map.isHit(64 + 1, 0x40)); // too high for the mask, not the same as warrior 1
+
+        map.setWarriorMask(BreakpointMap.ALL_WARRIORS);
+        assertTrue(map.isHit(0, 0x40));
+    }
+}
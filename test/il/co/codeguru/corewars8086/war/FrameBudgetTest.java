@@ -0,0 +1,106 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameBudgetTest {
+
+    /** time moves only when a round runs */
+    private static class FakeClock implements FrameBudget.Clock {
+        double now = 1000;
+        public double nowMillis() {
+            return now;
+        }
+    }
+
+    /** runs a slice where every round takes the given time, @return how many rounds ran */
+    private static int runSlice(FrameBudget budget, FakeClock clock, double millisPerRound)
+    {
+        int total = 0;
+        budget.startSlice();
+        for (int batch = budget.nextBatch(); batch > 0; batch = budget.nextBatch()) {
+            clock.now += batch * millisPerRound;
+            budget.endBatch(batch);
+            total += batch;
+        }
+        return total;
+    }
+
+    @Test
+    public void adaptsToTheRoundTime()
+    {
+        FakeClock clock = new FakeClock();
+        FrameBudget budget = new FrameBudget(12, clock);
+        runSlice(budget, clock, 0.001); // the first slices ramp up
+        runSlice(budget, clock, 0.001);
+        double start = clock.now;
+        int rounds = runSlice(budget, clock, 0.001);
+        assertTrue(rounds > 10000);
+        assertTrue(clock.now - start <= 12);
+        assertEquals(0.001, budget.getMillisPerRound(), 1e-9);
+
+        // rounds got slower, the first batch overshoots a bit and the rest adapt
+        start = clock.now;
+        rounds = runSlice(budget, clock, 0.1);
+        assertTrue(clock.now - start <= 24);
+        start = clock.now;
+        rounds = runSlice(budget, clock, 0.1);
+        assertTrue(rounds > 60 && rounds <= 120);
+        assertTrue(clock.now - start <= 12);
+    }
+
+    @Test
+    public void coarseClockOnlyDoublesTheBatch()
+    {
+        FakeClock clock = new FakeClock();
+        FrameBudget budget = new FrameBudget(12, clock);
+        budget.startSlice();
+        List<Integer> batches = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            int batch = budget.nextBatch();
+            batches.add(batch);
+            budget.endBatch(batch); // the clock didn't move
+        }
+        assertEquals(2, (int)batches.get(0));
+        assertEquals(4, (int)batches.get(1));
+        assertEquals(8, (int)batches.get(2));
+        assertEquals(16, (int)batches.get(3));
+    }
+
+    @Test
+    public void competeModeRunsAWarOverSeveralFrames() throws Exception
+    {
+        Logger.setTestingMode();
+        byte[] loop = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+        List<WarriorGroup> groups = new ArrayList<>();
+        for (String name : new String[]{"loop1", "loop2"}) {
+            WarriorGroup group = new WarriorGroup(name);
+            group.addWarrior(new WarriorData(name, loop, name, -1));
+            groups.add(group);
+        }
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        final FakeClock clock = new FakeClock();
+        competition.setFrameBudget(new FrameBudget(12, new FrameBudget.Clock() {
+            public double nowMillis() {
+                clock.now += 3; // every read is 3 milliseconds later, whatever ran in between
+                return clock.now;
+            }
+        }));
+
+        competition.runCompetition(1, 2, false, false);
+        assertTrue(competition.continueRun(false)); // starts the war
+        int frames = 0;
+        while (competition.continueRun(false))
+            ++frames;
+        assertTrue(frames > 10); // nobody dies, so the war runs to MAX_ROUND in slices
+        assertNull(competition.compState);
+    }
+}
@@ -0,0 +1,115 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameDeltaRecorderTest {
+    private War war;
+    private FrameDeltaRecorder recorder;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    private void load(byte[]... codes) throws Exception
+    {
+        war = new War(null, null, true);
+        WarriorGroup[] groups = new WarriorGroup[codes.length];
+        for (int i = 0; i < codes.length; ++i) {
+            groups[i] = new WarriorGroup("team" + i);
+            groups[i].addWarrior(new WarriorData("player" + i, codes[i], "label" + i, 0x100 * (i + 1)));
+        }
+        war.loadWarriorGroups(groups);
+        recorder = new FrameDeltaRecorder();
+        recorder.startWar(war);
+        war.getMemory().setListener(recorder);
+    }
+
+    @Test
+    public void mergesWritesToRanges() throws Exception
+    {
+        load(new byte[]{0x13, 0x00, 0x00, 0x00});
+        RealModeMemoryImpl memory = war.getMemory();
+        int page = War.ARENA_START + RealModeMemoryImpl.PAGE_SIZE;
+        memory.writeByte(new RealModeAddress(page + 1), (byte)3);
+        memory.writeByte(new RealModeAddress(page - 1), (byte)1);
+        memory.writeByte(new RealModeAddress(page), (byte)7);
+        memory.writeByte(new RealModeAddress(page), (byte)2); // sent once, with the last value
+        memory.writeByte(new RealModeAddress(War.ARENA_START + 0x20), (byte)9);
+
+        FrameDelta delta = recorder.seal(5, -1);
+        assertEquals(5, delta.getRound());
+        assertEquals(2, delta.getRangeCount());
+        assertEquals(War.ARENA_START + 0x20, delta.getRangeStart(0));
+        assertEquals(War.ARENA_START + 0x21, delta.getRangeEnd(0));
+        // across the page boundary
+        assertEquals(page - 1, delta.getRangeStart(1));
+        assertEquals(page + 2, delta.getRangeEnd(1));
+        assertEquals(4, delta.getWrittenCount());
+        assertEquals(1, delta.getValue(1, page - 1));
+        assertEquals(2, delta.getValue(1, page));
+        assertEquals(3, delta.getValue(1, page + 1));
+        assertEquals(-1, delta.getWriter(1, page)); // not written in a round
+
+        assertEquals(0, recorder.seal(5, -1).getRangeCount());
+    }
+
+    @Test
+    public void sendsWarriorsAndChangedRegisters() throws Exception
+    {
+        // addi x1, x1, 4 ; sw x1, 16(x1)   x1 starts at the load offset
+        load(new byte[]{(byte)0x93, (byte)0x80, 0x40, 0x00, 0x23, (byte)0xa8, 0x10, 0x00});
+        Warrior warrior = war.getWarrior(0);
+        int start = warrior.getLoadOffsetInt();
+
+        FrameDelta delta = recorder.seal(0, 0);
+        assertEquals(0, delta.getSelectedWarrior());
+        assertTrue(delta.hasAllRegs());
+        assertEquals(FrameDelta.NUM_REGS, delta.getRegCount());
+        assertEquals(1, delta.getNumWarriors());
+        assertTrue(delta.isAlive(0));
+        assertEquals(start, delta.getPc(0));
+
+        war.nextRound(0);
+        war.nextRound(1);
+        delta = recorder.seal(2, 0);
+        assertFalse(delta.hasAllRegs());
+        assertEquals(2, delta.getRegCount()); // x1 and the pc
+        assertEquals(1, delta.getRegIndex(0));
+        assertEquals(FrameDelta.REG_PC, delta.getRegIndex(1));
+        assertEquals(start + 8, delta.getPc(0));
+        assertEquals(1, delta.getRangeCount());
+        assertEquals(War.ARENA_START + start + 20, delta.getRangeStart(0));
+        assertEquals(4, delta.getWrittenCount());
+        assertEquals(0, delta.getWriter(0, delta.getRangeStart(0)));
+
+        recorder.invalidateRegisters();
+        assertEquals(FrameDelta.NUM_REGS, recorder.seal(2, 0).getRegCount());
+        assertEquals(0, recorder.seal(2, 0).getRegCount());
+    }
+
+    @Test
+    public void sendsDeathsOnce() throws Exception
+    {
+        load(new byte[]{0x00, 0x00, 0x00, 0x00}, new byte[]{0x13, 0x00, 0x00, 0x00});
+        int dead = war.getWarriorByLabel("label0").m_myIndex; // the groups load in random order
+        war.nextRound(0);
+
+        FrameDelta delta = recorder.seal(1, -1);
+        assertEquals(-1, delta.getSelectedWarrior());
+        assertEquals(0, delta.getRegCount());
+        assertFalse(delta.isAlive(dead));
+        assertTrue(delta.isAlive(1 - dead));
+        assertEquals(1, delta.getDeathCount());
+        assertEquals(dead, delta.getDeath(0));
+
+        assertEquals(0, recorder.seal(1, -1).getDeathCount());
+    }
+}
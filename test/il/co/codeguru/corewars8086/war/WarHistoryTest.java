@@ -0,0 +1,205 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.cpu.riscv.CpuStateRiscV;
+import il.co.codeguru.corewars8086.gui.IBreakpointCheck;
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WarHistoryTest {
+    // addi x1,x1,64 ; sw x1,0(x1) ; jal x0,-8
+    private static final byte[] BOMBER = new byte[]{(byte)0x93, (byte)0x80, 0x00, 0x04, 0x23, (byte)0xa0, 0x10, 0x00,
+                                                    0x6f, (byte)0xf0, (byte)0x9f, (byte)0xff};
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+    private static final int ROUNDS = 300;
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    /** a debugged war that is started and hasn't run any round yet */
+    private static Competition startDebugWar() throws Exception
+    {
+        List<WarriorGroup> groups = new ArrayList<>();
+        WarriorGroup bombers = new WarriorGroup("bomber");
+        bombers.addWarrior(new WarriorData("bomber1", BOMBER, "bomber1", -1));
+        bombers.addWarrior(new WarriorData("bomber2", BOMBER, "bomber2", -1));
+        groups.add(bombers);
+        WarriorGroup loop = new WarriorGroup("loop");
+        loop.addWarrior(new WarriorData("loop", LOOP, "loop", -1));
+        groups.add(loop);
+
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        competition.setSeed(31);
+        competition.runCompetition(1, 2, false, true);
+        competition.continueRun(false);
+
+        // energy makes the war use its random generator every round
+        War war = competition.getCurrentWar();
+        war.getWarriorByLabel("bomber1").setEnergy((short)0x300);
+        war.getWarriorByLabel("bomber2").setEnergy((short)0x40);
+        return competition;
+    }
+
+    private static int stateHash(War war)
+    {
+        int hash = Arrays.hashCode(war.getMemory().m_data);
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            CpuStateRiscV state = war.getWarrior(i).getCpuState();
+            hash = hash * 31 + state.getPc();
+            hash = hash * 31 + state.getReg(1);
+            hash = hash * 31 + state.getEnergy();
+            hash = hash * 31 + (war.getWarrior(i).isAlive() ? 1 : 0);
+        }
+        return hash * 31 + war.getNumRemainingWarriors();
+    }
+
+    @Test
+    public void seekGivesSameStateAsRunning() throws Exception
+    {
+        Competition competition = startDebugWar();
+        War war = competition.getCurrentWar();
+        int[] hashes = new int[ROUNDS + 1];
+        hashes[0] = stateHash(war);
+        for (int round = 1; round <= ROUNDS; ++round) {
+            competition.continueRun(false);
+            assertEquals(round, competition.compState.round);
+            hashes[round] = stateHash(war);
+        }
+
+        int[] targets = {ROUNDS - 1, 250, 129, 128, 127, 3, 0, 200, ROUNDS};
+        for (int target : targets) {
+            assertTrue(competition.seekRound(target));
+            assertEquals(target, competition.compState.round);
+            assertEquals("state at round " + target, hashes[target], stateHash(war));
+        }
+
+        // continuing after going back gives the same war
+        assertTrue(competition.seekRound(100));
+        war.resume();
+        for (int round = 101; round <= ROUNDS; ++round) {
+            competition.continueRun(false);
+            assertEquals(hashes[round], stateHash(war));
+        }
+    }
+
+    @Test
+    public void stepBack() throws Exception
+    {
+        Competition competition = startDebugWar();
+        War war = competition.getCurrentWar();
+        for (int round = 0; round < 70; ++round)
+            competition.continueRun(false);
+        int hash = stateHash(war);
+        competition.continueRun(false);
+
+        assertTrue(competition.stepBack());
+        assertEquals(70, competition.compState.round);
+        assertEquals(hash, stateHash(war));
+        assertTrue(war.isPaused());
+    }
+
+    @Test
+    public void snapshotsAreBounded() throws Exception
+    {
+        Competition competition = startDebugWar();
+        War war = competition.getCurrentWar();
+        war.enableHistory(1, 8);
+        for (int round = 0; round < ROUNDS; ++round)
+            competition.continueRun(false);
+
+        WarHistory history = war.getHistory();
+        assertTrue(history.getSnapshotRounds().length <= 8);
+        assertTrue(history.getInterval() > 1);
+        assertEquals(0, history.getSnapshotRounds()[0]);
+
+        int hash = stateHash(war);
+        assertTrue(competition.seekRound(5));
+        assertTrue(competition.seekRound(ROUNDS));
+        assertEquals(hash, stateHash(war));
+    }
+
+    /** a breakpoint only the given warrior stops at */
+    private static void setBreakpoint(War war, Warrior warrior, int pc)
+    {
+        final BreakpointMap breakpoints = new BreakpointMap();
+        breakpoints.set(pc & 0xffff, true);
+        breakpoints.setWarriorMask(1L << warrior.m_myIndex);
+        war.setBreakpointCheck(new IBreakpointCheck() {
+            @Override
+            public BreakpointMap getBreakpoints() {
+                return breakpoints;
+            }
+            @Override
+            public boolean shouldBreak(CpuStateRiscV state) {
+                return true;
+            }
+        });
+    }
+
+    @Test
+    public void previousBreakpoint() throws Exception
+    {
+        Competition competition = startDebugWar();
+        final War war = competition.getCurrentWar();
+        final Warrior bomber = war.getWarriorByLabel("bomber1");
+        final int breakPc = bomber.getCpuState().getPc() + 4; // the sw
+
+        // run with the breakpoint, remember where it stopped
+        setBreakpoint(war, bomber, breakPc);
+        List<Integer> stops = new ArrayList<>();
+        while (competition.compState.round < ROUNDS) {
+            if (!competition.continueRun(false)) {
+                stops.add(competition.compState.round);
+                war.resume();
+            }
+        }
+        assertTrue(stops.size() > 2);
+
+        for (int i = stops.size() - 1; i > 0 && stops.get(i) >= ROUNDS - 20; --i) {
+            assertTrue(competition.seekPreviousBreakpoint());
+            assertEquals((int)stops.get(i - 1), competition.compState.round);
+        }
+
+        assertTrue(competition.seekRound(stops.get(0)));
+        assertFalse(competition.seekPreviousBreakpoint());
+        assertEquals((int)stops.get(0), competition.compState.round);
+    }
+
+    @Test
+    public void continueToBreakpoint() throws Exception
+    {
+        Competition stepped = startDebugWar();
+        Warrior bomber = stepped.getCurrentWar().getWarriorByLabel("bomber1");
+        int breakPc = bomber.getCpuState().getPc() + 4;
+        setBreakpoint(stepped.getCurrentWar(), bomber, breakPc);
+        while (stepped.continueRun(false))
+            ;
+
+        Competition fast = startDebugWar();
+        bomber = fast.getCurrentWar().getWarriorByLabel("bomber1");
+        setBreakpoint(fast.getCurrentWar(), bomber, breakPc);
+        fast.continueToBreakpoint();
+        assertFalse(fast.continueRun(false)); // no frame budget, runs to the breakpoint in one call
+        assertTrue(fast.compState.round > 0);
+        assertEquals(stepped.compState.round, fast.compState.round);
+        assertEquals(stateHash(stepped.getCurrentWar()), stateHash(fast.getCurrentWar()));
+        assertTrue(fast.getCurrentWar().isPaused());
+
+        // the next continue goes on from there to the next hit
+        fast.continueToBreakpoint();
+        assertFalse(fast.continueRun(false));
+        assertTrue(fast.compState.round > stepped.compState.round);
+    }
+}
@@ -0,0 +1,114 @@
+package il.co.codeguru.corewars8086.war;
+
+import il.co.codeguru.corewars8086.utils.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WarReplayTest {
+    // addi x1,x1,64 ; sw x1,0(x1) ; jal x0,-8
+    private static final byte[] BOMBER = new byte[]{(byte)0x93, (byte)0x80, 0x00, 0x04, 0x23, (byte)0xa0, 0x10, 0x00,
+                                                    0x6f, (byte)0xf0, (byte)0x9f, (byte)0xff};
+    private static final byte[] LOOP = new byte[]{0x6f, 0x00, 0x00, 0x00}; // jal x0, 0
+
+    @Before
+    public void setUp()
+    {
+        Logger.setTestingMode();
+    }
+
+    private static Competition createCompetition()
+    {
+        List<WarriorGroup> groups = new ArrayList<>();
+        WarriorGroup bombers = new WarriorGroup("bomber");
+        bombers.addWarrior(new WarriorData("bomber1", BOMBER, "bomber1", -1));
+        bombers.addWarrior(new WarriorData("bomber2", BOMBER, "bomber2", -1));
+        groups.add(bombers);
+        WarriorGroup loop = new WarriorGroup("loop");
+        loop.addWarrior(new WarriorData("loop", LOOP, "loop", -1));
+        groups.add(loop);
+
+        Competition competition = new Competition();
+        assertTrue(competition.getWarriorRepository().loadWarriorGroups(groups, null));
+        competition.competitionEventCaster.doneAdding();
+        competition.memoryEventCaster.doneAdding();
+        return competition;
+    }
+
+    @Test
+    public void textRoundTrip() throws Exception
+    {
+        Competition competition = createCompetition();
+        competition.setSeed(77);
+        competition.runCompetition(1, 2, false, false);
+        competition.continueRun(false); // starts the war
+
+        WarReplay replay = competition.getCurrentReplay();
+        String text = replay.toString();
+        assertEquals(text, WarReplay.parse(text).toString());
+        assertEquals(77, WarReplay.parse(text).getSeed());
+        assertEquals(WarReplay.ENGINE_VERSION, WarReplay.parse(text).getEngineVersion());
+    }
+
+    @Test
+    public void replayGivesSameWar() throws Exception
+    {
+        Competition competition = createCompetition();
+        competition.setSeed(1234);
+        competition.runCompetition(1, 2, false, false);
+        competition.continueRun(false); // starts the war
+        WarReplay replay = competition.getCurrentReplay();
+        competition.continueRun(false); // runs it to the end
+        War war = competition.getCurrentWar();
+        assertNotNull(competition.compState);
+        int rounds = competition.compState.round;
+        byte[] memory = Arrays.copyOf(war.getMemory().m_data, war.getMemory().m_data.length);
+
+        Competition replayed = createCompetition();
+        replayed.startReplay(WarReplay.parse(replay.toString()), Competition.MAX_ROUND);
+        War replayWar = replayed.getCurrentWar();
+        assertNotNull(replayed.compState);
+        assertEquals(rounds, replayed.compState.round);
+        assertArrayEquals(memory, replayWar.getMemory().m_data);
+        for (int i = 0; i < war.getNumWarriors(); ++i) {
+            assertEquals(war.getWarrior(i).getName(), replayWar.getWarrior(i).getName());
+            assertEquals(war.getWarrior(i).isAlive(), replayWar.getWarrior(i).isAlive());
+            assertEquals(war.getWarrior(i).getDeathRound(), replayWar.getWarrior(i).getDeathRound());
+            assertEquals(war.getWarrior(i).getCpuState().getPc(), replayWar.getWarrior(i).getCpuState().getPc());
+        }
+    }
+
+    @Test
+    public void replayStopsAtRound() throws Exception
+    {
+        Competition competition = createCompetition();
+        competition.setSeed(99);
+        competition.runCompetition(1, 2, false, false);
+        competition.continueRun(false);
+        WarReplay replay = competition.getCurrentReplay();
+
+        Competition replayed = createCompetition();
+        replayed.startReplay(replay, 5);
+        assertEquals(5, replayed.compState.round);
+        assertTrue(replayed.getCurrentWar().isPaused());
+    }
+
+    @Test(expected = Exception.class)
+    public void replayWithDifferentCode() throws Exception
+    {
+        Competition competition = createCompetition();
+        competition.setSeed(5);
+        competition.runCompetition(1, 2, false, false);
+        competition.continueRun(false);
+        String text = competition.getCurrentReplay().toString();
+
+        Competition other = createCompetition();
+        other.getWarriorRepository().findWarrior("loop").getCode()[0] = 0x13;
+        other.startReplay(WarReplay.parse(text), 10);
+    }
+}
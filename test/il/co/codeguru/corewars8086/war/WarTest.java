@@ -1,6 +1,10 @@
 package il.co.codeguru.corewars8086.war;
 
+import il.co.codeguru.corewars8086.cpu.riscv.FlightRecorder;
+import il.co.codeguru.corewars8086.memory.RealModeAddress;
+import il.co.codeguru.corewars8086.memory.RealModeMemoryImpl;
 import il.co.codeguru.corewars8086.utils.Logger;
+import il.co.codeguru.corewars8086.utils.metrics.EngineMetrics;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -99,4 +103,164 @@ public class WarTest {
         assertEquals(0, warrior.getCpuState().getPc());
 
     }
+
+    @Test
+    public void testDeathRoundAndReason()
+    {
+        byte[] arr = new byte[]{0x00, 0x00, 0x00, 0x00};
+        warriorGroups[0].addWarrior(new WarriorData("player1", arr, "label", 0));
+        try {
+            war.loadWarriorGroups(warriorGroups);
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace(System.err);
+        }
+
+        Warrior warrior = war.getWarrior(0);
+        assertEquals(-1, warrior.getDeathRound());
+        assertNull(warrior.getDeathReason());
+
+        war.nextRound(7);
+
+        assertFalse(warrior.isAlive());
+        assertEquals(7, warrior.getDeathRound());
+        assertEquals("CPU exception", warrior.getDeathReason());
+    }
+
+    @Test
+    public void testReusedMemoryIsCleared()
+    {
+        RealModeMemoryImpl memory = war.getMemory();
+        java.util.Arrays.fill(memory.m_data, (byte)0x55);
+
+        War second = new War(null, null, false, memory);
+        assertSame(memory, second.getMemory());
+        for (int i = 0; i < memory.m_data.length; ++i)
+            assertEquals(0, memory.m_data[i]);
+    }
+
+    @Test
+    public void testWatchpointHit()
+    {
+        // addi x1,x1,64 ; sw x1,0(x1)
+        byte[] arr = new byte[]{(byte)0x93, (byte)0x80, 0x00, 0x04, 0x23, (byte)0xa0, 0x10, 0x00};
+        warriorGroups[0].addWarrior(new WarriorData("player1", arr, "label", 0));
+        try {
+            war.loadWarriorGroups(warriorGroups);
+        }
+        catch(Exception e)
+        {
+            e.printStackTrace(System.err);
+        }
+        war.setWatched(0x42, 1, true);
+
+        assertFalse(war.nextRound(0));
+        assertNull(war.getWatchHit());
+        assertTrue(war.nextRound(1));
+
+        WatchpointHit hit = war.getWatchHit();
+        assertNotNull(hit);
+        assertEquals(1, hit.round);
+        assertEquals("player1", hit.warriorName);
+        assertEquals(4, hit.pc);
+        assertEquals(0x42, hit.address);
+        assertEquals(0, hit.oldValue);
+        assertEquals(0, hit.newValue);
+
+        war.setWatched(0x42, 1, false);
+        war.getWarrior(0).getCpuState().setPc(4);
+        assertFalse(war.nextRound(2));
+        assertNull(war.getWatchHit());
+    }
+
+    @Test
+    public void testWatchpointWrapsInArena() throws Exception
+    {
+        RealModeMemoryImpl memory = war.getMemory();
+        war.setWatched(War.ARENA_SIZE - 2, 4, true);
+
+        memory.writeByte(new RealModeAddress((short)0x2000, (short)0), (byte)1); // right after the arena
+        assertEquals(-1, memory.getWatchHitAddress());
+        memory.writeByte(new RealModeAddress(War.ARENA_SEGMENT, (short)1), (byte)2);
+        assertEquals(War.ARENA_START + 1, memory.getWatchHitAddress());
+
+        memory.clearWatchHit();
+        war.setWatched(War.ARENA_SIZE - 2, 4, false);
+        memory.writeByte(new RealModeAddress(War.ARENA_SEGMENT, (short)0xfffe), (byte)3);
+        memory.writeByte(new RealModeAddress(War.ARENA_SEGMENT, (short)1), (byte)4);
+        assertEquals(-1, memory.getWatchHitAddress());
+    }
+
+    @Test
+    public void testProfile() throws Exception
+    {
+        // addi x1,x1,64 ; lw x2,0(x1) ; sw x1,0(x1) ; jal x0,-12
+        byte[] arr = new byte[]{(byte)0x93, (byte)0x80, 0x00, 0x04, 0x03, (byte)0xa1, 0x00, 0x00,
+                                0x23, (byte)0xa0, 0x10, 0x00, 0x6f, (byte)0xf0, 0x5f, (byte)0xff};
+        warriorGroups[0].addWarrior(new WarriorData("player1", arr, "label", 0));
+        war.loadWarriorGroups(warriorGroups);
+        war.enableProfile();
+        for (int round = 0; round < 8; ++round)
+            war.nextRound(round);
+        war.getMemory().writeByte(new RealModeAddress(War.ARENA_SEGMENT, (short)0x100), (byte)1);
+
+        WarProfile profile = war.getProfile();
+        int[] executions = profile.getCounts(0, WarProfile.EXECUTIONS);
+        int[] reads = profile.getCounts(0, WarProfile.READS);
+        int[] writes = profile.getCounts(0, WarProfile.WRITES);
+        for (int pc = 0; pc < 16; pc += 4)
+            assertEquals(2, executions[pc]);
+        assertEquals(2, WarProfile.max(profile.getTotalCounts(WarProfile.EXECUTIONS)));
+        assertEquals(0, reads[0]); // fetching is not reading
+        assertEquals(0, writes[0]); // loading is not writing
+        for (int i = 0; i < 4; ++i) {
+            assertEquals(1, reads[0x40 + i]);
+            assertEquals(1, reads[0x80 + i]);
+            assertEquals(1, writes[0x40 + i]);
+            assertEquals(1, writes[0x80 + i]);
+        }
+        assertEquals(0, writes[0x100]);
+    }
+
+    @Test
+    public void testFlightRecorder() throws Exception
+    {
+        // addi x1,x0,5 ; invalid
+        byte[] arr = new byte[]{(byte)0x93, 0x00, 0x50, 0x00, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff};
+        warriorGroups[0].addWarrior(new WarriorData("player1", arr, "label", 0));
+        war.loadWarriorGroups(warriorGroups);
+        war.enableFlightRecorder(8);
+        war.nextRound(0);
+        war.nextRound(1);
+
+        Warrior warrior = war.getWarrior(0);
+        assertFalse(warrior.isAlive());
+        FlightRecorder recorder = warrior.getFlightRecorder();
+        assertEquals(2, recorder.size());
+        assertEquals(0, recorder.getPc(0));
+        assertEquals(0x00500093, recorder.getRaw(0));
+        assertEquals(5, recorder.getRdValue(0));
+        assertEquals(4, recorder.getPc(1)); // the instruction that killed it
+        assertEquals(0xffffffff, recorder.getRaw(1));
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        // addi x1,x0,5 ; invalid
+        byte[] arr = new byte[]{(byte)0x93, 0x00, 0x50, 0x00, (byte)0xff, (byte)0xff, (byte)0xff, (byte)0xff};
+        warriorGroups[0].addWarrior(new WarriorData("player1", arr, "label", 0));
+        war.loadWarriorGroups(warriorGroups);
+        EngineMetrics metrics = new EngineMetrics();
+        war.setMetrics(metrics);
+        war.nextRound(0);
+        war.nextRound(1);
+        war.nextRound(2);
+
+        assertEquals(3, metrics.rounds.get());
+        assertEquals(2, metrics.turns.get()); // dead warriors don't get a turn
+        assertEquals(2, metrics.instructions.get());
+        assertEquals(1, metrics.getCounters().get(EngineMetrics.DEATHS_PREFIX + "CPU exception").longValue());
+    }
 }
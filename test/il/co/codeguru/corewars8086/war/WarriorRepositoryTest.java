@@ -5,6 +5,9 @@ import il.co.codeguru.corewars8086.utils.Logger;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 public class WarriorRepositoryTest {
@@ -36,6 +39,54 @@ public class WarriorRepositoryTest {
         assertEquals(0.0,repo.getWarriorGroups().get(1).getGroupScore(), 0.1);
     }
 
+    @Test
+    public void scoreEventsComeOncePerFlush() {
+        List<WarriorGroup> groups = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            WarriorGroup group = new WarriorGroup("group" + i);
+            group.addWarrior(new WarriorData("w" + i + "0", new byte[]{0x13}, "l" + i + "0", -1));
+            group.addWarrior(new WarriorData("w" + i + "1", new byte[]{0x13}, "l" + i + "1", -1));
+            groups.add(group);
+        }
+        WarriorGroup zombies = new WarriorGroup("zombies");
+        zombies.addWarrior(new WarriorData("z", new byte[]{0x13}, "z", -1));
+        assertTrue(repo.loadWarriorGroups(groups, zombies));
+        final List<float[][]> events = new ArrayList<>();
+        repo.addScoreEventListener(new ScoreEventListener() {
+            @Override
+            public void scoresChanged(float[][] addedScores) {
+                float[][] copy = new float[addedScores.length][];
+                for (int i = 0; i < addedScores.length; ++i)
+                    copy[i] = addedScores[i].clone();
+                events.add(copy);
+            }
+        });
+
+        int w11 = groups.get(1).getWarriors().get(1).getScoreIndex();
+        assertEquals(-1, zombies.getWarriors().get(0).getScoreIndex());
+        repo.addScore(w11, 0.5f);
+        repo.addScore(w11, 0.25f);
+        repo.addScore("w00", 1.0f);
+        repo.addScore(-1, 1.0f); // zombie
+        assertEquals(0, events.size());
+
+        repo.flushScoreEvents();
+        assertEquals(1, events.size());
+        assertEquals(1.0, events.get(0)[0][0], 0.001);
+        assertEquals(0.0, events.get(0)[0][1], 0.001);
+        assertEquals(0.75, events.get(0)[1][1], 0.001);
+        assertEquals(0.75, groups.get(1).getGroupScore(), 0.001);
+        assertEquals(0.75, groups.get(1).getScore(1), 0.001);
+
+        repo.flushScoreEvents(); // nothing new
+        assertEquals(1, events.size());
+        repo.addScore(w11, 1.0f);
+        repo.flushScoreEvents();
+        assertEquals(2, events.size());
+        assertEquals(1.0, events.get(1)[1][1], 0.001);
+        assertEquals(0.0, events.get(1)[0][0], 0.001);
+    }
+
     @Test
     public void testGetGroupNames()
     {
@@ -242,6 +242,54 @@ function triggerGoToKey() {
     triggerGoTo()
 }
 
+// called from Debugger.java on a right click on an address in the debugger
+function editBreakpointCondition(addr, current) {
+    var text = prompt("Break at " + addr.toString(16) + " only when this is non zero, empty to always break:", current)
+    if (text == null)
+        return
+    var err = j_setBreakpointCondition(addr, text)
+    if (err != null)
+        console.error("bad breakpoint condition: " + err)
+}
+
+// moves the war in the debugger to a round, it stays paused there
+function triggerSeek() {
+    var round = parseInt(seek_round.value, 10)
+    if (isNaN(round) || round < 0) {
+        console.error("failed to parse round");
+        return
+    }
+    if (!j_seekRound(round))
+        console.error("cannot seek, the war keeps no history");
+}
+function triggerSeekKey() {
+    if(event.key !== "Enter")
+        return;
+    event.preventDefault();
+    triggerSeek()
+}
+
+// watch_range is an arena offset in hex with an optional decimal length, "A000+4"
+function triggerWatch(add) {
+    var parts = watch_range.value.split("+")
+    var offset = parseInt(parts[0], 16)
+    var length = (parts.length > 1) ? parseInt(parts[1], 10) : 1
+    if (isNaN(offset) || isNaN(length) || offset < 0 || offset > 0xffff || length <= 0) {
+        console.error("failed to parse watch range");
+        return
+    }
+    if (add)
+        j_addWatchpoint(offset, length)
+    else
+        j_removeWatchpoint(offset, length)
+}
+function triggerWatchKey() {
+    if(event.key !== "Enter")
+        return;
+    event.preventDefault();
+    triggerWatch(true)
+}
+
 
 
 
@@ -530,6 +578,7 @@ var debug_area_shown = false
 var deferredEditorToAddress = -1 // set by code in CodeEditor.java
 
 var prevDebug = false;
+var pendingReplay = null // set by triggerReplay() for the next debug session to start from
 function triggerDebug() {
     console.log("triggerDebug " + debugCheckbox.checked)
     if (prevDebug == debugCheckbox.checked) // not sure how this is possible
@@ -538,7 +587,15 @@ function triggerDebug() {
 
     if (debugCheckbox.checked)
     {
-        if (!j_startDebug()) {
+        var started
+        if (pendingReplay != null) {
+            started = j_startReplay(pendingReplay.descriptor, pendingReplay.round)
+            pendingReplay = null
+        }
+        else {
+            started = j_startDebug()
+        }
+        if (!started) {
             console.error("cannot start debug")
             debugCheckbox.checked = false;
             prevDebug = debugCheckbox.checked
@@ -945,6 +1002,33 @@ function js_resetZoom() {
     updateBgStyle();
 }
 
+// the wars count what the warriors do only while profiling is checked, since counting slows them down
+function changedProfiling() {
+    j_setProfiling(profileCheckbox.checked)
+}
+function changedHeatmap() {
+    var kind = parseInt(heatmap_kind.value, 10)
+    if (kind >= 0 && !profileCheckbox.checked) {
+        profileCheckbox.checked = true
+        changedProfiling()
+    }
+    j_warCanvas_setHeatmap(kind, -1)
+}
+// the instruction mix of all the warriors of the current war
+function triggerInstructionMix(v) {
+    if (v) {
+        var text = j_getInstructionMix(-1)
+        if (text == null)
+            text = "The war is not profiled.\nCheck Profile and run a war, or keep running this one."
+        mixText.innerText = text
+        mixBack.style.display = "inline"
+    }
+    else {
+        mixBack.style.display = "none"
+    }
+    mixWin.onclick = eventStopProp
+}
+
 // ------------------------------------------ Competition --------------------------------------------
 
 function graph_panel_anim_end() {
@@ -1002,6 +1086,28 @@ function triggerStartCompete()
 
     }
 }
+// opens the last war that ran in the debugger, at the round in replayRoundField
+function triggerReplay()
+{
+    if (competeRunCheckbox.checked) // still running
+        return
+    var descriptor = j_getReplay()
+    if (descriptor == null) {
+        console.error("no war to replay")
+        return
+    }
+    var round = parseInt(replayRoundField.value, 10)
+    if (isNaN(round) || round < 0) {
+        console.error("bad replay round " + replayRoundField.value)
+        return
+    }
+    pendingReplay = { descriptor: descriptor, round: round }
+    competeCheckbox.checked = false
+    openCompete()
+    debugCheckbox.checked = true
+    triggerDebug()
+}
+
 function competeFinished()
 {
     competeRunBtnIn.style.backgroundImage = ""